@@ -0,0 +1,704 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.api;
+
+import com.google.gson.stream.JsonWriter;
+import com.rentalsystem.config.LoggerConfig;
+import com.rentalsystem.manager.HostManager;
+import com.rentalsystem.manager.IncomeCube;
+import com.rentalsystem.manager.OwnerManager;
+import com.rentalsystem.manager.PropertyManager;
+import com.rentalsystem.manager.RelationshipLinker;
+import com.rentalsystem.manager.RentalManager;
+import com.rentalsystem.manager.TenantManager;
+import com.rentalsystem.model.Tenant;
+import com.rentalsystem.report.Report;
+import com.rentalsystem.report.ReportExporter;
+import com.rentalsystem.report.Reports;
+import com.rentalsystem.util.DateUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.logging.Level;
+
+
+/**
+ * Embedded HTTP API over the managers, built on the JDK's com.sun.net.httpserver.
+ * Listens on the loopback interface only. Requests are served by a bounded worker pool; when the queue is
+ * full the accepting thread runs the request itself, which stops it accepting more until it is done.
+ * Connections are kept alive between requests, and every endpoint records its latency, served at GET /api/metrics.
+ * Endpoints run under the FileHandler's data lock, the read lock for reads and the write lock for writes, which
+ * the managers also take for every change, so an entity is never rendered halfway through an edit.
+ * Responses are rendered into a buffer while the lock is held. A response that fits in one chunk is sent with
+ * a fixed length once the lock is released; a larger listing or report is streamed with chunked encoding, the
+ * lock being released while each full chunk is written, so a slow client holds up an edit for at most one chunk
+ * and memory does not grow with the size of the response. A streamed listing covers the entities present when
+ * it began, each as it is when it is rendered.
+ */
+public class ApiServer {
+    private static final String JSON = "application/json; charset=utf-8";
+
+    static {
+        // Headers and body go out in separate writes; without TCP_NODELAY each keep-alive response waits out
+        // the client's delayed ACK (~40 ms). Read once by the JDK server, so it must be set before the first one.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ReadWriteLock lock;
+    private final RelationshipLinker linker;
+    private final LatencyMetrics metrics = new LatencyMetrics();
+    private final List<Route> routes = new ArrayList<>();
+
+    private final RentalManager rentalManager;
+    private final TenantManager tenantManager;
+    private final OwnerManager ownerManager;
+    private final HostManager hostManager;
+    private final PropertyManager propertyManager;
+    private final Reports reports;
+
+
+    /**
+     * Constructs a new ApiServer. The server does not accept requests until start is called.
+     * @param port The port to listen on, or 0 for any free port
+     * @param workerCount The number of worker threads
+     * @param queueSize The number of requests that may wait for a worker
+     * @param rentalManager The RentalManager instance
+     * @param tenantManager The TenantManager instance
+     * @param ownerManager The OwnerManager instance
+     * @param hostManager The HostManager instance
+     * @param propertyManager The PropertyManager instance
+     * @param reports The report definitions served under /api/reports
+     * @param lock The lock the managers take for every change, from FileHandler.getDataLock
+     * @param linker The linker whose pending tasks must run before a request takes the lock, from FileHandler.getLinker
+     * @throws IOException if the port cannot be bound
+     */
+    public ApiServer(int port, int workerCount, int queueSize, RentalManager rentalManager, TenantManager tenantManager,
+                     OwnerManager ownerManager, HostManager hostManager, PropertyManager propertyManager, Reports reports,
+                     ReadWriteLock lock, RelationshipLinker linker) throws IOException {
+        this.rentalManager = rentalManager;
+        this.tenantManager = tenantManager;
+        this.ownerManager = ownerManager;
+        this.hostManager = hostManager;
+        this.propertyManager = propertyManager;
+        this.reports = reports;
+        this.lock = lock;
+        this.linker = linker;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                task -> {
+                    Thread thread = new Thread(task, "api-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), queueSize);
+        server.setExecutor(workers);
+        server.createContext("/api/", this::handle);
+        registerRoutes();
+    }
+
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+
+    /**
+     * Stops the server, giving in-flight requests up to a second to complete.
+     */
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+
+    /**
+     * Gets the port the server is listening on.
+     * @return The bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+
+    public LatencyMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    private void registerRoutes() {
+        route("GET", "/api/properties", false, (exchange, params) ->
+                jsonList(propertyManager.getAll(), EntityJson::writeProperty));
+        route("GET", "/api/properties/available", false, (exchange, params) -> {
+            Map<String, String> query = query(exchange);
+            Date from = dateParam(query, "from");
+            Date to = dateParam(query, "to");
+            return jsonList(rentalManager.findAvailableProperties(from, to), EntityJson::writeProperty);
+        });
+        route("GET", "/api/properties/{id}", false, (exchange, params) ->
+                json(found(propertyManager.get(params[0]), "Property", params[0]), EntityJson::writeProperty));
+
+        route("GET", "/api/tenants", false, (exchange, params) ->
+                jsonList(tenantManager.getAll(), EntityJson::writePerson));
+        route("GET", "/api/tenants/{id}", false, (exchange, params) ->
+                json(found(tenantManager.get(params[0]), "Tenant", params[0]), EntityJson::writePerson));
+        route("GET", "/api/tenants/{id}/payments", false, (exchange, params) -> {
+            Tenant tenant = found(tenantManager.get(params[0]), "Tenant", params[0]);
+            return jsonList(tenant.getPayments(), EntityJson::writePayment);
+        });
+
+        route("GET", "/api/owners", false, (exchange, params) ->
+                jsonList(ownerManager.getAll(), EntityJson::writePerson));
+        route("GET", "/api/owners/{id}", false, (exchange, params) ->
+                json(found(ownerManager.get(params[0]), "Owner", params[0]), EntityJson::writePerson));
+
+        route("GET", "/api/hosts", false, (exchange, params) ->
+                jsonList(hostManager.getAll(), EntityJson::writePerson));
+        route("GET", "/api/hosts/{id}", false, (exchange, params) ->
+                json(found(hostManager.get(params[0]), "Host", params[0]), EntityJson::writePerson));
+
+        route("GET", "/api/agreements", false, (exchange, params) ->
+                jsonList(rentalManager.getAll(), EntityJson::writeAgreement));
+        route("GET", "/api/agreements/{id}", false, (exchange, params) ->
+                json(found(rentalManager.get(params[0]), "Rental agreement", params[0]), EntityJson::writeAgreement));
+        route("POST", "/api/agreements/{id}/extend", true, (exchange, params) -> {
+            found(rentalManager.get(params[0]), "Rental agreement", params[0]);
+            String days = query(exchange).get("days");
+            if (days == null || !days.matches("\\d{1,5}")) {
+                throw new IllegalArgumentException("days must be a positive number of days");
+            }
+            rentalManager.extendRentalAgreement(params[0], Integer.parseInt(days));
+            return json(rentalManager.get(params[0]), EntityJson::writeAgreement);
+        });
+        route("POST", "/api/agreements/{id}/terminate", true, (exchange, params) -> {
+            found(rentalManager.get(params[0]), "Rental agreement", params[0]);
+            rentalManager.terminateRentalAgreement(params[0]);
+            return json(rentalManager.get(params[0]), EntityJson::writeAgreement);
+        });
+        route("DELETE", "/api/agreements/{id}", true, (exchange, params) -> {
+            found(rentalManager.get(params[0]), "Rental agreement", params[0]);
+            rentalManager.delete(params[0]);
+            return new Response(204, null, null);
+        });
+
+        route("GET", "/api/reports/{name}", false, (exchange, params) -> report(exchange, params[0]));
+        route("GET", "/api/metrics", false, (exchange, params) -> json(metrics, (writer, m) -> m.writeJson(writer)));
+    }
+
+
+    private void route(String method, String pattern, boolean write, Endpoint endpoint) {
+        routes.add(new Route(method, pattern, write, endpoint));
+    }
+
+
+    /**
+     * Dispatches a request to its route and renders the response under the read or write lock, sends what is
+     * left of it once the lock is released, and records its latency.
+     * @param exchange The HTTP exchange
+     */
+    private void handle(HttpExchange exchange) {
+        long start = System.nanoTime();
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String endpointName = method + " " + path;
+        int status = 500;
+        try {
+            Route route = null;
+            String[] params = null;
+            boolean pathMatched = false;
+            for (Route candidate : routes) {
+                String[] match = candidate.match(path);
+                if (match != null) {
+                    pathMatched = true;
+                    if (candidate.method.equals(method)) {
+                        route = candidate;
+                        params = match;
+                        break;
+                    }
+                }
+            }
+            if (route == null) {
+                status = pathMatched ? 405 : 404;
+                endpointName = pathMatched ? method + " (not allowed)" : method + " (not found)";
+                sendError(exchange, status, pathMatched ? "Method not allowed" : "Not found");
+                return;
+            }
+
+            endpointName = method + " " + route.pattern;
+            // Linking takes the write lock, which a request already holding the read lock could not
+            linker.ensureLinked();
+            Lock held = route.write ? lock.writeLock() : lock.readLock();
+            Body body = new Body(exchange, held);
+            held.lock();
+            try {
+                Response response;
+                try {
+                    response = route.endpoint.handle(exchange, params);
+                    body.render(response);
+                } catch (NotFoundException e) {
+                    response = error(404, e.getMessage());
+                    body.render(response);
+                } catch (IllegalArgumentException e) {
+                    response = error(400, e.getMessage());
+                    body.render(response);
+                } catch (IllegalStateException e) {
+                    response = error(409, e.getMessage());
+                    body.render(response);
+                }
+                status = response.status;
+            } finally {
+                held.unlock();
+            }
+            body.send();
+        } catch (UncheckedIOException e) {
+            LoggerConfig.getLogger().log(Level.FINE, "API response aborted: " + e.getCause().getMessage());
+        } catch (IOException e) {
+            // The client went away mid-response; nothing more can be sent
+            LoggerConfig.getLogger().log(Level.FINE, "API response aborted: " + e.getMessage());
+        } catch (RuntimeException e) {
+            LoggerConfig.getLogger().log(Level.WARNING, "API request failed: " + endpointName, e);
+            try {
+                sendError(exchange, 500, "Internal server error");
+            } catch (IOException | RuntimeException ignored) {
+                // Headers were already sent
+            }
+        } finally {
+            exchange.close();
+            metrics.record(endpointName, System.nanoTime() - start, status);
+        }
+    }
+
+
+    /**
+     * Renders a single entity as a JSON response.
+     * @param value The entity to send
+     * @param serializer The serializer for the entity
+     * @return The response
+     */
+    private static <T> Response json(T value, Serializer<T> serializer) {
+        return new Response(200, JSON, body -> {
+            JsonWriter writer = new JsonWriter(body.writer());
+            serializer.write(writer, value);
+            writer.flush();
+        });
+    }
+
+
+    /**
+     * Renders a list of entities as a JSON array response, one entity at a time, so a long list is streamed.
+     * @param items The entities to send
+     * @param serializer The serializer for each entity
+     * @return The response
+     */
+    private static <T> Response jsonList(Collection<T> items, Serializer<T> serializer) {
+        return new Response(200, JSON, body -> {
+            JsonWriter writer = new JsonWriter(body.writer());
+            writer.beginArray();
+            for (T item : items) {
+                serializer.write(writer, item);
+                body.yieldIfFull();
+            }
+            writer.endArray();
+            writer.flush();
+        });
+    }
+
+
+    /**
+     * Renders a report as JSON or, with format=csv, as CSV, one row at a time, so a long report is streamed.
+     * @param exchange The HTTP exchange
+     * @param name The report name, such as property-status
+     * @return The response
+     */
+    private Response report(HttpExchange exchange, String name) {
+        Map<String, String> query = query(exchange);
+        ReportExporter.Format format = "csv".equalsIgnoreCase(query.get("format")) ? ReportExporter.Format.CSV : ReportExporter.Format.JSON;
+        Report report;
+        switch (name) {
+            case "income":
+                report = reports.income();
+                break;
+            case "monthly-income":
+                report = reports.monthlyIncome(12);
+                break;
+            case "occupancy":
+                report = reports.occupancy();
+                break;
+            case "tenants":
+                report = reports.tenants();
+                break;
+            case "property-status":
+                report = reports.propertyStatus();
+                break;
+            case "payment-history":
+                String tenantId = query.get("tenantId");
+                report = reports.paymentHistory(tenantId == null ? null : found(tenantManager.get(tenantId), "Tenant", tenantId));
+                break;
+            case "host-performance":
+                report = reports.hostPerformance();
+                break;
+            case "tenant-arrears":
+                report = reports.tenantArrears();
+                break;
+            case "owner-arrears":
+                report = reports.ownerArrears();
+                break;
+            case "portfolio-income":
+                report = portfolioIncome(query);
+                break;
+            default:
+                throw new NotFoundException("Report " + name + " does not exist.");
+        }
+        return new Response(200, format == ReportExporter.Format.CSV ? "text/csv; charset=utf-8" : JSON, body -> {
+            // Each row is generated under the lock, and a full chunk is sent before the next one
+            Report streamed = new Report(report.getTitle(), report.getHeaders(), () -> report.rows().peek(row -> {
+                try {
+                    body.yieldIfFull();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            new ReportExporter().export(streamed, body.writer(), format);
+        });
+    }
+
+
+    private static Response error(int status, String message) {
+        return new Response(status, JSON, body -> {
+            JsonWriter writer = new JsonWriter(body.writer());
+            writer.beginObject().name("error").value(message).endObject();
+            writer.flush();
+        });
+    }
+
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Body body = new Body(exchange, null);
+        body.render(error(status, message));
+        body.send();
+    }
+
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+
+    /**
+     * Builds a portfolio income report from groupBy=owner,host,property,property_type,month, optional
+     * ownerId, hostId, propertyId and propertyType filters, and a from and to month.
+     * @param query The query parameters
+     * @return The report
+     */
+    private Report portfolioIncome(Map<String, String> query) {
+        List<IncomeCube.Dimension> groupBy = new ArrayList<>();
+        String levels = query.getOrDefault("groupBy", "");
+        for (String level : levels.split(",")) {
+            if (!level.isEmpty()) {
+                try {
+                    groupBy.add(IncomeCube.Dimension.valueOf(level.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown groupBy level: " + level);
+                }
+            }
+        }
+        Map<IncomeCube.Dimension, String> filter = new EnumMap<>(IncomeCube.Dimension.class);
+        putIfPresent(filter, IncomeCube.Dimension.OWNER, query.get("ownerId"));
+        putIfPresent(filter, IncomeCube.Dimension.HOST, query.get("hostId"));
+        putIfPresent(filter, IncomeCube.Dimension.PROPERTY, query.get("propertyId"));
+        putIfPresent(filter, IncomeCube.Dimension.PROPERTY_TYPE, query.get("propertyType"));
+        return reports.portfolioIncome(groupBy, filter, monthParam(query, "from"), monthParam(query, "to"));
+    }
+
+
+    private static void putIfPresent(Map<IncomeCube.Dimension, String> filter, IncomeCube.Dimension dimension, String value) {
+        if (value != null && !value.isEmpty()) {
+            filter.put(dimension, value);
+        }
+    }
+
+
+    private static YearMonth monthParam(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is required (yyyy-MM)");
+        }
+        try {
+            return YearMonth.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid month for " + name + ": " + value);
+        }
+    }
+
+
+    private static Date dateParam(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is required (yyyy-MM-dd)");
+        }
+        try {
+            return DateUtil.parseDate(value);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid date for " + name + ": " + value);
+        }
+    }
+
+
+    private static <T> T found(T entity, String type, String id) {
+        if (entity == null) {
+            throw new NotFoundException(type + " with ID " + id + " does not exist.");
+        }
+        return entity;
+    }
+
+
+    /**
+     * Serves one route, returning the response to render under the lock.
+     */
+    private interface Endpoint {
+        Response handle(HttpExchange exchange, String[] params);
+    }
+
+
+    /**
+     * The status, content type and content of a response, which is rendered under the lock.
+     */
+    private static class Response {
+        private final int status;
+        private final String contentType;
+        private final Content content;
+
+
+        /**
+         * Constructs a new Response.
+         * @param status The HTTP status
+         * @param contentType The content type of the body, null if there is no body
+         * @param content Renders the body, null if there is no body
+         */
+        private Response(int status, String contentType, Content content) {
+            this.status = status;
+            this.contentType = contentType;
+            this.content = content;
+        }
+    }
+
+
+    /**
+     * Renders the body of a response.
+     */
+    private interface Content {
+        void render(Body body) throws IOException;
+    }
+
+
+    /**
+     * The body of one response. It is rendered into a buffer of up to one chunk while the lock is held; once
+     * the buffer is full the response switches to chunked encoding and the lock is released while the chunk
+     * is written, so neither memory nor the time the lock is held grows with the size of the response.
+     */
+    private static class Body {
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        private final HttpExchange exchange;
+        private final Lock lock;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8 * 1024);
+        private final Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+        private Response response;
+        private boolean streaming;
+
+
+        /**
+         * Constructs a new Body.
+         * @param exchange The HTTP exchange
+         * @param lock The lock held while the body is rendered, or null if it is rendered without one
+         */
+        private Body(HttpExchange exchange, Lock lock) {
+            this.exchange = exchange;
+            this.lock = lock;
+        }
+
+
+        private Writer writer() {
+            return writer;
+        }
+
+
+        /**
+         * Renders a response, replacing anything rendered before as long as none of it has been sent.
+         * @param response The response to render
+         * @throws IOException if a chunk cannot be written to the client
+         * @throws IllegalStateException if part of another response has already been sent
+         */
+        private void render(Response response) throws IOException {
+            if (streaming) {
+                throw new IllegalStateException("Response " + this.response.status + " is already being sent.");
+            }
+            writer.flush();
+            buffer.reset();
+            this.response = response;
+            if (response.content != null) {
+                response.content.render(this);
+                writer.flush();
+            }
+        }
+
+
+        /**
+         * Sends the buffer as one chunk if it is full, releasing the lock while it is written.
+         * Called between entities or rows, so what is sent never depends on an edit made in the meantime.
+         * @throws IOException if the chunk cannot be written to the client
+         */
+        private void yieldIfFull() throws IOException {
+            writer.flush();
+            if (buffer.size() < CHUNK_SIZE || lock == null) {
+                return;
+            }
+            if (!streaming) {
+                exchange.getResponseHeaders().set("Content-Type", response.contentType);
+                exchange.sendResponseHeaders(response.status, 0);
+                streaming = true;
+            }
+            lock.unlock();
+            try {
+                buffer.writeTo(exchange.getResponseBody());
+                buffer.reset();
+            } finally {
+                lock.lock();
+            }
+        }
+
+
+        /**
+         * Sends the rest of the response. Called without the lock.
+         * @throws IOException if the client cannot be written to
+         */
+        private void send() throws IOException {
+            if (streaming) {
+                buffer.writeTo(exchange.getResponseBody());
+                return;
+            }
+            if (response.content == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, buffer.size());
+            buffer.writeTo(exchange.getResponseBody());
+        }
+    }
+
+
+    /**
+     * Writes one value as JSON.
+     * @param <T> The type of value
+     */
+    private interface Serializer<T> {
+        void write(JsonWriter writer, T value) throws IOException;
+    }
+
+
+    /**
+     * A method and path pattern whose {placeholder} segments are passed to the endpoint.
+     */
+    private static class Route {
+        private final String method;
+        private final String pattern;
+        private final String[] segments;
+        private final boolean write;
+        private final Endpoint endpoint;
+
+
+        private Route(String method, String pattern, boolean write, Endpoint endpoint) {
+            this.method = method;
+            this.pattern = pattern;
+            this.segments = pattern.split("/");
+            this.write = write;
+            this.endpoint = endpoint;
+        }
+
+
+        /**
+         * Matches a request path against the pattern.
+         * @param path The request path
+         * @return The placeholder values in order, or null if the path does not match
+         */
+        private String[] match(String path) {
+            String[] parts = path.split("/");
+            if (parts.length != segments.length) {
+                return null;
+            }
+            List<String> params = new ArrayList<>();
+            for (int i = 0; i < parts.length; i++) {
+                if (segments[i].startsWith("{")) {
+                    if (parts[i].isEmpty()) {
+                        return null;
+                    }
+                    params.add(parts[i]);
+                } else if (!segments[i].equals(parts[i])) {
+                    return null;
+                }
+            }
+            return params.toArray(new String[0]);
+        }
+    }
+
+
+    /**
+     * Thrown when a requested entity or report does not exist.
+     */
+    private static class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+
+        private NotFoundException(String message) {
+            super(message);
+        }
+    }
+}
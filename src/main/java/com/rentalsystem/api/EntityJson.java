@@ -0,0 +1,100 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.api;
+
+import com.google.gson.stream.JsonWriter;
+import com.rentalsystem.model.CommercialProperty;
+import com.rentalsystem.model.Host;
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.Person;
+import com.rentalsystem.model.Property;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.model.ResidentialProperty;
+import com.rentalsystem.model.Tenant;
+import com.rentalsystem.util.DateUtil;
+
+import java.io.IOException;
+
+
+/**
+ * Hand-written JSON serializers for the entities served by the HTTP API.
+ * Relationships are written as IDs, so each entity is a flat object.
+ */
+final class EntityJson {
+
+
+    private EntityJson() {
+    }
+
+
+    static void writePerson(JsonWriter writer, Person person) throws IOException {
+        writer.beginObject()
+                .name("id").value(person.getId())
+                .name("fullName").value(person.getFullName())
+                .name("dateOfBirth").value(DateUtil.formatDate(person.getDateOfBirth()))
+                .name("contactInformation").value(person.getContactInformation())
+                .endObject();
+    }
+
+
+    static void writeProperty(JsonWriter writer, Property property) throws IOException {
+        writer.beginObject()
+                .name("id").value(property.getPropertyId())
+                .name("type").value(property instanceof ResidentialProperty ? "RESIDENTIAL" : "COMMERCIAL")
+                .name("address").value(property.getAddress())
+                .name("price").value(property.getPrice())
+                .name("status").value(property.getStatus().toString())
+                .name("ownerId").value(property.getOwner() == null ? null : property.getOwner().getId());
+        if (property instanceof ResidentialProperty) {
+            ResidentialProperty residential = (ResidentialProperty) property;
+            writer.name("bedrooms").value(residential.getNumberOfBedrooms())
+                    .name("garden").value(residential.hasGarden())
+                    .name("petFriendly").value(residential.isPetFriendly());
+        } else if (property instanceof CommercialProperty) {
+            CommercialProperty commercial = (CommercialProperty) property;
+            writer.name("businessType").value(commercial.getBusinessType())
+                    .name("parkingSpaces").value(commercial.getParkingSpaces())
+                    .name("squareFootage").value(commercial.getSquareFootage());
+        }
+        writer.name("hostIds").beginArray();
+        for (Host host : property.getHosts()) {
+            writer.value(host.getId());
+        }
+        writer.endArray().endObject();
+    }
+
+
+    static void writeAgreement(JsonWriter writer, RentalAgreement agreement) throws IOException {
+        writer.beginObject()
+                .name("id").value(agreement.getAgreementId())
+                .name("propertyId").value(agreement.getProperty() == null ? null : agreement.getProperty().getPropertyId())
+                .name("mainTenantId").value(agreement.getMainTenant() == null ? null : agreement.getMainTenant().getId())
+                .name("subTenantIds").beginArray();
+        for (Tenant subTenant : agreement.getSubTenants()) {
+            writer.value(subTenant.getId());
+        }
+        writer.endArray()
+                .name("ownerId").value(agreement.getOwner() == null ? null : agreement.getOwner().getId())
+                .name("hostId").value(agreement.getHost() == null ? null : agreement.getHost().getId())
+                .name("startDate").value(DateUtil.formatDate(agreement.getStartDate()))
+                .name("endDate").value(DateUtil.formatDate(agreement.getEndDate()))
+                .name("rentAmount").value(agreement.getRentAmount())
+                .name("rentalPeriod").value(agreement.getRentalPeriod().toString())
+                .name("status").value(agreement.getStatus().toString())
+                .endObject();
+    }
+
+
+    static void writePayment(JsonWriter writer, Payment payment) throws IOException {
+        writer.beginObject()
+                .name("id").value(payment.getPaymentId())
+                .name("agreementId").value(payment.getRentalAgreementId())
+                .name("tenantId").value(payment.getTenant() == null ? null : payment.getTenant().getId())
+                .name("date").value(DateUtil.formatDate(payment.getPaymentDate()))
+                .name("amount").value(payment.getAmount())
+                .name("method").value(payment.getPaymentMethod())
+                .endObject();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.api;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Per-endpoint request counts and latency distributions for the HTTP API.
+ * Latencies are counted in power-of-two microsecond buckets, so recording is lock-free and percentiles
+ * are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyMetrics {
+    private static final int BUCKETS = 40;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+
+    /**
+     * Records one served request.
+     * @param endpoint The endpoint name, such as "GET /api/properties/{id}"
+     * @param nanos The time taken to serve the request
+     * @param status The HTTP status code returned
+     */
+    public void record(String endpoint, long nanos, int status) {
+        endpoints.computeIfAbsent(endpoint, name -> new Endpoint()).record(nanos, status);
+    }
+
+
+    /**
+     * Writes the metrics of every endpoint as a JSON object keyed by endpoint name.
+     * @param writer The writer to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            long count = endpoint.count.sum();
+            writer.name(entry.getKey()).beginObject()
+                    .name("count").value(count)
+                    .name("errors").value(endpoint.errors.sum())
+                    .name("meanMicros").value(count == 0 ? 0 : endpoint.totalNanos.sum() / count / 1000)
+                    .name("p50Micros").value(endpoint.percentile(0.50))
+                    .name("p99Micros").value(endpoint.percentile(0.99))
+                    .name("maxMicros").value(endpoint.maxNanos.get() / 1000)
+                    .endObject();
+        }
+        writer.endObject();
+    }
+
+
+    /**
+     * The counters of a single endpoint.
+     */
+    private static class Endpoint {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+
+        private void record(long nanos, int status) {
+            count.increment();
+            if (status >= 500) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long micros = Math.max(1, nanos / 1000);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+        }
+
+
+        /**
+         * Estimates a latency percentile from the histogram.
+         * @param fraction The percentile as a fraction, such as 0.99
+         * @return The upper bound in microseconds of the bucket holding the percentile
+         */
+        private long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (1L << (i + 1)) - 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -58,4 +58,40 @@ public class AppConfig {
     public static boolean getBooleanProperty(String key) {
         return Boolean.parseBoolean(properties.getProperty(key));
     }
+
+
+    /**
+     * Retrieves a property value as a String, falling back to a default when it is not configured.
+     * @param key The key of the property to retrieve
+     * @param defaultValue The value to return if the property is not set
+     * @return The value of the property, or the default value if not found
+     */
+    public static String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+
+    /**
+     * Retrieves a property value as an integer, falling back to a default when it is not configured.
+     * @param key The key of the property to retrieve
+     * @param defaultValue The value to return if the property is not set
+     * @return The integer value of the property, or the default value if not found
+     * @throws NumberFormatException if the property value is not a valid integer
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+
+    /**
+     * Retrieves a property value as a boolean, falling back to a default when it is not configured.
+     * @param key The key of the property to retrieve
+     * @param defaultValue The value to return if the property is not set
+     * @return The boolean value of the property, or the default value if not found
+     */
+    public static boolean getBooleanProperty(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
 }
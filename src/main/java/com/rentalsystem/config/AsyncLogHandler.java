@@ -0,0 +1,257 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.config;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+
+/**
+ * Logging handler that hands records to a background thread instead of writing them on the caller's thread.
+ * Records go into a bounded lock-free ring buffer; a single daemon thread drains it every few milliseconds,
+ * or as soon as it is half full, formats the records and appends them to the log file in batches with one
+ * flush per batch. When the buffer is full the
+ * overflow policy decides whether the caller waits for space or the record is dropped; dropped records
+ * are counted and reported in the log once there is room again.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final OverflowPolicy overflowPolicy;
+    private final int mask;
+    private final LogRecord[] slots;
+    // Sequence number per slot: equal to the claiming position when free, position + 1 when filled
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Writer out;
+    private final Thread worker;
+
+    // Only the worker thread moves the head; written is published after each batch reaches the file
+    private long head;
+    private volatile long written;
+    private volatile boolean closed;
+
+
+    /**
+     * What a caller does when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the record and count it, so logging never delays the caller. */
+        DROP,
+        /** Wait for the background thread to make room, so no record is lost. */
+        BLOCK
+    }
+
+
+    /**
+     * Constructs a new AsyncLogHandler appending to a file and starts its background thread.
+     * @param filename The log file to append to
+     * @param capacity The number of records the ring buffer holds, rounded up to a power of two
+     * @param overflowPolicy What to do with a record when the ring buffer is full
+     * @throws IOException if the log file cannot be opened
+     */
+    public AsyncLogHandler(String filename, int capacity, OverflowPolicy overflowPolicy) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Log buffer capacity must be positive: " + capacity);
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.overflowPolicy = overflowPolicy;
+        this.mask = size - 1;
+        this.slots = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename, true), StandardCharsets.UTF_8), 1 << 16);
+        setFormatter(new SimpleFormatter());
+
+        this.worker = new Thread(this::drain, "async-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+
+    /**
+     * Queues a record for the background thread.
+     * Only the caller's source class and method are resolved here, as they can no longer be inferred
+     * from the stack once the record is formatted on the background thread.
+     * @param record The record to log
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        record.getSourceClassName();
+        while (!offer(record)) {
+            if (overflowPolicy == OverflowPolicy.DROP || closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(worker);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        // The worker polls on its own; waking it for every record would cost the caller a system call
+        if (tail.get() - written > mask / 2) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+
+    /**
+     * Waits until every record queued before this call has been written to the log file.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (written < target && worker.isAlive()) {
+            LockSupport.unpark(worker);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+
+    /**
+     * Writes the records still queued, stops the background thread and closes the log file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Gets the number of records discarded because the ring buffer was full.
+     * @return The number of dropped records
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+
+    /**
+     * Claims the next free slot and fills it, without locking.
+     * @param record The record to queue
+     * @return true if the record was queued, false if the ring buffer is full
+     */
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = record;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+
+    /**
+     * Takes the record at the head if its producer has finished filling the slot. Called only by the worker.
+     * @return The record, or null if the ring buffer is empty
+     */
+    private LogRecord poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        LogRecord record = slots[index];
+        slots[index] = null;
+        sequences.set(index, head + mask + 1);
+        head++;
+        return record;
+    }
+
+
+    /**
+     * Body of the background thread: writes batches until the handler is closed and the buffer is empty.
+     */
+    private void drain() {
+        long reportedDrops = 0;
+        while (true) {
+            int count = 0;
+            LogRecord record;
+            while (count < BATCH_SIZE && (record = poll()) != null) {
+                write(record);
+                count++;
+            }
+            long drops = dropped.get();
+            if (drops > reportedDrops) {
+                write(String.format("%d log records dropped because the log buffer was full%n", drops - reportedDrops));
+                reportedDrops = drops;
+                count++;
+            }
+            if (count > 0) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    reportError("Failed to flush the log file", e, ErrorManager.FLUSH_FAILURE);
+                }
+                written = head;
+                continue;
+            }
+            if (closed) {
+                break;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError("Failed to close the log file", e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+
+    private void write(LogRecord record) {
+        try {
+            write(getFormatter().format(record));
+        } catch (RuntimeException e) {
+            reportError("Failed to format a log record", e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+
+    private void write(String text) {
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            reportError("Failed to write to the log file", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+}
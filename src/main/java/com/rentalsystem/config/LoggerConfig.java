@@ -5,11 +5,13 @@
 package com.rentalsystem.config;
 
 import java.io.IOException;
+import java.util.Locale;
 import java.util.logging.*;
 
 
 /**
  * Configuration class for setting up the application logger.
+ * Records are written to the log file by an AsyncLogHandler, so logging never waits on disk I/O.
  */
 public class LoggerConfig {
     private static final Logger LOGGER = Logger.getLogger(LoggerConfig.class.getName());
@@ -18,10 +20,16 @@ public class LoggerConfig {
     // Static initializer to set up the logger
     static {
         try {
-            FileHandler fileHandler = new FileHandler("rental_system.log", true);
-            fileHandler.setFormatter(new SimpleFormatter());
-            LOGGER.addHandler(fileHandler);
-        } catch (IOException e) {
+            AsyncLogHandler.OverflowPolicy overflowPolicy = AsyncLogHandler.OverflowPolicy.valueOf(
+                    AppConfig.getProperty("log.overflow", "drop").trim().toUpperCase(Locale.ROOT));
+            AsyncLogHandler handler = new AsyncLogHandler(
+                    AppConfig.getProperty("log.file", "rental_system.log"),
+                    AppConfig.getIntProperty("log.bufferSize", 8192),
+                    overflowPolicy);
+            LOGGER.addHandler(handler);
+            // The console handler inherited from the root logger writes synchronously and over the menus
+            LOGGER.setUseParentHandlers(false);
+        } catch (IOException | IllegalArgumentException e) {
             LOGGER.severe("Failed to initialize logger: " + e.getMessage());
             // Consider throwing a runtime exception here
         }
@@ -0,0 +1,329 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.util.DateUtil;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+
+/**
+ * Compares the rent owed under each rental agreement with the payments made against it.
+ * Every agreement is charged its rent amount at the start of each rental period up to today or its end
+ * date, whichever comes first. Charges are generated in parallel across agreements on the fork-join pool
+ * and joined against the payments indexed by agreement ID. After the first full run, new payments and
+ * agreement changes only recompute the balance of the agreement they touch.
+ */
+public class ArrearsEngine {
+    // Agreements per fork-join leaf task
+    private static final int SPLIT_THRESHOLD = 512;
+
+    private final RentalManager rentalManager;
+    private final Map<String, Double> paidByAgreement = new HashMap<>();
+    private Map<String, Balance> balances;
+    private long asOfDay;
+    // Counts agreement changes, so a full recompute can tell whether one arrived while it was charging
+    private long changes;
+
+
+    /**
+     * Constructs a new ArrearsEngine and registers it for agreement and payment changes.
+     * @param rentalManager The RentalManager holding the agreements
+     * @param tenantManager The TenantManager holding the payments
+     */
+    public ArrearsEngine(RentalManager rentalManager, TenantManager tenantManager) {
+        this.rentalManager = rentalManager;
+        rentalManager.addChangeListener(new EntityListener<RentalAgreement>() {
+            @Override
+            public void onAdded(RentalAgreement agreement) {
+                recompute(agreement);
+            }
+
+            @Override
+            public void onUpdated(RentalAgreement agreement) {
+                recompute(agreement);
+            }
+
+            @Override
+            public void onRemoved(RentalAgreement agreement) {
+                remove(agreement.getAgreementId());
+            }
+        });
+        tenantManager.addPaymentListener(new EntityListener<Payment>() {
+            @Override
+            public void onAdded(Payment payment) {
+                addPayment(payment.getRentalAgreementId(), payment.getAmount());
+            }
+
+            @Override
+            public void onUpdated(Payment payment) {
+                // Payments are immutable once recorded
+            }
+
+            @Override
+            public void onRemoved(Payment payment) {
+                addPayment(payment.getRentalAgreementId(), -payment.getAmount());
+            }
+        });
+    }
+
+
+    /**
+     * Recomputes the balance of every agreement as of today.
+     * The agreements are charged without holding the engine's lock, so if one changes meanwhile the charges
+     * may predate the change and are computed again rather than installed.
+     */
+    public void recomputeAll() {
+        while (true) {
+            long seen;
+            synchronized (this) {
+                seen = changes;
+            }
+            // Fetched before locking: getAll waits for pending linker tasks, which may notify this engine
+            List<RentalAgreement> agreements = rentalManager.getAll();
+            long today = LocalDate.now().toEpochDay();
+
+            Balance[] computed = new Balance[agreements.size()];
+            ForkJoinPool.commonPool().invoke(new ChargeTask(agreements, computed, 0, computed.length, today));
+
+            synchronized (this) {
+                if (changes != seen) {
+                    continue;
+                }
+                Map<String, Balance> result = new HashMap<>(computed.length * 2);
+                for (Balance balance : computed) {
+                    balance.paid = paidByAgreement.getOrDefault(balance.id, 0.0);
+                    result.put(balance.id, balance);
+                }
+                balances = result;
+                asOfDay = today;
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Gets the arrears of each main tenant, largest first.
+     * @return The balances keyed by tenant ID
+     */
+    public List<Balance> getTenantArrears() {
+        return aggregate(balance -> balance.tenantId);
+    }
+
+
+    /**
+     * Gets the arrears owed to each owner, largest first.
+     * @return The balances keyed by owner ID
+     */
+    public List<Balance> getOwnerArrears() {
+        return aggregate(balance -> balance.ownerId);
+    }
+
+
+    /**
+     * Gets the balance of a single agreement.
+     * @param agreementId The ID of the agreement
+     * @return The balance, or null if the agreement is unknown
+     */
+    public Balance getAgreementBalance(String agreementId) {
+        ensureCurrent();
+        synchronized (this) {
+            Balance balance = balances.get(agreementId);
+            return balance == null ? null : balance.copy();
+        }
+    }
+
+
+    /**
+     * Sums agreement balances by the key a grouping function assigns them.
+     * @param groupBy The function giving the tenant or owner ID of an agreement balance
+     * @return The grouped balances, sorted by arrears in descending order
+     */
+    private List<Balance> aggregate(Function<Balance, String> groupBy) {
+        ensureCurrent();
+        Map<String, Balance> totals = new HashMap<>();
+        synchronized (this) {
+            for (Balance balance : balances.values()) {
+                String key = groupBy.apply(balance);
+                if (key == null) {
+                    continue;
+                }
+                Balance total = totals.computeIfAbsent(key, id -> new Balance(id, null, null));
+                total.charged += balance.charged;
+                total.paid += balance.paid;
+            }
+        }
+        List<Balance> result = new ArrayList<>(totals.values());
+        result.sort(Comparator.comparingDouble(Balance::getArrears).reversed().thenComparing(Balance::getId));
+        return result;
+    }
+
+
+    /**
+     * Runs a full recompute on first use and whenever the day has changed since the last one.
+     */
+    private void ensureCurrent() {
+        boolean stale;
+        synchronized (this) {
+            stale = balances == null || asOfDay != LocalDate.now().toEpochDay();
+        }
+        if (stale) {
+            recomputeAll();
+        }
+    }
+
+
+    private synchronized void recompute(RentalAgreement agreement) {
+        changes++;
+        if (balances == null) {
+            return;
+        }
+        Balance balance = charge(agreement, asOfDay);
+        balance.paid = paidByAgreement.getOrDefault(balance.id, 0.0);
+        balances.put(balance.id, balance);
+    }
+
+
+    private synchronized void remove(String agreementId) {
+        changes++;
+        if (balances != null) {
+            balances.remove(agreementId);
+        }
+    }
+
+
+    private synchronized void addPayment(String agreementId, double amount) {
+        paidByAgreement.merge(agreementId, amount, Double::sum);
+        if (balances != null) {
+            Balance balance = balances.get(agreementId);
+            if (balance != null) {
+                balance.paid += amount;
+            }
+        }
+    }
+
+
+    /**
+     * Generates the charges an agreement has fallen due for.
+     * @param agreement The rental agreement
+     * @param asOfDay The last day to charge, as an epoch day
+     * @return The balance of the agreement with nothing paid
+     */
+    private static Balance charge(RentalAgreement agreement, long asOfDay) {
+        Balance balance = new Balance(agreement.getAgreementId(),
+                agreement.getMainTenant() == null ? null : agreement.getMainTenant().getId(),
+                agreement.getOwner() == null ? null : agreement.getOwner().getId());
+        if (agreement.getStartDate() == null || agreement.getEndDate() == null || agreement.getRentalPeriod() == null) {
+            return balance;
+        }
+        LocalDate start = LocalDate.ofEpochDay(DateUtil.toEpochDay(agreement.getStartDate()));
+        long lastDay = Math.min(DateUtil.toEpochDay(agreement.getEndDate()), asOfDay);
+        long charges = 0;
+        while (agreement.getRentalPeriod().plusPeriods(start, charges).toEpochDay() <= lastDay) {
+            charges++;
+        }
+        balance.charged = charges * agreement.getRentAmount();
+        return balance;
+    }
+
+
+    /**
+     * Charges a slice of the agreement list, splitting it in half until it is small enough.
+     */
+    private static class ChargeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<RentalAgreement> agreements;
+        private final Balance[] results;
+        private final int from;
+        private final int to;
+        private final long asOfDay;
+
+
+        private ChargeTask(List<RentalAgreement> agreements, Balance[] results, int from, int to, long asOfDay) {
+            this.agreements = agreements;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.asOfDay = asOfDay;
+        }
+
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = charge(agreements.get(i), asOfDay);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChargeTask(agreements, results, from, middle, asOfDay),
+                    new ChargeTask(agreements, results, middle, to, asOfDay));
+        }
+    }
+
+
+    /**
+     * The rent charged and paid for an agreement, or summed over a tenant's or owner's agreements.
+     */
+    public static class Balance {
+        private final String id;
+        private final String tenantId;
+        private final String ownerId;
+        private double charged;
+        private double paid;
+
+
+        private Balance(String id, String tenantId, String ownerId) {
+            this.id = id;
+            this.tenantId = tenantId;
+            this.ownerId = ownerId;
+        }
+
+
+        private Balance copy() {
+            Balance copy = new Balance(id, tenantId, ownerId);
+            copy.charged = charged;
+            copy.paid = paid;
+            return copy;
+        }
+
+
+        public String getId() {
+            return id;
+        }
+
+
+        public double getCharged() {
+            return charged;
+        }
+
+
+        public double getPaid() {
+            return paid;
+        }
+
+
+        /**
+         * Gets the amount charged but not yet paid; negative when the account is in credit.
+         * @return The arrears
+         */
+        public double getArrears() {
+            return charged - paid;
+        }
+    }
+}
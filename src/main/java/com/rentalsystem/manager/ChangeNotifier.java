@@ -0,0 +1,46 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * Holds the EntityListeners registered with a manager and dispatches change notifications to them.
+ * @param <T> The type of entity being managed
+ */
+class ChangeNotifier<T> {
+    private final List<EntityListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+
+    void addListener(EntityListener<T> listener) {
+        listeners.add(listener);
+    }
+
+
+    void fireAdded(T entity) {
+        for (EntityListener<T> listener : listeners) {
+            listener.onAdded(entity);
+        }
+    }
+
+
+    void fireUpdated(T entity) {
+        for (EntityListener<T> listener : listeners) {
+            listener.onUpdated(entity);
+        }
+    }
+
+
+    void fireRemoved(T entity) {
+        if (entity == null) {
+            return;
+        }
+        for (EntityListener<T> listener : listeners) {
+            listener.onRemoved(entity);
+        }
+    }
+}
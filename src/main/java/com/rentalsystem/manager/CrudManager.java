@@ -33,6 +33,19 @@ public interface CrudManager<T> {
     void delete(String id);
 
 
+    /**
+     * Deletes an object and captures what is needed to put it back, for changes that may be rolled back.
+     * Managers whose delete also removes the object's relationships override this to restore them too.
+     * @param id The ID of the object to be deleted
+     * @return The action that adds the object back as it was before the delete
+     */
+    default Runnable deleteRestorable(String id) {
+        T previous = get(id);
+        delete(id);
+        return () -> add(previous);
+    }
+
+
     /**
      * Retrieves an object from the system based on its ID.
      * @param id The ID of the object to retrieve
@@ -58,6 +71,7 @@ public interface CrudManager<T> {
 
     /**
      * Saves the current state of objects to a file.
+     * While a FileHandler batch is open, for example during a UnitOfWork commit, the save is postponed until the batch commits.
      */
     void saveToFile();
 
@@ -74,4 +88,11 @@ public interface CrudManager<T> {
      * Loads objects from a file into the system.
      */
     void load();
+
+
+    /**
+     * Registers a listener notified when objects are loaded, added, updated or deleted.
+     * @param listener The listener to register
+     */
+    void addChangeListener(EntityListener<T> listener);
 }
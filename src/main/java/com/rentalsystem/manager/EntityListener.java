@@ -0,0 +1,35 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+
+/**
+ * Receives notifications when a manager adds, updates or removes an entity.
+ * Loaded entities are reported as added. Listeners are called on the thread making the change, while it holds
+ * the data write lock; that includes the linker thread, which takes the write lock for each entity it links.
+ * Only the entities a manager's load method reads itself are reported without it, before the managers are shared.
+ * @param <T> The type of entity being managed
+ */
+public interface EntityListener<T> {
+    /**
+     * Called after an entity was added or loaded.
+     * @param entity The added entity
+     */
+    void onAdded(T entity);
+
+
+    /**
+     * Called after an entity was updated.
+     * @param entity The updated entity
+     */
+    void onUpdated(T entity);
+
+
+    /**
+     * Called after an entity was removed.
+     * @param entity The removed entity
+     */
+    void onRemoved(T entity);
+}
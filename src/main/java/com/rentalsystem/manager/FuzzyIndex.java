@@ -0,0 +1,150 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.util.BKTree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+
+/**
+ * Edit-distance index over a text field of a manager's entities, such as a person's full name or a
+ * property's address. Each word of the field is stored in a BKTree, so a misspelled query finds its
+ * matches without scanning every entity. Registered as an EntityListener, it follows the manager's changes.
+ * @param <T> The type of entity being indexed
+ */
+class FuzzyIndex<T> implements EntityListener<T> {
+    private final Function<T, String> idOf;
+    private final Function<T, String> textOf;
+    private final BKTree<String> words;
+    private final Map<String, String[]> indexedWords;
+
+
+    /**
+     * Constructs a new FuzzyIndex.
+     * @param idOf The function reading the ID of an entity
+     * @param textOf The function reading the indexed text of an entity
+     */
+    FuzzyIndex(Function<T, String> idOf, Function<T, String> textOf) {
+        this.idOf = idOf;
+        this.textOf = textOf;
+        this.words = new BKTree<>();
+        this.indexedWords = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Finds the entities whose text matches every word of a query within an edit distance,
+     * ranked by the total distance and then by ID.
+     * @param query The query text
+     * @param maxDistance The maximum edit distance allowed for each word
+     * @param resolver The function looking up an entity by ID
+     * @return The matching entities, closest first
+     */
+    List<T> search(String query, int maxDistance, Function<String, T> resolver) {
+        String[] queryWords = tokenize(query);
+        if (queryWords.length == 0) {
+            return new ArrayList<>();
+        }
+
+        // Score each entity by the closest match of every query word; entities missing a word drop out
+        Map<String, Integer> scores = null;
+        for (String queryWord : queryWords) {
+            Map<String, Integer> wordScores = new HashMap<>();
+            for (BKTree.Match<String> match : words.search(queryWord, maxDistance)) {
+                for (String id : match.getValues()) {
+                    wordScores.merge(id, match.getDistance(), Math::min);
+                }
+            }
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                Map<String, Integer> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<String, Integer> entry : wordScores.entrySet()) {
+                    Integer score = previous.get(entry.getKey());
+                    if (score != null) {
+                        scores.put(entry.getKey(), score + entry.getValue());
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        List<T> results = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : ranked) {
+            T entity = resolver.apply(entry.getKey());
+            if (entity != null) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+
+    @Override
+    public void onAdded(T entity) {
+        index(entity);
+    }
+
+
+    @Override
+    public void onUpdated(T entity) {
+        index(entity);
+    }
+
+
+    @Override
+    public void onRemoved(T entity) {
+        unindex(idOf.apply(entity));
+    }
+
+
+    /**
+     * Indexes the words of an entity's text, replacing any previously indexed words.
+     * @param entity The entity to index
+     */
+    private void index(T entity) {
+        String id = idOf.apply(entity);
+        unindex(id);
+        String text = textOf.apply(entity);
+        String[] entityWords = text == null ? new String[0] : tokenize(text);
+        for (String word : entityWords) {
+            words.add(word, id);
+        }
+        indexedWords.put(id, entityWords);
+    }
+
+
+    /**
+     * Removes the indexed words of an entity.
+     * @param id The ID of the entity
+     */
+    private void unindex(String id) {
+        String[] previous = indexedWords.remove(id);
+        if (previous != null) {
+            for (String word : previous) {
+                words.remove(word, id);
+            }
+        }
+    }
+
+
+    /**
+     * Splits text into lowercase words, ignoring punctuation.
+     * @param text The text to split
+     * @return The words of the text
+     */
+    private static String[] tokenize(String text) {
+        String normalized = text.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+}
@@ -58,6 +58,15 @@ public interface HostManager extends CrudManager<Host> {
     List<Host> search(String keyword);
 
 
+    /**
+     * Searches for hosts whose full name approximately matches a query.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of hosts ranked by closeness
+     */
+    List<Host> searchFuzzy(String query, int maxDistance);
+
+
     /**
      * Checks if an email is already taken by any host.
      * @param email The email to check
@@ -11,8 +11,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
 
 import com.rentalsystem.model.Host;
+import com.rentalsystem.monitor.MutationEvent;
 import com.rentalsystem.util.FileHandler;
 import com.rentalsystem.util.InputValidator;
 
@@ -26,6 +28,9 @@ import static com.rentalsystem.util.FileHandler.DATE_FORMAT;
 public class HostManagerImpl implements HostManager {
     private final Map<String, Host> hosts;
     private final FileHandler fileHandler;
+    private final RelationshipLinker linker;
+    private final ChangeNotifier<Host> notifier = new ChangeNotifier<>();
+    private final FuzzyIndex<Host> fuzzyIndex = new FuzzyIndex<>(Host::getId, Host::getFullName);
     private PropertyManager propertyManager;
     private OwnerManager ownerManager;
 
@@ -38,6 +43,9 @@ public class HostManagerImpl implements HostManager {
     public HostManagerImpl(FileHandler fileHandler) {
         this.fileHandler = fileHandler;
         this.hosts = new HashMap<>();
+        this.linker = fileHandler.getLinker();
+        notifier.addListener(fuzzyIndex);
+        fileHandler.getSnapshots().register("hosts.txt", this::rows);
     }
 
     /**
@@ -64,6 +72,7 @@ public class HostManagerImpl implements HostManager {
         for (String[] parts : fileHandler.readLines("hosts.txt")) {
             Host host = fromString(parts);
             hosts.put(host.getId(), host);
+            notifier.fireAdded(host);
         }
     }
 
@@ -76,14 +85,25 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public void add(Host host) {
-        if (!InputValidator.isValidEmail(host.getContactInformation())) {
-            throw new IllegalArgumentException("Invalid email format for host: " + host.getContactInformation());
-        }
-        if (isEmailTaken(host.getContactInformation())) {
-            throw new IllegalArgumentException("Email already in use: " + host.getContactInformation());
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Host", "add", host.getId());
+            event.begin();
+            if (!InputValidator.isValidEmail(host.getContactInformation())) {
+                throw new IllegalArgumentException("Invalid email format for host: " + host.getContactInformation());
+            }
+            if (isEmailTaken(host.getContactInformation())) {
+                throw new IllegalArgumentException("Email already in use: " + host.getContactInformation());
+            }
+            hosts.put(host.getId(), host);
+            notifier.fireAdded(host);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        hosts.put(host.getId(), host);
-        saveToFile();
     }
 
     /**
@@ -95,18 +115,29 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public void update(Host host) {
-        if (!InputValidator.isValidEmail(host.getContactInformation())) {
-            throw new IllegalArgumentException("Invalid email format for host: " + host.getContactInformation());
-        }
-        Host existingHost = hosts.get(host.getId());
-        if (existingHost == null) {
-            throw new IllegalArgumentException("Host with ID " + host.getId() + " does not exist.");
-        }
-        if (!existingHost.getContactInformation().equals(host.getContactInformation()) && isEmailTaken(host.getContactInformation())) {
-            throw new IllegalArgumentException("Email already in use: " + host.getContactInformation());
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Host", "update", host.getId());
+            event.begin();
+            if (!InputValidator.isValidEmail(host.getContactInformation())) {
+                throw new IllegalArgumentException("Invalid email format for host: " + host.getContactInformation());
+            }
+            Host existingHost = hosts.get(host.getId());
+            if (existingHost == null) {
+                throw new IllegalArgumentException("Host with ID " + host.getId() + " does not exist.");
+            }
+            if (!existingHost.getContactInformation().equals(host.getContactInformation()) && isEmailTaken(host.getContactInformation())) {
+                throw new IllegalArgumentException("Email already in use: " + host.getContactInformation());
+            }
+            hosts.put(host.getId(), host);
+            notifier.fireUpdated(host);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        hosts.put(host.getId(), host);
-        saveToFile();
     }
 
     /**
@@ -117,11 +148,21 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public void delete(String hostId) {
-        if (!hosts.containsKey(hostId)) {
-            throw new IllegalArgumentException("Host with ID " + hostId + " does not exist.");
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Host", "delete", hostId);
+            event.begin();
+            if (!hosts.containsKey(hostId)) {
+                throw new IllegalArgumentException("Host with ID " + hostId + " does not exist.");
+            }
+            notifier.fireRemoved(hosts.remove(hostId));
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        hosts.remove(hostId);
-        saveToFile();
     }
 
     /**
@@ -131,7 +172,14 @@ public class HostManagerImpl implements HostManager {
      */
     @Override
     public Host get(String id) {
-        return hosts.get(id);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return hosts.get(id);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -141,7 +189,14 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public List<Host> getAll() {
-        return new ArrayList<>(hosts.values());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return new ArrayList<>(hosts.values());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -153,24 +208,31 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public List<Host> getSorted(String sortBy) {
-        List<Host> sortedList = getAll();
-        switch (sortBy.toLowerCase()) {
-            case "id":
-                sortedList.sort(Comparator.comparing(Host::getId));
-                break;
-            case "name":
-                sortedList.sort(Comparator.comparing(Host::getFullName));
-                break;
-            case "dob":
-                sortedList.sort(Comparator.comparing(Host::getDateOfBirth));
-                break;
-            case "email":
-                sortedList.sort(Comparator.comparing(Host::getContactInformation));
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<Host> sortedList = getAll();
+            switch (sortBy.toLowerCase()) {
+                case "id":
+                    sortedList.sort(Comparator.comparing(Host::getId));
+                    break;
+                case "name":
+                    sortedList.sort(Comparator.comparing(Host::getFullName));
+                    break;
+                case "dob":
+                    sortedList.sort(Comparator.comparing(Host::getDateOfBirth));
+                    break;
+                case "email":
+                    sortedList.sort(Comparator.comparing(Host::getContactInformation));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+            }
+            return sortedList;
+        } finally {
+            readLock.unlock();
         }
-        return sortedList;
     }
 
     /**
@@ -182,12 +244,38 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public List<Host> search(String keyword) {
-        final String lowercaseKeyword = keyword.toLowerCase();
-        return getAll().stream()
-                .filter(host -> host.getFullName().toLowerCase().contains(lowercaseKeyword) ||
-                        host.getId().toLowerCase().contains(lowercaseKeyword) ||
-                        host.getContactInformation().toLowerCase().contains(lowercaseKeyword))
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            final String lowercaseKeyword = keyword.toLowerCase();
+            return getAll().stream()
+                    .filter(host -> host.getFullName().toLowerCase().contains(lowercaseKeyword) ||
+                            host.getId().toLowerCase().contains(lowercaseKeyword) ||
+                            host.getContactInformation().toLowerCase().contains(lowercaseKeyword))
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for hosts whose full name approximately matches a query, tolerating typos.
+     * Every word of the query must be within the edit distance of a word of the full name.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of Host objects ranked by closeness
+     */
+    @Override
+    public List<Host> searchFuzzy(String query, int maxDistance) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return fuzzyIndex.search(query, maxDistance, hosts::get);
+        } finally {
+            readLock.unlock();
+        }
     }
 
 
@@ -199,8 +287,15 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public boolean isEmailTaken(String email) {
-        return getAll().stream()
-                .anyMatch(host -> host.getContactInformation().equalsIgnoreCase(email));
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return getAll().stream()
+                    .anyMatch(host -> host.getContactInformation().equalsIgnoreCase(email));
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -209,7 +304,20 @@ public class HostManagerImpl implements HostManager {
 
     @Override
     public void saveToFile() {
-        List<String[]> lines = getSorted("id").stream()
+        linker.ensureLinked();
+        fileHandler.getSnapshots().changed("hosts.txt");
+        if (fileHandler.deferSave("hosts.txt", this::saveToFile)) {
+            return;
+        }
+        fileHandler.saveHosts(rows());
+    }
+
+    /**
+     * Builds the rows of hosts.txt from the hosts in memory, sorted by ID.
+     * @return The rows, one per host
+     */
+    private List<String[]> rows() {
+        return getSorted("id").stream()
                 .map(entity -> new String[]{
                         entity.getId(),
                         entity.getFullName(),
@@ -217,7 +325,6 @@ public class HostManagerImpl implements HostManager {
                         entity.getContactInformation()
                 })
                 .collect(Collectors.toList());
-        fileHandler.saveHosts(lines);
     }
 
     /**
@@ -230,7 +337,7 @@ public class HostManagerImpl implements HostManager {
     public Host fromString(String[] parts) {
         try {
             return new Host(
-                    parts[0],
+                    fileHandler.intern(parts[0]),
                     parts[1],
                     DATE_FORMAT.parse(parts[2]),
                     parts[3]
@@ -239,4 +346,14 @@ public class HostManagerImpl implements HostManager {
             throw new IllegalArgumentException("Invalid date format: " + parts[2], e);
         }
     }
+
+
+    /**
+     * Registers a listener notified when hosts are loaded, added, updated or deleted.
+     * @param listener The listener to register
+     */
+    @Override
+    public void addChangeListener(EntityListener<Host> listener) {
+        notifier.addListener(listener);
+    }
 }
@@ -0,0 +1,536 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.model.CommercialProperty;
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.util.DateUtil;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.BiFunction;
+
+
+/**
+ * Pre-aggregated rent due and payments received, kept per owner, host, property, property type and month.
+ * Each agreement adds its rent charges to the cells of the months they fall due in and each payment adds its
+ * amount to the cell of its agreement and month, so a change only touches the cells it affects.
+ * A rollup at any level of the hierarchy then sums the cells of the requested months, whose number depends on
+ * the portfolio and the range but not on how many agreements and payments produced them. The cells are also
+ * kept rolled up per owner, per host and per property type, so rollups to one of those levels read fewer cells.
+ */
+public class IncomeCube {
+    private static final String NONE = "-";
+
+    /**
+     * The levels a rollup can group by or filter on.
+     */
+    public enum Dimension {
+        OWNER, HOST, PROPERTY, PROPERTY_TYPE, MONTH
+    }
+
+    // The cells of each month, keyed by owner, host, property and property type; each holds {expected, received}
+    private final TreeMap<YearMonth, Map<Coordinates, double[]>> cells = new TreeMap<>();
+    // The cells rolled up to one level per month, maintained alongside them for the most common rollups
+    private final Map<Dimension, TreeMap<YearMonth, Map<String, double[]>>> views = new EnumMap<>(Dimension.class);
+    private final Map<String, Lease> leases = new HashMap<>();
+    private final Map<String, Receipt> receipts = new HashMap<>();
+    private final Map<String, Set<String>> receiptsByAgreement = new HashMap<>();
+    private long version;
+
+
+    /**
+     * Constructs a new, empty IncomeCube.
+     */
+    public IncomeCube() {
+        views.put(Dimension.OWNER, new TreeMap<>());
+        views.put(Dimension.HOST, new TreeMap<>());
+        views.put(Dimension.PROPERTY_TYPE, new TreeMap<>());
+    }
+
+
+    /**
+     * Adds the rent charges of an agreement, replacing its previous contribution.
+     * @param agreementId The ID of the agreement
+     * @param ownerId The ID of the owner
+     * @param hostId The ID of the host
+     * @param propertyId The ID of the property
+     * @param propertyType The type of the property, Residential or Commercial
+     * @param start The first day of the lease
+     * @param end The last day of the lease
+     * @param rentAmount The rent charged per period
+     * @param period The rental period
+     */
+    synchronized void addAgreement(String agreementId, String ownerId, String hostId, String propertyId, String propertyType,
+                                   LocalDate start, LocalDate end, double rentAmount, RentalAgreement.RentalPeriod period) {
+        Lease lease = new Lease(new Coordinates(ownerId, hostId, propertyId, propertyType), start, end, rentAmount, period);
+        Lease previous = leases.put(agreementId, lease);
+        // Status changes re-report every agreement, so unchanged terms must not cost a recomputation
+        if (lease.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        apply(lease, 1);
+        if (previous == null || !previous.coordinates.equals(lease.coordinates)) {
+            refile(agreementId, lease.coordinates);
+        }
+        version++;
+    }
+
+
+    /**
+     * Removes the rent charges of an agreement. Payments already received for it stay in the cube.
+     * @param agreementId The ID of the agreement
+     */
+    synchronized void removeAgreement(String agreementId) {
+        Lease lease = leases.remove(agreementId);
+        if (lease != null) {
+            apply(lease, -1);
+            version++;
+        }
+    }
+
+
+    /**
+     * Adds a received payment to the cell of its agreement, replacing a previous payment with the same ID.
+     * Payments for an agreement the cube does not know are kept under unknown coordinates, so totals still add up.
+     * @param paymentId The ID of the payment
+     * @param agreementId The ID of the agreement paid for
+     * @param date The day of the payment
+     * @param amount The amount paid
+     */
+    synchronized void addPayment(String paymentId, String agreementId, LocalDate date, double amount) {
+        removePayment(paymentId);
+        Lease lease = leases.get(agreementId);
+        Coordinates coordinates = lease != null ? lease.coordinates : Coordinates.UNKNOWN;
+        Receipt receipt = new Receipt(agreementId, coordinates, YearMonth.from(date), amount);
+        add(receipt.coordinates, receipt.month, 0, receipt.amount);
+        receipts.put(paymentId, receipt);
+        receiptsByAgreement.computeIfAbsent(agreementId, id -> new HashSet<>()).add(paymentId);
+        version++;
+    }
+
+
+    /**
+     * Removes a received payment.
+     * @param paymentId The ID of the payment
+     */
+    synchronized void removePayment(String paymentId) {
+        Receipt receipt = receipts.remove(paymentId);
+        if (receipt != null) {
+            add(receipt.coordinates, receipt.month, 0, -receipt.amount);
+            Set<String> paymentIds = receiptsByAgreement.get(receipt.agreementId);
+            paymentIds.remove(paymentId);
+            if (paymentIds.isEmpty()) {
+                receiptsByAgreement.remove(receipt.agreementId);
+            }
+            version++;
+        }
+    }
+
+
+    /**
+     * Moves the payments of an agreement to its new cells, after it was added or its owner, host or property changed.
+     * @param agreementId The ID of the agreement
+     * @param coordinates The new coordinates of the agreement
+     */
+    private void refile(String agreementId, Coordinates coordinates) {
+        for (String paymentId : receiptsByAgreement.getOrDefault(agreementId, Collections.emptySet())) {
+            Receipt receipt = receipts.get(paymentId);
+            add(receipt.coordinates, receipt.month, 0, -receipt.amount);
+            add(coordinates, receipt.month, 0, receipt.amount);
+            receipts.put(paymentId, new Receipt(agreementId, coordinates, receipt.month, receipt.amount));
+        }
+    }
+
+
+    /**
+     * Sums the cells of a range of months, grouped by the requested levels.
+     * A rollup that only involves one of owner, host and property type, besides the month, reads the matching view.
+     * @param groupBy The levels to group by, in the order of the key of each row; empty for a single total
+     * @param filter The values the cells must have, by level; months are given as yyyy-MM
+     * @param from The first month, inclusive
+     * @param to The last month, inclusive
+     * @return One row per group, ordered by key
+     */
+    public synchronized List<Row> rollup(List<Dimension> groupBy, Map<Dimension, String> filter, YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        Set<Dimension> levels = EnumSet.noneOf(Dimension.class);
+        levels.addAll(groupBy);
+        levels.addAll(filter.keySet());
+        levels.remove(Dimension.MONTH);
+        Dimension single = levels.isEmpty() ? Dimension.PROPERTY_TYPE : levels.iterator().next();
+        if (levels.size() <= 1 && views.containsKey(single)) {
+            return sum(views.get(single), (value, dimension) -> value, groupBy, filter, from, to);
+        }
+        return sum(cells, Coordinates::get, groupBy, filter, from, to);
+    }
+
+
+    /**
+     * Lists every cell for saving: owner, host, property, property type, month, rent due and payments received.
+     * @return The rows of the cube, by month
+     */
+    synchronized List<String[]> toRows() {
+        List<String[]> rows = new ArrayList<>();
+        cells.forEach((month, monthCells) -> monthCells.forEach((coordinates, sums) -> rows.add(new String[] {
+                coordinates.ownerId, coordinates.hostId, coordinates.propertyId, coordinates.propertyType,
+                month.toString(), amount(sums[0]), amount(sums[1])
+        })));
+        return rows;
+    }
+
+
+    // Rounded to cents without String.format, which dominates the cost of saving a large cube
+    private static String amount(double value) {
+        return String.valueOf(Math.round(value * 100) / 100.0);
+    }
+
+
+    /**
+     * Gets a number that changes whenever a cell does, to tell whether the cube needs saving.
+     * @return The version of the cube
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Creates a listener keeping the cube in sync with a rental manager.
+     * @return The agreement listener
+     */
+    EntityListener<RentalAgreement> agreementListener() {
+        return new EntityListener<RentalAgreement>() {
+            @Override
+            public void onAdded(RentalAgreement agreement) {
+                addAgreement(agreement);
+            }
+
+            @Override
+            public void onUpdated(RentalAgreement agreement) {
+                addAgreement(agreement);
+            }
+
+            @Override
+            public void onRemoved(RentalAgreement agreement) {
+                removeAgreement(agreement.getAgreementId());
+            }
+        };
+    }
+
+
+    /**
+     * Creates a listener keeping the cube in sync with the loaded and recorded payments.
+     * @return The payment listener
+     */
+    EntityListener<Payment> paymentListener() {
+        return new EntityListener<Payment>() {
+            @Override
+            public void onAdded(Payment payment) {
+                if (payment.getPaymentDate() != null) {
+                    addPayment(payment.getPaymentId(), payment.getRentalAgreementId(),
+                            LocalDate.ofEpochDay(DateUtil.toEpochDay(payment.getPaymentDate())), payment.getAmount());
+                }
+            }
+
+            @Override
+            public void onUpdated(Payment payment) {
+                onAdded(payment);
+            }
+
+            @Override
+            public void onRemoved(Payment payment) {
+                removePayment(payment.getPaymentId());
+            }
+        };
+    }
+
+
+    /**
+     * Gets the property type a cell is filed under.
+     * @param property The property, or null if it is unknown
+     * @return Residential, Commercial or - if unknown
+     */
+    static String typeOf(com.rentalsystem.model.Property property) {
+        if (property == null) {
+            return NONE;
+        }
+        return property instanceof CommercialProperty ? "Commercial" : "Residential";
+    }
+
+
+    private void addAgreement(RentalAgreement agreement) {
+        if (agreement.getStartDate() == null || agreement.getEndDate() == null || agreement.getRentalPeriod() == null) {
+            return;
+        }
+        addAgreement(agreement.getAgreementId(),
+                agreement.getOwner() != null ? agreement.getOwner().getId() : NONE,
+                agreement.getHost() != null ? agreement.getHost().getId() : NONE,
+                agreement.getProperty() != null ? agreement.getProperty().getPropertyId() : NONE,
+                typeOf(agreement.getProperty()),
+                LocalDate.ofEpochDay(DateUtil.toEpochDay(agreement.getStartDate())),
+                LocalDate.ofEpochDay(DateUtil.toEpochDay(agreement.getEndDate())),
+                agreement.getRentAmount(),
+                agreement.getRentalPeriod());
+    }
+
+
+    /**
+     * Adds or subtracts the rent charges of a lease, one per rental period, in the months they fall due.
+     * @param lease The lease
+     * @param sign 1 to add the lease, -1 to remove it
+     */
+    private void apply(Lease lease, int sign) {
+        for (long n = 0; ; n++) {
+            LocalDate chargeDay = lease.period.plusPeriods(lease.start, n);
+            if (chargeDay.isAfter(lease.end)) {
+                break;
+            }
+            add(lease.coordinates, YearMonth.from(chargeDay), sign * lease.rentAmount, 0);
+        }
+    }
+
+
+    /**
+     * Adds to a cell and to the matching cell of every view.
+     */
+    private void add(Coordinates coordinates, YearMonth month, double expected, double received) {
+        addTo(cells, month, coordinates, expected, received);
+        views.forEach((dimension, view) -> addTo(view, month, coordinates.get(dimension), expected, received));
+    }
+
+
+    /**
+     * Adds to a cell, dropping the cell once it holds nothing so removed agreements do not leave empty cells behind.
+     */
+    private static <K> void addTo(TreeMap<YearMonth, Map<K, double[]>> source, YearMonth month, K key, double expected, double received) {
+        Map<K, double[]> monthCells = source.computeIfAbsent(month, m -> new HashMap<>());
+        double[] sums = monthCells.computeIfAbsent(key, k -> new double[2]);
+        sums[0] += expected;
+        sums[1] += received;
+        if (Math.abs(sums[0]) < 1e-6 && Math.abs(sums[1]) < 1e-6) {
+            monthCells.remove(key);
+            if (monthCells.isEmpty()) {
+                source.remove(month);
+            }
+        }
+    }
+
+
+    /**
+     * Sums the cells of a range of months of a cube or a view.
+     * @param source The cells by month
+     * @param level Reads the value of a level from the key of a cell
+     */
+    private static <K> List<Row> sum(TreeMap<YearMonth, Map<K, double[]>> source, BiFunction<K, Dimension, String> level,
+                                     List<Dimension> groupBy, Map<Dimension, String> filter, YearMonth from, YearMonth to) {
+        Map<List<String>, double[]> groups = new HashMap<>();
+        List<String> probe = new ArrayList<>(groupBy.size());
+        String monthFilter = filter.get(Dimension.MONTH);
+        for (Map.Entry<YearMonth, Map<K, double[]>> month : source.subMap(from, true, to, true).entrySet()) {
+            String monthKey = month.getKey().toString();
+            if (monthFilter != null && !monthFilter.equals(monthKey)) {
+                continue;
+            }
+            for (Map.Entry<K, double[]> cell : month.getValue().entrySet()) {
+                if (!matches(cell.getKey(), level, filter)) {
+                    continue;
+                }
+                // The probe is only copied when it starts a new group, so most cells allocate nothing
+                probe.clear();
+                for (Dimension dimension : groupBy) {
+                    probe.add(dimension == Dimension.MONTH ? monthKey : level.apply(cell.getKey(), dimension));
+                }
+                double[] sums = groups.get(probe);
+                if (sums == null) {
+                    sums = new double[2];
+                    groups.put(new ArrayList<>(probe), sums);
+                }
+                sums[0] += cell.getValue()[0];
+                sums[1] += cell.getValue()[1];
+            }
+        }
+        List<Row> rows = new ArrayList<>(groups.size());
+        groups.forEach((key, sums) -> rows.add(new Row(key, sums[0], sums[1])));
+        rows.sort((a, b) -> compareKeys(a.getKey(), b.getKey()));
+        return rows;
+    }
+
+
+    private static <K> boolean matches(K cell, BiFunction<K, Dimension, String> level, Map<Dimension, String> filter) {
+        for (Map.Entry<Dimension, String> entry : filter.entrySet()) {
+            if (entry.getKey() != Dimension.MONTH && !level.apply(cell, entry.getKey()).equals(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static int compareKeys(List<String> a, List<String> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int order = a.get(i).compareTo(b.get(i));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * One group of a rollup.
+     */
+    public static class Row {
+        private final List<String> key;
+        private final double expectedRent;
+        private final double incomeReceived;
+
+
+        private Row(List<String> key, double expectedRent, double incomeReceived) {
+            this.key = Collections.unmodifiableList(key);
+            this.expectedRent = expectedRent;
+            this.incomeReceived = incomeReceived;
+        }
+
+
+        public List<String> getKey() {
+            return key;
+        }
+
+
+        public double getExpectedRent() {
+            return expectedRent;
+        }
+
+
+        public double getIncomeReceived() {
+            return incomeReceived;
+        }
+    }
+
+
+    /**
+     * The position of a cell below the month level.
+     */
+    private static class Coordinates {
+        private static final Coordinates UNKNOWN = new Coordinates(NONE, NONE, NONE, NONE);
+
+        private final String ownerId;
+        private final String hostId;
+        private final String propertyId;
+        private final String propertyType;
+        private final int hash;
+
+
+        private Coordinates(String ownerId, String hostId, String propertyId, String propertyType) {
+            this.ownerId = ownerId;
+            this.hostId = hostId;
+            this.propertyId = propertyId;
+            this.propertyType = propertyType;
+            this.hash = Objects.hash(ownerId, hostId, propertyId, propertyType);
+        }
+
+
+        private String get(Dimension dimension) {
+            switch (dimension) {
+                case OWNER:
+                    return ownerId;
+                case HOST:
+                    return hostId;
+                case PROPERTY:
+                    return propertyId;
+                case PROPERTY_TYPE:
+                    return propertyType;
+                default:
+                    throw new IllegalArgumentException("Not a cell coordinate: " + dimension);
+            }
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Coordinates)) {
+                return false;
+            }
+            Coordinates other = (Coordinates) o;
+            return hash == other.hash && ownerId.equals(other.ownerId) && hostId.equals(other.hostId)
+                    && propertyId.equals(other.propertyId) && propertyType.equals(other.propertyType);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    /**
+     * The terms an agreement was added with, kept so its charges can be subtracted later.
+     */
+    private static class Lease {
+        private final Coordinates coordinates;
+        private final LocalDate start;
+        private final LocalDate end;
+        private final double rentAmount;
+        private final RentalAgreement.RentalPeriod period;
+
+
+        private Lease(Coordinates coordinates, LocalDate start, LocalDate end, double rentAmount, RentalAgreement.RentalPeriod period) {
+            this.coordinates = coordinates;
+            this.start = start;
+            this.end = end;
+            this.rentAmount = rentAmount;
+            this.period = period;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Lease)) {
+                return false;
+            }
+            Lease other = (Lease) o;
+            return coordinates.equals(other.coordinates) && start.equals(other.start) && end.equals(other.end)
+                    && rentAmount == other.rentAmount && period == other.period;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(coordinates, start, end, rentAmount, period);
+        }
+    }
+
+
+    /**
+     * A payment as it was added, kept so it can be subtracted later.
+     */
+    private static class Receipt {
+        private final String agreementId;
+        private final Coordinates coordinates;
+        private final YearMonth month;
+        private final double amount;
+
+
+        private Receipt(String agreementId, Coordinates coordinates, YearMonth month, double amount) {
+            this.agreementId = agreementId;
+            this.coordinates = coordinates;
+            this.month = month;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.config.LoggerConfig;
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.util.DateUtil;
+import com.rentalsystem.util.FenwickTree;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+
+/**
+ * Day-indexed aggregates of rental income and occupancy, kept in Fenwick trees over epoch days.
+ * Agreements contribute a rent charge at the start of every rental period and a +1/-1 pair marking the
+ * days they occupy their property; payments contribute their amount on the day they were made.
+ * Income between two dates, expected rent in a month and the number of leases on a day are then
+ * answered in O(log n) without rescanning the history.
+ */
+class IncomeTimeline {
+    // Days covered by the trees: 2000-01-01 plus 2^16 days, up to the year 2179
+    private static final long FIRST_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+    private static final int DAYS = 1 << 16;
+
+    private final FenwickTree received = new FenwickTree(DAYS);
+    private final FenwickTree expected = new FenwickTree(DAYS);
+    private final FenwickTree occupancy = new FenwickTree(DAYS);
+    private final Map<String, Lease> leases = new HashMap<>();
+    private final Map<String, double[]> payments = new HashMap<>();
+
+
+    /**
+     * Adds the rent charges and occupied days of an agreement, replacing its previous contribution.
+     * @param agreementId The ID of the agreement
+     * @param startDay The first day of the lease, as an epoch day
+     * @param endDay The last day of the lease, as an epoch day
+     * @param rentAmount The rent charged per period
+     * @param period The rental period
+     */
+    synchronized void addAgreement(String agreementId, long startDay, long endDay, double rentAmount, RentalAgreement.RentalPeriod period) {
+        removeAgreement(agreementId);
+        Lease lease = new Lease(startDay, endDay, rentAmount, period);
+        apply(lease, 1);
+        leases.put(agreementId, lease);
+    }
+
+
+    /**
+     * Removes the contribution of an agreement.
+     * @param agreementId The ID of the agreement
+     */
+    synchronized void removeAgreement(String agreementId) {
+        Lease lease = leases.remove(agreementId);
+        if (lease != null) {
+            apply(lease, -1);
+        }
+    }
+
+
+    /**
+     * Adds a received payment, replacing a previous payment with the same ID.
+     * @param paymentId The ID of the payment
+     * @param day The day of the payment, as an epoch day
+     * @param amount The amount paid
+     */
+    synchronized void addPayment(String paymentId, long day, double amount) {
+        removePayment(paymentId);
+        add(received, day, amount);
+        payments.put(paymentId, new double[] {day, amount});
+    }
+
+
+    /**
+     * Removes a received payment.
+     * @param paymentId The ID of the payment
+     */
+    synchronized void removePayment(String paymentId) {
+        double[] payment = payments.remove(paymentId);
+        if (payment != null) {
+            add(received, (long) payment[0], -payment[1]);
+        }
+    }
+
+
+    /**
+     * Sums the payments received between two days.
+     * @param fromDay The first day, as an epoch day
+     * @param toDay The last day, as an epoch day
+     * @return The total amount received
+     */
+    synchronized double incomeReceived(long fromDay, long toDay) {
+        return sum(received, fromDay, toDay);
+    }
+
+
+    /**
+     * Sums the rent charges falling due between two days.
+     * @param fromDay The first day, as an epoch day
+     * @param toDay The last day, as an epoch day
+     * @return The total rent due
+     */
+    synchronized double expectedRent(long fromDay, long toDay) {
+        return sum(expected, fromDay, toDay);
+    }
+
+
+    /**
+     * Counts the leases covering a day.
+     * @param day The day, as an epoch day
+     * @return The number of agreements whose lease includes the day
+     */
+    synchronized int leasesOn(long day) {
+        if (day < FIRST_DAY) {
+            return 0;
+        }
+        return (int) Math.round(occupancy.prefixSum(position(Math.min(day, FIRST_DAY + DAYS - 1))));
+    }
+
+
+    /**
+     * Creates a listener keeping the timeline in sync with a rental manager.
+     * @return The agreement listener
+     */
+    EntityListener<RentalAgreement> agreementListener() {
+        return new EntityListener<RentalAgreement>() {
+            @Override
+            public void onAdded(RentalAgreement agreement) {
+                addAgreement(agreement);
+            }
+
+            @Override
+            public void onUpdated(RentalAgreement agreement) {
+                addAgreement(agreement);
+            }
+
+            @Override
+            public void onRemoved(RentalAgreement agreement) {
+                removeAgreement(agreement.getAgreementId());
+            }
+        };
+    }
+
+
+    /**
+     * Creates a listener keeping the timeline in sync with the recorded payments.
+     * @return The payment listener
+     */
+    EntityListener<Payment> paymentListener() {
+        return new EntityListener<Payment>() {
+            @Override
+            public void onAdded(Payment payment) {
+                addPayment(payment.getPaymentId(), DateUtil.toEpochDay(payment.getPaymentDate()), payment.getAmount());
+            }
+
+            @Override
+            public void onUpdated(Payment payment) {
+                onAdded(payment);
+            }
+
+            @Override
+            public void onRemoved(Payment payment) {
+                removePayment(payment.getPaymentId());
+            }
+        };
+    }
+
+
+    private void addAgreement(RentalAgreement agreement) {
+        if (agreement.getStartDate() == null || agreement.getEndDate() == null || agreement.getRentalPeriod() == null) {
+            return;
+        }
+        addAgreement(agreement.getAgreementId(), DateUtil.toEpochDay(agreement.getStartDate()),
+                DateUtil.toEpochDay(agreement.getEndDate()), agreement.getRentAmount(), agreement.getRentalPeriod());
+    }
+
+
+    /**
+     * Adds or subtracts the charges and occupied days of a lease.
+     * @param lease The lease
+     * @param sign 1 to add the lease, -1 to remove it
+     */
+    private void apply(Lease lease, int sign) {
+        if (lease.endDay < lease.startDay) {
+            return;
+        }
+        // A lease starting before the covered range still occupies its first covered day; the -1 after its
+        // end is dropped only when that day is past the range, where no query can see it
+        if (lease.endDay >= FIRST_DAY) {
+            add(occupancy, Math.max(lease.startDay, FIRST_DAY), sign);
+            add(occupancy, lease.endDay + 1, -sign);
+        }
+
+        LocalDate start = LocalDate.ofEpochDay(lease.startDay);
+        for (long n = 0; ; n++) {
+            long chargeDay = lease.period.plusPeriods(start, n).toEpochDay();
+            if (chargeDay > lease.endDay) {
+                break;
+            }
+            add(expected, chargeDay, sign * lease.rentAmount);
+        }
+    }
+
+
+    /**
+     * Adds a value on a day, ignoring days outside the range the trees cover.
+     * @param tree The tree to update
+     * @param day The day, as an epoch day
+     * @param delta The value to add
+     */
+    private void add(FenwickTree tree, long day, double delta) {
+        if (day < FIRST_DAY || day >= FIRST_DAY + DAYS) {
+            LoggerConfig.getLogger().log(Level.FINE, "Day outside the income timeline: " + LocalDate.ofEpochDay(day));
+            return;
+        }
+        tree.add(position(day), delta);
+    }
+
+
+    private double sum(FenwickTree tree, long fromDay, long toDay) {
+        long from = Math.max(fromDay, FIRST_DAY);
+        long to = Math.min(toDay, FIRST_DAY + DAYS - 1);
+        return from > to ? 0 : tree.rangeSum(position(from), position(to));
+    }
+
+
+    private static int position(long day) {
+        return (int) (day - FIRST_DAY);
+    }
+
+
+    /**
+     * The lease terms an agreement was added with, kept so the contribution can be subtracted later.
+     */
+    private static class Lease {
+        private final long startDay;
+        private final long endDay;
+        private final double rentAmount;
+        private final RentalAgreement.RentalPeriod period;
+
+
+        private Lease(long startDay, long endDay, double rentAmount, RentalAgreement.RentalPeriod period) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.rentAmount = rentAmount;
+            this.period = period;
+        }
+    }
+}
@@ -58,6 +58,15 @@ public interface OwnerManager extends CrudManager<Owner> {
     List<Owner> search(String keyword);
 
 
+    /**
+     * Searches for owners whose full name approximately matches a query.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of owners ranked by closeness
+     */
+    List<Owner> searchFuzzy(String query, int maxDistance);
+
+
     /**
      * Retrieves a sorted list of all owners based on a specified criteria.
      * @param sortBy The criteria to sort by
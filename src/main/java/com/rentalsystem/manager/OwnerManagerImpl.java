@@ -5,15 +5,19 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.concurrent.locks.Lock;
 
+import com.rentalsystem.config.LoggerConfig;
 import com.rentalsystem.model.Owner;
 import com.rentalsystem.util.FileHandler;
 import com.rentalsystem.util.InputValidator;
 import com.rentalsystem.model.Property;
 import com.rentalsystem.model.Host;
+import com.rentalsystem.monitor.MutationEvent;
 
 import static com.rentalsystem.util.FileHandler.DATE_FORMAT;
 
@@ -24,6 +28,9 @@ import static com.rentalsystem.util.FileHandler.DATE_FORMAT;
 public class OwnerManagerImpl implements OwnerManager {
     private final Map<String, Owner> owners;
     private final FileHandler fileHandler;
+    private final RelationshipLinker linker;
+    private final ChangeNotifier<Owner> notifier = new ChangeNotifier<>();
+    private final FuzzyIndex<Owner> fuzzyIndex = new FuzzyIndex<>(Owner::getId, Owner::getFullName);
     private PropertyManager propertyManager;
     private HostManager hostManager;
 
@@ -35,6 +42,9 @@ public class OwnerManagerImpl implements OwnerManager {
     public OwnerManagerImpl(FileHandler fileHandler) {
         this.fileHandler = fileHandler;
         this.owners = new HashMap<>();
+        this.linker = fileHandler.getLinker();
+        notifier.addListener(fuzzyIndex);
+        fileHandler.getSnapshots().register("owners.txt", this::rows);
     }
 
     /**
@@ -62,6 +72,7 @@ public class OwnerManagerImpl implements OwnerManager {
         for (String[] parts : fileHandler.readLines("owners.txt")) {
             Owner owner = fromString(parts);
             owners.put(owner.getId(), owner);
+            notifier.fireAdded(owner);
         }
 
 
@@ -85,19 +96,29 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public void add(Owner owner) {
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
         try {
-            if (!InputValidator.isValidEmail(owner.getContactInformation())) {
-                throw new IllegalArgumentException("Invalid email format for owner: " + owner.getContactInformation());
-            }
-            if (isEmailTaken(owner.getContactInformation())) {
-                throw new IllegalArgumentException("Email already in use: " + owner.getContactInformation());
+            MutationEvent event = new MutationEvent("Owner", "add", owner.getId());
+            event.begin();
+            try {
+                if (!InputValidator.isValidEmail(owner.getContactInformation())) {
+                    throw new IllegalArgumentException("Invalid email format for owner: " + owner.getContactInformation());
+                }
+                if (isEmailTaken(owner.getContactInformation())) {
+                    throw new IllegalArgumentException("Email already in use: " + owner.getContactInformation());
+                }
+                owners.put(owner.getId(), owner);
+                notifier.fireAdded(owner);
+                saveToFile();
+                event.commit();
+            } catch (Exception e) {
+                LoggerConfig.getLogger().log(Level.WARNING, "Error in OwnerManagerImpl.add(): " + e.getMessage(), e);
+                throw e; // Re-throw the exception to be caught in the UI layer
             }
-            owners.put(owner.getId(), owner);
-            saveToFile();
-        } catch (Exception e) {
-            System.out.println("Error in OwnerManagerImpl.add(): " + e.getMessage());
-            e.printStackTrace();
-            throw e; // Re-throw the exception to be caught in the UI layer
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -110,18 +131,29 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public void update(Owner owner) {
-        if (!InputValidator.isValidEmail(owner.getContactInformation())) {
-            throw new IllegalArgumentException("Invalid email format for owner: " + owner.getContactInformation());
-        }
-        Owner existingOwner = owners.get(owner.getId());
-        if (existingOwner == null) {
-            throw new IllegalArgumentException("Owner with ID " + owner.getId() + " does not exist.");
-        }
-        if (!existingOwner.getContactInformation().equals(owner.getContactInformation()) && isEmailTaken(owner.getContactInformation())) {
-            throw new IllegalArgumentException("Email already in use: " + owner.getContactInformation());
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Owner", "update", owner.getId());
+            event.begin();
+            if (!InputValidator.isValidEmail(owner.getContactInformation())) {
+                throw new IllegalArgumentException("Invalid email format for owner: " + owner.getContactInformation());
+            }
+            Owner existingOwner = owners.get(owner.getId());
+            if (existingOwner == null) {
+                throw new IllegalArgumentException("Owner with ID " + owner.getId() + " does not exist.");
+            }
+            if (!existingOwner.getContactInformation().equals(owner.getContactInformation()) && isEmailTaken(owner.getContactInformation())) {
+                throw new IllegalArgumentException("Email already in use: " + owner.getContactInformation());
+            }
+            owners.put(owner.getId(), owner);
+            notifier.fireUpdated(owner);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        owners.put(owner.getId(), owner);
-        saveToFile();
     }
 
     /**
@@ -131,11 +163,21 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public void delete(String ownerId) {
-        if (!owners.containsKey(ownerId)) {
-            throw new IllegalArgumentException("Owner with ID " + ownerId + " does not exist.");
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Owner", "delete", ownerId);
+            event.begin();
+            if (!owners.containsKey(ownerId)) {
+                throw new IllegalArgumentException("Owner with ID " + ownerId + " does not exist.");
+            }
+            notifier.fireRemoved(owners.remove(ownerId));
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        owners.remove(ownerId);
-        saveToFile();
     }
 
     /**
@@ -145,7 +187,14 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public Owner get(String ownerId) {
-        return owners.get(ownerId);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return owners.get(ownerId);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -154,7 +203,14 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public List<Owner> getAll() {
-        return new ArrayList<>(owners.values());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return new ArrayList<>(owners.values());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -165,24 +221,31 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public List<Owner> getSorted(String sortBy) {
-        List<Owner> sortedList = getAll();
-        switch (sortBy.toLowerCase()) {
-            case "id":
-                sortedList.sort(Comparator.comparing(Owner::getId));
-                break;
-            case "name":
-                sortedList.sort(Comparator.comparing(Owner::getFullName));
-                break;
-            case "dob":
-                sortedList.sort(Comparator.comparing(Owner::getDateOfBirth));
-                break;
-            case "email":
-                sortedList.sort(Comparator.comparing(Owner::getContactInformation));
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<Owner> sortedList = getAll();
+            switch (sortBy.toLowerCase()) {
+                case "id":
+                    sortedList.sort(Comparator.comparing(Owner::getId));
+                    break;
+                case "name":
+                    sortedList.sort(Comparator.comparing(Owner::getFullName));
+                    break;
+                case "dob":
+                    sortedList.sort(Comparator.comparing(Owner::getDateOfBirth));
+                    break;
+                case "email":
+                    sortedList.sort(Comparator.comparing(Owner::getContactInformation));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+            }
+            return sortedList;
+        } finally {
+            readLock.unlock();
         }
-        return sortedList;
     }
 
     /**
@@ -193,18 +256,51 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public List<Owner> search(String keyword) {
-        final String lowercaseKeyword = keyword.toLowerCase();
-        return getAll().stream()
-                .filter(owner -> owner.getFullName().toLowerCase().contains(lowercaseKeyword) ||
-                        owner.getId().toLowerCase().contains(lowercaseKeyword) ||
-                        owner.getContactInformation().toLowerCase().contains(lowercaseKeyword))
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            final String lowercaseKeyword = keyword.toLowerCase();
+            return getAll().stream()
+                    .filter(owner -> owner.getFullName().toLowerCase().contains(lowercaseKeyword) ||
+                            owner.getId().toLowerCase().contains(lowercaseKeyword) ||
+                            owner.getContactInformation().toLowerCase().contains(lowercaseKeyword))
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for owners whose full name approximately matches a query, tolerating typos.
+     * Every word of the query must be within the edit distance of a word of the full name.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of Owner objects ranked by closeness
+     */
+    @Override
+    public List<Owner> searchFuzzy(String query, int maxDistance) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return fuzzyIndex.search(query, maxDistance, owners::get);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     @Override
     public boolean isEmailTaken(String email) {
-        return getAll().stream()
-                .anyMatch(owner -> owner.getContactInformation().equalsIgnoreCase(email));
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return getAll().stream()
+                    .anyMatch(owner -> owner.getContactInformation().equalsIgnoreCase(email));
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -212,23 +308,34 @@ public class OwnerManagerImpl implements OwnerManager {
      */
     @Override
     public void saveToFile() {
+        linker.ensureLinked();
+        fileHandler.getSnapshots().changed("owners.txt");
+        if (fileHandler.deferSave("owners.txt", this::saveToFile)) {
+            return;
+        }
         try {
-            List<String[]> lines = getSorted("id").stream()
-                    .map(entity -> new String[]{
-                            entity.getId(),
-                            entity.getFullName(),
-                            DATE_FORMAT.format(entity.getDateOfBirth()),
-                            entity.getContactInformation()
-                    })
-                    .collect(Collectors.toList());
-            fileHandler.saveOwners(lines);
+            fileHandler.saveOwners(rows());
         } catch (Exception e) {
-            System.out.println("Error in OwnerManagerImpl.saveToFile(): " + e.getMessage());
-            e.printStackTrace();
+            LoggerConfig.getLogger().log(Level.WARNING, "Error in OwnerManagerImpl.saveToFile(): " + e.getMessage(), e);
             throw e;
         }
     }
 
+    /**
+     * Builds the rows of owners.txt from the owners in memory, sorted by ID.
+     * @return The rows, one per owner
+     */
+    private List<String[]> rows() {
+        return getSorted("id").stream()
+                .map(entity -> new String[]{
+                        entity.getId(),
+                        entity.getFullName(),
+                        DATE_FORMAT.format(entity.getDateOfBirth()),
+                        entity.getContactInformation()
+                })
+                .collect(Collectors.toList());
+    }
+
     /**
      * Creates an Owner object from a string array representation.
      * @param parts The string array containing owner data
@@ -239,9 +346,19 @@ public class OwnerManagerImpl implements OwnerManager {
     public Owner fromString(String[] parts) {
         try {
             Date dateOfBirth = DATE_FORMAT.parse(parts[2]);
-            return new Owner(parts[0], parts[1], dateOfBirth, parts[3]);
+            return new Owner(fileHandler.intern(parts[0]), parts[1], dateOfBirth, parts[3]);
         } catch (ParseException e) {
             throw new IllegalArgumentException("Invalid date format: " + parts[2], e);
         }
     }
+
+
+    /**
+     * Registers a listener notified when owners are loaded, added, updated or deleted.
+     * @param listener The listener to register
+     */
+    @Override
+    public void addChangeListener(EntityListener<Owner> listener) {
+        notifier.addListener(listener);
+    }
 }
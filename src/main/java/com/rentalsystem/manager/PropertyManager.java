@@ -6,6 +6,7 @@ package com.rentalsystem.manager;
 
 
 import com.rentalsystem.model.Property;
+import com.rentalsystem.query.Criteria;
 
 
 import java.util.List;
@@ -67,6 +68,31 @@ public interface PropertyManager extends CrudManager<Property> {
     List<Property> search(String keyword);
 
 
+    /**
+     * Searches for properties whose address approximately matches a query.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of properties ranked by closeness
+     */
+    List<Property> searchFuzzy(String query, int maxDistance);
+
+
+    /**
+     * Finds properties matching typed criteria.
+     * @param criteria The criteria to match
+     * @return A list of properties matching the criteria
+     */
+    List<Property> query(Criteria<Property> criteria);
+
+
+    /**
+     * Describes how a query would be executed.
+     * @param criteria The criteria to plan
+     * @return A description of the chosen index or scan
+     */
+    String explain(Criteria<Property> criteria);
+
+
     /**
      * Gets the total number of properties in the system.
      * @return The total number of properties
@@ -5,10 +5,18 @@
 package com.rentalsystem.manager;
 
 import com.rentalsystem.model.*;
+import com.rentalsystem.monitor.MutationEvent;
+import com.rentalsystem.query.Criteria;
+import com.rentalsystem.query.HashIndex;
+import com.rentalsystem.query.PropertyCriteria;
+import com.rentalsystem.query.QueryEngine;
+import com.rentalsystem.query.RangeIndex;
+import com.rentalsystem.query.RelationIndex;
 import com.rentalsystem.util.FileHandler;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Implementation of the PropertyManager interface.
@@ -21,15 +29,43 @@ public class PropertyManagerImpl implements PropertyManager {
     private TenantManager tenantManager;
     private OwnerManager ownerManager;
     private RentalManager rentalManager;
+    private final RelationshipLinker linker;
+    private final QueryEngine<Property> queryEngine;
+    private final ChangeNotifier<Property> notifier = new ChangeNotifier<>();
+    private final FuzzyIndex<Property> fuzzyIndex = new FuzzyIndex<>(Property::getPropertyId, Property::getAddress);
 
     /**
      * Constructs a new PropertyManagerImpl with the given FileHandler.
-     * Initializes the properties map.
+     * Initializes the properties map and the query indexes.
      * @param fileHandler The FileHandler to use for data persistence
      */
     public PropertyManagerImpl(FileHandler fileHandler) {
         this.fileHandler = fileHandler;
         this.properties = new HashMap<>();
+        this.linker = fileHandler.getLinker();
+        notifier.addListener(fuzzyIndex);
+        this.queryEngine = new QueryEngine<>(() -> properties.values());
+
+        queryEngine.addIndex(PropertyCriteria.PRICE, new RangeIndex<>(Property::getPrice));
+        queryEngine.addIndex(PropertyCriteria.STATUS, new HashIndex<>(Property::getStatus));
+        queryEngine.addIndex(PropertyCriteria.TYPE, new HashIndex<>(PropertyCriteria::typeOf));
+        queryEngine.addIndex(PropertyCriteria.BEDROOMS, new HashIndex<>(p -> p instanceof ResidentialProperty
+                ? ((ResidentialProperty) p).getNumberOfBedrooms() : null));
+        queryEngine.addIndex(PropertyCriteria.PET_FRIENDLY, new HashIndex<>(p -> p instanceof ResidentialProperty
+                ? ((ResidentialProperty) p).isPetFriendly() : null));
+        queryEngine.addIndex(PropertyCriteria.BUSINESS_TYPE, new HashIndex<>(p -> p instanceof CommercialProperty
+                ? ((CommercialProperty) p).getBusinessType().toLowerCase() : null));
+
+        // Owner and host lookups are answered from the links the model already maintains
+        queryEngine.addIndex(PropertyCriteria.OWNER_ID, new RelationIndex<>(id -> {
+            Owner owner = ownerManager.get((String) id);
+            return owner == null ? null : owner.getOwnedProperties();
+        }));
+        queryEngine.addIndex(PropertyCriteria.HOST_ID, new RelationIndex<>(id -> {
+            Host host = hostManager.get((String) id);
+            return host == null ? null : host.getManagedProperties();
+        }));
+        fileHandler.getSnapshots().register("properties.txt", this::rows);
     }
 
     /**
@@ -48,6 +84,8 @@ public class PropertyManagerImpl implements PropertyManager {
 
     /**
      * Loads property data from the file system and sets up relationships with owners and hosts.
+     * The properties are indexed immediately; the owner and host links are resolved through the
+     * RelationshipLinker, which defers them when lazy linking is enabled.
      * Throws an IllegalStateException if dependencies are not set.
      */
     @Override
@@ -57,23 +95,35 @@ public class PropertyManagerImpl implements PropertyManager {
         }
 
         for (String[] parts : fileHandler.readLines("properties.txt")) {
-            Property property = fromString(parts);
+            Property property = parseProperty(parts);
             properties.put(property.getPropertyId(), property);
+            queryEngine.index(property);
+            notifier.fireAdded(property);
+            linker.submit(() -> linkRelationships(property, parts));
+        }
+    }
 
-            Owner owner = ownerManager.get(property.getOwner().getId());
-            if (owner != null) {
-                owner.addOwnedProperty(property);
-            }
+    /**
+     * Links a loaded property with its owner and hosts, on both sides of each relationship.
+     * @param property The property to link
+     * @param parts The string array the property was loaded from
+     */
+    private void linkRelationships(Property property, String[] parts) {
+        // The owner is null when the owners file has no row for the property's owner ID
+        Owner owner = property.getOwner() == null ? null : ownerManager.get(property.getOwner().getId());
+        if (owner != null) {
+            owner.addOwnedProperty(property);
+        }
 
-            // Load hosts for the property if the information is available
-            if (parts.length > 12 && parts[12] != null && !parts[12].isEmpty()) {
-                String[] hostIds = parts[12].split(";");
-                for (String hostId : hostIds) {
-                    if (!hostId.isEmpty()) {
-                        Host host = hostManager.get(hostId);
-                        if (host != null) {
-                            property.addHost(host);
-                            host.addManagedProperty(property);
+        // Load hosts for the property if the information is available
+        if (parts.length > 12 && parts[12] != null && !parts[12].isEmpty()) {
+            String[] hostIds = parts[12].split(";");
+            for (String hostId : hostIds) {
+                if (!hostId.isEmpty()) {
+                    Host host = hostManager.get(hostId);
+                    if (host != null) {
+                        property.addHost(host);
+                        if (owner != null) {
                             owner.addManagingHost(host);
                         }
                     }
@@ -89,12 +139,24 @@ public class PropertyManagerImpl implements PropertyManager {
      */
     @Override
     public void add(Property property) {
-        if (properties.containsKey(property.getPropertyId())) {
-            throw new IllegalArgumentException("Property with ID " + property.getPropertyId() + " already exists.");
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Property", "add", property.getPropertyId());
+            event.begin();
+            if (properties.containsKey(property.getPropertyId())) {
+                throw new IllegalArgumentException("Property with ID " + property.getPropertyId() + " already exists.");
+            }
+            properties.put(property.getPropertyId(), property);
+            queryEngine.index(property);
+            property.getOwner().addOwnedProperty(property);
+            notifier.fireAdded(property);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        properties.put(property.getPropertyId(), property);
-        property.getOwner().addOwnedProperty(property);
-        saveToFile();
     }
 
     /**
@@ -105,11 +167,23 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public void update(Property property) {
-        if (!properties.containsKey(property.getPropertyId())) {
-            throw new IllegalArgumentException("Property with ID " + property.getPropertyId() + " does not exist.");
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Property", "update", property.getPropertyId());
+            event.begin();
+            if (!properties.containsKey(property.getPropertyId())) {
+                throw new IllegalArgumentException("Property with ID " + property.getPropertyId() + " does not exist.");
+            }
+            properties.put(property.getPropertyId(), property);
+            queryEngine.index(property);
+            notifier.fireUpdated(property);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        properties.put(property.getPropertyId(), property);
-        saveToFile();
     }
 
     /**
@@ -119,18 +193,70 @@ public class PropertyManagerImpl implements PropertyManager {
      */
     @Override
     public void delete(String propertyId) {
-        Property property = properties.remove(propertyId);
-        if (property == null) {
-            throw new IllegalArgumentException("Property with ID " + propertyId + " does not exist.");
-        }
-        for (Host host : new ArrayList<>(property.getHosts())) {
-            host.removeManagedProperty(property);
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Property", "delete", propertyId);
+            event.begin();
+            Property property = properties.remove(propertyId);
+            if (property == null) {
+                throw new IllegalArgumentException("Property with ID " + propertyId + " does not exist.");
+            }
+            queryEngine.unindex(property);
+            for (Host host : new ArrayList<>(property.getHosts())) {
+                host.removeManagedProperty(property);
+            }
+            for (Tenant tenant : new ArrayList<>(property.getTenants())) {
+                tenant.removeRentedProperty(property);
+            }
+            property.getOwner().removeOwnedProperty(property);
+            notifier.fireRemoved(property);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        for (Tenant tenant : new ArrayList<>(property.getTenants())) {
-            tenant.removeRentedProperty(property);
+    }
+
+
+    /**
+     * Deletes a property, capturing its hosts and tenants first, since the delete unlinks them and add only
+     * links the owner back.
+     * @param propertyId The ID of the property to be deleted
+     * @return The action that relinks the hosts and tenants and adds the property back
+     * @throws IllegalArgumentException if the property doesn't exist
+     */
+    @Override
+    public Runnable deleteRestorable(String propertyId) {
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            Property property = properties.get(propertyId);
+            List<Host> hosts = property == null ? new ArrayList<>() : new ArrayList<>(property.getHosts());
+            List<Tenant> tenants = property == null ? new ArrayList<>() : property.getTenants();
+            delete(propertyId);
+            return () -> {
+                Lock relinkLock = fileHandler.getDataLock().writeLock();
+                relinkLock.lock();
+                try {
+                    // Linked before the property is added back, so it is indexed by its hosts again
+                    for (Host host : hosts) {
+                        host.addManagedProperty(property);
+                    }
+                    for (Tenant tenant : tenants) {
+                        property.addTenant(tenant);
+                        tenant.addRentedProperty(property);
+                    }
+                    add(property);
+                } finally {
+                    relinkLock.unlock();
+                }
+            };
+        } finally {
+            writeLock.unlock();
         }
-        property.getOwner().removeOwnedProperty(property);
-        saveToFile();
     }
 
 
@@ -141,7 +267,14 @@ public class PropertyManagerImpl implements PropertyManager {
      */
     @Override
     public Property get(String propertyId) {
-        return properties.get(propertyId);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return properties.get(propertyId);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -151,7 +284,14 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public List<Property> getAll() {
-        return new ArrayList<>(properties.values());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return new ArrayList<>(properties.values());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -163,30 +303,37 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public List<Property> getSorted(String sortBy) {
-        List<Property> sortedList = getAll();
-        switch (sortBy.toLowerCase()) {
-            case "id":
-                sortedList.sort(Comparator.comparing(Property::getPropertyId));
-                break;
-            case "type":
-                sortedList.sort(Comparator.comparing(p -> p instanceof ResidentialProperty ? "Residential" : "Commercial"));
-                break;
-            case "address":
-                sortedList.sort(Comparator.comparing(Property::getAddress));
-                break;
-            case "price":
-                sortedList.sort(Comparator.comparing(Property::getPrice));
-                break;
-            case "status":
-                sortedList.sort(Comparator.comparing(Property::getStatus));
-                break;
-            case "owner":
-                sortedList.sort(Comparator.comparing(p -> p.getOwner().getFullName()));
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<Property> sortedList = getAll();
+            switch (sortBy.toLowerCase()) {
+                case "id":
+                    sortedList.sort(Comparator.comparing(Property::getPropertyId));
+                    break;
+                case "type":
+                    sortedList.sort(Comparator.comparing(p -> p instanceof ResidentialProperty ? "Residential" : "Commercial"));
+                    break;
+                case "address":
+                    sortedList.sort(Comparator.comparing(Property::getAddress));
+                    break;
+                case "price":
+                    sortedList.sort(Comparator.comparing(Property::getPrice));
+                    break;
+                case "status":
+                    sortedList.sort(Comparator.comparing(Property::getStatus));
+                    break;
+                case "owner":
+                    sortedList.sort(Comparator.comparing(p -> p.getOwner().getFullName()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+            }
+            return sortedList;
+        } finally {
+            readLock.unlock();
         }
-        return sortedList;
     }
 
     /**
@@ -196,7 +343,14 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public int getTotalProperties() {
-        return properties.size();
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return properties.size();
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -205,7 +359,14 @@ public class PropertyManagerImpl implements PropertyManager {
      */
     @Override
     public int getOccupiedProperties() {
-        return (int) getAll().stream().filter(p -> p.getStatus() == PropertyStatus.RENTED).count();
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return (int) getAll().stream().filter(p -> p.getStatus() == PropertyStatus.RENTED).count();
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -217,12 +378,72 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public List<Property> search(String keyword) {
-        final String lowercaseKeyword = keyword.toLowerCase();
-        return getAll().stream()
-                .filter(property -> property.getPropertyId().toLowerCase().contains(lowercaseKeyword) ||
-                        property.getAddress().toLowerCase().contains(lowercaseKeyword) ||
-                        property.getOwner().getFullName().toLowerCase().contains(lowercaseKeyword))
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            final String lowercaseKeyword = keyword.toLowerCase();
+            return getAll().stream()
+                    .filter(property -> property.getPropertyId().toLowerCase().contains(lowercaseKeyword) ||
+                            property.getAddress().toLowerCase().contains(lowercaseKeyword) ||
+                            property.getOwner().getFullName().toLowerCase().contains(lowercaseKeyword))
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for properties whose address approximately matches a query, tolerating typos.
+     * Every word of the query must be within the edit distance of a word of the address.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of Property objects ranked by closeness
+     */
+    @Override
+    public List<Property> searchFuzzy(String query, int maxDistance) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return fuzzyIndex.search(query, maxDistance, properties::get);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the properties matching typed criteria, using the most selective index available.
+     * @param criteria The criteria to match, built with PropertyCriteria
+     * @return A list of Property objects matching the criteria
+     */
+    @Override
+    public List<Property> query(Criteria<Property> criteria) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return queryEngine.execute(criteria);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Describes how a query would be executed.
+     * @param criteria The criteria to plan
+     * @return A description of the chosen index or scan
+     */
+    @Override
+    public String explain(Criteria<Property> criteria) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return queryEngine.explain(criteria);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -232,9 +453,16 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public List<Property> getAvailableProperties() {
-        return getAll().stream()
-                .filter(property -> property.getStatus() == PropertyStatus.AVAILABLE)
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return getAll().stream()
+                    .filter(property -> property.getStatus() == PropertyStatus.AVAILABLE)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -285,13 +513,25 @@ public class PropertyManagerImpl implements PropertyManager {
      */
     @Override
     public void saveToFile() {
+        linker.ensureLinked();
+        fileHandler.getSnapshots().changed("properties.txt");
+        if (fileHandler.deferSave("properties.txt", this::saveToFile)) {
+            return;
+        }
+        fileHandler.saveProperties(rows());
+    }
+
+    /**
+     * Builds the rows of properties.txt from the properties in memory, sorted by ID.
+     * @return The rows, one per property
+     */
+    private List<String[]> rows() {
         List<String[]> propertyLines = new ArrayList<>();
 
         for (Property property : getSorted("id")) {
             propertyLines.add(saveProperty(property));
         }
-
-        fileHandler.saveProperties(propertyLines);
+        return propertyLines;
     }
 
 
@@ -304,7 +544,30 @@ public class PropertyManagerImpl implements PropertyManager {
 
     @Override
     public Property fromString(String[] parts) {
-        String propertyId = parts[0];
+        Property property = parseProperty(parts);
+
+        // Load hosts if the information is available
+        if (parts.length > 12 && parts[12] != null && !parts[12].isEmpty()) {
+            String[] hostIds = parts[12].split(";");
+            for (String hostId : hostIds) {
+                Host host = hostManager.get(hostId);
+                if (host != null) {
+                    property.addHost(host);
+                }
+            }
+        }
+
+        return property;
+    }
+
+    /**
+     * Creates a Property object from a string array representation without linking its hosts.
+     * @param parts The string array containing property data
+     * @return The created Property object
+     * @throws RuntimeException if there's an error parsing the property type
+     */
+    private Property parseProperty(String[] parts) {
+        String propertyId = fileHandler.intern(parts[0]);
         String propertyType = parts[1];
         String address = parts[2];
         double price = Double.parseDouble(parts[3]);
@@ -313,39 +576,33 @@ public class PropertyManagerImpl implements PropertyManager {
 
         Owner owner = ownerManager.get(ownerId);
 
-        Property property;
         switch (propertyType) {
             case "RESIDENTIAL":
-                property = new ResidentialProperty(
+                return new ResidentialProperty(
                         propertyId, address, price, propertyStatus, owner,
                         Integer.parseInt(parts[6]),
                         Boolean.parseBoolean(parts[7]),
                         Boolean.parseBoolean(parts[8])
                 );
-                break;
             case "COMMERCIAL":
-                property = new CommercialProperty(
+                return new CommercialProperty(
                         propertyId, address, price, propertyStatus, owner,
-                        parts[9],
+                        fileHandler.intern(parts[9]),
                         Integer.parseInt(parts[10]),
                         Double.parseDouble(parts[11])
                 );
-                break;
             default:
                 throw new RuntimeException("Property of type " + propertyType + " does not exist");
         }
+    }
 
-        // Load hosts if the information is available
-        if (parts.length > 12 && parts[12] != null && !parts[12].isEmpty()) {
-            String[] hostIds = parts[12].split(";");
-            for (String hostId : hostIds) {
-                Host host = hostManager.get(hostId);
-                if (host != null) {
-                    property.addHost(host);
-                }
-            }
-        }
 
-        return property;
+    /**
+     * Registers a listener notified when propertys are loaded, added, updated or deleted.
+     * @param listener The listener to register
+     */
+    @Override
+    public void addChangeListener(EntityListener<Property> listener) {
+        notifier.addListener(listener);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.config.LoggerConfig;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+
+
+/**
+ * Defers the wiring of relationships between loaded entities.
+ * In lazy mode, managers index their primary tables at load time and submit the object-reference and
+ * reverse-link resolution as tasks. The tasks are drained by a background linker thread, or on the
+ * calling thread the first time a manager is accessed, whichever comes first.
+ * In eager mode, submitted tasks run immediately.
+ * Every task runs under the data write lock, so the entities it links, and the listeners it notifies of them,
+ * are never seen by another thread half linked. Tasks are run holding the write lock first and the linker's own
+ * lock second, so a thread already holding the read lock must call ensureLinked before taking it.
+ */
+public class RelationshipLinker {
+    private final boolean lazy;
+    private final ReentrantReadWriteLock dataLock;
+    private final Deque<Runnable> pending;
+    private final Object lock;
+    private volatile boolean linked;
+    private Thread worker;
+
+
+    /**
+     * Constructs a new RelationshipLinker.
+     * @param lazy true to defer linking until first access or the background thread, false to link immediately
+     * @param dataLock The lock the managers hold while they read or change the data
+     */
+    public RelationshipLinker(boolean lazy, ReentrantReadWriteLock dataLock) {
+        this.lazy = lazy;
+        this.dataLock = dataLock;
+        this.pending = new ArrayDeque<>();
+        this.lock = new Object();
+        this.linked = true;
+    }
+
+
+    /**
+     * Checks whether relationship linking is deferred.
+     * @return true if the linker runs in lazy mode
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+
+    /**
+     * Checks whether every submitted linking task has completed.
+     * @return true if the object graph is fully linked
+     */
+    public boolean isLinked() {
+        return linked;
+    }
+
+
+    /**
+     * Submits a linking task. Tasks run in submission order.
+     * @param task The task resolving references for one loaded record
+     */
+    public void submit(Runnable task) {
+        if (!lazy) {
+            Lock writeLock = dataLock.writeLock();
+            writeLock.lock();
+            try {
+                task.run();
+            } finally {
+                writeLock.unlock();
+            }
+            return;
+        }
+        synchronized (lock) {
+            pending.add(task);
+            linked = false;
+        }
+    }
+
+
+    /**
+     * Starts the background linker thread if there is pending work.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (linked || worker != null) {
+                return;
+            }
+            worker = new Thread(this::drainInBackground, "relationship-linker");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+
+    /**
+     * Blocks until the object graph is fully linked, running any remaining tasks on the calling thread.
+     * Calls made from inside a linking task return immediately, since the tasks already run in order.
+     * @throws IllegalStateException if tasks are pending and the calling thread holds only the data read lock,
+     *                               which cannot be upgraded to the write lock the tasks run under
+     */
+    public void ensureLinked() {
+        if (linked || Thread.holdsLock(lock)) {
+            return;
+        }
+        if (dataLock.getReadHoldCount() > 0 && !dataLock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Relationships must be linked before the data read lock is taken.");
+        }
+        Lock writeLock = dataLock.writeLock();
+        writeLock.lock();
+        try {
+            synchronized (lock) {
+                while (runNext()) {
+                    // Keep draining until the queue is empty
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Drains pending tasks one at a time, releasing the locks between tasks so that readers and writers are not
+     * held off for the whole drain and callers of ensureLinked can take over the remaining work.
+     */
+    private void drainInBackground() {
+        Lock writeLock = dataLock.writeLock();
+        while (true) {
+            writeLock.lock();
+            try {
+                synchronized (lock) {
+                    if (!runNext()) {
+                        worker = null;
+                        return;
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Runs the next pending task. Must be called while holding the data write lock and then the linker's lock.
+     * @return true if a task was run, false if the queue was empty
+     */
+    private boolean runNext() {
+        Runnable task = pending.poll();
+        if (task == null) {
+            linked = true;
+            return false;
+        }
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LoggerConfig.getLogger().log(Level.WARNING, "Failed to link record: " + e.getMessage(), e);
+        }
+        return true;
+    }
+}
@@ -4,9 +4,14 @@
 
 package com.rentalsystem.manager;
 
+import com.rentalsystem.model.Payment;
 import com.rentalsystem.model.Property;
 import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.query.Criteria;
+import java.time.YearMonth;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -101,6 +106,44 @@ public interface RentalManager extends CrudManager<RentalAgreement> {
     double getTotalRentalIncome();
 
 
+    /**
+     * Sums the payments received between two dates, inclusive.
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return The total amount received
+     */
+    double getIncomeReceived(Date from, Date to);
+
+
+    /**
+     * Sums the rent charges falling due in a month.
+     * @param month The month
+     * @return The total rent due in the month
+     */
+    double getExpectedRent(YearMonth month);
+
+
+    /**
+     * Counts the properties under lease on a date.
+     * @param date The date
+     * @return The number of occupied properties
+     */
+    int getOccupiedPropertyCount(Date date);
+
+
+    /**
+     * Sums the rent due and the payments received over a range of months, grouped by any of owner, host,
+     * property, property type and month.
+     * @param groupBy The levels to group by, in key order; empty for a single total
+     * @param filter The values to restrict each level to; months are given as yyyy-MM
+     * @param from The first month, inclusive
+     * @param to The last month, inclusive
+     * @return One row per group, ordered by key
+     */
+    List<IncomeCube.Row> getIncomeRollup(List<IncomeCube.Dimension> groupBy, Map<IncomeCube.Dimension, String> filter,
+                                         YearMonth from, YearMonth to);
+
+
     /**
      * Gets the total number of active rental agreements.
      * @return The total number of active rental agreements
@@ -124,6 +167,52 @@ public interface RentalManager extends CrudManager<RentalAgreement> {
     List<RentalAgreement> searchRentalAgreements(String keyword);
 
 
+    /**
+     * Finds rental agreements matching typed criteria.
+     * @param criteria The criteria to match
+     * @return A list of rental agreements matching the criteria
+     */
+    List<RentalAgreement> query(Criteria<RentalAgreement> criteria);
+
+
+    /**
+     * Describes how a query would be executed.
+     * @param criteria The criteria to plan
+     * @return A description of the chosen index or scan
+     */
+    String explain(Criteria<RentalAgreement> criteria);
+
+
+    /**
+     * Checks whether a property has no lease overlapping a date range.
+     * Lease periods include their end date, so a property is free from the day after its last lease ends.
+     * @param propertyId The ID of the property
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return true if the property is free for the whole range
+     */
+    boolean isPropertyAvailable(String propertyId, Date from, Date to);
+
+
+    /**
+     * Finds the properties with no lease overlapping a date range.
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return A list of the properties free for the whole range
+     */
+    List<Property> findAvailableProperties(Date from, Date to);
+
+
+    /**
+     * Gets the agreements on a property whose lease period overlaps a date range.
+     * @param propertyId The ID of the property
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return A list of the overlapping agreements
+     */
+    List<RentalAgreement> getOverlappingAgreements(String propertyId, Date from, Date to);
+
+
     /**
      * Extends the duration of a rental agreement.
      * @param agreementId The ID of the rental agreement to extend
@@ -139,6 +228,32 @@ public interface RentalManager extends CrudManager<RentalAgreement> {
     void terminateRentalAgreement(String agreementId);
 
 
+    /**
+     * Checks whether a rental agreement is held in compact off-heap storage instead of as a live object.
+     * Such agreements are materialized on demand and are not linked into their tenants, owner and host.
+     * @param agreementId The ID of the rental agreement
+     * @return true if the agreement is stored off-heap
+     */
+    boolean isStoredOffHeap(String agreementId);
+
+
+    /**
+     * Retrieves a rental agreement that has been moved to the archive, reading the archive on demand.
+     * The agreement is detached: it is not linked into its tenants, owner and host and changes to it are not saved.
+     * @param agreementId The ID of the rental agreement
+     * @return The archived rental agreement, or null if it has not been archived
+     */
+    RentalAgreement getArchived(String agreementId);
+
+
+    /**
+     * Retrieves the archived payments of an archived rental agreement.
+     * @param agreementId The ID of the rental agreement
+     * @return The archived payments, empty if the agreement has not been archived
+     */
+    List<Payment> getArchivedPayments(String agreementId);
+
+
     /**
      * Loads rental agreements from file into the system.
      */
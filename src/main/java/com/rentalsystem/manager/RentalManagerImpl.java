@@ -4,12 +4,27 @@
 
 package com.rentalsystem.manager;
 
+import com.rentalsystem.config.AppConfig;
 import com.rentalsystem.model.*;
+import com.rentalsystem.monitor.MutationEvent;
+import com.rentalsystem.query.Criteria;
+import com.rentalsystem.query.HashIndex;
+import com.rentalsystem.query.QueryEngine;
+import com.rentalsystem.query.RangeIndex;
+import com.rentalsystem.query.RelationIndex;
+import com.rentalsystem.query.RentalCriteria;
+import com.rentalsystem.util.DateUtil;
 import com.rentalsystem.util.FileHandler;
+import com.rentalsystem.util.IdDictionary;
+import com.rentalsystem.util.IntervalTree;
+import com.rentalsystem.util.OffHeapAgreementStore;
 
 import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.concurrent.locks.Lock;
 
 import static com.rentalsystem.util.FileHandler.DATE_FORMAT;
 
@@ -24,15 +39,71 @@ public class RentalManagerImpl implements RentalManager {
     private PropertyManager propertyManager;
     private HostManager hostManager;
     private OwnerManager ownerManager;
+    private final RelationshipLinker linker;
+    private final QueryEngine<RentalAgreement> queryEngine;
+    private final ChangeNotifier<RentalAgreement> notifier = new ChangeNotifier<>();
+
+    // Lease periods per property as epoch days, for availability searches and overlap checks
+    private final Map<String, IntervalTree<String>> leasesByProperty = new HashMap<>();
+    private final Map<String, Lease> indexedLeases = new HashMap<>();
+
+    // Day-indexed rent charges, payments and occupancy for time-range income queries
+    private final IncomeTimeline incomeTimeline = new IncomeTimeline();
+
+    // Month-level income per owner, host, property and property type, for portfolio rollups
+    private final IncomeCube incomeCube = new IncomeCube();
+    private long savedCubeVersion = -1;
+
+    // Off-heap storage of completed agreements, null when the mode is disabled
+    private final OffHeapAgreementStore offHeapStore;
+    private final Map<String, RentalAgreement> workingSet;
+    private final IdDictionary propertyHandles = new IdDictionary();
+    private final IdDictionary tenantHandles = new IdDictionary();
+    private final IdDictionary ownerHandles = new IdDictionary();
+    private final IdDictionary hostHandles = new IdDictionary();
 
     /**
      * Constructs a new RentalManagerImpl with the given FileHandler.
-     * Initializes the rentalAgreements map.
+     * Initializes the rentalAgreements map and the query indexes.
      * @param fileHandler The FileHandler to use for data persistence
      */
     public RentalManagerImpl(FileHandler fileHandler) {
         this.fileHandler = fileHandler;
         this.rentalAgreements = new HashMap<>();
+        this.linker = fileHandler.getLinker();
+        notifier.addListener(incomeTimeline.agreementListener());
+        notifier.addListener(incomeCube.agreementListener());
+
+        if (AppConfig.getBooleanProperty("storage.offheap.agreements", false)) {
+            int workingSetSize = AppConfig.getIntProperty("storage.offheap.workingSet", 1000);
+            this.offHeapStore = new OffHeapAgreementStore(AppConfig.getIntProperty("storage.offheap.slabRecords", 65536));
+            this.workingSet = Collections.synchronizedMap(new LinkedHashMap<String, RentalAgreement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RentalAgreement> eldest) {
+                    return size() > workingSetSize;
+                }
+            });
+        } else {
+            this.offHeapStore = null;
+            this.workingSet = null;
+        }
+
+        // Indexes only cover live agreements, so off-heap mode answers every query by scanning
+        this.queryEngine = new QueryEngine<>(this::getAll);
+        if (offHeapStore == null) {
+            queryEngine.addIndex(RentalCriteria.STATUS, new HashIndex<>(RentalAgreement::getStatus));
+            queryEngine.addIndex(RentalCriteria.START_DATE, new RangeIndex<>(a -> a.getStartDate().getTime()));
+            queryEngine.addIndex(RentalCriteria.END_DATE, new RangeIndex<>(a -> a.getEndDate().getTime()));
+            queryEngine.addIndex(RentalCriteria.RENT, new RangeIndex<>(RentalAgreement::getRentAmount));
+            queryEngine.addIndex(RentalCriteria.PROPERTY_ID, new HashIndex<>(a -> a.getProperty() == null ? null : a.getProperty().getPropertyId()));
+            queryEngine.addIndex(RentalCriteria.OWNER_ID, new HashIndex<>(a -> a.getOwner() == null ? null : a.getOwner().getId()));
+            queryEngine.addIndex(RentalCriteria.HOST_ID, new HashIndex<>(a -> a.getHost() == null ? null : a.getHost().getId()));
+            queryEngine.addIndex(RentalCriteria.TENANT_ID, new RelationIndex<>(id -> {
+                Tenant tenant = tenantManager.get((String) id);
+                return tenant == null ? null : tenant.getRentalAgreements();
+            }));
+        }
+        fileHandler.getSnapshots().register("rental_agreements.txt", this::rows);
     }
 
     /**
@@ -47,11 +118,16 @@ public class RentalManagerImpl implements RentalManager {
         this.propertyManager = propertyManager;
         this.hostManager = hostManager;
         this.ownerManager = ownerManager;
+        tenantManager.addPaymentListener(incomeTimeline.paymentListener());
+        tenantManager.addPaymentListener(incomeCube.paymentListener());
     }
 
 
     /**
      * Loads rental agreement data from the file system.
+     * Each agreement resolves its property, tenants, owner and host references when it is built, so
+     * construction is submitted to the RelationshipLinker, which defers it when lazy linking is enabled.
+     * In off-heap mode, completed agreements are encoded straight into the off-heap store instead.
      * Throws an IllegalStateException if dependencies are not set.
      */
     @Override
@@ -61,8 +137,18 @@ public class RentalManagerImpl implements RentalManager {
         }
 
         for (String[] parts : fileHandler.readLines("rental_agreements.txt")) {
-            RentalAgreement agreement = fromString(parts);
-            rentalAgreements.put(agreement.getAgreementId(), agreement);
+            if (offHeapStore != null && RentalAgreement.Status.COMPLETED.name().equals(parts[9])
+                    && OffHeapAgreementStore.fits(parts[0])) {
+                storeOffHeap(parts);
+                continue;
+            }
+            linker.submit(() -> {
+                RentalAgreement agreement = fromString(parts);
+                rentalAgreements.put(agreement.getAgreementId(), agreement);
+                queryEngine.index(agreement);
+                indexLease(agreement);
+                notifier.fireAdded(agreement);
+            });
         }
     }
 
@@ -75,7 +161,7 @@ public class RentalManagerImpl implements RentalManager {
         Date currentDate = new Date();
         if (agreement.getStartDate().after(currentDate)) {
             agreement.setStatus(RentalAgreement.Status.NEW);
-        } else if (agreement.getEndDate().before(currentDate)) {
+        } else if (!agreement.getEndDate().after(currentDate)) {
             agreement.setStatus(RentalAgreement.Status.COMPLETED);
         } else {
             agreement.setStatus(RentalAgreement.Status.ACTIVE);
@@ -87,15 +173,24 @@ public class RentalManagerImpl implements RentalManager {
      * Updates the statuses of all rental agreements in the system.
      */
     public void updateAgreementStatuses() {
-        Date currentDate = new Date();
-        for (RentalAgreement agreement : rentalAgreements.values()) {
-            if (currentDate.after(agreement.getEndDate())) {
-                agreement.setStatus(RentalAgreement.Status.COMPLETED);
-            } else if (currentDate.after(agreement.getStartDate()) && agreement.getStatus() == RentalAgreement.Status.NEW) {
-                agreement.setStatus(RentalAgreement.Status.ACTIVE);
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            Date currentDate = new Date();
+            for (RentalAgreement agreement : rentalAgreements.values()) {
+                if (currentDate.after(agreement.getEndDate())) {
+                    agreement.setStatus(RentalAgreement.Status.COMPLETED);
+                } else if (currentDate.after(agreement.getStartDate()) && agreement.getStatus() == RentalAgreement.Status.NEW) {
+                    agreement.setStatus(RentalAgreement.Status.ACTIVE);
+                }
+                queryEngine.index(agreement);
+                notifier.fireUpdated(agreement);
             }
+            saveToFile();
+        } finally {
+            writeLock.unlock();
         }
-        saveToFile();
     }
 
 
@@ -106,27 +201,43 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public void add(RentalAgreement agreement) {
-        if (rentalAgreements.containsKey(agreement.getAgreementId())) {
-            throw new IllegalArgumentException("Rental agreement with ID " + agreement.getAgreementId() + " already exists.");
-        }
-        rentalAgreements.put(agreement.getAgreementId(), agreement);
-        updateAgreementStatus(agreement);
-
-        Property property = propertyManager.get(agreement.getProperty().getPropertyId());
-        Host host = hostManager.get(agreement.getHost().getId());
-        Owner owner = ownerManager.get(agreement.getOwner().getId());
-        Tenant mainTenant = tenantManager.get(agreement.getMainTenant().getId());
-
-        property.addTenant(mainTenant);
-        mainTenant.addRentalAgreement(agreement);
-        host.addManagedAgreement(agreement);
-        owner.addRentalAgreement(agreement);
-
-        for (Tenant subTenant : agreement.getSubTenants()) {
-            property.addTenant(subTenant);
-            subTenant.addRentalAgreement(agreement);
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("RentalAgreement", "add", agreement.getAgreementId());
+            event.begin();
+            if (rentalAgreements.containsKey(agreement.getAgreementId()) || isStoredOffHeap(agreement.getAgreementId())
+                    || fileHandler.getArchive().containsAgreement(agreement.getAgreementId())) {
+                throw new IllegalArgumentException("Rental agreement with ID " + agreement.getAgreementId() + " already exists.");
+            }
+            checkNoOverlap(agreement.getAgreementId(), agreement.getProperty().getPropertyId(),
+                    agreement.getStartDate(), agreement.getEndDate());
+            rentalAgreements.put(agreement.getAgreementId(), agreement);
+            updateAgreementStatus(agreement);
+            queryEngine.index(agreement);
+            indexLease(agreement);
+
+            Property property = propertyManager.get(agreement.getProperty().getPropertyId());
+            Host host = hostManager.get(agreement.getHost().getId());
+            Owner owner = ownerManager.get(agreement.getOwner().getId());
+            Tenant mainTenant = tenantManager.get(agreement.getMainTenant().getId());
+
+            property.addTenant(mainTenant);
+            mainTenant.addRentalAgreement(agreement);
+            host.addManagedAgreement(agreement);
+            owner.addRentalAgreement(agreement);
+
+            for (Tenant subTenant : agreement.getSubTenants()) {
+                property.addTenant(subTenant);
+                subTenant.addRentalAgreement(agreement);
+            }
+            notifier.fireAdded(agreement);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        saveToFile();
     }
 
 
@@ -138,42 +249,61 @@ public class RentalManagerImpl implements RentalManager {
 
     @Override
     public void update(RentalAgreement agreement) {
-        if (!rentalAgreements.containsKey(agreement.getAgreementId())) {
-            throw new IllegalArgumentException("Rental agreement with ID " + agreement.getAgreementId() + " does not exist.");
-        }
-
-        RentalAgreement existingAgreement = rentalAgreements.get(agreement.getAgreementId());
-
-        Property property = propertyManager.get(agreement.getProperty().getPropertyId());
-        Host host = hostManager.get(agreement.getHost().getId());
-        Owner owner = ownerManager.get(agreement.getOwner().getId());
-        Tenant mainTenant = tenantManager.get(agreement.getMainTenant().getId());
-
-        // Remove old associations
-        property.removeTenant(existingAgreement.getMainTenant());
-        existingAgreement.getMainTenant().removeRentalAgreement(existingAgreement);
-        host.removeManagedAgreement(existingAgreement);
-        owner.removeRentalAgreement(existingAgreement);
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("RentalAgreement", "update", agreement.getAgreementId());
+            event.begin();
+            RentalAgreement existingAgreement = rentalAgreements.get(agreement.getAgreementId());
+            if (existingAgreement == null) {
+                existingAgreement = getOffHeap(agreement.getAgreementId());
+            }
+            if (existingAgreement == null) {
+                throw new IllegalArgumentException("Rental agreement with ID " + agreement.getAgreementId() + " does not exist.");
+            }
+            checkNoOverlap(agreement.getAgreementId(), agreement.getProperty().getPropertyId(),
+                    agreement.getStartDate(), agreement.getEndDate());
+
+            Property property = propertyManager.get(agreement.getProperty().getPropertyId());
+            Host host = hostManager.get(agreement.getHost().getId());
+            Owner owner = ownerManager.get(agreement.getOwner().getId());
+            Tenant mainTenant = tenantManager.get(agreement.getMainTenant().getId());
+
+            // Remove old associations
+            property.removeTenant(existingAgreement.getMainTenant());
+            existingAgreement.getMainTenant().removeRentalAgreement(existingAgreement);
+            host.removeManagedAgreement(existingAgreement);
+            owner.removeRentalAgreement(existingAgreement);
+
+            for (Tenant subTenant : existingAgreement.getSubTenants()) {
+                property.removeTenant(subTenant);
+                subTenant.removeRentalAgreement(existingAgreement);
+            }
 
-        for (Tenant subTenant : existingAgreement.getSubTenants()) {
-            property.removeTenant(subTenant);
-            subTenant.removeRentalAgreement(existingAgreement);
-        }
+            // Add new associations
+            updateAgreementStatus(agreement);
+            property.addTenant(mainTenant);
+            mainTenant.addRentalAgreement(agreement);
+            host.addManagedAgreement(agreement);
+            owner.addRentalAgreement(agreement);
 
-        // Add new associations
-        updateAgreementStatus(agreement);
-        property.addTenant(mainTenant);
-        mainTenant.addRentalAgreement(agreement);
-        host.addManagedAgreement(agreement);
-        owner.addRentalAgreement(agreement);
+            for (Tenant subTenant : agreement.getSubTenants()) {
+                property.addTenant(subTenant);
+                subTenant.addRentalAgreement(agreement);
+            }
 
-        for (Tenant subTenant : agreement.getSubTenants()) {
-            property.addTenant(subTenant);
-            subTenant.addRentalAgreement(agreement);
+            // An updated agreement becomes a live object again
+            rentalAgreements.put(agreement.getAgreementId(), agreement);
+            queryEngine.index(agreement);
+            indexLease(agreement);
+            notifier.fireUpdated(agreement);
+            removeOffHeap(agreement.getAgreementId());
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-
-        rentalAgreements.put(agreement.getAgreementId(), agreement);
-        saveToFile();
     }
 
     /**
@@ -183,27 +313,44 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public void delete(String agreementId) {
-        RentalAgreement agreement = rentalAgreements.remove(agreementId);
-        if (agreement == null) {
-            throw new IllegalArgumentException("Rental agreement with ID " + agreementId + " does not exist.");
-        }
-
-        Property property = propertyManager.get(agreement.getProperty().getPropertyId());
-        Host host = hostManager.get(agreement.getHost().getId());
-        Owner owner = ownerManager.get(agreement.getOwner().getId());
-        Tenant mainTenant = tenantManager.get(agreement.getMainTenant().getId());
-
-        property.removeTenant(mainTenant);
-        mainTenant.removeRentalAgreement(agreement);
-        host.removeManagedAgreement(agreement);
-        owner.removeRentalAgreement(agreement);
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("RentalAgreement", "delete", agreementId);
+            event.begin();
+            RentalAgreement agreement = rentalAgreements.remove(agreementId);
+            if (agreement == null) {
+                agreement = getOffHeap(agreementId);
+                removeOffHeap(agreementId);
+            }
+            if (agreement == null) {
+                throw new IllegalArgumentException("Rental agreement with ID " + agreementId + " does not exist.");
+            }
+            queryEngine.unindex(agreement);
+            unindexLease(agreementId);
+            notifier.fireRemoved(agreement);
+
+            Property property = propertyManager.get(agreement.getProperty().getPropertyId());
+            Host host = hostManager.get(agreement.getHost().getId());
+            Owner owner = ownerManager.get(agreement.getOwner().getId());
+            Tenant mainTenant = tenantManager.get(agreement.getMainTenant().getId());
+
+            property.removeTenant(mainTenant);
+            mainTenant.removeRentalAgreement(agreement);
+            host.removeManagedAgreement(agreement);
+            owner.removeRentalAgreement(agreement);
+
+            for (Tenant subTenant : agreement.getSubTenants()) {
+                property.removeTenant(subTenant);
+                subTenant.removeRentalAgreement(agreement);
+            }
 
-        for (Tenant subTenant : agreement.getSubTenants()) {
-            property.removeTenant(subTenant);
-            subTenant.removeRentalAgreement(agreement);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-
-        saveToFile();
     }
 
 
@@ -215,7 +362,15 @@ public class RentalManagerImpl implements RentalManager {
 
     @Override
     public RentalAgreement get(String agreementId) {
-        return rentalAgreements.get(agreementId);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            RentalAgreement agreement = rentalAgreements.get(agreementId);
+            return agreement != null ? agreement : getOffHeap(agreementId);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -224,7 +379,19 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public List<RentalAgreement> getAll() {
-        return new ArrayList<>(rentalAgreements.values());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<RentalAgreement> agreements = new ArrayList<>(rentalAgreements.values());
+            if (offHeapStore != null) {
+                // Historical records are materialized for the caller without entering the working set
+                offHeapStore.forEach(record -> agreements.add(materialize(record)));
+            }
+            return agreements;
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -235,39 +402,46 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public List<RentalAgreement> getSorted(String sortBy) {
-        List<RentalAgreement> sortedList = getAll();
-        switch (sortBy.toLowerCase()) {
-            case "id":
-                sortedList.sort(Comparator.comparing(RentalAgreement::getAgreementId));
-                break;
-            case "propertyid":
-                sortedList.sort(Comparator.comparing(a -> a.getProperty().getPropertyId()));
-                break;
-            case "tenantname":
-                sortedList.sort(Comparator.comparing(a -> a.getMainTenant().getFullName()));
-                break;
-            case "ownername":
-                sortedList.sort(Comparator.comparing(a -> a.getOwner().getFullName()));
-                break;
-            case "hostname":
-                sortedList.sort(Comparator.comparing(a -> a.getHost().getFullName()));
-                break;
-            case "startdate":
-                sortedList.sort(Comparator.comparing(RentalAgreement::getStartDate));
-                break;
-            case "enddate":
-                sortedList.sort(Comparator.comparing(RentalAgreement::getEndDate));
-                break;
-            case "rentamount":
-                sortedList.sort(Comparator.comparing(RentalAgreement::getRentAmount));
-                break;
-            case "status":
-                sortedList.sort(Comparator.comparing(RentalAgreement::getStatus));
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
-        }
-        return sortedList;
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<RentalAgreement> sortedList = getAll();
+            switch (sortBy.toLowerCase()) {
+                case "id":
+                    sortedList.sort(Comparator.comparing(RentalAgreement::getAgreementId));
+                    break;
+                case "propertyid":
+                    sortedList.sort(Comparator.comparing(a -> a.getProperty().getPropertyId()));
+                    break;
+                case "tenantname":
+                    sortedList.sort(Comparator.comparing(a -> a.getMainTenant().getFullName()));
+                    break;
+                case "ownername":
+                    sortedList.sort(Comparator.comparing(a -> a.getOwner().getFullName()));
+                    break;
+                case "hostname":
+                    sortedList.sort(Comparator.comparing(a -> a.getHost().getFullName()));
+                    break;
+                case "startdate":
+                    sortedList.sort(Comparator.comparing(RentalAgreement::getStartDate));
+                    break;
+                case "enddate":
+                    sortedList.sort(Comparator.comparing(RentalAgreement::getEndDate));
+                    break;
+                case "rentamount":
+                    sortedList.sort(Comparator.comparing(RentalAgreement::getRentAmount));
+                    break;
+                case "status":
+                    sortedList.sort(Comparator.comparing(RentalAgreement::getStatus));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+            }
+            return sortedList;
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -277,21 +451,28 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public void addSubTenant(String agreementId, String subTenantId) {
-        RentalAgreement agreement = get(agreementId);
-        if (agreement == null) {
-            System.out.println("Rental agreement with ID " + agreementId + " not found.");
-            return;
-        }
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            RentalAgreement agreement = get(agreementId);
+            if (agreement == null) {
+                System.out.println("Rental agreement with ID " + agreementId + " not found.");
+                return;
+            }
 
-        Tenant subTenant = tenantManager.get(subTenantId);
-        if (subTenant == null) {
-            System.out.println("Tenant with ID " + subTenantId + " not found.");
-            return;
-        }
+            Tenant subTenant = tenantManager.get(subTenantId);
+            if (subTenant == null) {
+                System.out.println("Tenant with ID " + subTenantId + " not found.");
+                return;
+            }
 
-        agreement.addSubTenant(subTenant);
-        update(agreement);
-        System.out.println("Sub-tenant added successfully to rental agreement " + agreementId);
+            agreement.addSubTenant(subTenant);
+            update(agreement);
+            System.out.println("Sub-tenant added successfully to rental agreement " + agreementId);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -302,15 +483,22 @@ public class RentalManagerImpl implements RentalManager {
 
     @Override
     public void removeSubTenant(String agreementId, String subTenantId) {
-        RentalAgreement agreement = get(agreementId);
-        if (agreement == null) {
-            System.out.println("Rental agreement with ID " + agreementId + " not found.");
-            return;
-        }
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            RentalAgreement agreement = get(agreementId);
+            if (agreement == null) {
+                System.out.println("Rental agreement with ID " + agreementId + " not found.");
+                return;
+            }
 
-        agreement.removeSubTenant(subTenantId);
-        update(agreement);
-        System.out.println("Sub-tenant with ID " + subTenantId + " removed from rental agreement " + agreementId);
+            agreement.removeSubTenant(subTenantId);
+            update(agreement);
+            System.out.println("Sub-tenant with ID " + subTenantId + " removed from rental agreement " + agreementId);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -319,10 +507,17 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public List<RentalAgreement> getActiveRentalAgreements() {
-        Date currentDate = new Date();
-        return getAll().stream()
-                .filter(agreement -> agreement.getEndDate().after(currentDate) && agreement.getStatus() == RentalAgreement.Status.ACTIVE)
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            Date currentDate = new Date();
+            return getLiveAgreements().stream()
+                    .filter(agreement -> agreement.getEndDate().after(currentDate) && agreement.getStatus() == RentalAgreement.Status.ACTIVE)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -331,10 +526,17 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public List<RentalAgreement> getExpiredRentalAgreements() {
-        Date currentDate = new Date();
-        return getAll().stream()
-                .filter(agreement -> agreement.getEndDate().before(currentDate) || agreement.getStatus() == RentalAgreement.Status.COMPLETED)
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            Date currentDate = new Date();
+            return getAll().stream()
+                    .filter(agreement -> agreement.getEndDate().before(currentDate) || agreement.getStatus() == RentalAgreement.Status.COMPLETED)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -343,10 +545,92 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public double getTotalRentalIncome() {
-        return getAll().stream()
-                .filter(agreement -> agreement.getStatus() == RentalAgreement.Status.ACTIVE)
-                .mapToDouble(RentalAgreement::getRentAmount)
-                .sum();
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return getLiveAgreements().stream()
+                    .filter(agreement -> agreement.getStatus() == RentalAgreement.Status.ACTIVE)
+                    .mapToDouble(RentalAgreement::getRentAmount)
+                    .sum();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Sums the payments received between two dates, inclusive.
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return The total amount received
+     */
+    @Override
+    public double getIncomeReceived(Date from, Date to) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return incomeTimeline.incomeReceived(DateUtil.toEpochDay(from), DateUtil.toEpochDay(to));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Sums the rent charges falling due in a month, one charge at the start of every rental period.
+     * @param month The month
+     * @return The total rent due in the month
+     */
+    @Override
+    public double getExpectedRent(YearMonth month) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return incomeTimeline.expectedRent(month.atDay(1).toEpochDay(), month.atEndOfMonth().toEpochDay());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Counts the properties under lease on a date.
+     * Overlapping leases on one property are rejected, so this is the number of agreements covering the date.
+     * @param date The date
+     * @return The number of occupied properties
+     */
+    @Override
+    public int getOccupiedPropertyCount(Date date) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return incomeTimeline.leasesOn(DateUtil.toEpochDay(date));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Sums the rent due and the payments received over a range of months from the income cube,
+     * in time proportional to the number of cells in the range.
+     * @param groupBy The levels to group by, in key order; empty for a single total
+     * @param filter The values to restrict each level to; months are given as yyyy-MM
+     * @param from The first month, inclusive
+     * @param to The last month, inclusive
+     * @return One row per group, ordered by key
+     */
+    @Override
+    public List<IncomeCube.Row> getIncomeRollup(List<IncomeCube.Dimension> groupBy, Map<IncomeCube.Dimension, String> filter,
+                                                YearMonth from, YearMonth to) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return incomeCube.rollup(groupBy, filter, from, to);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -355,7 +639,14 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public int getTotalActiveAgreements() {
-        return getActiveRentalAgreements().size();
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return getActiveRentalAgreements().size();
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -365,50 +656,296 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public List<RentalAgreement> searchRentalAgreements(String keyword) {
-        final String lowercaseKeyword = keyword.toLowerCase();
-        return getAll().stream()
-                .filter(agreement -> agreement.getAgreementId().toLowerCase().contains(lowercaseKeyword) ||
-                        agreement.getProperty().getAddress().toLowerCase().contains(lowercaseKeyword) ||
-                        agreement.getMainTenant().getFullName().toLowerCase().contains(lowercaseKeyword) ||
-                        agreement.getOwner().getFullName().toLowerCase().contains(lowercaseKeyword) ||
-                        agreement.getHost().getFullName().toLowerCase().contains(lowercaseKeyword))
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            final String lowercaseKeyword = keyword.toLowerCase();
+            return getAll().stream()
+                    .filter(agreement -> agreement.getAgreementId().toLowerCase().contains(lowercaseKeyword) ||
+                            agreement.getProperty().getAddress().toLowerCase().contains(lowercaseKeyword) ||
+                            agreement.getMainTenant().getFullName().toLowerCase().contains(lowercaseKeyword) ||
+                            agreement.getOwner().getFullName().toLowerCase().contains(lowercaseKeyword) ||
+                            agreement.getHost().getFullName().toLowerCase().contains(lowercaseKeyword))
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+
+
+    /**
+     * Finds the rental agreements matching typed criteria, using the most selective index available.
+     * @param criteria The criteria to match, built with RentalCriteria
+     * @return A list of RentalAgreement objects matching the criteria
+     */
+    @Override
+    public List<RentalAgreement> query(Criteria<RentalAgreement> criteria) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return queryEngine.execute(criteria);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Describes how a query would be executed.
+     * @param criteria The criteria to plan
+     * @return A description of the chosen index or scan
+     */
+    @Override
+    public String explain(Criteria<RentalAgreement> criteria) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return queryEngine.explain(criteria);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a property has no lease overlapping a date range.
+     * @param propertyId The ID of the property
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return true if no agreement on the property overlaps the range
+     */
+    @Override
+    public boolean isPropertyAvailable(String propertyId, Date from, Date to) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return findLeaseConflict(null, propertyId, DateUtil.toEpochDay(from), DateUtil.toEpochDay(to)) == null;
+        } finally {
+            readLock.unlock();
+        }
     }
 
+    /**
+     * Finds the properties with no lease overlapping a date range.
+     * Each property is checked against its own interval tree, so the cost grows with the number of
+     * properties and the log of the agreements per property, not with the total number of agreements.
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return A list of the properties free for the whole range, sorted by ID
+     */
+    @Override
+    public List<Property> findAvailableProperties(Date from, Date to) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            long start = DateUtil.toEpochDay(from);
+            long end = DateUtil.toEpochDay(to);
+            return propertyManager.getSorted("id").stream()
+                    .filter(property -> findLeaseConflict(null, property.getPropertyId(), start, end) == null)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
 
+    /**
+     * Gets the agreements on a property whose lease period overlaps a date range.
+     * @param propertyId The ID of the property
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return A list of the overlapping agreements, in order of start date
+     */
+    @Override
+    public List<RentalAgreement> getOverlappingAgreements(String propertyId, Date from, Date to) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<String> agreementIds;
+            synchronized (leasesByProperty) {
+                IntervalTree<String> leases = leasesByProperty.get(propertyId);
+                if (leases == null) {
+                    return new ArrayList<>();
+                }
+                agreementIds = leases.overlapping(DateUtil.toEpochDay(from), DateUtil.toEpochDay(to));
+            }
+            return agreementIds.stream()
+                    .map(this::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Rejects a lease period that overlaps another agreement on the same property.
+     * @param agreementId The ID of the agreement being checked, which is not compared with itself
+     * @param propertyId The ID of the property
+     * @param startDate The start date of the lease
+     * @param endDate The end date of the lease
+     * @throws IllegalArgumentException if another agreement on the property overlaps the period
+     */
+    private void checkNoOverlap(String agreementId, String propertyId, Date startDate, Date endDate) {
+        String conflict = findLeaseConflict(agreementId, propertyId, DateUtil.toEpochDay(startDate), DateUtil.toEpochDay(endDate));
+        if (conflict != null) {
+            throw new IllegalArgumentException("Property " + propertyId + " is already leased during this period under agreement " + conflict
+                    + ". Lease end dates are inclusive, so a new lease can start the day after another ends.");
+        }
+    }
+
+    /**
+     * Finds an agreement on a property whose lease overlaps a range of epoch days.
+     * Lease periods include both their start and end dates: the end date is the last day of occupancy,
+     * so a lease ending on a day conflicts with one starting that day, and a terminated agreement,
+     * which ends on the day it is terminated, frees the property from the next day.
+     * @param agreementId An agreement to ignore, or null
+     * @param propertyId The ID of the property
+     * @param start The first day of the range
+     * @param end The last day of the range
+     * @return The ID of the earliest overlapping agreement, or null if there is none
+     */
+    private String findLeaseConflict(String agreementId, String propertyId, long start, long end) {
+        synchronized (leasesByProperty) {
+            IntervalTree<String> leases = leasesByProperty.get(propertyId);
+            return leases != null ? leases.firstOverlapping(start, end, agreementId) : null;
+        }
+    }
+
+    /**
+     * Indexes the lease period of an agreement, replacing its previous period.
+     * @param agreement The agreement to index
+     */
+    private void indexLease(RentalAgreement agreement) {
+        if (agreement.getProperty() == null || agreement.getStartDate() == null || agreement.getEndDate() == null) {
+            return;
+        }
+        indexLease(agreement.getAgreementId(), agreement.getProperty().getPropertyId(),
+                DateUtil.toEpochDay(agreement.getStartDate()), DateUtil.toEpochDay(agreement.getEndDate()));
+    }
+
+    /**
+     * Indexes a lease period, replacing the previous period of the agreement.
+     * Periods ending before they start are skipped, since they cannot overlap anything.
+     * @param agreementId The ID of the agreement
+     * @param propertyId The ID of the leased property
+     * @param start The first day of the lease
+     * @param end The last day of the lease
+     */
+    private void indexLease(String agreementId, String propertyId, long start, long end) {
+        synchronized (leasesByProperty) {
+            unindexLease(agreementId);
+            if (end < start) {
+                return;
+            }
+            leasesByProperty.computeIfAbsent(propertyId, k -> new IntervalTree<>()).add(start, end, agreementId);
+            indexedLeases.put(agreementId, new Lease(propertyId, start, end));
+        }
+    }
+
+    /**
+     * Removes the lease period of an agreement from the index.
+     * @param agreementId The ID of the agreement
+     */
+    private void unindexLease(String agreementId) {
+        synchronized (leasesByProperty) {
+            Lease lease = indexedLeases.remove(agreementId);
+            if (lease == null) {
+                return;
+            }
+            IntervalTree<String> leases = leasesByProperty.get(lease.propertyId);
+            leases.remove(lease.start, lease.end, agreementId);
+            if (leases.size() == 0) {
+                leasesByProperty.remove(lease.propertyId);
+            }
+        }
+    }
 
     /**
      * Extends the end date of a rental agreement.
      * @param agreementId The ID of the agreement to extend
      * @param extensionDays The number of days to extend the agreement by
+     * @throws IllegalArgumentException if the agreement doesn't exist
      */
     @Override
     public void extendRentalAgreement(String agreementId, int extensionDays) {
-        RentalAgreement agreement = get(agreementId);
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(agreement.getEndDate());
-        calendar.add(Calendar.DAY_OF_YEAR, extensionDays);
-        agreement.setEndDate(calendar.getTime());
-        saveToFile();
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("RentalAgreement", "extend", agreementId);
+            event.begin();
+            RentalAgreement agreement = get(agreementId);
+            if (agreement == null) {
+                throw new IllegalArgumentException("Rental agreement with ID " + agreementId + " does not exist.");
+            }
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(agreement.getEndDate());
+            calendar.add(Calendar.DAY_OF_YEAR, extensionDays);
+            checkNoOverlap(agreementId, agreement.getProperty().getPropertyId(), agreement.getStartDate(), calendar.getTime());
+            agreement.setEndDate(calendar.getTime());
+            if (isStoredOffHeap(agreementId)) {
+                // A materialized off-heap record is a detached copy, so the change is written back through update
+                update(agreement);
+                event.commit();
+                return;
+            }
+            queryEngine.index(agreement);
+            indexLease(agreement);
+            notifier.fireUpdated(agreement);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
      * Terminates a rental agreement by setting its end date to the current date and status to COMPLETED.
      * @param agreementId The ID of the agreement to terminate
+     * @throws IllegalArgumentException if the agreement doesn't exist
      */
 
     @Override
     public void terminateRentalAgreement(String agreementId) {
-        RentalAgreement agreement = get(agreementId);
-        agreement.setEndDate(new Date());
-        agreement.setStatus(RentalAgreement.Status.COMPLETED);
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("RentalAgreement", "terminate", agreementId);
+            event.begin();
+            RentalAgreement agreement = get(agreementId);
+            if (agreement == null) {
+                throw new IllegalArgumentException("Rental agreement with ID " + agreementId + " does not exist.");
+            }
+            agreement.setEndDate(new Date());
+            agreement.setStatus(RentalAgreement.Status.COMPLETED);
+            // A materialized off-heap record is a detached copy, so the change is written back through update
+            boolean offHeap = isStoredOffHeap(agreementId);
+            if (offHeap) {
+                update(agreement);
+            } else {
+                queryEngine.index(agreement);
+                indexLease(agreement);
+                notifier.fireUpdated(agreement);
+            }
 
-        Property property = propertyManager.get(agreement.getProperty().getPropertyId());
-        property.removeTenant(agreement.getMainTenant());
-        for (Tenant subTenant : agreement.getSubTenants()) {
-            property.removeTenant(subTenant);
+            Property property = propertyManager.get(agreement.getProperty().getPropertyId());
+            property.removeTenant(agreement.getMainTenant());
+            for (Tenant subTenant : agreement.getSubTenants()) {
+                property.removeTenant(subTenant);
+            }
+            if (!offHeap) {
+                saveToFile();
+            }
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        saveToFile();
     }
 
     /**
@@ -418,10 +955,17 @@ public class RentalManagerImpl implements RentalManager {
      */
 
     public RentalAgreement findActiveRentalAgreement(Property property) {
-        return getAll().stream()
-                .filter(a -> a.getProperty().getPropertyId().equals(property.getPropertyId()) && a.getStatus() == RentalAgreement.Status.ACTIVE)
-                .findFirst()
-                .orElse(null);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return getLiveAgreements().stream()
+                    .filter(a -> a.getProperty().getPropertyId().equals(property.getPropertyId()) && a.getStatus() == RentalAgreement.Status.ACTIVE)
+                    .findFirst()
+                    .orElse(null);
+        } finally {
+            readLock.unlock();
+        }
     }
 
 
@@ -430,9 +974,44 @@ public class RentalManagerImpl implements RentalManager {
      */
     @Override
     public void saveToFile() {
+        linker.ensureLinked();
+        fileHandler.getSnapshots().changed("rental_agreements.txt");
+        if (fileHandler.deferSave("rental_agreements.txt", this::saveToFile)) {
+            return;
+        }
+        List<String[]> rentalAgreementLines = rows();
+
+        // The cube is saved in the same batch, so both files are replaced together
+        boolean ownBatch = !fileHandler.isBatchOpen();
+        if (ownBatch) {
+            fileHandler.beginBatch();
+        }
+        try {
+            fileHandler.saveRentalAgreements(rentalAgreementLines);
+            long cubeVersion = incomeCube.getVersion();
+            if (cubeVersion != savedCubeVersion) {
+                fileHandler.writeLines("income_cube.txt", incomeCube.toRows());
+            }
+            if (ownBatch) {
+                fileHandler.commitBatch();
+            }
+            savedCubeVersion = cubeVersion;
+        } catch (RuntimeException e) {
+            if (ownBatch) {
+                fileHandler.abortBatch();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the rows of rental_agreements.txt from the live and off-heap agreements, sorted by ID.
+     * @return The rows, one per agreement
+     */
+    private List<String[]> rows() {
         List<String[]> rentalAgreementLines = new ArrayList<>();
 
-        for (RentalAgreement agreement : getSorted("id")) {
+        for (RentalAgreement agreement : getLiveAgreements()) {
             String tenantIds = agreement.getMainTenant().getId() + ";" +
                     agreement.getSubTenants().stream()
                             .map(Tenant::getId)
@@ -452,7 +1031,222 @@ public class RentalManagerImpl implements RentalManager {
             });
         }
 
-        fileHandler.saveRentalAgreements(rentalAgreementLines);
+        if (offHeapStore != null) {
+            offHeapStore.forEach(record -> rentalAgreementLines.add(offHeapLine(record)));
+        }
+        rentalAgreementLines.sort(Comparator.comparing(line -> line[0]));
+        return rentalAgreementLines;
+    }
+
+    /**
+     * Gets the agreements held as live objects, excluding those in off-heap storage.
+     * Off-heap storage only holds completed agreements, so queries over active agreements only need these.
+     * @return A list of the live RentalAgreement objects
+     */
+    private List<RentalAgreement> getLiveAgreements() {
+        return new ArrayList<>(rentalAgreements.values());
+    }
+
+    /**
+     * Checks whether a rental agreement is held in compact off-heap storage instead of as a live object.
+     * @param agreementId The ID of the rental agreement
+     * @return true if the agreement is stored off-heap
+     */
+    @Override
+    public boolean isStoredOffHeap(String agreementId) {
+        return offHeapStore != null && offHeapStore.contains(agreementId);
+    }
+
+    /**
+     * Retrieves a rental agreement that has been moved to the archive, reading the archive on demand.
+     * @param agreementId The ID of the rental agreement
+     * @return The detached archived RentalAgreement, or null if it has not been archived
+     */
+    @Override
+    public RentalAgreement getArchived(String agreementId) {
+        String[] parts = fileHandler.getArchive().findAgreement(agreementId);
+        if (parts == null) {
+            return null;
+        }
+        String[] tenantIds = parts[2].split(";");
+        List<Tenant> subTenants = Arrays.stream(tenantIds).skip(1)
+                .map(tenantManager::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        try {
+            return RentalAgreement.restore(
+                    parts[0],
+                    propertyManager.get(parts[1]),
+                    tenantManager.get(tenantIds[0]),
+                    subTenants,
+                    ownerManager.get(parts[3]),
+                    hostManager.get(parts[4]),
+                    DATE_FORMAT.parse(parts[5]),
+                    DATE_FORMAT.parse(parts[6]),
+                    Double.parseDouble(parts[7]),
+                    RentalAgreement.RentalPeriod.valueOf(parts[8]),
+                    RentalAgreement.Status.valueOf(parts[9])
+            );
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Retrieves the archived payments of an archived rental agreement.
+     * @param agreementId The ID of the rental agreement
+     * @return The archived payments, empty if the agreement has not been archived
+     */
+    @Override
+    public List<Payment> getArchivedPayments(String agreementId) {
+        List<Payment> payments = new ArrayList<>();
+        for (String[] parts : fileHandler.getArchive().findPayments(agreementId)) {
+            try {
+                payments.add(new Payment(
+                        parts[0],
+                        parts[1],
+                        this::getArchived,
+                        tenantManager.get(parts[2]),
+                        DATE_FORMAT.parse(parts[3]),
+                        Double.parseDouble(parts[4]),
+                        parts[5]
+                ));
+            } catch (ParseException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return payments;
+    }
+
+    /**
+     * Encodes a completed agreement row into the off-heap store without building the object graph.
+     * @param parts The string array containing rental agreement data
+     */
+    private void storeOffHeap(String[] parts) {
+        // Payments of off-heap agreements keep the agreement ID, so it is shared with them through the pool
+        String agreementId = fileHandler.intern(parts[0]);
+        String propertyId = fileHandler.intern(parts[1]);
+        String ownerId = fileHandler.intern(parts[3]);
+        String hostId = fileHandler.intern(parts[4]);
+        String[] tenantIds = parts[2].split(";");
+        int[] subTenants = Arrays.stream(tenantIds).skip(1)
+                .filter(id -> !id.isEmpty())
+                .map(fileHandler::intern)
+                .mapToInt(tenantHandles::encode)
+                .toArray();
+        int startDay = (int) LocalDate.parse(parts[5]).toEpochDay();
+        int endDay = (int) LocalDate.parse(parts[6]).toEpochDay();
+        offHeapStore.put(
+                agreementId,
+                propertyHandles.encode(propertyId),
+                tenantHandles.encode(fileHandler.intern(tenantIds[0])),
+                subTenants,
+                ownerHandles.encode(ownerId),
+                hostHandles.encode(hostId),
+                startDay,
+                endDay,
+                Double.parseDouble(parts[7]),
+                RentalAgreement.RentalPeriod.valueOf(parts[8]).ordinal(),
+                RentalAgreement.Status.valueOf(parts[9]).ordinal()
+        );
+        indexLease(agreementId, propertyId, startDay, endDay);
+        // Listeners are told of the agreement like any other loaded one, through a detached copy that is not
+        // kept in the working set, and like the others once its property and tenants are linked
+        linker.submit(() -> {
+            int record = offHeapStore.find(agreementId);
+            if (record >= 0) {
+                notifier.fireAdded(materialize(record));
+            }
+        });
+    }
+
+    /**
+     * Looks up an agreement in off-heap storage, materializing it through the working set cache.
+     * @param agreementId The ID of the rental agreement
+     * @return The materialized RentalAgreement, or null if it is not stored off-heap
+     */
+    private RentalAgreement getOffHeap(String agreementId) {
+        if (offHeapStore == null) {
+            return null;
+        }
+        RentalAgreement cached = workingSet.get(agreementId);
+        if (cached != null) {
+            return cached;
+        }
+        int record = offHeapStore.find(agreementId);
+        if (record < 0) {
+            return null;
+        }
+        RentalAgreement agreement = materialize(record);
+        workingSet.put(agreementId, agreement);
+        return agreement;
+    }
+
+    /**
+     * Removes an agreement from off-heap storage and the working set.
+     * @param agreementId The ID of the rental agreement
+     */
+    private void removeOffHeap(String agreementId) {
+        if (offHeapStore != null) {
+            offHeapStore.remove(agreementId);
+            workingSet.remove(agreementId);
+        }
+    }
+
+    /**
+     * Builds a detached RentalAgreement from an off-heap record.
+     * @param record The record number in the off-heap store
+     * @return The materialized RentalAgreement
+     */
+    private RentalAgreement materialize(int record) {
+        List<Tenant> subTenants = new ArrayList<>();
+        for (int handle : offHeapStore.subTenantHandles(record)) {
+            Tenant subTenant = tenantManager.get(tenantHandles.decode(handle));
+            if (subTenant != null) {
+                subTenants.add(subTenant);
+            }
+        }
+        return RentalAgreement.restore(
+                offHeapStore.agreementId(record),
+                propertyManager.get(propertyHandles.decode(offHeapStore.propertyHandle(record))),
+                tenantManager.get(tenantHandles.decode(offHeapStore.mainTenantHandle(record))),
+                subTenants,
+                ownerManager.get(ownerHandles.decode(offHeapStore.ownerHandle(record))),
+                hostManager.get(hostHandles.decode(offHeapStore.hostHandle(record))),
+                DateUtil.fromEpochDay(offHeapStore.startDay(record)),
+                DateUtil.fromEpochDay(offHeapStore.endDay(record)),
+                offHeapStore.rentAmount(record),
+                RentalAgreement.RentalPeriod.values()[offHeapStore.periodOrdinal(record)],
+                RentalAgreement.Status.values()[offHeapStore.statusOrdinal(record)]
+        );
+    }
+
+    /**
+     * Converts an off-heap record straight to its file representation without materializing it.
+     * @param record The record number in the off-heap store
+     * @return The string array representation of the agreement
+     */
+    private String[] offHeapLine(int record) {
+        StringBuilder tenantIds = new StringBuilder(tenantHandles.decode(offHeapStore.mainTenantHandle(record))).append(';');
+        int[] subTenants = offHeapStore.subTenantHandles(record);
+        for (int i = 0; i < subTenants.length; i++) {
+            if (i > 0) {
+                tenantIds.append(';');
+            }
+            tenantIds.append(tenantHandles.decode(subTenants[i]));
+        }
+        return new String[] {
+                offHeapStore.agreementId(record),
+                propertyHandles.decode(offHeapStore.propertyHandle(record)),
+                tenantIds.toString(),
+                ownerHandles.decode(offHeapStore.ownerHandle(record)),
+                hostHandles.decode(offHeapStore.hostHandle(record)),
+                LocalDate.ofEpochDay(offHeapStore.startDay(record)).toString(),
+                LocalDate.ofEpochDay(offHeapStore.endDay(record)).toString(),
+                String.valueOf(offHeapStore.rentAmount(record)),
+                RentalAgreement.RentalPeriod.values()[offHeapStore.periodOrdinal(record)].toString(),
+                RentalAgreement.Status.values()[offHeapStore.statusOrdinal(record)].toString()
+        };
     }
 
     /**
@@ -466,15 +1260,17 @@ public class RentalManagerImpl implements RentalManager {
         Property property = propertyManager.get(parts[1]);
         String[] tenantIds = parts[2].split(";");
         Tenant mainTenant = tenantManager.get(tenantIds[0]);
+        // Sub-tenants missing from the tenants file are dropped rather than linked as null
         List<Tenant> subTenants = Arrays.stream(tenantIds).skip(1)
                 .map(tenantManager::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         Owner owner = ownerManager.get(parts[3]);
         Host host = hostManager.get(parts[4]);
 
         try {
             RentalAgreement agreement = new RentalAgreement(
-                    parts[0],
+                    fileHandler.intern(parts[0]),
                     property,
                     mainTenant,
                     owner,
@@ -491,4 +1287,32 @@ public class RentalManagerImpl implements RentalManager {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Registers a listener notified when rental agreements are loaded, added, updated or deleted.
+     * Agreements held in off-heap storage are not reported.
+     * @param listener The listener to register
+     */
+    @Override
+    public void addChangeListener(EntityListener<RentalAgreement> listener) {
+        notifier.addListener(listener);
+    }
+
+
+    /**
+     * The lease period an agreement was indexed under, kept so it can be removed after the agreement changes.
+     */
+    private static class Lease {
+        private final String propertyId;
+        private final long start;
+        private final long end;
+
+
+        private Lease(String propertyId, long start, long end) {
+            this.propertyId = propertyId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
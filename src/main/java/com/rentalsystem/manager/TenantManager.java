@@ -4,6 +4,7 @@
 package com.rentalsystem.manager;
 
 import java.util.List;
+import com.rentalsystem.model.Payment;
 import com.rentalsystem.model.Tenant;
 
 
@@ -56,6 +57,15 @@ public interface TenantManager extends CrudManager<Tenant> {
     List<Tenant> search(String keyword);
 
 
+    /**
+     * Searches for tenants whose full name approximately matches a query.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of tenants ranked by closeness
+     */
+    List<Tenant> searchFuzzy(String query, int maxDistance);
+
+
     /**
      * Checks if an email is already taken by any tenant.
      * @param email The email to check
@@ -84,4 +94,19 @@ public interface TenantManager extends CrudManager<Tenant> {
      * Loads payments for all tenants from file.
      */
     void loadPayments();
+
+
+    /**
+     * Records a new payment by a tenant and appends it to the payments file.
+     * @param payment The payment to record
+     * @throws IllegalStateException if called inside a unit of work
+     */
+    void addPayment(Payment payment);
+
+
+    /**
+     * Registers a listener notified when payments are loaded or recorded.
+     * @param listener The listener to register
+     */
+    void addPaymentListener(EntityListener<Payment> listener);
 }
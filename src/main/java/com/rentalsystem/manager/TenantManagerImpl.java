@@ -10,12 +10,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
 
 
+import com.rentalsystem.config.LoggerConfig;
 import com.rentalsystem.model.Payment;
 import com.rentalsystem.model.Tenant;
+import com.rentalsystem.monitor.MutationEvent;
 import com.rentalsystem.util.FileHandler;
 
 
@@ -30,6 +34,10 @@ import static com.rentalsystem.util.InputValidator.isValidEmail;
 public class TenantManagerImpl implements TenantManager {
     private Map<String, Tenant> tenants;
     private FileHandler fileHandler;
+    private final RelationshipLinker linker;
+    private final ChangeNotifier<Tenant> notifier = new ChangeNotifier<>();
+    private final ChangeNotifier<Payment> paymentNotifier = new ChangeNotifier<>();
+    private final FuzzyIndex<Tenant> fuzzyIndex = new FuzzyIndex<>(Tenant::getId, Tenant::getFullName);
 
 
     /**
@@ -39,14 +47,22 @@ public class TenantManagerImpl implements TenantManager {
     public TenantManagerImpl(FileHandler fileHandler) {
         this.fileHandler = fileHandler;
         this.tenants = new HashMap<>();
+        this.linker = fileHandler.getLinker();
+        notifier.addListener(fuzzyIndex);
+        fileHandler.getSnapshots().register("tenants.txt", this::rows);
     }
 
 
     /**
      * Loads tenants from file into the system.
      */
+    @Override
     public void load() {
-        fileHandler.loadTenants();
+        for (String[] parts : fileHandler.readLines("tenants.txt")) {
+            Tenant tenant = fromString(parts);
+            tenants.put(tenant.getId(), tenant);
+            notifier.fireAdded(tenant);
+        }
     }
 
 
@@ -57,14 +73,25 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public void add(Tenant tenant) {
-        if (!isValidEmail(tenant.getContactInformation())) {
-            throw new IllegalArgumentException("Invalid email format.");
-        }
-        if (isEmailTaken(tenant.getContactInformation())) {
-            throw new IllegalArgumentException("Email already in use: " + tenant.getContactInformation());
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Tenant", "add", tenant.getId());
+            event.begin();
+            if (!isValidEmail(tenant.getContactInformation())) {
+                throw new IllegalArgumentException("Invalid email format.");
+            }
+            if (isEmailTaken(tenant.getContactInformation())) {
+                throw new IllegalArgumentException("Email already in use: " + tenant.getContactInformation());
+            }
+            tenants.put(tenant.getId(), tenant);
+            notifier.fireAdded(tenant);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        tenants.put(tenant.getId(), tenant);
-        saveToFile();
     }
 
     /**
@@ -74,18 +101,29 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public void update(Tenant tenant) {
-        if (!isValidEmail(tenant.getContactInformation())) {
-            throw new IllegalArgumentException("Invalid email format for tenant: " + tenant.getContactInformation());
-        }
-        Tenant existingTenant = tenants.get(tenant.getId());
-        if (existingTenant == null) {
-            throw new IllegalArgumentException("Tenant with ID " + tenant.getId() + " does not exist.");
-        }
-        if (!existingTenant.getContactInformation().equals(tenant.getContactInformation()) && isEmailTaken(tenant.getContactInformation())) {
-            throw new IllegalArgumentException("Email already in use: " + tenant.getContactInformation());
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Tenant", "update", tenant.getId());
+            event.begin();
+            if (!isValidEmail(tenant.getContactInformation())) {
+                throw new IllegalArgumentException("Invalid email format for tenant: " + tenant.getContactInformation());
+            }
+            Tenant existingTenant = tenants.get(tenant.getId());
+            if (existingTenant == null) {
+                throw new IllegalArgumentException("Tenant with ID " + tenant.getId() + " does not exist.");
+            }
+            if (!existingTenant.getContactInformation().equals(tenant.getContactInformation()) && isEmailTaken(tenant.getContactInformation())) {
+                throw new IllegalArgumentException("Email already in use: " + tenant.getContactInformation());
+            }
+            tenants.put(tenant.getId(), tenant);
+            notifier.fireUpdated(tenant);
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
-        tenants.put(tenant.getId(), tenant);
-        saveToFile();
     }
 
     /**
@@ -94,8 +132,18 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public void delete(String id) {
-        tenants.remove(id);
-        saveToFile();
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Tenant", "delete", id);
+            event.begin();
+            notifier.fireRemoved(tenants.remove(id));
+            saveToFile();
+            event.commit();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -105,7 +153,14 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public Tenant get(String id) {
-        return tenants.get(id);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return tenants.get(id);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -114,7 +169,14 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public List<Tenant> getAll() {
-        return new ArrayList<>(tenants.values());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return new ArrayList<>(tenants.values());
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -125,36 +187,84 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public List<Tenant> getSorted(String sortBy) {
-        List<Tenant> sortedList = new ArrayList<>(tenants.values());
-        switch (sortBy.toLowerCase()) {
-            case "id":
-                sortedList.sort(Comparator.comparing(Tenant::getId));
-                break;
-            case "name":
-                sortedList.sort(Comparator.comparing(Tenant::getFullName));
-                break;
-            case "dob":
-                sortedList.sort(Comparator.comparing(Tenant::getDateOfBirth));
-                break;
-            case "email":
-                sortedList.sort(Comparator.comparing(Tenant::getContactInformation));
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            List<Tenant> sortedList = new ArrayList<>(tenants.values());
+            switch (sortBy.toLowerCase()) {
+                case "id":
+                    sortedList.sort(Comparator.comparing(Tenant::getId));
+                    break;
+                case "name":
+                    sortedList.sort(Comparator.comparing(Tenant::getFullName));
+                    break;
+                case "dob":
+                    sortedList.sort(Comparator.comparing(Tenant::getDateOfBirth));
+                    break;
+                case "email":
+                    sortedList.sort(Comparator.comparing(Tenant::getContactInformation));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid sort criteria: " + sortBy);
+            }
+            return sortedList;
+        } finally {
+            readLock.unlock();
         }
-        return sortedList;
     }
 
     /**
      * Loads payments for all tenants from the file system.
+     * Payments reference rental agreements, so loading is submitted to the RelationshipLinker and runs
+     * after the agreements have been linked.
      */
     @Override
     public void loadPayments() {
-        for (Payment p : fileHandler.loadPayments()) {
-            Tenant tenant = tenants.get(p.getTenant().getId());
-            if (tenant != null) {
-                tenant.addPayment(p);
+        linker.submit(() -> {
+            for (Payment p : fileHandler.loadPayments()) {
+                Tenant tenant = tenants.get(p.getTenant().getId());
+                if (tenant != null) {
+                    tenant.addPayment(p);
+                    paymentNotifier.fireAdded(p);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records a new payment by a tenant. Payments are append-only, so the payment is appended to the
+     * payments file instead of rewriting it. The append cannot be undone, so payments are not recorded
+     * inside a unit of work.
+     * @param payment The payment to record
+     * @throws IllegalArgumentException if the tenant of the payment doesn't exist
+     * @throws IllegalStateException if called inside a unit of work or another open batch
+     */
+    @Override
+    public void addPayment(Payment payment) {
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            MutationEvent event = new MutationEvent("Payment", "add", payment.getPaymentId());
+            event.begin();
+            Tenant tenant = payment.getTenant() != null ? tenants.get(payment.getTenant().getId()) : null;
+            if (tenant == null) {
+                throw new IllegalArgumentException("Tenant not found for payment " + payment.getPaymentId());
             }
+            fileHandler.appendPayment(new String[] {
+                    payment.getPaymentId(),
+                    payment.getRentalAgreementId(),
+                    tenant.getId(),
+                    FileHandler.DATE_FORMAT.format(payment.getPaymentDate()),
+                    String.format("%.2f", payment.getAmount()),
+                    payment.getPaymentMethod()
+            });
+            tenant.addPayment(payment);
+            paymentNotifier.fireAdded(payment);
+            event.commit();
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -166,13 +276,39 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public List<Tenant> search(String keyword) {
-        final String lowercaseKeyword = keyword.toLowerCase();
-        return tenants.values().stream()
-                .filter(tenant ->
-                        tenant.getFullName().toLowerCase().contains(lowercaseKeyword) ||
-                                tenant.getId().toLowerCase().contains(lowercaseKeyword) ||
-                                tenant.getContactInformation().toLowerCase().contains(lowercaseKeyword))
-                .collect(Collectors.toList());
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            final String lowercaseKeyword = keyword.toLowerCase();
+            return tenants.values().stream()
+                    .filter(tenant ->
+                            tenant.getFullName().toLowerCase().contains(lowercaseKeyword) ||
+                                    tenant.getId().toLowerCase().contains(lowercaseKeyword) ||
+                                    tenant.getContactInformation().toLowerCase().contains(lowercaseKeyword))
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for tenants whose full name approximately matches a query, tolerating typos.
+     * Every word of the query must be within the edit distance of a word of the full name.
+     * @param query The search text
+     * @param maxDistance The maximum edit distance per word
+     * @return A list of Tenant objects ranked by closeness
+     */
+    @Override
+    public List<Tenant> searchFuzzy(String query, int maxDistance) {
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return fuzzyIndex.search(query, maxDistance, tenants::get);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -182,10 +318,17 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public Tenant getByEmail(String email) {
-        return tenants.values().stream()
-                .filter(tenant -> tenant.getContactInformation().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            return tenants.values().stream()
+                    .filter(tenant -> tenant.getContactInformation().equalsIgnoreCase(email))
+                    .findFirst()
+                    .orElse(null);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -195,9 +338,16 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public boolean isEmailTaken(String email) {
-        final String lowercaseEmail = email.toLowerCase();
-        return tenants.values().stream()
-                .anyMatch(tenant -> tenant.getContactInformation().toLowerCase().equals(lowercaseEmail));
+        linker.ensureLinked();
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            final String lowercaseEmail = email.toLowerCase();
+            return tenants.values().stream()
+                    .anyMatch(tenant -> tenant.getContactInformation().toLowerCase().equals(lowercaseEmail));
+        } finally {
+            readLock.unlock();
+        }
     }
 
 
@@ -209,16 +359,24 @@ public class TenantManagerImpl implements TenantManager {
      * @throws IllegalArgumentException if the new email is invalid or already in use by another tenant
      */
     public boolean update(Tenant tenant, String newEmail) {
-        if (!isValidEmail(newEmail)) {
-            throw new IllegalArgumentException("Invalid email format for tenant: " + newEmail);
-        }
-        Tenant existingTenant = getByEmail(newEmail);
-        if (existingTenant != null && !existingTenant.getId().equals(tenant.getId())) {
-            throw new IllegalArgumentException("Email is already in use by another tenant.");
+        linker.ensureLinked();
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            if (!isValidEmail(newEmail)) {
+                throw new IllegalArgumentException("Invalid email format for tenant: " + newEmail);
+            }
+            Tenant existingTenant = getByEmail(newEmail);
+            if (existingTenant != null && !existingTenant.getId().equals(tenant.getId())) {
+                throw new IllegalArgumentException("Email is already in use by another tenant.");
+            }
+            tenant.setContactInformation(newEmail);
+            tenants.put(tenant.getId(), tenant);
+            notifier.fireUpdated(tenant);
+            return true;
+        } finally {
+            writeLock.unlock();
         }
-        tenant.setContactInformation(newEmail);
-        tenants.put(tenant.getId(), tenant);
-        return true;
     }
 
     /**
@@ -226,23 +384,34 @@ public class TenantManagerImpl implements TenantManager {
      */
     @Override
     public void saveToFile() {
+        linker.ensureLinked();
+        fileHandler.getSnapshots().changed("tenants.txt");
+        if (fileHandler.deferSave("tenants.txt", this::saveToFile)) {
+            return;
+        }
         try {
-            List<String[]> lines = getSorted("id").stream()
-                    .map(entity -> new String[]{
-                            entity.getId(),
-                            entity.getFullName(),
-                            DATE_FORMAT.format(entity.getDateOfBirth()),
-                            entity.getContactInformation()
-                    })
-                    .collect(Collectors.toList());
-            fileHandler.saveTenants(lines);
+            fileHandler.saveTenants(rows());
         } catch (Exception e) {
-            System.out.println("Error in TenantManagerImpl.saveToFile(): " + e.getMessage());
-            e.printStackTrace();
+            LoggerConfig.getLogger().log(Level.WARNING, "Error in TenantManagerImpl.saveToFile(): " + e.getMessage(), e);
             throw e;
         }
     }
 
+    /**
+     * Builds the rows of tenants.txt from the tenants in memory, sorted by ID.
+     * @return The rows, one per tenant
+     */
+    private List<String[]> rows() {
+        return getSorted("id").stream()
+                .map(entity -> new String[]{
+                        entity.getId(),
+                        entity.getFullName(),
+                        DATE_FORMAT.format(entity.getDateOfBirth()),
+                        entity.getContactInformation()
+                })
+                .collect(Collectors.toList());
+    }
+
     /**
      * Creates a Tenant object from a string array representation.
      * @param parts The string array containing tenant data
@@ -253,7 +422,7 @@ public class TenantManagerImpl implements TenantManager {
     public Tenant fromString(String[] parts) {
         try {
             return new Tenant(
-                    parts[0],
+                    fileHandler.intern(parts[0]),
                     parts[1],
                     DATE_FORMAT.parse(parts[2]),
                     parts[3]
@@ -262,4 +431,24 @@ public class TenantManagerImpl implements TenantManager {
             throw new IllegalArgumentException("Invalid date format: " + parts[2], e);
         }
     }
+
+
+    /**
+     * Registers a listener notified when tenants are loaded, added, updated or deleted.
+     * @param listener The listener to register
+     */
+    @Override
+    public void addChangeListener(EntityListener<Tenant> listener) {
+        notifier.addListener(listener);
+    }
+
+
+    /**
+     * Registers a listener notified when payments are loaded or recorded.
+     * @param listener The listener to register
+     */
+    @Override
+    public void addPaymentListener(EntityListener<Payment> listener) {
+        paymentNotifier.addListener(listener);
+    }
 }
@@ -0,0 +1,262 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.util.FileHandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+
+/**
+ * Groups changes across managers so they are applied and persisted as one.
+ * Changes are staged first, then on commit they are validated together, applied in order, and every touched
+ * data file is written once inside a FileHandler batch: all files are written next to their targets first, then
+ * renamed into place one by one while the replaced files are kept as backups. The data lock is held throughout,
+ * so no reader or snapshot sees the unit half applied.
+ * If validation fails nothing is applied; if applying or writing fails, the changes already applied are undone
+ * in reverse order and no data file is replaced; if renaming a file into place fails, the files already replaced
+ * are restored from their backups as well. Only a crash part-way through the renames can leave some files replaced.
+ * Example: new UnitOfWork(fileHandler).add(tenantManager, "T100", tenant).add(rentalManager, "RA100", agreement).commit();
+ */
+public class UnitOfWork {
+    private final FileHandler fileHandler;
+    private final List<Step> steps = new ArrayList<>();
+    private final Set<CrudManager<?>> touched = new LinkedHashSet<>();
+    private boolean committed;
+
+
+    /**
+     * Constructs a new, empty UnitOfWork.
+     * @param fileHandler The FileHandler shared by the managers the changes are made through
+     */
+    public UnitOfWork(FileHandler fileHandler) {
+        this.fileHandler = fileHandler;
+    }
+
+
+    /**
+     * Stages adding an entity. Undone by deleting it again.
+     * @param manager The manager holding entities of this type
+     * @param id The ID of the entity
+     * @param entity The entity to add
+     * @return This unit of work
+     */
+    public <T> UnitOfWork add(CrudManager<T> manager, String id, T entity) {
+        return stage(new Step(manager, id, Expect.ABSENT, Expect.PRESENT, "add") {
+            @Override
+            Runnable apply() {
+                manager.add(entity);
+                return () -> manager.delete(id);
+            }
+        });
+    }
+
+
+    /**
+     * Stages updating an entity. Undone by updating it back to the instance it replaced, so stage a changed
+     * copy rather than an instance already edited in place if the update must be undoable.
+     * @param manager The manager holding entities of this type
+     * @param id The ID of the entity
+     * @param entity The updated entity
+     * @return This unit of work
+     */
+    public <T> UnitOfWork update(CrudManager<T> manager, String id, T entity) {
+        return stage(new Step(manager, id, Expect.PRESENT, Expect.PRESENT, "update") {
+            @Override
+            Runnable apply() {
+                T previous = manager.get(id);
+                manager.update(entity);
+                return previous == entity ? null : () -> manager.update(previous);
+            }
+        });
+    }
+
+
+    /**
+     * Stages deleting an entity. Undone by adding the deleted instance back with the relationships the
+     * delete removed, as captured by CrudManager.deleteRestorable.
+     * @param manager The manager holding entities of this type
+     * @param id The ID of the entity
+     * @return This unit of work
+     */
+    public <T> UnitOfWork delete(CrudManager<T> manager, String id) {
+        return stage(new Step(manager, id, Expect.PRESENT, Expect.ABSENT, "delete") {
+            @Override
+            Runnable apply() {
+                return manager.deleteRestorable(id);
+            }
+        });
+    }
+
+
+    /**
+     * Stages an operation outside plain CRUD, such as extending an agreement, with the action that reverses it.
+     * Payments cannot be recorded this way: their append to the payments file cannot be undone.
+     * @param manager The manager the operation changes, whose data file is written at commit
+     * @param action The operation
+     * @param compensation The action that undoes the operation, or null if it cannot be undone
+     * @return This unit of work
+     */
+    public UnitOfWork perform(CrudManager<?> manager, Runnable action, Runnable compensation) {
+        return stage(new Step(manager, null, Expect.ANY, Expect.ANY, "perform") {
+            @Override
+            Runnable apply() {
+                action.run();
+                return compensation;
+            }
+        });
+    }
+
+
+    /**
+     * Includes a manager's data file in the commit without staging a change, for entities edited in place.
+     * @param manager The manager to save
+     * @return This unit of work
+     */
+    public UnitOfWork save(CrudManager<?> manager) {
+        checkOpen();
+        touched.add(manager);
+        return this;
+    }
+
+
+    /**
+     * Validates, applies and persists the staged changes.
+     * @throws IllegalArgumentException if a change refers to an entity that will not exist, or adds one that will
+     * @throws IllegalStateException if the unit of work was already committed, or the data files cannot be written
+     * @throws RuntimeException any exception a manager throws while applying a change, after the unit is rolled back
+     */
+    public void commit() {
+        checkOpen();
+        committed = true;
+        // Held from validation to rollback, so no other thread changes or reads the data in between
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            validate();
+
+            List<Runnable> compensations = new ArrayList<>();
+            fileHandler.beginBatch();
+            try {
+                for (Step step : steps) {
+                    compensations.add(step.apply());
+                }
+                for (CrudManager<?> manager : touched) {
+                    manager.saveToFile();
+                }
+                fileHandler.commitBatch();
+            } catch (RuntimeException e) {
+                fileHandler.abortBatch();
+                rollback(compensations, e);
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Checks every staged change against the state the earlier changes in this unit will leave behind.
+     * @throws IllegalArgumentException describing the first change that cannot be applied
+     */
+    private void validate() {
+        Map<CrudManager<?>, Map<String, Boolean>> exists = new IdentityHashMap<>();
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (step.id == null) {
+                continue;
+            }
+            Map<String, Boolean> known = exists.computeIfAbsent(step.manager, m -> new HashMap<>());
+            boolean present = known.computeIfAbsent(step.id, id -> step.manager.get(id) != null);
+            if (step.before == Expect.PRESENT && !present) {
+                throw new IllegalArgumentException("Change " + (i + 1) + " (" + step.name + " " + step.id + ") refers to an entity that does not exist.");
+            }
+            if (step.before == Expect.ABSENT && present) {
+                throw new IllegalArgumentException("Change " + (i + 1) + " (" + step.name + " " + step.id + ") adds an entity that already exists.");
+            }
+            known.put(step.id, step.after == Expect.PRESENT);
+        }
+    }
+
+
+    /**
+     * Undoes the applied changes in reverse order, inside a batch that is then discarded so nothing is written.
+     * @param compensations The undo actions of the applied changes, null where a change cannot be undone
+     * @param cause The failure that triggered the rollback, to which rollback failures are attached
+     */
+    private void rollback(List<Runnable> compensations, RuntimeException cause) {
+        fileHandler.beginBatch();
+        try {
+            for (int i = compensations.size() - 1; i >= 0; i--) {
+                Runnable compensation = compensations.get(i);
+                if (compensation == null) {
+                    continue;
+                }
+                try {
+                    compensation.run();
+                } catch (RuntimeException e) {
+                    cause.addSuppressed(e);
+                }
+            }
+        } finally {
+            fileHandler.abortBatch();
+        }
+    }
+
+
+    private UnitOfWork stage(Step step) {
+        checkOpen();
+        steps.add(step);
+        touched.add(step.manager);
+        return this;
+    }
+
+
+    private void checkOpen() {
+        if (committed) {
+            throw new IllegalStateException("Unit of work has already been committed.");
+        }
+    }
+
+
+    /**
+     * Whether a change needs its entity to exist, and whether it exists afterwards.
+     */
+    private enum Expect {
+        PRESENT, ABSENT, ANY
+    }
+
+
+    /**
+     * A staged change, which applies itself and returns the action that undoes it.
+     */
+    private abstract static class Step {
+        private final CrudManager<?> manager;
+        private final String id;
+        private final Expect before;
+        private final Expect after;
+        private final String name;
+
+
+        private Step(CrudManager<?> manager, String id, Expect before, Expect after, String name) {
+            this.manager = manager;
+            this.id = id;
+            this.before = before;
+            this.after = after;
+            this.name = name;
+        }
+
+
+        abstract Runnable apply();
+    }
+}
@@ -5,6 +5,7 @@
 package com.rentalsystem.model;
 
 import java.util.Date;
+import java.util.function.Function;
 
 
 /**
@@ -13,6 +14,8 @@ import java.util.Date;
 public class Payment {
     private String paymentId;
     private RentalAgreement rentalAgreement;
+    private String rentalAgreementId;
+    private Function<String, RentalAgreement> agreementResolver;
     private Tenant tenant;
     private Date paymentDate;
     private double amount;
@@ -31,6 +34,31 @@ public class Payment {
     public Payment(String paymentId, RentalAgreement rentalAgreement, Tenant tenant, Date paymentDate, double amount, String paymentMethod) {
         this.paymentId = paymentId;
         this.rentalAgreement = rentalAgreement;
+        this.rentalAgreementId = rentalAgreement.getAgreementId();
+        this.tenant = tenant;
+        this.paymentDate = paymentDate;
+        this.amount = amount;
+        this.paymentMethod = paymentMethod;
+    }
+
+
+    /**
+     * Constructs a new Payment whose rental agreement is resolved by ID each time it is requested.
+     * Used for payments against agreements held in compact storage, so that the payment does not pin a
+     * materialized copy of the agreement on the heap.
+     * @param paymentId Unique identifier for the payment
+     * @param rentalAgreementId The ID of the rental agreement associated with this payment
+     * @param agreementResolver The function looking up a rental agreement by ID
+     * @param tenant The tenant making the payment
+     * @param paymentDate The date of the payment
+     * @param amount The amount paid
+     * @param paymentMethod The method of payment
+     */
+    public Payment(String paymentId, String rentalAgreementId, Function<String, RentalAgreement> agreementResolver,
+                   Tenant tenant, Date paymentDate, double amount, String paymentMethod) {
+        this.paymentId = paymentId;
+        this.rentalAgreementId = rentalAgreementId;
+        this.agreementResolver = agreementResolver;
         this.tenant = tenant;
         this.paymentDate = paymentDate;
         this.amount = amount;
@@ -82,12 +110,18 @@ public class Payment {
 
 
     public RentalAgreement getRentalAgreement() {
-        return rentalAgreement;
+        return rentalAgreement != null ? rentalAgreement : agreementResolver.apply(rentalAgreementId);
+    }
+
+
+    public String getRentalAgreementId() {
+        return rentalAgreementId;
     }
 
 
     public void setRentalAgreement(RentalAgreement rentalAgreement) {
         this.rentalAgreement = rentalAgreement;
+        this.rentalAgreementId = rentalAgreement.getAgreementId();
     }
 
 
@@ -108,7 +142,7 @@ public class Payment {
                 ", amount=" + amount +
                 ", paymentDate=" + paymentDate +
                 ", paymentMethod='" + paymentMethod + '\'' +
-                ", rentalAgreement=" + rentalAgreement.getAgreementId() +
+                ", rentalAgreement=" + rentalAgreementId +
                 ", tenant=" + tenant.getId() +
                 '}';
     }
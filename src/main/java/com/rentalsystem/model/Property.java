@@ -108,8 +108,12 @@ public class Property {
     }
 
 
+    /**
+     * Gets the hosts of the property.
+     * @return A new HashSet containing the hosts
+     */
     public Set<Host> getHosts() {
-        return hosts;
+        return new HashSet<>(hosts);
     }
 
 
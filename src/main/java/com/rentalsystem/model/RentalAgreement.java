@@ -3,6 +3,7 @@
  */
 package com.rentalsystem.model;
 
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -26,7 +27,27 @@ public class RentalAgreement {
      * Enum representing the possible rental periods.
      */
     public enum RentalPeriod {
-        DAILY, WEEKLY, FORTNIGHTLY, MONTHLY
+        DAILY, WEEKLY, FORTNIGHTLY, MONTHLY;
+
+        /**
+         * Gets the start of the period a number of periods after a date.
+         * Months are added from the original date, so a lease starting on the 31st does not drift.
+         * @param date The start of the first period
+         * @param periods The number of periods to advance
+         * @return The start of the given period
+         */
+        public LocalDate plusPeriods(LocalDate date, long periods) {
+            switch (this) {
+                case DAILY:
+                    return date.plusDays(periods);
+                case WEEKLY:
+                    return date.plusWeeks(periods);
+                case FORTNIGHTLY:
+                    return date.plusWeeks(2 * periods);
+                default:
+                    return date.plusMonths(periods);
+            }
+        }
     }
 
     /**
@@ -71,6 +92,52 @@ public class RentalAgreement {
         owner.addRentalAgreement(this);
     }
 
+    /**
+     * Constructs a RentalAgreement without linking it into its property, tenants, owner and host.
+     */
+    private RentalAgreement(String agreementId, Property property, Tenant mainTenant, List<Tenant> subTenants,
+                            Owner owner, Host host, Date startDate, Date endDate, double rentAmount,
+                            RentalPeriod rentalPeriod, Status status) {
+        this.agreementId = agreementId;
+        this.property = property;
+        this.mainTenant = mainTenant;
+        this.subTenants = new ArrayList<>(subTenants);
+        this.owner = owner;
+        this.host = host;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.rentAmount = rentAmount;
+        this.rentalPeriod = rentalPeriod;
+        this.status = status;
+        this.payments = new ArrayList<>();
+    }
+
+
+    /**
+     * Rehydrates a rental agreement from compact storage.
+     * Unlike the public constructor, the agreement is not added to the rental lists of its property,
+     * tenants, owner and host, so materializing a historical record leaves the live object graph unchanged.
+     * @param agreementId Unique identifier for the agreement
+     * @param property The property being rented
+     * @param mainTenant The main tenant of the agreement
+     * @param subTenants The sub-tenants of the agreement
+     * @param owner The owner of the property
+     * @param host The host managing the property
+     * @param startDate The start date of the agreement
+     * @param endDate The end date of the agreement
+     * @param rentAmount The rent amount
+     * @param rentalPeriod The rental period
+     * @param status The status of the agreement
+     * @return The detached RentalAgreement
+     */
+    public static RentalAgreement restore(String agreementId, Property property, Tenant mainTenant, List<Tenant> subTenants,
+                                          Owner owner, Host host, Date startDate, Date endDate, double rentAmount,
+                                          RentalPeriod rentalPeriod, Status status) {
+        return new RentalAgreement(agreementId, property, mainTenant, subTenants, owner, host,
+                startDate, endDate, rentAmount, rentalPeriod, status);
+    }
+
+
     /**
      * Checks if the rental agreement is currently active.
      * @return true if the agreement is active, false otherwise
@@ -0,0 +1,65 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight Recorder event spanning a read or write of a data file, across all of its shards.
+ */
+@Name("com.rentalsystem.DataFile")
+@Label("Data File I/O")
+@Category({"Rental System", "Storage"})
+@Description("A read, streamed read, write, streamed write, batch commit, payment append or payment date-range scan of a data file")
+public class DataFileEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    private final String operation;
+
+    @Label("File")
+    private final String file;
+
+    @Label("Format")
+    private final String format;
+
+    @Label("Shards")
+    private final int shards;
+
+    @Label("Rows")
+    private long rows;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    private long bytes;
+
+
+    /**
+     * Constructs a new DataFileEvent.
+     * @param operation What is done to the file: read, stream, write, sink, commit, append or scan
+     * @param file The logical name of the data file, or the names of every file in a batch commit
+     * @param format The storage format
+     * @param shards The number of physical files the data file is split into
+     */
+    public DataFileEvent(String operation, String file, String format, int shards) {
+        this.operation = operation;
+        this.file = file;
+        this.format = format;
+        this.shards = shards;
+    }
+
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
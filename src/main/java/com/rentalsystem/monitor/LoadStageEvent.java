@@ -0,0 +1,32 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight Recorder event spanning one step of system initialization, such as loading a data file into its manager.
+ */
+@Name("com.rentalsystem.LoadStage")
+@Label("Load Stage")
+@Category({"Rental System", "Startup"})
+@Description("A step of system initialization")
+public class LoadStageEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    private final String stage;
+
+
+    /**
+     * Constructs a new LoadStageEvent.
+     * @param stage The name of the initialization step
+     */
+    public LoadStageEvent(String stage) {
+        this.stage = stage;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight Recorder event spanning a change made through a manager, including the save it triggers.
+ * Only changes that complete are committed; rejected changes throw before the event ends.
+ */
+@Name("com.rentalsystem.Mutation")
+@Label("Entity Mutation")
+@Category({"Rental System", "Managers"})
+@Description("An add, update, delete or other change to an entity")
+public class MutationEvent extends jdk.jfr.Event {
+    @Label("Entity")
+    private final String entity;
+
+    @Label("Operation")
+    private final String operation;
+
+    @Label("ID")
+    private final String id;
+
+
+    /**
+     * Constructs a new MutationEvent.
+     * @param entity The type of entity changed
+     * @param operation The change made
+     * @param id The ID of the entity
+     */
+    public MutationEvent(String entity, String operation, String id) {
+        this.entity = entity;
+        this.operation = operation;
+        this.id = id;
+    }
+}
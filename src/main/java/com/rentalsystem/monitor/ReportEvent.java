@@ -0,0 +1,45 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Flight Recorder event spanning the generation of a report, from opening its row stream to the last row.
+ */
+@Name("com.rentalsystem.Report")
+@Label("Report")
+@Category({"Rental System", "Reports"})
+@Description("A report generated for display or export")
+public class ReportEvent extends jdk.jfr.Event {
+    @Label("Title")
+    private final String title;
+
+    @Label("Destination")
+    private final String destination;
+
+    @Label("Rows")
+    private long rows;
+
+
+    /**
+     * Constructs a new ReportEvent.
+     * @param title The title of the report
+     * @param destination Where the rows go: table, csv or json
+     */
+    public ReportEvent(String title, String destination) {
+        this.title = title;
+        this.destination = destination;
+    }
+
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+}
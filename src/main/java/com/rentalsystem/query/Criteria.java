@@ -0,0 +1,199 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+
+/**
+ * A typed filter over entities of type T, built from field predicates combined with AND/OR.
+ * Equality and range criteria carry the field name and bounds they test, so that the QueryEngine
+ * can answer them from an index; free-form criteria can only be answered by scanning.
+ * @param <T> The type of entity being filtered
+ */
+public class Criteria<T> implements Predicate<T> {
+
+    /**
+     * The kind of node in a criteria tree.
+     */
+    public enum Kind {
+        EQUALS,
+        RANGE,
+        PREDICATE,
+        AND,
+        OR
+    }
+
+    private final Kind kind;
+    private final String field;
+    private final Object value;
+    private final double min;
+    private final double max;
+    private final Predicate<T> test;
+    private final List<Criteria<T>> children;
+
+
+    private Criteria(Kind kind, String field, Object value, double min, double max, Predicate<T> test, List<Criteria<T>> children) {
+        this.kind = kind;
+        this.field = field;
+        this.value = value;
+        this.min = min;
+        this.max = max;
+        this.test = test;
+        this.children = children;
+    }
+
+
+    /**
+     * Creates a criterion matching entities whose field equals a value.
+     * @param field The name of the field, used to look up an index
+     * @param value The value to match
+     * @param test The predicate evaluating the criterion on an entity
+     * @param <T> The type of entity being filtered
+     * @return The new Criteria
+     */
+    public static <T> Criteria<T> equalTo(String field, Object value, Predicate<T> test) {
+        return new Criteria<>(Kind.EQUALS, field, value, 0, 0, test, Collections.emptyList());
+    }
+
+
+    /**
+     * Creates a criterion matching entities whose numeric field lies in an inclusive range.
+     * @param field The name of the field, used to look up an index
+     * @param min The lower bound, inclusive
+     * @param max The upper bound, inclusive
+     * @param test The predicate evaluating the criterion on an entity
+     * @param <T> The type of entity being filtered
+     * @return The new Criteria
+     */
+    public static <T> Criteria<T> between(String field, double min, double max, Predicate<T> test) {
+        if (min > max) {
+            throw new IllegalArgumentException("Range minimum " + min + " is greater than maximum " + max);
+        }
+        return new Criteria<>(Kind.RANGE, field, null, min, max, test, Collections.emptyList());
+    }
+
+
+    /**
+     * Creates a free-form criterion. It is always evaluated by scanning.
+     * @param test The predicate evaluating the criterion on an entity
+     * @param <T> The type of entity being filtered
+     * @return The new Criteria
+     */
+    public static <T> Criteria<T> matching(Predicate<T> test) {
+        return new Criteria<>(Kind.PREDICATE, null, null, 0, 0, test, Collections.emptyList());
+    }
+
+
+    /**
+     * Combines this criterion with another, matching entities that satisfy both.
+     * @param other The other criterion
+     * @return The combined Criteria
+     */
+    public Criteria<T> and(Criteria<T> other) {
+        return combine(Kind.AND, other);
+    }
+
+
+    /**
+     * Combines this criterion with another, matching entities that satisfy either.
+     * @param other The other criterion
+     * @return The combined Criteria
+     */
+    public Criteria<T> or(Criteria<T> other) {
+        return combine(Kind.OR, other);
+    }
+
+
+    /**
+     * Builds a combined node, flattening nested nodes of the same kind.
+     * @param combinedKind AND or OR
+     * @param other The other criterion
+     * @return The combined Criteria
+     */
+    private Criteria<T> combine(Kind combinedKind, Criteria<T> other) {
+        List<Criteria<T>> combined = new ArrayList<>();
+        for (Criteria<T> part : List.of(this, other)) {
+            if (part.kind == combinedKind) {
+                combined.addAll(part.children);
+            } else {
+                combined.add(part);
+            }
+        }
+        Predicate<T> combinedTest = combinedKind == Kind.AND
+                ? entity -> combined.stream().allMatch(c -> c.test(entity))
+                : entity -> combined.stream().anyMatch(c -> c.test(entity));
+        return new Criteria<>(combinedKind, null, null, 0, 0, combinedTest, Collections.unmodifiableList(combined));
+    }
+
+
+    /**
+     * Evaluates the criterion on an entity.
+     * @param entity The entity to test
+     * @return true if the entity matches
+     */
+    @Override
+    public boolean test(T entity) {
+        return test.test(entity);
+    }
+
+
+    // Getters
+
+
+    public Kind getKind() {
+        return kind;
+    }
+
+
+    public String getField() {
+        return field;
+    }
+
+
+    public Object getValue() {
+        return value;
+    }
+
+
+    public double getMin() {
+        return min;
+    }
+
+
+    public double getMax() {
+        return max;
+    }
+
+
+    public List<Criteria<T>> getChildren() {
+        return children;
+    }
+
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case EQUALS:
+                return field + " = " + value;
+            case RANGE:
+                return field + " in [" + min + ", " + max + "]";
+            case PREDICATE:
+                return "<predicate>";
+            default:
+                StringBuilder sb = new StringBuilder("(");
+                for (int i = 0; i < children.size(); i++) {
+                    if (i > 0) {
+                        sb.append(' ').append(kind).append(' ');
+                    }
+                    sb.append(children.get(i));
+                }
+                return sb.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+
+/**
+ * Equality index mapping each value of a field to the entities holding it.
+ * The key each entity was indexed under is remembered, so an entity that was modified in place
+ * can be moved to its new bucket by adding it again.
+ * @param <T> The type of entity being indexed
+ */
+public class HashIndex<T> implements QueryIndex<T> {
+    private final Function<T, ?> keyExtractor;
+    private final Map<Object, Set<T>> buckets;
+    private final Map<T, Object> indexedKeys;
+
+
+    /**
+     * Constructs a new HashIndex.
+     * @param keyExtractor The function reading the indexed field from an entity
+     */
+    public HashIndex(Function<T, ?> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.buckets = new HashMap<>();
+        this.indexedKeys = new HashMap<>();
+    }
+
+
+    @Override
+    public boolean supports(Criteria<T> criteria) {
+        return criteria.getKind() == Criteria.Kind.EQUALS;
+    }
+
+
+    @Override
+    public synchronized int estimate(Criteria<T> criteria, int limit) {
+        Set<T> bucket = buckets.get(criteria.getValue());
+        return bucket == null ? 0 : bucket.size();
+    }
+
+
+    @Override
+    public synchronized Collection<T> lookup(Criteria<T> criteria) {
+        Set<T> bucket = buckets.get(criteria.getValue());
+        return bucket == null ? Collections.emptyList() : new LinkedHashSet<>(bucket);
+    }
+
+
+    @Override
+    public synchronized void add(T entity) {
+        // Always remove first, so a replacement instance with the same ID takes the place of the old one
+        remove(entity);
+        Object key = keyExtractor.apply(entity);
+        indexedKeys.put(entity, key);
+        buckets.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(entity);
+    }
+
+
+    @Override
+    public synchronized void remove(T entity) {
+        if (indexedKeys.containsKey(entity)) {
+            removeFromBucket(indexedKeys.remove(entity), entity);
+        }
+    }
+
+
+    @Override
+    public synchronized void clear() {
+        buckets.clear();
+        indexedKeys.clear();
+    }
+
+
+    /**
+     * Removes an entity from the bucket of a key, dropping the bucket once it is empty.
+     * @param key The key the entity was indexed under
+     * @param entity The entity to remove
+     */
+    private void removeFromBucket(Object key, T entity) {
+        Set<T> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(entity);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import com.rentalsystem.model.CommercialProperty;
+import com.rentalsystem.model.Property;
+import com.rentalsystem.model.PropertyStatus;
+import com.rentalsystem.model.ResidentialProperty;
+
+
+/**
+ * Factory methods for criteria on Property fields.
+ * The field names are the ones PropertyManagerImpl registers its indexes under.
+ */
+public final class PropertyCriteria {
+    public static final String PRICE = "price";
+    public static final String STATUS = "status";
+    public static final String TYPE = "type";
+    public static final String BEDROOMS = "bedrooms";
+    public static final String PET_FRIENDLY = "petFriendly";
+    public static final String BUSINESS_TYPE = "businessType";
+    public static final String OWNER_ID = "ownerId";
+    public static final String HOST_ID = "hostId";
+
+
+    private PropertyCriteria() {
+    }
+
+
+    /**
+     * Matches properties priced within an inclusive range.
+     * @param min The minimum price
+     * @param max The maximum price
+     * @return The Criteria
+     */
+    public static Criteria<Property> priceBetween(double min, double max) {
+        return Criteria.between(PRICE, min, max, p -> p.getPrice() >= min && p.getPrice() <= max);
+    }
+
+
+    /**
+     * Matches properties with a given status.
+     * @param status The property status
+     * @return The Criteria
+     */
+    public static Criteria<Property> status(PropertyStatus status) {
+        return Criteria.equalTo(STATUS, status, p -> p.getStatus() == status);
+    }
+
+
+    /**
+     * Matches properties of a given type.
+     * @param type "RESIDENTIAL" or "COMMERCIAL"
+     * @return The Criteria
+     */
+    public static Criteria<Property> type(String type) {
+        String normalized = type.toUpperCase();
+        return Criteria.equalTo(TYPE, normalized, p -> typeOf(p).equals(normalized));
+    }
+
+
+    /**
+     * Matches residential properties with a given number of bedrooms.
+     * @param bedrooms The number of bedrooms
+     * @return The Criteria
+     */
+    public static Criteria<Property> bedrooms(int bedrooms) {
+        return Criteria.equalTo(BEDROOMS, bedrooms, p -> p instanceof ResidentialProperty
+                && ((ResidentialProperty) p).getNumberOfBedrooms() == bedrooms);
+    }
+
+
+    /**
+     * Matches residential properties with a number of bedrooms within an inclusive range.
+     * @param min The minimum number of bedrooms
+     * @param max The maximum number of bedrooms
+     * @return The Criteria
+     */
+    public static Criteria<Property> bedroomsBetween(int min, int max) {
+        return Criteria.matching(p -> p instanceof ResidentialProperty
+                && ((ResidentialProperty) p).getNumberOfBedrooms() >= min
+                && ((ResidentialProperty) p).getNumberOfBedrooms() <= max);
+    }
+
+
+    /**
+     * Matches residential properties that are or are not pet friendly.
+     * @param petFriendly Whether pets must be allowed
+     * @return The Criteria
+     */
+    public static Criteria<Property> petFriendly(boolean petFriendly) {
+        return Criteria.equalTo(PET_FRIENDLY, petFriendly, p -> p instanceof ResidentialProperty
+                && ((ResidentialProperty) p).isPetFriendly() == petFriendly);
+    }
+
+
+    /**
+     * Matches commercial properties with a given business type, ignoring case.
+     * @param businessType The business type
+     * @return The Criteria
+     */
+    public static Criteria<Property> businessType(String businessType) {
+        String normalized = businessType.toLowerCase();
+        return Criteria.equalTo(BUSINESS_TYPE, normalized, p -> p instanceof CommercialProperty
+                && normalized.equals(((CommercialProperty) p).getBusinessType().toLowerCase()));
+    }
+
+
+    /**
+     * Matches properties owned by a given owner.
+     * @param ownerId The ID of the owner
+     * @return The Criteria
+     */
+    public static Criteria<Property> ownerId(String ownerId) {
+        return Criteria.equalTo(OWNER_ID, ownerId, p -> p.getOwner() != null && ownerId.equals(p.getOwner().getId()));
+    }
+
+
+    /**
+     * Matches properties managed by a given host.
+     * @param hostId The ID of the host
+     * @return The Criteria
+     */
+    public static Criteria<Property> hostId(String hostId) {
+        return Criteria.equalTo(HOST_ID, hostId, p -> p.getHosts().stream().anyMatch(h -> hostId.equals(h.getId())));
+    }
+
+
+    /**
+     * Gets the type name of a property as stored in the data file.
+     * @param property The property
+     * @return "RESIDENTIAL" or "COMMERCIAL"
+     */
+    public static String typeOf(Property property) {
+        return property instanceof ResidentialProperty ? "RESIDENTIAL" : "COMMERCIAL";
+    }
+}
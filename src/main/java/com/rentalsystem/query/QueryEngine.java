@@ -0,0 +1,191 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Executes Criteria against a manager's entities.
+ * The planner answers the most selective indexed criterion from its index and evaluates the rest of the
+ * criteria on those candidates only. An AND node uses its cheapest indexed child; an OR node can use
+ * indexes only if every branch is indexed. Anything else falls back to a scan, which runs in parallel
+ * once the data set is large enough to benefit.
+ * @param <T> The type of entity being queried
+ */
+public class QueryEngine<T> {
+    private static final int PARALLEL_SCAN_THRESHOLD = 10_000;
+
+    private final Supplier<Collection<T>> source;
+    private final Map<String, QueryIndex<T>> indexes;
+
+
+    /**
+     * Constructs a new QueryEngine.
+     * @param source Supplies every entity, for scans
+     */
+    public QueryEngine(Supplier<Collection<T>> source) {
+        this.source = source;
+        this.indexes = new HashMap<>();
+    }
+
+
+    /**
+     * Registers an index for a field.
+     * @param field The name of the field criteria refer to
+     * @param index The index answering criteria on the field
+     */
+    public void addIndex(String field, QueryIndex<T> index) {
+        indexes.put(field, index);
+    }
+
+
+    /**
+     * Adds an entity to every index, or re-indexes it after it was modified.
+     * @param entity The entity to index
+     */
+    public void index(T entity) {
+        for (QueryIndex<T> index : indexes.values()) {
+            index.add(entity);
+        }
+    }
+
+
+    /**
+     * Removes an entity from every index.
+     * @param entity The entity to remove
+     */
+    public void unindex(T entity) {
+        for (QueryIndex<T> index : indexes.values()) {
+            index.remove(entity);
+        }
+    }
+
+
+    /**
+     * Removes every entity from every index.
+     */
+    public void clearIndexes() {
+        for (QueryIndex<T> index : indexes.values()) {
+            index.clear();
+        }
+    }
+
+
+    /**
+     * Finds every entity matching the criteria.
+     * @param criteria The criteria to match
+     * @return A list of the matching entities
+     */
+    public List<T> execute(Criteria<T> criteria) {
+        Plan<T> plan = plan(criteria, Integer.MAX_VALUE);
+        if (plan == null) {
+            Collection<T> all = source.get();
+            Stream<T> stream = all.size() >= PARALLEL_SCAN_THRESHOLD ? all.parallelStream() : all.stream();
+            return stream.filter(criteria).collect(Collectors.toList());
+        }
+        return plan.candidates.get().stream()
+                .filter(criteria)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Describes how the criteria would be executed.
+     * @param criteria The criteria to plan
+     * @return A one-line description of the chosen plan
+     */
+    public String explain(Criteria<T> criteria) {
+        Plan<T> plan = plan(criteria, Integer.MAX_VALUE);
+        if (plan == null) {
+            return "SCAN " + criteria;
+        }
+        return plan.description + " (~" + plan.estimate + " candidates) FILTER " + criteria;
+    }
+
+
+    /**
+     * Plans a criteria node.
+     * @param criteria The node to plan
+     * @param limit The estimate beyond which the caller has a cheaper alternative
+     * @return The plan, or null if the node can only be answered by scanning
+     */
+    private Plan<T> plan(Criteria<T> criteria, int limit) {
+        switch (criteria.getKind()) {
+            case EQUALS:
+            case RANGE:
+                QueryIndex<T> index = indexes.get(criteria.getField());
+                if (index == null || !index.supports(criteria)) {
+                    return null;
+                }
+                return new Plan<>(index.estimate(criteria, limit), () -> index.lookup(criteria),
+                        "INDEX " + criteria);
+            case AND:
+                Plan<T> best = null;
+                for (Criteria<T> child : criteria.getChildren()) {
+                    Plan<T> childPlan = plan(child, best == null ? limit : best.estimate);
+                    if (childPlan != null && (best == null || childPlan.estimate < best.estimate)) {
+                        best = childPlan;
+                    }
+                }
+                return best;
+            case OR:
+                List<Plan<T>> branches = new ArrayList<>();
+                int total = 0;
+                for (Criteria<T> child : criteria.getChildren()) {
+                    Plan<T> childPlan = plan(child, limit);
+                    if (childPlan == null) {
+                        return null;
+                    }
+                    branches.add(childPlan);
+                    total = (int) Math.min((long) total + childPlan.estimate, Integer.MAX_VALUE);
+                }
+                return new Plan<>(total, () -> union(branches),
+                        branches.stream().map(b -> b.description).collect(Collectors.joining(" UNION ")));
+            default:
+                return null;
+        }
+    }
+
+
+    /**
+     * Collects the candidates of several plans without duplicates.
+     * @param branches The plans to combine
+     * @return The union of their candidates
+     */
+    private static <T> Collection<T> union(List<Plan<T>> branches) {
+        Set<T> candidates = new LinkedHashSet<>();
+        for (Plan<T> branch : branches) {
+            candidates.addAll(branch.candidates.get());
+        }
+        return candidates;
+    }
+
+
+    /**
+     * An index-backed way of producing a superset of the matching entities.
+     */
+    private static class Plan<T> {
+        private final int estimate;
+        private final Supplier<Collection<T>> candidates;
+        private final String description;
+
+
+        private Plan(int estimate, Supplier<Collection<T>> candidates, String description) {
+            this.estimate = estimate;
+            this.candidates = candidates;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import java.util.Collection;
+
+
+/**
+ * An index the QueryEngine can use to answer a single equality or range criterion
+ * without scanning every entity.
+ * @param <T> The type of entity being indexed
+ */
+public interface QueryIndex<T> {
+    /**
+     * Checks whether this index can answer a criterion.
+     * @param criteria An EQUALS or RANGE criterion on the indexed field
+     * @return true if lookup can be called with the criterion
+     */
+    boolean supports(Criteria<T> criteria);
+
+
+    /**
+     * Estimates the number of entities matching a criterion, counting at most up to a limit.
+     * @param criteria The criterion to estimate
+     * @param limit The count at which estimation may stop
+     * @return The number of candidates, or any value of at least limit if there are more
+     */
+    int estimate(Criteria<T> criteria, int limit);
+
+
+    /**
+     * Gets the entities matching a criterion.
+     * @param criteria The criterion to look up
+     * @return The candidate entities
+     */
+    Collection<T> lookup(Criteria<T> criteria);
+
+
+    /**
+     * Adds an entity to the index, or re-indexes it after its field changed.
+     * Indexes derived from live relationships need no maintenance and ignore the call.
+     * @param entity The entity to index
+     */
+    default void add(T entity) {
+    }
+
+
+    /**
+     * Removes an entity from the index.
+     * @param entity The entity to remove
+     */
+    default void remove(T entity) {
+    }
+
+
+    /**
+     * Removes every entity from the index.
+     */
+    default void clear() {
+    }
+}
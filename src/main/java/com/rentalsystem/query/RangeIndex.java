@@ -0,0 +1,120 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
+
+
+/**
+ * Sorted index over a numeric field, answering inclusive range criteria.
+ * Like HashIndex, it remembers the value each entity was indexed under so in-place changes can be re-indexed.
+ * @param <T> The type of entity being indexed
+ */
+public class RangeIndex<T> implements QueryIndex<T> {
+    private final ToDoubleFunction<T> keyExtractor;
+    private final NavigableMap<Double, Set<T>> tree;
+    private final Map<T, Double> indexedKeys;
+
+
+    /**
+     * Constructs a new RangeIndex.
+     * @param keyExtractor The function reading the indexed field from an entity
+     */
+    public RangeIndex(ToDoubleFunction<T> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.tree = new TreeMap<>();
+        this.indexedKeys = new HashMap<>();
+    }
+
+
+    @Override
+    public boolean supports(Criteria<T> criteria) {
+        return criteria.getKind() == Criteria.Kind.RANGE;
+    }
+
+
+    @Override
+    public synchronized int estimate(Criteria<T> criteria, int limit) {
+        int count = 0;
+        for (Set<T> bucket : range(criteria).values()) {
+            count += bucket.size();
+            if (count >= limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+
+    @Override
+    public synchronized Collection<T> lookup(Criteria<T> criteria) {
+        List<T> candidates = new ArrayList<>();
+        for (Set<T> bucket : range(criteria).values()) {
+            candidates.addAll(bucket);
+        }
+        return candidates;
+    }
+
+
+    @Override
+    public synchronized void add(T entity) {
+        // Always remove first, so a replacement instance with the same ID takes the place of the old one
+        remove(entity);
+        double key = keyExtractor.applyAsDouble(entity);
+        indexedKeys.put(entity, key);
+        tree.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(entity);
+    }
+
+
+    @Override
+    public synchronized void remove(T entity) {
+        Double oldKey = indexedKeys.remove(entity);
+        if (oldKey != null) {
+            removeFromBucket(oldKey, entity);
+        }
+    }
+
+
+    @Override
+    public synchronized void clear() {
+        tree.clear();
+        indexedKeys.clear();
+    }
+
+
+    /**
+     * Gets the part of the tree covered by a range criterion.
+     * @param criteria The range criterion
+     * @return A view of the buckets within the range
+     */
+    private NavigableMap<Double, Set<T>> range(Criteria<T> criteria) {
+        return tree.subMap(criteria.getMin(), true, criteria.getMax(), true);
+    }
+
+
+    /**
+     * Removes an entity from the bucket of a key, dropping the bucket once it is empty.
+     * @param key The key the entity was indexed under
+     * @param entity The entity to remove
+     */
+    private void removeFromBucket(double key, T entity) {
+        Set<T> bucket = tree.get(key);
+        if (bucket != null) {
+            bucket.remove(entity);
+            if (bucket.isEmpty()) {
+                tree.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Function;
+
+
+/**
+ * Equality index answered from a relationship the model already maintains, such as the properties an
+ * owner owns or a host manages. It is always current and needs no maintenance by the manager.
+ * @param <T> The type of entity being looked up
+ */
+public class RelationIndex<T> implements QueryIndex<T> {
+    private final Function<Object, Collection<T>> resolver;
+
+
+    /**
+     * Constructs a new RelationIndex.
+     * @param resolver The function returning the related entities for a key, or null if the key is unknown
+     */
+    public RelationIndex(Function<Object, Collection<T>> resolver) {
+        this.resolver = resolver;
+    }
+
+
+    @Override
+    public boolean supports(Criteria<T> criteria) {
+        return criteria.getKind() == Criteria.Kind.EQUALS;
+    }
+
+
+    @Override
+    public int estimate(Criteria<T> criteria, int limit) {
+        return lookup(criteria).size();
+    }
+
+
+    @Override
+    public Collection<T> lookup(Criteria<T> criteria) {
+        Collection<T> related = resolver.apply(criteria.getValue());
+        return related == null ? Collections.emptyList() : related;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import com.rentalsystem.model.RentalAgreement;
+
+import java.util.Date;
+
+
+/**
+ * Factory methods for criteria on RentalAgreement fields.
+ * Dates are compared by their epoch milliseconds. The field names are the ones RentalManagerImpl
+ * registers its indexes under.
+ */
+public final class RentalCriteria {
+    public static final String STATUS = "status";
+    public static final String START_DATE = "startDate";
+    public static final String END_DATE = "endDate";
+    public static final String RENT = "rent";
+    public static final String PROPERTY_ID = "propertyId";
+    public static final String TENANT_ID = "tenantId";
+    public static final String OWNER_ID = "ownerId";
+    public static final String HOST_ID = "hostId";
+
+
+    private RentalCriteria() {
+    }
+
+
+    /**
+     * Matches agreements with a given status.
+     * @param status The agreement status
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> status(RentalAgreement.Status status) {
+        return Criteria.equalTo(STATUS, status, a -> a.getStatus() == status);
+    }
+
+
+    /**
+     * Matches agreements starting within an inclusive date range.
+     * @param from The earliest start date
+     * @param to The latest start date
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> startBetween(Date from, Date to) {
+        long min = from.getTime();
+        long max = to.getTime();
+        return Criteria.between(START_DATE, min, max,
+                a -> a.getStartDate().getTime() >= min && a.getStartDate().getTime() <= max);
+    }
+
+
+    /**
+     * Matches agreements ending within an inclusive date range.
+     * @param from The earliest end date
+     * @param to The latest end date
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> endBetween(Date from, Date to) {
+        long min = from.getTime();
+        long max = to.getTime();
+        return Criteria.between(END_DATE, min, max,
+                a -> a.getEndDate().getTime() >= min && a.getEndDate().getTime() <= max);
+    }
+
+
+    /**
+     * Matches agreements whose rental period overlaps an inclusive date range.
+     * Planned through the start date index, since an overlapping agreement must start before the range ends.
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> overlapping(Date from, Date to) {
+        long min = from.getTime();
+        long max = to.getTime();
+        return Criteria.<RentalAgreement>between(START_DATE, Long.MIN_VALUE, max, a -> a.getStartDate().getTime() <= max)
+                .and(Criteria.between(END_DATE, min, Long.MAX_VALUE, a -> a.getEndDate().getTime() >= min));
+    }
+
+
+    /**
+     * Matches agreements with a rent amount within an inclusive range.
+     * @param min The minimum rent
+     * @param max The maximum rent
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> rentBetween(double min, double max) {
+        return Criteria.between(RENT, min, max, a -> a.getRentAmount() >= min && a.getRentAmount() <= max);
+    }
+
+
+    /**
+     * Matches agreements for a given property.
+     * @param propertyId The ID of the property
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> propertyId(String propertyId) {
+        return Criteria.equalTo(PROPERTY_ID, propertyId,
+                a -> a.getProperty() != null && propertyId.equals(a.getProperty().getPropertyId()));
+    }
+
+
+    /**
+     * Matches agreements where a given tenant is the main tenant or a sub-tenant.
+     * @param tenantId The ID of the tenant
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> tenantId(String tenantId) {
+        return Criteria.equalTo(TENANT_ID, tenantId,
+                a -> a.getAllTenants().stream().anyMatch(t -> t != null && tenantId.equals(t.getId())));
+    }
+
+
+    /**
+     * Matches agreements with a given owner.
+     * @param ownerId The ID of the owner
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> ownerId(String ownerId) {
+        return Criteria.equalTo(OWNER_ID, ownerId, a -> a.getOwner() != null && ownerId.equals(a.getOwner().getId()));
+    }
+
+
+    /**
+     * Matches agreements with a given host.
+     * @param hostId The ID of the host
+     * @return The Criteria
+     */
+    public static Criteria<RentalAgreement> hostId(String hostId) {
+        return Criteria.equalTo(HOST_ID, hostId, a -> a.getHost() != null && hostId.equals(a.getHost().getId()));
+    }
+}
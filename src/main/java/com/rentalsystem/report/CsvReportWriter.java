@@ -0,0 +1,49 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.opencsv.CSVWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+
+/**
+ * Writes a report as CSV with a header line, using the same CSV dialect as the data files.
+ */
+public class CsvReportWriter implements ReportWriter {
+    private final CSVWriter writer;
+
+
+    /**
+     * Constructs a new CsvReportWriter.
+     * @param out The writer to write to, closed with this writer
+     */
+    public CsvReportWriter(Writer out) {
+        this.writer = new CSVWriter(out);
+    }
+
+
+    @Override
+    public void writeHeaders(List<String> headers) {
+        writer.writeNext(headers.toArray(new String[0]));
+    }
+
+
+    @Override
+    public void writeRow(List<String> row) throws IOException {
+        writer.writeNext(row.toArray(new String[0]));
+        if (writer.checkError()) {
+            throw new IOException("Error writing CSV report");
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+
+/**
+ * Writes a report as a JSON array with one object per row, keyed by the column headers.
+ */
+public class JsonReportWriter implements ReportWriter {
+    private final JsonWriter writer;
+    private List<String> headers;
+
+
+    /**
+     * Constructs a new JsonReportWriter.
+     * @param out The writer to write to, closed with this writer
+     */
+    public JsonReportWriter(Writer out) {
+        this.writer = new JsonWriter(out);
+    }
+
+
+    @Override
+    public void writeHeaders(List<String> headers) throws IOException {
+        this.headers = headers;
+        writer.beginArray();
+    }
+
+
+    @Override
+    public void writeRow(List<String> row) throws IOException {
+        if (headers == null) {
+            throw new IllegalStateException("Headers must be written before rows");
+        }
+        writer.beginObject();
+        for (int i = 0; i < headers.size(); i++) {
+            writer.name(headers.get(i)).value(i < row.size() ? row.get(i) : null);
+        }
+        writer.endObject();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if (headers != null) {
+            writer.endArray();
+        }
+        writer.close();
+    }
+}
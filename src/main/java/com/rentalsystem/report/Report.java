@@ -0,0 +1,72 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.rentalsystem.monitor.ReportEvent;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * A tabular report whose rows are generated lazily from the managers.
+ * Each call to rows opens a new stream, so the same report can be displayed and exported.
+ */
+public class Report {
+    private final String title;
+    private final List<String> headers;
+    private final Supplier<Stream<List<String>>> rows;
+
+
+    /**
+     * Constructs a new Report.
+     * @param title The title of the report
+     * @param headers The column headers
+     * @param rows The supplier of a fresh stream of rows, each with one cell per header
+     */
+    public Report(String title, List<String> headers, Supplier<Stream<List<String>>> rows) {
+        this.title = title;
+        this.headers = headers;
+        this.rows = rows;
+    }
+
+
+    public String getTitle() {
+        return title;
+    }
+
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+
+    /**
+     * Opens a new stream over the rows of the report.
+     * @return The rows, generated as the stream is consumed
+     */
+    public Stream<List<String>> rows() {
+        return rows.get();
+    }
+
+
+    /**
+     * Collects every row for display as a terminal table.
+     * @return The rows of the report
+     */
+    public List<List<String>> toTable() {
+        ReportEvent event = new ReportEvent(title, "table");
+        event.begin();
+        List<List<String>> table;
+        try (Stream<List<String>> stream = rows()) {
+            table = stream.collect(Collectors.toList());
+        }
+        event.setRows(table.size());
+        event.commit();
+        return table;
+    }
+}
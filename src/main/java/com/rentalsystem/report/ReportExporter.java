@@ -0,0 +1,158 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.rentalsystem.monitor.ReportEvent;
+import com.rentalsystem.util.ProgressCounter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+
+/**
+ * Streams reports to files. Rows are written as they are generated, so only the row being written
+ * is held in memory regardless of the size of the report.
+ */
+public class ReportExporter {
+    private final ProgressCounter progress;
+
+
+    /**
+     * Constructs a ReportExporter that does not report progress.
+     */
+    public ReportExporter() {
+        this(null);
+    }
+
+
+    /**
+     * Constructs a ReportExporter that counts every row written.
+     * @param progress The counter to add the exported rows to, or null for none
+     */
+    public ReportExporter(ProgressCounter progress) {
+        this.progress = progress;
+    }
+
+
+    /**
+     * The file formats a report can be exported to.
+     */
+    public enum Format {
+        CSV, JSON;
+
+
+        /**
+         * Picks the format matching a file name's extension.
+         * @param fileName The file name
+         * @return The matching format, or null if the extension is not recognised
+         */
+        public static Format fromFileName(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".json")) {
+                return JSON;
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Writes a report to a file, replacing any existing file.
+     * @param report The report to export
+     * @param file The file to write to
+     * @param format The output format
+     * @return The number of rows written
+     * @throws IOException if the file cannot be written
+     */
+    public long export(Report report, Path file, Format format) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return export(report, out, format);
+        }
+    }
+
+
+    /**
+     * Writes a report to a writer. The writer is flushed but left open.
+     * @param report The report to export
+     * @param out The writer to write to
+     * @param format The output format
+     * @return The number of rows written
+     * @throws IOException if the output cannot be written
+     */
+    public long export(Report report, Writer out, Format format) throws IOException {
+        Writer target = new NonClosingWriter(out);
+        ReportEvent event = new ReportEvent(report.getTitle(), format.name().toLowerCase(Locale.ROOT));
+        event.begin();
+        try (ReportWriter writer = format == Format.JSON ? new JsonReportWriter(target) : new CsvReportWriter(target);
+             Stream<List<String>> rows = report.rows()) {
+            writer.writeHeaders(report.getHeaders());
+            long[] count = {0};
+            rows.forEachOrdered(row -> {
+                try {
+                    writer.writeRow(row);
+                    count[0]++;
+                    if (progress != null) {
+                        progress.addRows(1);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            event.setRows(count[0]);
+            event.commit();
+            return count[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            out.flush();
+        }
+    }
+
+
+    /**
+     * Shields a caller's writer from being closed by the format writers.
+     */
+    private static class NonClosingWriter extends Writer {
+        private final Writer out;
+
+
+        private NonClosingWriter(Writer out) {
+            this.out = out;
+        }
+
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+        }
+
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+
+/**
+ * Writes the rows of a report one at a time, so output size does not depend on memory.
+ */
+public interface ReportWriter extends Closeable {
+    /**
+     * Writes the column headers. Called once, before any row.
+     * @param headers The column headers
+     * @throws IOException if the output cannot be written
+     */
+    void writeHeaders(List<String> headers) throws IOException;
+
+
+    /**
+     * Writes a single row.
+     * @param row The cells of the row, one per header
+     * @throws IOException if the output cannot be written
+     */
+    void writeRow(List<String> row) throws IOException;
+}
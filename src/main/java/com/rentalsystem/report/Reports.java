@@ -0,0 +1,404 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.rentalsystem.config.AppConfig;
+import com.rentalsystem.manager.ArrearsEngine;
+import com.rentalsystem.manager.IncomeCube;
+import com.rentalsystem.manager.OwnerManager;
+import com.rentalsystem.manager.RentalManager;
+import com.rentalsystem.manager.TenantManager;
+import com.rentalsystem.model.Owner;
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.model.Tenant;
+import com.rentalsystem.util.DateUtil;
+import com.rentalsystem.util.FileHandler;
+import com.rentalsystem.util.RowCache;
+import com.rentalsystem.util.SnapshotStore;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+
+/**
+ * Builds the system's reports from the managers. Rows are produced lazily when a report's stream is
+ * consumed, so the same definitions back both the terminal tables and file exports.
+ * Reports over properties, people and agreements read the rows of one SnapshotStore version, taken from the
+ * managers between edits and joined by ID, so a long-running report never blocks edits and never sees one half applied.
+ * Payments are append-only and arrears come from the ArrearsEngine, so those reports read live state;
+ * a payment history over a date range reads only the payment partitions that overlap it.
+ */
+public class Reports {
+    private final RentalManager rentalManager;
+    private final TenantManager tenantManager;
+    private final OwnerManager ownerManager;
+    private final ArrearsEngine arrearsEngine;
+    private final SnapshotStore snapshots;
+    private final FileHandler fileHandler;
+    private final RowCache propertyStatusRows = new RowCache(AppConfig.getIntProperty("display.rowCache", 10000));
+
+    private static final String TENANTS = "tenants.txt";
+    private static final String OWNERS = "owners.txt";
+    private static final String HOSTS = "hosts.txt";
+    private static final String PROPERTIES = "properties.txt";
+    private static final String AGREEMENTS = "rental_agreements.txt";
+
+    // Column positions in the data files, see the matching manager's saveToFile
+    private static final int ID = 0;
+    private static final int PERSON_NAME = 1;
+    private static final int PERSON_BIRTH_DATE = 2;
+    private static final int PERSON_CONTACT = 3;
+    private static final int PROPERTY_TYPE = 1;
+    private static final int PROPERTY_ADDRESS = 2;
+    private static final int PROPERTY_STATUS = 4;
+    private static final int PROPERTY_OWNER = 5;
+    private static final int PROPERTY_HOSTS = 12;
+    private static final int AGREEMENT_PROPERTY = 1;
+    private static final int AGREEMENT_TENANTS = 2;
+    private static final int AGREEMENT_HOST = 4;
+    private static final int AGREEMENT_START = 5;
+    private static final int AGREEMENT_END = 6;
+    private static final int AGREEMENT_RENT = 7;
+    private static final int AGREEMENT_STATUS = 9;
+
+
+    /**
+     * Constructs a new Reports.
+     * @param rentalManager The RentalManager instance
+     * @param tenantManager The TenantManager instance
+     * @param ownerManager The OwnerManager instance
+     * @param arrearsEngine The ArrearsEngine instance
+     * @param fileHandler The FileHandler whose snapshots and payment files are read
+     */
+    public Reports(RentalManager rentalManager, TenantManager tenantManager, OwnerManager ownerManager,
+                   ArrearsEngine arrearsEngine, FileHandler fileHandler) {
+        this.rentalManager = rentalManager;
+        this.tenantManager = tenantManager;
+        this.ownerManager = ownerManager;
+        this.arrearsEngine = arrearsEngine;
+        this.snapshots = fileHandler.getSnapshots();
+        this.fileHandler = fileHandler;
+    }
+
+
+    /**
+     * Lists the rent amount of every rental agreement.
+     * @return The income report
+     */
+    public Report income() {
+        return new Report("Income", Arrays.asList("Agreement ID", "Property", "Tenant ID - Name", "Rent Amount"),
+                () -> {
+                    SnapshotStore.Snapshot snapshot = snapshots.snapshot();
+                    return snapshot.rows(AGREEMENTS).stream().map(agreement -> {
+                        String tenantId = agreement[AGREEMENT_TENANTS].split(";")[0];
+                        return Arrays.asList(
+                                agreement[ID],
+                                agreement[AGREEMENT_PROPERTY],
+                                tenantId + " - " + nameOf(snapshot, TENANTS, tenantId),
+                                String.format("%.2f", Double.parseDouble(agreement[AGREEMENT_RENT]))
+                        );
+                    });
+                });
+    }
+
+
+    /**
+     * Lists the rent due and payments received per month, oldest first.
+     * @param months The number of months up to and including the current one
+     * @return The monthly income report
+     */
+    public Report monthlyIncome(int months) {
+        YearMonth currentMonth = YearMonth.now();
+        return new Report("Monthly Income", Arrays.asList("Month", "Expected Rent", "Income Received"),
+                () -> IntStream.range(0, months).mapToObj(i -> {
+                    YearMonth month = currentMonth.minusMonths(months - 1 - i);
+                    return Arrays.asList(
+                            month.toString(),
+                            String.format("%.2f", rentalManager.getExpectedRent(month)),
+                            String.format("%.2f", rentalManager.getIncomeReceived(
+                                    DateUtil.fromEpochDay(month.atDay(1).toEpochDay()),
+                                    DateUtil.fromEpochDay(month.atEndOfMonth().toEpochDay())))
+                    );
+                }));
+    }
+
+
+    /**
+     * Lists the rent due and payments received over a range of months, rolled up to the requested levels
+     * from the income cube, so the cost depends on the number of cells and not on the number of payments.
+     * @param groupBy The levels to group by, one column each
+     * @param filter The values to restrict each level to
+     * @param from The first month, inclusive
+     * @param to The last month, inclusive
+     * @return The portfolio income report
+     */
+    public Report portfolioIncome(List<IncomeCube.Dimension> groupBy, Map<IncomeCube.Dimension, String> filter,
+                                  YearMonth from, YearMonth to) {
+        List<String> columns = new ArrayList<>();
+        for (IncomeCube.Dimension dimension : groupBy) {
+            columns.add(columnOf(dimension));
+        }
+        columns.add("Expected Rent");
+        columns.add("Income Received");
+        return new Report("Portfolio Income " + from + " to " + to, columns,
+                () -> rentalManager.getIncomeRollup(groupBy, filter, from, to).stream().map(row -> {
+                    List<String> cells = new ArrayList<>(row.getKey());
+                    cells.add(String.format("%.2f", row.getExpectedRent()));
+                    cells.add(String.format("%.2f", row.getIncomeReceived()));
+                    return cells;
+                }));
+    }
+
+
+    /**
+     * Lists the type and status of every property.
+     * @return The occupancy report
+     */
+    public Report occupancy() {
+        return new Report("Occupancy", Arrays.asList("Property ID", "Type", "Status"),
+                () -> snapshots.snapshot().rows(PROPERTIES).stream().map(property -> Arrays.asList(
+                        property[ID],
+                        typeOf(property),
+                        property[PROPERTY_STATUS]
+                )));
+    }
+
+
+    /**
+     * Lists every tenant with the number of active agreements they are the main tenant of.
+     * @return The tenant report
+     */
+    public Report tenants() {
+        return new Report("Tenants", Arrays.asList("ID", "Name", "Date of Birth", "Contact Info", "Active Agreements"),
+                () -> {
+                    SnapshotStore.Snapshot snapshot = snapshots.snapshot();
+                    Map<String, Long> activeAgreements = countActiveAgreements(snapshot, a -> a[AGREEMENT_TENANTS].split(";")[0]);
+                    return snapshot.rows(TENANTS).stream().map(tenant -> Arrays.asList(
+                            tenant[ID],
+                            tenant[PERSON_NAME],
+                            tenant[PERSON_BIRTH_DATE],
+                            tenant[PERSON_CONTACT],
+                            String.valueOf(activeAgreements.getOrDefault(tenant[ID], 0L))
+                    ));
+                });
+    }
+
+
+    /**
+     * Lists every property with its status, owner and hosts.
+     * @return The property status report
+     */
+    public Report propertyStatus() {
+        return new Report("Property Status", Arrays.asList("Property ID", "Type", "Address", "Status", "Owner ID - Name", "Host ID - Name"),
+                () -> {
+                    SnapshotStore.Snapshot snapshot = snapshots.snapshot();
+                    // A row only changes when one of the three files it is joined from changes
+                    long version = Math.max(snapshot.getVersion(PROPERTIES),
+                            Math.max(snapshot.getVersion(HOSTS), snapshot.getVersion(OWNERS)));
+                    return snapshot.rows(PROPERTIES).stream().map(property -> propertyStatusRows.get(property[ID], version, () -> {
+                        String hostInfo = ids(property[PROPERTY_HOSTS]).stream()
+                                .map(hostId -> hostId + " - " + nameOf(snapshot, HOSTS, hostId))
+                                .collect(Collectors.joining(", "));
+                        return Arrays.asList(
+                                property[ID],
+                                typeOf(property),
+                                property[PROPERTY_ADDRESS],
+                                property[PROPERTY_STATUS],
+                                property[PROPERTY_OWNER] + " - " + nameOf(snapshot, OWNERS, property[PROPERTY_OWNER]),
+                                hostInfo.isEmpty() ? "No Host" : hostInfo
+                        );
+                    }));
+                });
+    }
+
+
+    /**
+     * Lists the payments of one tenant, or of every tenant.
+     * @param tenant The tenant, or null for the payment history of all tenants
+     * @return The payment history report
+     */
+    public Report paymentHistory(Tenant tenant) {
+        return new Report("Payment History", Arrays.asList("Payment ID", "Tenant ID", "Date", "Amount", "Method", "Agreement ID"),
+                () -> {
+                    Stream<Tenant> tenants = tenant != null ? Stream.of(tenant) : tenantManager.getAll().stream();
+                    return tenants.flatMap(t -> t.getPayments().stream().map(payment -> paymentRow(t, payment)));
+                });
+    }
+
+
+    /**
+     * Lists the payments of one tenant dated within a range, reading only the payments of those dates.
+     * @param tenant The tenant
+     * @param from The first payment date, inclusive
+     * @param to The last payment date, inclusive
+     * @return The payment history report
+     */
+    public Report paymentHistory(Tenant tenant, Date from, Date to) {
+        return new Report("Payment History", Arrays.asList("Payment ID", "Tenant ID", "Date", "Amount", "Method", "Agreement ID"),
+                () -> {
+                    List<List<String>> rows = new ArrayList<>();
+                    fileHandler.forEachPayment(from, to, payment -> {
+                        if (payment.length == 6 && payment[2].equals(tenant.getId())) {
+                            rows.add(Arrays.asList(payment[0], payment[2], payment[3],
+                                    String.format("%.2f", Double.parseDouble(payment[4])), payment[5], payment[1]));
+                        }
+                    });
+                    return rows.stream();
+                });
+    }
+
+
+    /**
+     * Lists every host with their managed properties, active agreements and total active rent.
+     * @return The host performance report
+     */
+    public Report hostPerformance() {
+        return new Report("Host Performance", Arrays.asList("Host ID", "Name", "Managed Properties", "Active Agreements", "Total Rent"),
+                () -> {
+                    SnapshotStore.Snapshot snapshot = snapshots.snapshot();
+                    Map<String, Long> activeAgreements = countActiveAgreements(snapshot, a -> a[AGREEMENT_HOST]);
+                    Map<String, Double> activeRent = snapshot.rows(AGREEMENTS).stream()
+                            .filter(Reports::isCurrentlyActive)
+                            .collect(Collectors.groupingBy(a -> a[AGREEMENT_HOST], Collectors.summingDouble(a -> Double.parseDouble(a[AGREEMENT_RENT]))));
+                    Map<String, Long> managedProperties = snapshot.rows(PROPERTIES).stream()
+                            .flatMap(p -> ids(p[PROPERTY_HOSTS]).stream().distinct())
+                            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+                    return snapshot.rows(HOSTS).stream().map(host -> Arrays.asList(
+                            host[ID],
+                            host[PERSON_NAME],
+                            String.valueOf(managedProperties.getOrDefault(host[ID], 0L)),
+                            String.valueOf(activeAgreements.getOrDefault(host[ID], 0L)),
+                            String.format("%.2f", activeRent.getOrDefault(host[ID], 0.0))
+                    ));
+                });
+    }
+
+
+    /**
+     * Lists the rent charged, paid and outstanding per main tenant, largest arrears first.
+     * @return The tenant arrears report
+     */
+    public Report tenantArrears() {
+        return new Report("Tenant Arrears", Arrays.asList("Tenant ID - Name", "Charged", "Paid", "Arrears"),
+                () -> arrearsEngine.getTenantArrears().stream().map(balance -> {
+                    Tenant tenant = tenantManager.get(balance.getId());
+                    return balanceRow(balance, tenant != null ? tenant.getFullName() : null);
+                }));
+    }
+
+
+    /**
+     * Lists the rent charged, paid and outstanding per owner, largest arrears first.
+     * @return The owner arrears report
+     */
+    public Report ownerArrears() {
+        return new Report("Owner Arrears", Arrays.asList("Owner ID - Name", "Charged", "Paid", "Arrears"),
+                () -> arrearsEngine.getOwnerArrears().stream().map(balance -> {
+                    Owner owner = ownerManager.get(balance.getId());
+                    return balanceRow(balance, owner != null ? owner.getFullName() : null);
+                }));
+    }
+
+
+    /**
+     * Counts the currently active agreements per key in a single pass over the agreements of a snapshot.
+     * @param snapshot The snapshot to read
+     * @param keyOf The function giving the key of an agreement row
+     * @return The number of active agreements per key
+     */
+    private static Map<String, Long> countActiveAgreements(SnapshotStore.Snapshot snapshot, Function<String[], String> keyOf) {
+        Map<String, Long> counts = new HashMap<>();
+        for (String[] agreement : snapshot.rows(AGREEMENTS)) {
+            if (isCurrentlyActive(agreement)) {
+                counts.merge(keyOf.apply(agreement), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+
+    /**
+     * Checks an agreement row the way RentalAgreement.isCurrentlyActive checks the live object.
+     * @param agreement The agreement row
+     * @return true if the agreement is ACTIVE and today falls within its lease
+     */
+    private static boolean isCurrentlyActive(String[] agreement) {
+        LocalDate today = LocalDate.now();
+        return agreement[AGREEMENT_STATUS].equals(RentalAgreement.Status.ACTIVE.toString())
+                && !today.isBefore(LocalDate.parse(agreement[AGREEMENT_START]))
+                && today.isBefore(LocalDate.parse(agreement[AGREEMENT_END]));
+    }
+
+
+    private static String nameOf(SnapshotStore.Snapshot snapshot, String filename, String id) {
+        String[] person = snapshot.get(filename, id);
+        return person != null ? person[PERSON_NAME] : "(deleted)";
+    }
+
+
+    private static List<String> ids(String column) {
+        List<String> ids = new ArrayList<>();
+        for (String id : column.split(";")) {
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+
+    private static List<String> paymentRow(Tenant tenant, Payment payment) {
+        return Arrays.asList(
+                payment.getPaymentId(),
+                tenant.getId(),
+                DateUtil.formatDate(payment.getPaymentDate()),
+                String.format("%.2f", payment.getAmount()),
+                payment.getPaymentMethod(),
+                payment.getRentalAgreementId()
+        );
+    }
+
+
+    private static List<String> balanceRow(ArrearsEngine.Balance balance, String name) {
+        return Arrays.asList(
+                balance.getId() + (name != null ? " - " + name : ""),
+                String.format("%.2f", balance.getCharged()),
+                String.format("%.2f", balance.getPaid()),
+                String.format("%.2f", balance.getArrears())
+        );
+    }
+
+
+    private static String typeOf(String[] property) {
+        return property[PROPERTY_TYPE].equals("RESIDENTIAL") ? "Residential" : "Commercial";
+    }
+
+
+    private static String columnOf(IncomeCube.Dimension dimension) {
+        switch (dimension) {
+            case OWNER:
+                return "Owner ID";
+            case HOST:
+                return "Host ID";
+            case PROPERTY:
+                return "Property ID";
+            case PROPERTY_TYPE:
+                return "Property Type";
+            default:
+                return "Month";
+        }
+    }
+}
@@ -12,16 +12,30 @@ import java.util.function.Function;
 
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import com.rentalsystem.model.Payment;
 import com.rentalsystem.model.PropertyStatus;
+import com.rentalsystem.api.ApiServer;
+import com.rentalsystem.config.AppConfig;
+import com.rentalsystem.monitor.LoadStageEvent;
+import com.rentalsystem.query.Criteria;
+import com.rentalsystem.query.PropertyCriteria;
+import com.rentalsystem.report.Report;
+import com.rentalsystem.report.ReportExporter;
+import com.rentalsystem.report.Reports;
 import com.rentalsystem.util.FileHandler;
 
 import org.jline.reader.Completer;
@@ -32,8 +46,11 @@ import org.jline.reader.impl.completer.StringsCompleter;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 
+import com.rentalsystem.manager.ArrearsEngine;
+import com.rentalsystem.manager.EntityListener;
 import com.rentalsystem.manager.HostManager;
 import com.rentalsystem.manager.HostManagerImpl;
+import com.rentalsystem.manager.IncomeCube;
 import com.rentalsystem.manager.OwnerManager;
 import com.rentalsystem.manager.OwnerManagerImpl;
 import com.rentalsystem.manager.PropertyManager;
@@ -42,6 +59,7 @@ import com.rentalsystem.manager.RentalManager;
 import com.rentalsystem.manager.RentalManagerImpl;
 import com.rentalsystem.manager.TenantManager;
 import com.rentalsystem.manager.TenantManagerImpl;
+import com.rentalsystem.manager.UnitOfWork;
 import com.rentalsystem.model.CommercialProperty;
 import com.rentalsystem.model.Host;
 import com.rentalsystem.model.Owner;
@@ -49,8 +67,13 @@ import com.rentalsystem.model.Property;
 import com.rentalsystem.model.RentalAgreement;
 import com.rentalsystem.model.ResidentialProperty;
 import com.rentalsystem.model.Tenant;
+import com.rentalsystem.util.AgreementArchiver;
 import com.rentalsystem.util.DateUtil;
 import com.rentalsystem.util.InputValidator;
+import com.rentalsystem.util.IntegrityReport;
+import com.rentalsystem.util.IntegrityVerifier;
+import com.rentalsystem.util.ProgressCounter;
+import com.rentalsystem.util.RowCache;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -71,13 +94,25 @@ public class ConsoleUI {
     private OwnerManager ownerManager;
     private HostManager hostManager;
     private PropertyManager propertyManager;
+    private ArrearsEngine arrearsEngine;
+    private Reports reports;
+    private ApiServer apiServer;
 
 
     // UI components
     private FileHandler fileHandler;
     private final LineReader reader;
+    private final IdCompleter idCompleter;
     private final Terminal terminal;
     private final TableFormatter tableFormatter;
+    private final TableViewport tableViewport;
+
+
+    // Formatted rows of the entity listings, reused until any entity changes and bumps the display version
+    private final AtomicLong displayVersion = new AtomicLong();
+    private final RowCache propertyRows = new RowCache(AppConfig.getIntProperty("display.rowCache", 10000));
+    private final RowCache agreementRows = new RowCache(AppConfig.getIntProperty("display.rowCache", 10000));
+    private final RowCache tenantRows = new RowCache(AppConfig.getIntProperty("display.rowCache", 10000));
 
 
     // Date formatter for consistent date formatting
@@ -91,6 +126,9 @@ public class ConsoleUI {
 
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
 
+    // Edit distance per word tolerated when a search falls back to fuzzy matching
+    private static final int FUZZY_SEARCH_DISTANCE = 2;
+
     // ASCII art for the application logo
     private static final String[] RENTAL_ASCII = {
             "██████╗ ███████╗███╗   ██╗████████╗ █████╗ ██╗      ",
@@ -145,23 +183,6 @@ public class ConsoleUI {
     }
 
 
-    private static class LoaderSpinner {
-        private static final String[] SPINNER_FRAMES = {"|", "/", "-", "\\"};
-        private int currentFrame = 0;
-
-
-        public void spin() {
-            System.out.print("\r" + SPINNER_FRAMES[currentFrame]);
-            currentFrame = (currentFrame + 1) % SPINNER_FRAMES.length;
-        }
-
-
-        public void stop() {
-            System.out.print("\r");
-        }
-    }
-
-
     /**
      * Constructor for the ConsoleUI class.
      * Initializes the terminal, line reader, and table formatter.
@@ -170,14 +191,17 @@ public class ConsoleUI {
     public ConsoleUI() throws IOException {
         terminal = TerminalBuilder.builder().system(true).build();
         List<Completer> completers = new ArrayList<>();
-        completers.add(new StringsCompleter("1", "2", "3", "4", "5", "6", "7"));
+        completers.add(new StringsCompleter("1", "2", "3", "4", "5", "6", "7", "8", "9"));
+        idCompleter = new IdCompleter(new AggregateCompleter(completers));
         reader = LineReaderBuilder.builder()
                 .terminal(terminal)
-                .completer(new AggregateCompleter(completers))
+                .completer(idCompleter)
+                .completionMatcher(idCompleter.matcher())
                 .build();
 
 
         tableFormatter = new TableFormatter(terminal);
+        tableViewport = new TableViewport(terminal, tableFormatter);
         fileHandler = new FileHandler();  // Initialize fileHandler here
     }
 
@@ -186,16 +210,20 @@ public class ConsoleUI {
      * Displays a progress bar during initialization.
      */
     private void initializeManagers() {
-        ProgressDisplay progressDisplay = new ProgressDisplay(terminal);
         System.out.println("Initializing system...");
 
 
-        String[] steps = {"Initializing managers", "Syncing managers", "Loading hosts", "Loading tenants", "Loading owners", "Loading properties", "Loading rental agreements", "Loading payments"};
+        String[] steps = {"Initializing managers", "Syncing managers", "Verifying data integrity", "Archiving completed agreements", "Loading hosts", "Loading tenants", "Loading owners", "Loading properties", "Loading rental agreements", "Loading payments"};
         int totalSteps = steps.length;
+        IntegrityReport integrityReport = null;
+        ProgressCounter progress = new ProgressCounter();
+        ProgressDisplay.Ticker ticker = new ProgressDisplay(terminal).start(steps[0], progress);
 
 
         for (int i = 0; i < totalSteps; i++) {
-            progressDisplay.showProgress(steps[i], i + 1, totalSteps);
+            ticker.step(steps[i], i + 1, totalSteps);
+            LoadStageEvent event = new LoadStageEvent(steps[i]);
+            event.begin();
 
 
             switch (i) {
@@ -206,6 +234,7 @@ public class ConsoleUI {
                     this.ownerManager = new OwnerManagerImpl(fileHandler);
                     this.propertyManager = new PropertyManagerImpl(fileHandler);
                     this.rentalManager = new RentalManagerImpl(fileHandler);
+                    this.fileHandler.setProgress(progress);
                     break;
                 case 1:
                     // Set dependencies
@@ -214,37 +243,72 @@ public class ConsoleUI {
                     ((HostManagerImpl)this.hostManager).setDependencies(propertyManager, ownerManager);
                     ((OwnerManagerImpl)this.ownerManager).setDependencies(propertyManager, hostManager);
                     this.fileHandler.syncManager(rentalManager, tenantManager, ownerManager, hostManager, propertyManager);
+
+                    // Keep ID completion in sync with the managers from the first loaded record
+                    propertyManager.addChangeListener(idCompleter.listenerFor(IdCompleter.Scope.PROPERTY, Property::getPropertyId, Property::getAddress));
+                    tenantManager.addChangeListener(idCompleter.listenerFor(IdCompleter.Scope.TENANT, Tenant::getId, Tenant::getFullName));
+                    ownerManager.addChangeListener(idCompleter.listenerFor(IdCompleter.Scope.OWNER, Owner::getId, Owner::getFullName));
+                    hostManager.addChangeListener(idCompleter.listenerFor(IdCompleter.Scope.HOST, Host::getId, Host::getFullName));
+                    rentalManager.addChangeListener(idCompleter.listenerFor(IdCompleter.Scope.AGREEMENT, RentalAgreement::getAgreementId,
+                            a -> a.getMainTenant() != null ? a.getMainTenant().getFullName() : null));
+
+                    // Listing rows join across entities, so any change makes every cached row stale
+                    propertyManager.addChangeListener(displayInvalidator());
+                    tenantManager.addChangeListener(displayInvalidator());
+                    ownerManager.addChangeListener(displayInvalidator());
+                    hostManager.addChangeListener(displayInvalidator());
+                    rentalManager.addChangeListener(displayInvalidator());
+                    tenantManager.addPaymentListener(displayInvalidator());
+                    this.arrearsEngine = new ArrearsEngine(rentalManager, tenantManager);
+                    this.reports = new Reports(rentalManager, tenantManager, ownerManager, arrearsEngine, fileHandler);
                     break;
                 case 2:
-                    this.hostManager.load();
+                    // Reads every file in parallel; the loads below reuse the verified rows
+                    if (AppConfig.getBooleanProperty("integrity.verify", false)) {
+                        integrityReport = new IntegrityVerifier(fileHandler)
+                                .verify(AppConfig.getBooleanProperty("integrity.quarantine", false));
+                    }
                     break;
                 case 3:
-                    this.tenantManager.load();
+                    // Moves old COMPLETED agreements and their payments to data/archive before anything is built from them
+                    if (AppConfig.getBooleanProperty("archive.enabled", false)) {
+                        new AgreementArchiver(fileHandler).archive(
+                                LocalDate.now().minusDays(AppConfig.getIntProperty("archive.afterDays", 365)));
+                    }
                     break;
                 case 4:
-                    this.ownerManager.load();
+                    this.hostManager.load();
                     break;
                 case 5:
-                    this.propertyManager.load();
+                    this.tenantManager.load();
                     break;
                 case 6:
-                    this.rentalManager.load();
+                    this.ownerManager.load();
                     break;
                 case 7:
+                    this.propertyManager.load();
+                    break;
+                case 8:
+                    this.rentalManager.load();
+                    break;
+                case 9:
                     this.tenantManager.loadPayments();
                     break;
             }
-
-
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            event.commit();
         }
+        fileHandler.setProgress(null);
+        fileHandler.finishLoad();
+        ticker.close();
 
 
+        // Resolve the remaining owner, host and tenant links in the background while the menu is in use
+        fileHandler.getLinker().start();
+
         System.out.println("\nSystem initialization complete!");
+        if (integrityReport != null && !integrityReport.isClean()) {
+            System.out.println(TableFormatter.ANSI_YELLOW + integrityReport.summary(10) + TableFormatter.ANSI_RESET);
+        }
     }
 
 
@@ -256,6 +320,7 @@ public class ConsoleUI {
         clearScreen();
         printWelcomeMessage();
         initializeManagers();
+        startApiServer();
 
 
         while (true) {
@@ -281,6 +346,9 @@ public class ConsoleUI {
                     break;
                 case "7":
                     handleSave();
+                    if (apiServer != null) {
+                        apiServer.stop();
+                    }
                     displayExitMessage();
                     return;
                 default:
@@ -291,35 +359,52 @@ public class ConsoleUI {
 
 
     /**
-     * Handles saving data to files.
-     * Displays a spinner while saving is in progress.
+     * Starts the embedded HTTP API when api.enabled is set, so other tools can query the data while the
+     * terminal session is running.
      */
-    private void handleSave() {
-        LoaderSpinner spinner = new LoaderSpinner();
-        System.out.print("Saving data ");
-
-
-        Thread saveThread = new Thread(() -> {
-            this.tenantManager.saveToFile();
-            this.propertyManager.saveToFile();
-            this.ownerManager.saveToFile();
-            this.rentalManager.saveToFile();
-            this.hostManager.saveToFile();
-        });
-
-
-        saveThread.start();
+    private void startApiServer() {
+        if (!AppConfig.getBooleanProperty("api.enabled", false)) {
+            return;
+        }
+        try {
+            apiServer = new ApiServer(
+                    AppConfig.getIntProperty("api.port", 8080),
+                    AppConfig.getIntProperty("api.workers", 8),
+                    AppConfig.getIntProperty("api.queueSize", 256),
+                    rentalManager, tenantManager, ownerManager, hostManager, propertyManager, reports,
+                    fileHandler.getDataLock(), fileHandler.getLinker());
+            apiServer.start();
+            System.out.println(ANSI_GREEN + "HTTP API listening on http://127.0.0.1:" + apiServer.getPort() + "/api/" + ANSI_RESET);
+        } catch (IOException e) {
+            System.out.println("Could not start the HTTP API: " + e.getMessage());
+        }
+    }
 
 
-        while (saveThread.isAlive()) {
-            spinner.spin();
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Handles saving data to files.
+     * Shows the rows and bytes written while saving is in progress.
+     */
+    private void handleSave() {
+        ProgressCounter progress = new ProgressCounter();
+        fileHandler.setProgress(progress);
+        ProgressDisplay.Ticker ticker = new ProgressDisplay(terminal).start("Saving data", progress);
+        try {
+            // One unit of work, so the five files are replaced together or not at all
+            new UnitOfWork(fileHandler)
+                    .save(tenantManager)
+                    .save(propertyManager)
+                    .save(ownerManager)
+                    .save(rentalManager)
+                    .save(hostManager)
+                    .commit();
+        } catch (RuntimeException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Error saving data: " + e.getMessage() + TableFormatter.ANSI_RESET);
+            return;
+        } finally {
+            ticker.close();
+            fileHandler.setProgress(null);
         }
-        spinner.stop();
         System.out.println("Data saved successfully.");
     }
 
@@ -430,7 +515,8 @@ public class ConsoleUI {
             clearScreen();
             List<String> options = Arrays.asList(
                     "Add Agreement", "Update Agreement", "Delete Agreement",
-                    "List Agreements", "Search Agreements", "Add/Remove Tenant to Existing Agreement", "Back to Main Menu"
+                    "List Agreements", "Search Agreements", "Add/Remove Tenant to Existing Agreement",
+                    "Find Available Properties", "View Archived Agreement", "Back to Main Menu"
             );
             tableFormatter.printTable("RENTAL AGREEMENTS", options, TableFormatter.ANSI_BLUE);
             String choice = readUserInput("Enter your choice: ");
@@ -456,6 +542,12 @@ public class ConsoleUI {
                     addRemoveTenantToExistingAgreement();  // New option for adding/removing tenant to existing agreement
                     break;
                 case "7":
+                    findAvailableProperties();
+                    break;
+                case "8":
+                    viewArchivedAgreement();
+                    break;
+                case "9":
                     return;
                 default:
                     System.out.println("Invalid choice. Please try again.");
@@ -472,7 +564,7 @@ public class ConsoleUI {
             clearScreen();
             List<String> options = Arrays.asList(
                     "Add Tenant", "Update Tenant", "Delete Tenant",
-                    "List Tenants", "Search Tenants", "Back to Main Menu"
+                    "List Tenants", "Search Tenants", "Record Payment", "Back to Main Menu"
             );
             tableFormatter.printTable("TENANTS", options, TableFormatter.ANSI_PURPLE);
             String choice = readUserInput("Enter your choice: ");
@@ -495,6 +587,9 @@ public class ConsoleUI {
                     searchTenants();
                     break;
                 case "6":
+                    recordPayment();
+                    break;
+                case "7":
                     return;
                 default:
                     System.out.println("Invalid choice. Please try again.");
@@ -595,7 +690,7 @@ public class ConsoleUI {
             clearScreen();
             List<String> options = Arrays.asList(
                     "Add Property", "Update Property", "Delete Property",
-                    "List Properties", "Search Properties", "Back to Main Menu"
+                    "List Properties", "Search Properties", "Filter Properties", "Back to Main Menu"
             );
             tableFormatter.printTable("PROPERTIES", options, TableFormatter.ANSI_YELLOW);
             String choice = readUserInput("Enter your choice: ");
@@ -618,6 +713,9 @@ public class ConsoleUI {
                     searchProperties();
                     break;
                 case "6":
+                    filterProperties();
+                    break;
+                case "7":
                     return;
                 default:
                     System.out.println("Invalid choice. Please try again.");
@@ -637,7 +735,7 @@ public class ConsoleUI {
             List<String> options = Arrays.asList(
                     "Income Report", "Occupancy Report", "Tenant Report",
                     "Property Status Report", "Tenant Payment History", "Host Performance Report",
-                    "Back to Main Menu"
+                    "Arrears Report", "Portfolio Income Report", "Export Report", "Back to Main Menu"
             );
             tableFormatter.printTable("REPORTS", options, TableFormatter.ANSI_RED);
             String choice = readUserInput("Enter your choice: ");
@@ -668,6 +766,15 @@ public class ConsoleUI {
                     generateHostPerformanceReport();
                     break;
                 case "7":
+                    generateArrearsReport();
+                    break;
+                case "8":
+                    generatePortfolioIncomeReport();
+                    break;
+                case "9":
+                    exportReport();
+                    break;
+                case "10":
                     return;
                 default:
                     System.out.println("Invalid choice. Please try again.");
@@ -677,27 +784,177 @@ public class ConsoleUI {
     }
 
 
+    /**
+     * Generates and displays the rent charged, paid and outstanding per tenant and per owner.
+     */
+    private void generateArrearsReport() {
+        double totalArrears = arrearsEngine.getTenantArrears().stream().mapToDouble(ArrearsEngine.Balance::getArrears).sum();
+        System.out.println(TableFormatter.ANSI_GREEN + "Total Arrears: $" + String.format("%.2f", totalArrears) + TableFormatter.ANSI_RESET);
+        printReport(reports.tenantArrears());
+        printReport(reports.ownerArrears());
+    }
+
+
+    /**
+     * Generates and displays the rent due and payments received over a range of months, at a level chosen by the user.
+     */
+    private void generatePortfolioIncomeReport() {
+        Report report = readPortfolioIncomeReport();
+        if (report != null) {
+            printReport(report);
+        }
+    }
+
+
+    /**
+     * Asks for the levels, owner and month range of a portfolio income report.
+     * @return The report, or null if the input was invalid
+     */
+    private Report readPortfolioIncomeReport() {
+        String levels = readUserInputAllowEmpty("Group by (owner, host, property, type, month; comma-separated, press enter for a single total): ").trim();
+        List<IncomeCube.Dimension> groupBy = new ArrayList<>();
+        for (String level : levels.split(",")) {
+            switch (level.trim().toLowerCase()) {
+                case "":
+                    break;
+                case "owner":
+                    groupBy.add(IncomeCube.Dimension.OWNER);
+                    break;
+                case "host":
+                    groupBy.add(IncomeCube.Dimension.HOST);
+                    break;
+                case "property":
+                    groupBy.add(IncomeCube.Dimension.PROPERTY);
+                    break;
+                case "type":
+                    groupBy.add(IncomeCube.Dimension.PROPERTY_TYPE);
+                    break;
+                case "month":
+                    groupBy.add(IncomeCube.Dimension.MONTH);
+                    break;
+                default:
+                    System.out.println(TableFormatter.ANSI_RED + "Unknown level: " + level.trim() + TableFormatter.ANSI_RESET);
+                    return null;
+            }
+        }
+        Map<IncomeCube.Dimension, String> filter = new EnumMap<>(IncomeCube.Dimension.class);
+        String ownerId = readEntityId("Enter owner ID (leave empty for all owners): ", IdCompleter.Scope.OWNER);
+        if (!ownerId.isEmpty()) {
+            filter.put(IncomeCube.Dimension.OWNER, ownerId);
+        }
+        try {
+            String from = readUserInputAllowEmpty("Enter first month (yyyy-MM, press enter for the last 12 months): ").trim();
+            YearMonth first = from.isEmpty() ? YearMonth.now().minusMonths(11) : YearMonth.parse(from);
+            String to = readUserInputAllowEmpty("Enter last month (yyyy-MM, press enter for this month): ").trim();
+            YearMonth last = to.isEmpty() ? YearMonth.now() : YearMonth.parse(to);
+            return reports.portfolioIncome(groupBy, filter, first, last);
+        } catch (DateTimeParseException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Invalid month format. Please use yyyy-MM." + TableFormatter.ANSI_RESET);
+            return null;
+        }
+    }
+
+
+    /**
+     * Streams a report to a CSV or JSON file chosen by the user.
+     * Leaving the tenant ID empty exports the payment history of every tenant.
+     */
+    private void exportReport() {
+        List<String> options = Arrays.asList(
+                "Income Report", "Monthly Income Report", "Occupancy Report", "Tenant Report",
+                "Property Status Report", "Payment History", "Host Performance Report",
+                "Tenant Arrears Report", "Owner Arrears Report", "Portfolio Income Report"
+        );
+        tableFormatter.printTable("EXPORT REPORT", options, TableFormatter.ANSI_RED);
+        String choice = readUserInputAllowEsc("Enter the report to export (ESC to cancel): ");
+        if (choice == null) {
+            return;
+        }
+        Report report;
+        switch (choice) {
+            case "1":
+                report = reports.income();
+                break;
+            case "2":
+                report = reports.monthlyIncome(12);
+                break;
+            case "3":
+                report = reports.occupancy();
+                break;
+            case "4":
+                report = reports.tenants();
+                break;
+            case "5":
+                report = reports.propertyStatus();
+                break;
+            case "6":
+                String tenantId = readEntityId("Enter tenant ID (leave empty for all tenants): ", IdCompleter.Scope.TENANT);
+                Tenant tenant = null;
+                if (!tenantId.isEmpty()) {
+                    tenant = tenantManager.get(tenantId);
+                    if (tenant == null) {
+                        System.out.println("Tenant not found.");
+                        return;
+                    }
+                }
+                report = reports.paymentHistory(tenant);
+                break;
+            case "7":
+                report = reports.hostPerformance();
+                break;
+            case "8":
+                report = reports.tenantArrears();
+                break;
+            case "9":
+                report = reports.ownerArrears();
+                break;
+            case "10":
+                report = readPortfolioIncomeReport();
+                if (report == null) {
+                    return;
+                }
+                break;
+            default:
+                System.out.println("Invalid choice.");
+                return;
+        }
+
+        String fileName = readUserInput("Enter the output file (.csv or .json): ");
+        ReportExporter.Format format = ReportExporter.Format.fromFileName(fileName);
+        if (format == null) {
+            System.out.println("The file name must end in .csv or .json.");
+            return;
+        }
+        try {
+            ProgressCounter progress = new ProgressCounter();
+            long rows;
+            ProgressDisplay.Ticker ticker = new ProgressDisplay(terminal).start("Exporting " + report.getTitle(), progress);
+            try {
+                rows = new ReportExporter(progress).export(report, Paths.get(fileName), format);
+            } finally {
+                ticker.close();
+            }
+            System.out.println(TableFormatter.ANSI_GREEN + "Exported " + rows + " rows of the " + report.getTitle() + " report to " + fileName + TableFormatter.ANSI_RESET);
+        } catch (IOException e) {
+            System.out.println("Error exporting report: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Displays a report as a terminal table.
+     * @param report The report to display
+     */
+    private void printReport(Report report) {
+        tableFormatter.printDataTable(report.getHeaders(), report.toTable(), TableFormatter.ANSI_CYAN);
+    }
+
+
     /**
      * Generates and displays a property status report.
      */
     private void generatePropertyStatusReport() {
-        List<Property> properties = propertyManager.getAll();
-        List<String> headers = Arrays.asList("Property ID", "Type", "Address", "Status", "Owner ID - Name", "Host ID - Name");
-        List<List<String>> data = new ArrayList<>();
-        for (Property property : properties) {
-            String hostInfo = property.getHosts().stream()
-                    .map(h -> h.getId() + " - " + h.getFullName())
-                    .collect(Collectors.joining(", "));
-            data.add(Arrays.asList(
-                    property.getPropertyId(),
-                    property instanceof ResidentialProperty ? "Residential" : "Commercial",
-                    property.getAddress(),
-                    property.getStatus().toString(),
-                    property.getOwner().getId() + " - " + property.getOwner().getFullName(),
-                    hostInfo.isEmpty() ? "No Host" : hostInfo
-            ));
-        }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+        printReport(reports.propertyStatus());
     }
 
 
@@ -705,29 +962,27 @@ public class ConsoleUI {
      * Generates and displays a tenant payment history report.
      */
     private void generateTenantPaymentHistoryReport() {
-        String tenantId = readUserInput("Enter tenant ID: ");
+        String tenantId = readEntityId("Enter tenant ID: ", IdCompleter.Scope.TENANT);
         Tenant tenant = tenantManager.get(tenantId);
         if (tenant == null) {
             System.out.println("Tenant not found.");
             return;
         }
-        List<Payment> payments = tenant.getPayments();
-        if (payments.isEmpty()) {
+        if (tenant.getPayments().isEmpty()) {
             System.out.println("No payment history found for this tenant.");
             return;
         }
-        List<String> headers = Arrays.asList("Payment ID", "Date", "Amount", "Method", "Agreement ID");
-        List<List<String>> data = new ArrayList<>();
-        for (Payment payment : payments) {
-            data.add(Arrays.asList(
-                    payment.getPaymentId(),
-                    dateFormat.format(payment.getPaymentDate()),
-                    String.format("%.2f", payment.getAmount()),
-                    payment.getPaymentMethod(),
-                    payment.getRentalAgreement().getAgreementId()
-            ));
+        String from = readUserInputAllowEmpty("Enter start date (yyyy-MM-dd, press enter for the full history): ");
+        if (from.isEmpty()) {
+            printReport(reports.paymentHistory(tenant));
+            return;
+        }
+        String to = readUserInputAllowEmpty("Enter end date (yyyy-MM-dd, press enter for today): ");
+        try {
+            printReport(reports.paymentHistory(tenant, dateFormat.parse(from), to.isEmpty() ? new Date() : dateFormat.parse(to)));
+        } catch (ParseException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Invalid date format. Please use yyyy-MM-dd." + TableFormatter.ANSI_RESET);
         }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
     }
 
     /**
@@ -740,33 +995,42 @@ public class ConsoleUI {
         return reader.readLine().trim();
     }
 
+    /**
+     * Reads an existing entity ID, offering tab completion of IDs and names of that entity type.
+     * @param prompt The prompt to display to the user
+     * @param scope The entity type to complete
+     * @return The user's input as a string
+     */
+    private String readEntityId(String prompt, IdCompleter.Scope scope) {
+        idCompleter.setScope(scope);
+        try {
+            return readUserInput(prompt);
+        } finally {
+            idCompleter.setScope(IdCompleter.Scope.NONE);
+        }
+    }
+
+    /**
+     * Reads an existing entity ID with tab completion, allowing escape (ESC key) to return null.
+     * @param prompt The prompt to display to the user
+     * @param scope The entity type to complete
+     * @return The user's input as a string, or null if ESC was pressed
+     */
+    private String readEntityIdAllowEsc(String prompt, IdCompleter.Scope scope) {
+        idCompleter.setScope(scope);
+        try {
+            return readUserInputAllowEsc(prompt);
+        } finally {
+            idCompleter.setScope(IdCompleter.Scope.NONE);
+        }
+    }
+
 
     /**
      * Generates and displays a host performance report.
      */
     private void generateHostPerformanceReport() {
-        List<Host> hosts = hostManager.getAll();
-        List<String> headers = Arrays.asList("Host ID", "Name", "Managed Properties", "Active Agreements", "Total Rent");
-        List<List<String>> data = new ArrayList<>();
-        for (Host host : hosts) {
-            List<RentalAgreement> activeAgreements = rentalManager.getAll().stream()
-                    .filter(a -> a.getHost().getId().equals(host.getId()) && a.isCurrentlyActive())
-                    .collect(Collectors.toList());
-            int managedProperties = (int) propertyManager.getAll().stream()
-                    .filter(p -> p.getHosts().stream().anyMatch(h -> h.getId().equals(host.getId())))
-                    .count();
-            double totalRent = activeAgreements.stream()
-                    .mapToDouble(RentalAgreement::getRentAmount)
-                    .sum();
-            data.add(Arrays.asList(
-                    host.getId(),
-                    host.getFullName(),
-                    String.valueOf(managedProperties),
-                    String.valueOf(activeAgreements.size()),
-                    String.format("%.2f", totalRent)
-            ));
-        }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+        printReport(reports.hostPerformance());
     }
 
     /**
@@ -835,7 +1099,7 @@ public class ConsoleUI {
     private Property getUserInputProperty() {
         String id = "";
         while (id.isBlank()) {
-            id = readUserInput("Enter property ID: ");
+            id = readEntityId("Enter property ID: ", IdCompleter.Scope.PROPERTY);
             Property obj = propertyManager.get(id);
             if (obj != null) {
                 return obj;
@@ -854,7 +1118,7 @@ public class ConsoleUI {
     private Owner getUserInputOwner() {
         String id = "";
         while (id.isBlank()) {
-            id = readUserInput("Enter owner ID: ");
+            id = readEntityId("Enter owner ID: ", IdCompleter.Scope.OWNER);
             Owner obj = ownerManager.get(id);
             if (obj != null) {
                 return obj;
@@ -873,7 +1137,7 @@ public class ConsoleUI {
     private Host getUserInputHost() {
         String id = "";
         while (id.isBlank()) {
-            id = readUserInput("Enter host ID: ");
+            id = readEntityId("Enter host ID: ", IdCompleter.Scope.HOST);
             Host obj = hostManager.get(id);
             if (obj != null) {
                 return obj;
@@ -889,7 +1153,7 @@ public class ConsoleUI {
      * @return The selected Tenant object, or null if not found
      */
     private Tenant getUserInputTenant() {
-        String tenantId = readUserInput("Enter tenant ID: ");
+        String tenantId = readEntityId("Enter tenant ID: ", IdCompleter.Scope.TENANT);
         Tenant tenant = tenantManager.get(tenantId);
         if (tenant == null) {
             System.out.println("Tenant with ID " + tenantId + " not found.");
@@ -994,7 +1258,7 @@ public class ConsoleUI {
 
 
         // Ask for the rental agreement ID
-        String agreementId = readUserInput("Enter rental agreement ID to " + action.toLowerCase() + " tenant to (or 'back' to return): ");
+        String agreementId = readEntityId("Enter rental agreement ID to " + action.toLowerCase() + " tenant to (or 'back' to return): ", IdCompleter.Scope.AGREEMENT);
         if (agreementId.equalsIgnoreCase("back")) {
             return;  // Exit if user wants to go back
         }
@@ -1009,7 +1273,7 @@ public class ConsoleUI {
 
 
         // Ask for the tenant ID to add or remove
-        String tenantId = readUserInput("Enter tenant ID: ");
+        String tenantId = readEntityId("Enter tenant ID: ", IdCompleter.Scope.TENANT);
         Tenant tenant = tenantManager.get(tenantId);
         if (tenant == null) {
             System.out.println("Tenant with ID " + tenantId + " not found.");
@@ -1027,12 +1291,8 @@ public class ConsoleUI {
         }
 
 
-        // Optionally, save the updated rental agreement back to your manager or file
-        rentalManager.update(agreement);
-
-
-        // Call the saveToFile() method from RentalManager to persist the changes
-        rentalManager.saveToFile(); // Ensure this method is available in the RentalManager interface/implementation
+        // Apply the update and persist it with a single write
+        new UnitOfWork(fileHandler).update(rentalManager, agreementId, agreement).commit();
     }
 
     /**
@@ -1040,7 +1300,7 @@ public class ConsoleUI {
      */
     private void updateRentalAgreement() {
         while (true) {
-            String id = readUserInputAllowEsc("Enter agreement ID to update (press ESC to return): ");
+            String id = readEntityIdAllowEsc("Enter agreement ID to update (press ESC to return): ", IdCompleter.Scope.AGREEMENT);
             if (id == null) return;
 
             try {
@@ -1104,7 +1364,7 @@ public class ConsoleUI {
      */
     private void deleteRentalAgreement() {
         while (true) {
-            String agreementId = readUserInput("Enter agreement ID to delete (or 'back' to return): ");
+            String agreementId = readEntityId("Enter agreement ID to delete (or 'back' to return): ", IdCompleter.Scope.AGREEMENT);
             if (agreementId.equalsIgnoreCase("back")) {
                 return;
             }
@@ -1176,6 +1436,67 @@ public class ConsoleUI {
     }
 
 
+    /**
+     * Shows an agreement that was moved to the archive, with its payments, reading them from the archive on demand.
+     */
+    private void viewArchivedAgreement() {
+        String agreementId = readUserInput("Enter archived agreement ID: ");
+        RentalAgreement agreement = rentalManager.getArchived(agreementId);
+        if (agreement == null) {
+            System.out.println(TableFormatter.ANSI_YELLOW + "No archived rental agreement with ID " + agreementId + TableFormatter.ANSI_RESET);
+            return;
+        }
+        // Archived agreements may reference entities deleted since, so every link is optional
+        tableFormatter.printDataTable(
+                Arrays.asList("ID", "Property", "Tenant", "Start Date", "End Date", "Rent Amount", "Status"),
+                List.of(Arrays.asList(
+                        agreement.getAgreementId(),
+                        agreement.getProperty() != null ? agreement.getProperty().getPropertyId() : "-",
+                        agreement.getMainTenant() != null ? agreement.getMainTenant().getFullName() : "-",
+                        dateFormat.format(agreement.getStartDate()),
+                        dateFormat.format(agreement.getEndDate()),
+                        String.format("%.2f", agreement.getRentAmount()),
+                        agreement.getStatus().toString()
+                )),
+                TableFormatter.ANSI_CYAN);
+
+        List<List<String>> payments = new ArrayList<>();
+        for (Payment payment : rentalManager.getArchivedPayments(agreementId)) {
+            payments.add(Arrays.asList(
+                    payment.getPaymentId(),
+                    payment.getTenant() != null ? payment.getTenant().getFullName() : "-",
+                    dateFormat.format(payment.getPaymentDate()),
+                    String.format("%.2f", payment.getAmount()),
+                    payment.getPaymentMethod()
+            ));
+        }
+        if (payments.isEmpty()) {
+            System.out.println("No archived payments for this agreement.");
+        } else {
+            tableFormatter.printDataTable(Arrays.asList("Payment ID", "Tenant", "Date", "Amount", "Method"), payments, TableFormatter.ANSI_CYAN);
+        }
+    }
+
+
+    /**
+     * Lists the properties with no rental agreement overlapping a date range.
+     */
+    private void findAvailableProperties() {
+        Date from = DateUtil.readDate(reader, "Enter start date (yyyy-MM-dd): ");
+        Date to = DateUtil.readDate(reader, "Enter end date (yyyy-MM-dd): ");
+        if (to.before(from)) {
+            System.out.println(TableFormatter.ANSI_RED + "End date must be after start date." + TableFormatter.ANSI_RESET);
+            return;
+        }
+        List<Property> available = rentalManager.findAvailableProperties(from, to);
+        if (available.isEmpty()) {
+            System.out.println(TableFormatter.ANSI_YELLOW + "No properties are free for the whole period." + TableFormatter.ANSI_RESET);
+        } else {
+            displayProperties(available);
+        }
+    }
+
+
     private void addTenant() {
         String id = null;
         while (id == null) {
@@ -1206,9 +1527,48 @@ public class ConsoleUI {
         }
     }
 
+    /**
+     * Records a payment by a tenant against one of the rental agreements.
+     */
+    private void recordPayment() {
+        String tenantId = readEntityId("Enter tenant ID: ", IdCompleter.Scope.TENANT);
+        Tenant tenant = tenantManager.get(tenantId);
+        if (tenant == null) {
+            System.out.println("Tenant with ID " + tenantId + " not found.");
+            return;
+        }
+        String agreementId = readEntityId("Enter rental agreement ID: ", IdCompleter.Scope.AGREEMENT);
+        RentalAgreement agreement = rentalManager.get(agreementId);
+        if (agreement == null) {
+            System.out.println("Rental agreement with ID " + agreementId + " not found.");
+            return;
+        }
+        String paymentId = readUserInput("Enter payment ID: ");
+        if (tenant.getPayments().stream().anyMatch(payment -> payment.getPaymentId().equals(paymentId))) {
+            System.out.println(TableFormatter.ANSI_RED + "Payment with ID " + paymentId + " already exists." + TableFormatter.ANSI_RESET);
+            return;
+        }
+        Date paymentDate = DateUtil.readDate(reader, "Enter payment date (yyyy-MM-dd): ");
+        double amount;
+        try {
+            amount = Double.parseDouble(readUserInput("Enter amount: "));
+        } catch (NumberFormatException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Invalid amount format." + TableFormatter.ANSI_RESET);
+            return;
+        }
+        String method = readUserInput("Enter payment method: ");
+
+        try {
+            tenantManager.addPayment(new Payment(paymentId, agreement, tenant, paymentDate, amount, method));
+            System.out.println(TableFormatter.ANSI_GREEN + "Payment recorded successfully." + TableFormatter.ANSI_RESET);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Error: " + e.getMessage() + TableFormatter.ANSI_RESET);
+        }
+    }
+
     private void updateTenant() {
         while (true) {
-            String id = readUserInputAllowEsc("Enter tenant ID to update (press ESC to return): ");
+            String id = readEntityIdAllowEsc("Enter tenant ID to update (press ESC to return): ", IdCompleter.Scope.TENANT);
             if (id == null) return;
 
             try {
@@ -1279,7 +1639,7 @@ public class ConsoleUI {
 
     private void deleteTenant() {
         while (true) {
-            String id = readUserInput("Enter tenant ID to delete (or 'back' to return): ");
+            String id = readEntityId("Enter tenant ID to delete (or 'back' to return): ", IdCompleter.Scope.TENANT);
             if (id.equalsIgnoreCase("back")) {
                 return;
             }
@@ -1336,6 +1696,12 @@ public class ConsoleUI {
     private void searchTenants() {
         String keyword = readUserInput("Enter search keyword: ");
         List<Tenant> results = tenantManager.search(keyword);
+        if (results.isEmpty()) {
+            results = tenantManager.searchFuzzy(keyword, FUZZY_SEARCH_DISTANCE);
+            if (!results.isEmpty()) {
+                System.out.println(TableFormatter.ANSI_YELLOW + "No exact matches, showing close matches for: " + keyword + TableFormatter.ANSI_RESET);
+            }
+        }
         if (results.isEmpty()) {
             System.out.println(TableFormatter.ANSI_YELLOW + "No tenants found matching the keyword: " + keyword + TableFormatter.ANSI_RESET);
         } else {
@@ -1386,7 +1752,7 @@ public class ConsoleUI {
 
     private void updateOwner() {
         while (true) {
-            String id = readUserInputAllowEsc("Enter owner ID to update (press ESC to return): ");
+            String id = readEntityIdAllowEsc("Enter owner ID to update (press ESC to return): ", IdCompleter.Scope.OWNER);
             if (id == null) return;
 
             try {
@@ -1457,7 +1823,7 @@ public class ConsoleUI {
 
     private void deleteOwner() {
         while (true) {
-            String id = readUserInput("Enter owner ID to delete (or 'back' to return): ");
+            String id = readEntityId("Enter owner ID to delete (or 'back' to return): ", IdCompleter.Scope.OWNER);
             if (id.equalsIgnoreCase("back")) {
                 return;
             }
@@ -1515,6 +1881,12 @@ public class ConsoleUI {
     private void searchOwners() {
         String keyword = readUserInput("Enter search keyword: ");
         List<Owner> results = ownerManager.search(keyword);
+        if (results.isEmpty()) {
+            results = ownerManager.searchFuzzy(keyword, FUZZY_SEARCH_DISTANCE);
+            if (!results.isEmpty()) {
+                System.out.println(TableFormatter.ANSI_YELLOW + "No exact matches, showing close matches for: " + keyword + TableFormatter.ANSI_RESET);
+            }
+        }
         if (results.isEmpty()) {
             System.out.println(TableFormatter.ANSI_YELLOW + "No owners found matching the keyword: " + keyword + TableFormatter.ANSI_RESET);
         } else {
@@ -1565,7 +1937,7 @@ public class ConsoleUI {
 
     private void updateHost() {
         while (true) {
-            String id = readUserInputAllowEsc("Enter host ID to update (press ESC to return): ");
+            String id = readEntityIdAllowEsc("Enter host ID to update (press ESC to return): ", IdCompleter.Scope.HOST);
             if (id == null) return;
 
             try {
@@ -1636,7 +2008,7 @@ public class ConsoleUI {
 
     private void deleteHost() {
         while (true) {
-            String id = readUserInput("Enter host ID to delete (or 'back' to return): ");
+            String id = readEntityId("Enter host ID to delete (or 'back' to return): ", IdCompleter.Scope.HOST);
             if (id.equalsIgnoreCase("back")) {
                 return;
             }
@@ -1693,6 +2065,12 @@ public class ConsoleUI {
     private void searchHosts() {
         String keyword = readUserInput("Enter search keyword: ");
         List<Host> results = hostManager.search(keyword);
+        if (results.isEmpty()) {
+            results = hostManager.searchFuzzy(keyword, FUZZY_SEARCH_DISTANCE);
+            if (!results.isEmpty()) {
+                System.out.println(TableFormatter.ANSI_YELLOW + "No exact matches, showing close matches for: " + keyword + TableFormatter.ANSI_RESET);
+            }
+        }
         if (results.isEmpty()) {
             System.out.println(TableFormatter.ANSI_YELLOW + "No hosts found matching the keyword: " + keyword + TableFormatter.ANSI_RESET);
         } else {
@@ -1769,7 +2147,7 @@ public class ConsoleUI {
 
     private void updateProperty() {
         while (true) {
-            String id = readUserInputAllowEsc("Enter property ID to update (press ESC to return): ");
+            String id = readEntityIdAllowEsc("Enter property ID to update (press ESC to return): ", IdCompleter.Scope.PROPERTY);
             if (id == null) return;
 
             try {
@@ -1824,7 +2202,7 @@ public class ConsoleUI {
 
     private void deleteProperty() {
         while (true) {
-            String id = readUserInput("Enter property ID to delete (or 'back' to return): ");
+            String id = readEntityId("Enter property ID to delete (or 'back' to return): ", IdCompleter.Scope.PROPERTY);
             if (id.equalsIgnoreCase("back")) {
                 return;
             }
@@ -1948,6 +2326,12 @@ public class ConsoleUI {
     private void searchProperties() {
         String keyword = readUserInput("Enter search keyword: ");
         List<Property> results = propertyManager.search(keyword);
+        if (results.isEmpty()) {
+            results = propertyManager.searchFuzzy(keyword, FUZZY_SEARCH_DISTANCE);
+            if (!results.isEmpty()) {
+                System.out.println(TableFormatter.ANSI_YELLOW + "No exact matches, showing close matches for: " + keyword + TableFormatter.ANSI_RESET);
+            }
+        }
         if (results.isEmpty()) {
             System.out.println(TableFormatter.ANSI_YELLOW + "No properties found matching the keyword: " + keyword + TableFormatter.ANSI_RESET);
         } else {
@@ -1968,6 +2352,72 @@ public class ConsoleUI {
     }
 
 
+    /**
+     * Filters properties by several optional criteria at once, combined with AND.
+     */
+    private void filterProperties() {
+        try {
+            List<Criteria<Property>> parts = new ArrayList<>();
+
+            String type = readUserInputAllowEmpty("Type (residential/commercial, press enter to skip): ");
+            if (!type.isEmpty()) {
+                parts.add(PropertyCriteria.type(type));
+            }
+            PropertyStatus status = readOptionalPropertyStatus("Filter by status? (press enter to skip, any key to choose): ");
+            if (status != null) {
+                parts.add(PropertyCriteria.status(status));
+            }
+            String minPrice = readUserInputAllowEmpty("Minimum price (press enter to skip): ");
+            String maxPrice = readUserInputAllowEmpty("Maximum price (press enter to skip): ");
+            if (!minPrice.isEmpty() || !maxPrice.isEmpty()) {
+                parts.add(PropertyCriteria.priceBetween(
+                        minPrice.isEmpty() ? 0 : Double.parseDouble(minPrice),
+                        maxPrice.isEmpty() ? Double.MAX_VALUE : Double.parseDouble(maxPrice)));
+            }
+            String bedrooms = readUserInputAllowEmpty("Number of bedrooms (press enter to skip): ");
+            if (!bedrooms.isEmpty()) {
+                parts.add(PropertyCriteria.bedrooms(Integer.parseInt(bedrooms)));
+            }
+            String petFriendly = readUserInputAllowEmpty("Pet friendly? (true/false, press enter to skip): ");
+            if (!petFriendly.isEmpty()) {
+                parts.add(PropertyCriteria.petFriendly(Boolean.parseBoolean(petFriendly)));
+            }
+            String businessType = readUserInputAllowEmpty("Business type (press enter to skip): ");
+            if (!businessType.isEmpty()) {
+                parts.add(PropertyCriteria.businessType(businessType));
+            }
+            String ownerId = readUserInputAllowEmpty("Owner ID (press enter to skip): ");
+            if (!ownerId.isEmpty()) {
+                parts.add(PropertyCriteria.ownerId(ownerId));
+            }
+            String hostId = readUserInputAllowEmpty("Host ID (press enter to skip): ");
+            if (!hostId.isEmpty()) {
+                parts.add(PropertyCriteria.hostId(hostId));
+            }
+
+            if (parts.isEmpty()) {
+                displayProperties(propertyManager.getSorted("id"));
+                return;
+            }
+            Criteria<Property> criteria = parts.get(0);
+            for (int i = 1; i < parts.size(); i++) {
+                criteria = criteria.and(parts.get(i));
+            }
+
+            List<Property> results = propertyManager.query(criteria);
+            if (results.isEmpty()) {
+                System.out.println(TableFormatter.ANSI_YELLOW + "No properties match the given filters." + TableFormatter.ANSI_RESET);
+            } else {
+                displayProperties(results);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Error: Invalid number format." + TableFormatter.ANSI_RESET);
+        } catch (IllegalArgumentException e) {
+            System.out.println(TableFormatter.ANSI_RED + "Error: " + e.getMessage() + TableFormatter.ANSI_RESET);
+        }
+    }
+
+
     private void displayPropertyDetails(Property property) {
         List<String> headers = Arrays.asList("ID", "Type", "Address", "Price", "Status", "Owner");
         List<List<String>> data = List.of(Arrays.asList(
@@ -1981,42 +2431,72 @@ public class ConsoleUI {
         tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
     }
 
+    /**
+     * Creates a listener that moves the listings to a new display version, so their cached rows are rebuilt.
+     * @param <T> The type of entity listened to
+     * @return The listener
+     */
+    private <T> EntityListener<T> displayInvalidator() {
+        return new EntityListener<T>() {
+            @Override
+            public void onAdded(T entity) {
+                displayVersion.incrementAndGet();
+            }
+
+
+            @Override
+            public void onUpdated(T entity) {
+                displayVersion.incrementAndGet();
+            }
+
+
+            @Override
+            public void onRemoved(T entity) {
+                displayVersion.incrementAndGet();
+            }
+        };
+    }
+
+
     private void displayProperties(List<Property> properties) {
         List<String> headers = Arrays.asList(
                 "Property ID", "Type", "Address", "Price", "Status", "Owner", "Hosts", "Tenants"
         );
-        List<List<String>> data = new ArrayList<>();
-        for (Property property : properties) {
-            String propertyType = property instanceof ResidentialProperty ? "Residential" : "Commercial";
+        long version = displayVersion.get();
+        tableViewport.show("Properties", headers, TableViewport.rows(properties,
+                property -> propertyRows.get(property.getPropertyId(), version, () -> propertyRow(property))));
+    }
 
-            String ownerInfo = property.getOwner().getId() + " - " + property.getOwner().getFullName();
 
-            String hostsInfo = property.getHosts().stream()
-                    .map(h -> h.getId() + " - " + h.getFullName())
-                    .collect(Collectors.joining(", "));
-            if (hostsInfo.isEmpty()) {
-                hostsInfo = "None";
-            }
+    private List<String> propertyRow(Property property) {
+        String propertyType = property instanceof ResidentialProperty ? "Residential" : "Commercial";
 
-            String tenantsInfo = property.getTenants().stream()
-                    .map(t -> t.getId() + " - " + t.getFullName())
-                    .collect(Collectors.joining(", "));
-            if (tenantsInfo.isEmpty()) {
-                tenantsInfo = "None";
-            }
+        String ownerInfo = property.getOwner().getId() + " - " + property.getOwner().getFullName();
 
-            data.add(Arrays.asList(
-                    property.getPropertyId(),
-                    propertyType,
-                    property.getAddress(),
-                    String.format("%.2f", property.getPrice()),
-                    property.getStatus().toString(),
-                    ownerInfo,
-                    hostsInfo,
-                    tenantsInfo
-            ));
+        String hostsInfo = property.getHosts().stream()
+                .map(h -> h.getId() + " - " + h.getFullName())
+                .collect(Collectors.joining(", "));
+        if (hostsInfo.isEmpty()) {
+            hostsInfo = "None";
         }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+
+        String tenantsInfo = property.getTenants().stream()
+                .map(t -> t.getId() + " - " + t.getFullName())
+                .collect(Collectors.joining(", "));
+        if (tenantsInfo.isEmpty()) {
+            tenantsInfo = "None";
+        }
+
+        return Arrays.asList(
+                property.getPropertyId(),
+                propertyType,
+                property.getAddress(),
+                String.format("%.2f", property.getPrice()),
+                property.getStatus().toString(),
+                ownerInfo,
+                hostsInfo,
+                tenantsInfo
+        );
     }
 
     /**
@@ -2027,20 +2507,11 @@ public class ConsoleUI {
     private void generateIncomeReport() {
         double totalIncome = rentalManager.getTotalRentalIncome();
         System.out.println(TableFormatter.ANSI_GREEN + "Total Rental Income: $" + String.format("%.2f", totalIncome) + TableFormatter.ANSI_RESET);
+        printReport(reports.income());
 
 
-        List<RentalAgreement> agreements = rentalManager.getAll();
-        List<String> headers = Arrays.asList("Agreement ID", "Property", "Tenant ID - Name", "Rent Amount");
-        List<List<String>> data = new ArrayList<>();
-        for (RentalAgreement agreement : agreements) {
-            data.add(Arrays.asList(
-                    agreement.getAgreementId(),
-                    agreement.getProperty().getPropertyId(),
-                    agreement.getMainTenant().getId() + " - " + agreement.getMainTenant().getFullName(),
-                    String.format("%.2f", agreement.getRentAmount())
-            ));
-        }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+        // Rent due and payments received over the last twelve months, oldest first
+        printReport(reports.monthlyIncome(12));
     }
 
 
@@ -2054,19 +2525,8 @@ public class ConsoleUI {
         int occupiedProperties = propertyManager.getOccupiedProperties();
         double occupancyRate = totalProperties > 0 ? (double) occupiedProperties / totalProperties * 100 : 0;
         System.out.println(TableFormatter.ANSI_GREEN + "Occupancy Rate: " + String.format("%.2f%%", occupancyRate) + TableFormatter.ANSI_RESET);
-
-
-        List<Property> properties = propertyManager.getAll();
-        List<String> headers = Arrays.asList("Property ID", "Type", "Status");
-        List<List<String>> data = new ArrayList<>();
-        for (Property property : properties) {
-            data.add(Arrays.asList(
-                    property.getPropertyId(),
-                    property instanceof ResidentialProperty ? "Residential" : "Commercial",
-                    property.getStatus().toString()
-            ));
-        }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+        System.out.println(TableFormatter.ANSI_GREEN + "Properties under lease today: " + rentalManager.getOccupiedPropertyCount(new Date()) + TableFormatter.ANSI_RESET);
+        printReport(reports.occupancy());
     }
 
 
@@ -2076,22 +2536,7 @@ public class ConsoleUI {
 
 
     private void generateTenantReport() {
-        List<Tenant> tenants = tenantManager.getAll();
-        List<String> headers = Arrays.asList("ID", "Name", "Date of Birth", "Contact Info", "Active Agreements");
-        List<List<String>> data = new ArrayList<>();
-        for (Tenant tenant : tenants) {
-            long activeAgreements = rentalManager.getAll().stream()
-                    .filter(a -> a.getMainTenant().getId().equals(tenant.getId()) && a.isCurrentlyActive())
-                    .count();
-            data.add(Arrays.asList(
-                    tenant.getId(),
-                    tenant.getFullName(),
-                    tenant.getDateOfBirthString(),
-                    tenant.getContactInformation(),
-                    String.valueOf(activeAgreements)
-            ));
-        }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+        printReport(reports.tenants());
     }
 
 
@@ -2104,33 +2549,35 @@ public class ConsoleUI {
                 "Agreement ID", "Property ID", "Main Tenant", "Sub-Tenants", "Owner", "Host",
                 "Start Date", "End Date", "Rent Amount", "Status"
         );
-        List<List<String>> data = new ArrayList<>();
+        long version = displayVersion.get();
+        tableViewport.show("Rental Agreements", headers, TableViewport.rows(agreements,
+                agreement -> agreementRows.get(agreement.getAgreementId(), version, () -> rentalAgreementRow(agreement))));
+    }
 
-        for (RentalAgreement agreement : agreements) {
-            String mainTenantInfo = agreement.getMainTenant().getId() + " - " + agreement.getMainTenant().getFullName();
 
-            String subTenantsInfo = agreement.getSubTenants().stream()
-                    .map(t -> t.getId() + " - " + t.getFullName())
-                    .collect(Collectors.joining(", "));
+    private List<String> rentalAgreementRow(RentalAgreement agreement) {
+        String mainTenantInfo = agreement.getMainTenant().getId() + " - " + agreement.getMainTenant().getFullName();
 
-            if (subTenantsInfo.isEmpty()) {
-                subTenantsInfo = "None";
-            }
+        String subTenantsInfo = agreement.getSubTenants().stream()
+                .map(t -> t.getId() + " - " + t.getFullName())
+                .collect(Collectors.joining(", "));
 
-            data.add(Arrays.asList(
-                    agreement.getAgreementId(),
-                    agreement.getProperty().getPropertyId(),
-                    mainTenantInfo,
-                    subTenantsInfo,
-                    agreement.getOwner().getId() + " - " + agreement.getOwner().getFullName(),
-                    agreement.getHost().getId() + " - " + agreement.getHost().getFullName(),
-                    dateFormat.format(agreement.getStartDate()),
-                    dateFormat.format(agreement.getEndDate()),
-                    String.format("%.2f", agreement.getRentAmount()),
-                    agreement.getStatus().toString()
-            ));
+        if (subTenantsInfo.isEmpty()) {
+            subTenantsInfo = "None";
         }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+
+        return Arrays.asList(
+                agreement.getAgreementId(),
+                agreement.getProperty().getPropertyId(),
+                mainTenantInfo,
+                subTenantsInfo,
+                agreement.getOwner().getId() + " - " + agreement.getOwner().getFullName(),
+                agreement.getHost().getId() + " - " + agreement.getHost().getFullName(),
+                dateFormat.format(agreement.getStartDate()),
+                dateFormat.format(agreement.getEndDate()),
+                String.format("%.2f", agreement.getRentAmount()),
+                agreement.getStatus().toString()
+        );
     }
 
 
@@ -2139,38 +2586,41 @@ public class ConsoleUI {
                 "Tenant ID", "Name", "DOB", "Email", "Rented Property",
                 "Rental Contract ID", "Payment Amount", "Payment Date", "Payment Method"
         );
-        List<List<String>> data = new ArrayList<>();
-        for (Tenant tenant : tenants) {
-            String rentedProperty = "None";
-            String rentalContractId = "None";
-            String paymentAmount = "Not Paid Yet";
-            String paymentDate = "Not Paid Yet";
-            String paymentMethod = "Not Paid Yet";
-            if (!tenant.getRentalAgreements().isEmpty()) {
-                RentalAgreement agreement = tenant.getRentalAgreements().get(0);
-                rentedProperty = agreement.getProperty().getPropertyId();
-                rentalContractId = agreement.getAgreementId();
-                List<Payment> payments = tenant.getPayments();
-                if (!payments.isEmpty()) {
-                    Payment lastPayment = payments.get(payments.size() - 1);
-                    paymentAmount = String.format("%.2f", lastPayment.getAmount());
-                    paymentDate = dateFormat.format(lastPayment.getPaymentDate());
-                    paymentMethod = lastPayment.getPaymentMethod();
-                }
+        long version = displayVersion.get();
+        tableViewport.show("Tenants", headers, TableViewport.rows(tenants,
+                tenant -> tenantRows.get(tenant.getId(), version, () -> tenantRow(tenant))));
+    }
+
+
+    private List<String> tenantRow(Tenant tenant) {
+        String rentedProperty = "None";
+        String rentalContractId = "None";
+        String paymentAmount = "Not Paid Yet";
+        String paymentDate = "Not Paid Yet";
+        String paymentMethod = "Not Paid Yet";
+        if (!tenant.getRentalAgreements().isEmpty()) {
+            RentalAgreement agreement = tenant.getRentalAgreements().get(0);
+            rentedProperty = agreement.getProperty().getPropertyId();
+            rentalContractId = agreement.getAgreementId();
+            List<Payment> payments = tenant.getPayments();
+            if (!payments.isEmpty()) {
+                Payment lastPayment = payments.get(payments.size() - 1);
+                paymentAmount = String.format("%.2f", lastPayment.getAmount());
+                paymentDate = dateFormat.format(lastPayment.getPaymentDate());
+                paymentMethod = lastPayment.getPaymentMethod();
             }
-            data.add(Arrays.asList(
-                    tenant.getId(),
-                    tenant.getFullName(),
-                    tenant.getDateOfBirthString(),
-                    tenant.getContactInformation(),
-                    rentedProperty,
-                    rentalContractId,
-                    paymentAmount,
-                    paymentDate,
-                    paymentMethod
-            ));
         }
-        tableFormatter.printDataTable(headers, data, TableFormatter.ANSI_CYAN);
+        return Arrays.asList(
+                tenant.getId(),
+                tenant.getFullName(),
+                tenant.getDateOfBirthString(),
+                tenant.getContactInformation(),
+                rentedProperty,
+                rentalContractId,
+                paymentAmount,
+                paymentDate,
+                paymentMethod
+        );
     }
 
 
@@ -0,0 +1,220 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.ui;
+
+import com.rentalsystem.manager.EntityListener;
+import com.rentalsystem.util.PrefixTrie;
+import org.jline.reader.Candidate;
+import org.jline.reader.CompletingParsedLine;
+import org.jline.reader.CompletionMatcher;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+import org.jline.reader.impl.CompletionMatcherImpl;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+
+/**
+ * JLine completer for entity IDs, backed by one PrefixTrie per entity type.
+ * Each entity is indexed under its ID, its name (or address) and each word of the name, so typing either
+ * the start of an ID or part of a name offers the matching IDs. The tries are kept up to date by
+ * listeners registered with the managers. While no ID prompt is active, completion is delegated
+ * to the menu completer.
+ */
+public class IdCompleter implements Completer {
+    private static final int MAX_CANDIDATES = 20;
+
+    /**
+     * The kind of ID the current prompt asks for.
+     */
+    public enum Scope {
+        NONE,
+        PROPERTY,
+        TENANT,
+        OWNER,
+        HOST,
+        AGREEMENT
+    }
+
+    private final Completer fallback;
+    private final Map<Scope, PrefixTrie<Entry>> tries;
+    private final Map<Scope, Map<String, List<String>>> indexedKeys;
+    private volatile Scope scope;
+
+
+    /**
+     * Constructs a new IdCompleter.
+     * @param fallback The completer used outside ID prompts
+     */
+    public IdCompleter(Completer fallback) {
+        this.fallback = fallback;
+        this.tries = new EnumMap<>(Scope.class);
+        this.indexedKeys = new EnumMap<>(Scope.class);
+        for (Scope s : Scope.values()) {
+            tries.put(s, new PrefixTrie<>());
+            indexedKeys.put(s, new ConcurrentHashMap<>());
+        }
+        this.scope = Scope.NONE;
+    }
+
+
+    /**
+     * Sets the kind of ID being prompted for.
+     * @param scope The entity type to complete, or NONE to restore menu completion
+     */
+    public void setScope(Scope scope) {
+        this.scope = scope;
+    }
+
+
+    /**
+     * Creates a listener that keeps the trie of an entity type in sync with its manager.
+     * @param scope The entity type
+     * @param idOf The function reading the ID of an entity
+     * @param labelOf The function reading the name shown next to the ID
+     * @param <T> The type of entity
+     * @return The listener to register with the manager
+     */
+    public <T> EntityListener<T> listenerFor(Scope scope, Function<T, String> idOf, Function<T, String> labelOf) {
+        return new EntityListener<T>() {
+            @Override
+            public void onAdded(T entity) {
+                index(scope, idOf.apply(entity), labelOf.apply(entity));
+            }
+
+            @Override
+            public void onUpdated(T entity) {
+                index(scope, idOf.apply(entity), labelOf.apply(entity));
+            }
+
+            @Override
+            public void onRemoved(T entity) {
+                unindex(scope, idOf.apply(entity));
+            }
+        };
+    }
+
+
+    /**
+     * Creates a completion matcher that keeps every candidate offered in an ID scope.
+     * The default matcher only keeps candidates whose value starts with the typed word,
+     * which would drop IDs found through a name.
+     * @return The completion matcher to install on the LineReader
+     */
+    public CompletionMatcher matcher() {
+        return new CompletionMatcherImpl() {
+            @Override
+            protected void defaultMatchers(Map<LineReader.Option, Boolean> options, boolean prefix, CompletingParsedLine line,
+                                           boolean caseInsensitive, int errors, String originalGroupName) {
+                super.defaultMatchers(options, prefix, line, caseInsensitive, errors, originalGroupName);
+                if (scope != Scope.NONE) {
+                    matchers.add(0, simpleMatcher(value -> true));
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Offers the top matching IDs for the word being typed.
+     * @param reader The line reader
+     * @param line The parsed command line
+     * @param candidates The list to add candidates to
+     */
+    @Override
+    public void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+        Scope current = scope;
+        if (current == Scope.NONE) {
+            fallback.complete(reader, line, candidates);
+            return;
+        }
+        for (Entry entry : tries.get(current).topK(line.word().toLowerCase(), MAX_CANDIDATES)) {
+            candidates.add(new Candidate(entry.id, entry.id, null, entry.label, null, null, true));
+        }
+    }
+
+
+    /**
+     * Indexes an entity under its ID, its label and each word of the label, replacing any previous keys.
+     * @param scope The entity type
+     * @param id The ID of the entity
+     * @param label The name shown next to the ID
+     */
+    private void index(Scope scope, String id, String label) {
+        unindex(scope, id);
+        List<String> keys = new ArrayList<>();
+        keys.add(id.toLowerCase());
+        if (label != null && !label.isEmpty()) {
+            String lowercaseLabel = label.toLowerCase();
+            keys.add(lowercaseLabel);
+            for (String word : lowercaseLabel.split("\\s+")) {
+                if (!word.isEmpty() && !word.equals(lowercaseLabel)) {
+                    keys.add(word);
+                }
+            }
+        }
+
+        PrefixTrie<Entry> trie = tries.get(scope);
+        Entry entry = new Entry(id, label);
+        for (String key : keys) {
+            trie.put(key, entry);
+        }
+        indexedKeys.get(scope).put(id, keys);
+    }
+
+
+    /**
+     * Removes every key an entity was indexed under.
+     * @param scope The entity type
+     * @param id The ID of the entity
+     */
+    private void unindex(Scope scope, String id) {
+        List<String> keys = indexedKeys.get(scope).remove(id);
+        if (keys == null) {
+            return;
+        }
+        PrefixTrie<Entry> trie = tries.get(scope);
+        Entry entry = new Entry(id, null);
+        for (String key : keys) {
+            trie.remove(key, entry);
+        }
+    }
+
+
+    /**
+     * A completion entry. Entries are equal if their IDs are, so a lookup returns each entity once.
+     */
+    private static class Entry {
+        private final String id;
+        private final String label;
+
+
+        private Entry(String id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Objects.equals(id, ((Entry) o).id);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id);
+        }
+    }
+}
@@ -5,15 +5,34 @@
 package com.rentalsystem.ui;
 
 
+import com.rentalsystem.util.ProgressCounter;
 import org.jline.terminal.Terminal;
-import org.jline.utils.AttributedString;
-import org.jline.utils.AttributedStyle;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * A class to display progress bars in the console.
+ * The work being tracked only adds to a ProgressCounter; a background ticker samples the counter a few
+ * times a second and redraws a single status line with the row and byte counts, the throughput and,
+ * when the total is known, the estimated time left. Nothing is written to the terminal between frames,
+ * and a frame is skipped when nothing has changed.
  */
 public class ProgressDisplay {
+    private static final int FRAMES_PER_SECOND = 10;
+    private static final int BAR_WIDTH = 30;
+    // Weight of the latest frame in the smoothed rows per second
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "progress-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Terminal terminal;
 
 
@@ -27,40 +46,117 @@ public class ProgressDisplay {
 
 
     /**
-     * Displays a progress bar with a message.
-     * @param message The message to display alongside the progress bar
-     * @param current The current progress value
-     * @param total The total progress value
+     * Starts redrawing a progress line for an operation until the returned ticker is closed.
+     * @param label The description of the operation
+     * @param counter The counter the operation adds its rows and bytes to
+     * @return The running ticker
      */
-    public void showProgress(String message, int current, int total) {
-        int width = 50; // Width of the progress bar
-        int progress = (int) ((double) current / total * width);
-
-
-        StringBuilder bar = new StringBuilder("[");
-        for (int i = 0; i < width; i++) {
-            if (i < progress) {
-                bar.append("=");
-            } else if (i == progress) {
-                bar.append(">");
-            } else {
-                bar.append(" ");
-            }
-        }
-        bar.append("]");
+    public Ticker start(String label, ProgressCounter counter) {
+        return new Ticker(label, counter);
+    }
 
 
-        String progressString = String.format("%s %s %d/%d", message, bar.toString(), current, total);
+    /**
+     * A progress line being redrawn at a fixed frame rate for one operation.
+     */
+    public class Ticker implements AutoCloseable {
+        private final ProgressCounter counter;
+        private final long startNanos = System.nanoTime();
+        private final StringBuilder line = new StringBuilder();
+        private final ScheduledFuture<?> frames;
+
+        private volatile String label;
+        private volatile int step;
+        private volatile int steps;
+
+        // Only touched by render, which is synchronized
+        private long lastRows;
+        private long lastNanos = startNanos;
+        private double rate;
+        private String lastFrame = "";
+
+
+        private Ticker(String label, ProgressCounter counter) {
+            this.label = label;
+            this.counter = counter;
+            long period = TimeUnit.SECONDS.toNanos(1) / FRAMES_PER_SECOND;
+            this.frames = TICKER.scheduleAtFixedRate(this::render, 0, period, TimeUnit.NANOSECONDS);
+        }
 
 
-        // Print the progress bar
-        terminal.writer().print("\r" + new AttributedString(progressString, AttributedStyle.DEFAULT).toAnsi(terminal));
-        terminal.writer().flush();
+        /**
+         * Moves an operation made of fixed steps on to its next step; the bar then shows the steps done.
+         * @param label The description of the step
+         * @param current The number of the step, from 1
+         * @param total The number of steps
+         */
+        public void step(String label, int current, int total) {
+            this.label = label;
+            this.step = current;
+            this.steps = total;
+        }
 
 
-        // Print a newline when progress is complete
-        if (current == total) {
+        /**
+         * Stops the ticker, draws the final counts and ends the line.
+         */
+        @Override
+        public void close() {
+            frames.cancel(false);
+            render();
             terminal.writer().println();
+            terminal.writer().flush();
+        }
+
+
+        private synchronized void render() {
+            long now = System.nanoTime();
+            long rows = counter.getRows();
+            long bytes = counter.getBytes();
+            double elapsed = (now - lastNanos) / 1e9;
+            if (elapsed > 0) {
+                double current = (rows - lastRows) / elapsed;
+                rate = lastRows == 0 && rate == 0 ? current : RATE_SMOOTHING * current + (1 - RATE_SMOOTHING) * rate;
+            }
+            lastRows = rows;
+            lastNanos = now;
+
+            line.setLength(0);
+            line.append(label).append(' ');
+            double fraction = steps > 0 ? step / (double) steps : counter.fraction();
+            if (fraction >= 0) {
+                int filled = (int) (fraction * BAR_WIDTH);
+                line.append('[');
+                for (int i = 0; i < BAR_WIDTH; i++) {
+                    line.append(i < filled ? '=' : i == filled ? '>' : ' ');
+                }
+                line.append(']');
+                if (steps > 0) {
+                    line.append(' ').append(step).append('/').append(steps);
+                }
+            }
+            line.append(String.format("  %,d rows", rows));
+            if (bytes > 0) {
+                line.append(String.format("  %.1f MB", bytes / 1048576.0));
+            }
+            line.append(String.format("  %,.0f rows/s", rate));
+            double done = counter.fraction();
+            if (done > 0 && done < 1) {
+                long remaining = (long) ((now - startNanos) / 1e9 * (1 - done) / done);
+                line.append(String.format("  ETA %d:%02d", remaining / 60, remaining % 60));
+            }
+
+            int width = terminal.getWidth();
+            if (width > 1 && line.length() >= width) {
+                line.setLength(width - 1);
+            }
+            String frame = line.toString();
+            if (frame.equals(lastFrame)) {
+                return;
+            }
+            lastFrame = frame;
+            terminal.writer().print("\r" + frame + "\u001B[K");
+            terminal.writer().flush();
         }
     }
 }
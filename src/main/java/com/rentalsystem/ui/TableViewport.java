@@ -0,0 +1,318 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.ui;
+
+
+import org.jline.keymap.BindingReader;
+import org.jline.keymap.KeyMap;
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.jline.utils.Display;
+import org.jline.utils.InfoCmp.Capability;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+
+/**
+ * Interactive, scrollable table that only ever formats and draws the rows in view.
+ * Rows are fetched from a RowSource when they scroll into the viewport and a few pages of them are kept,
+ * so the memory and redraw time do not grow with the size of the table. The screen is drawn through a
+ * JLine Display, which compares each frame with the previous one and rewrites only the lines that changed.
+ * Tables that fit on the screen, and terminals without cursor addressing, are printed in full as before.
+ */
+public class TableViewport {
+    private static final int CHROME_LINES = 6;
+    private static final int MAX_CELL_WIDTH = 40;
+    private static final int CACHED_PAGES = 4;
+
+    private final Terminal terminal;
+    private final TableFormatter tableFormatter;
+
+
+    /**
+     * Supplies the rows of a table by position, so only the rows in view need to be built.
+     */
+    public interface RowSource {
+        /**
+         * Gets the number of rows in the table.
+         * @return The number of rows
+         */
+        int size();
+
+
+        /**
+         * Builds the cells of one row.
+         * @param index The position of the row, from 0
+         * @return The cells of the row, one per header
+         */
+        List<String> row(int index);
+    }
+
+
+    private enum Action {
+        UP, DOWN, PAGE_UP, PAGE_DOWN, HOME, END, QUIT
+    }
+
+
+    /**
+     * Constructs a TableViewport on the given terminal.
+     * @param terminal The terminal to draw on and read keys from
+     * @param tableFormatter The formatter used for tables that are printed in full
+     */
+    public TableViewport(Terminal terminal, TableFormatter tableFormatter) {
+        this.terminal = terminal;
+        this.tableFormatter = tableFormatter;
+    }
+
+
+    /**
+     * Creates a row source that maps the items of a list to rows only when they are displayed.
+     * @param items The items, in display order; the list should support fast random access
+     * @param mapper The function building the cells of an item
+     * @param <T> The type of the items
+     * @return The row source
+     */
+    public static <T> RowSource rows(List<T> items, Function<T, List<String>> mapper) {
+        return new RowSource() {
+            @Override
+            public int size() {
+                return items.size();
+            }
+
+
+            @Override
+            public List<String> row(int index) {
+                return mapper.apply(items.get(index));
+            }
+        };
+    }
+
+
+    /**
+     * Shows a table, scrolling interactively with the arrow, page, home and end keys until q or Escape is pressed.
+     * @param title The title shown above the table
+     * @param headers The column headers
+     * @param source The rows of the table
+     */
+    public void show(String title, List<String> headers, RowSource source) {
+        Size size = terminal.getSize();
+        boolean interactive = terminal.getType() != null && !terminal.getType().startsWith(Terminal.TYPE_DUMB)
+                && size.getRows() > CHROME_LINES + 1 && size.getColumns() > 0;
+        if (!interactive || source.size() <= size.getRows() - CHROME_LINES) {
+            List<List<String>> rows = new ArrayList<>(source.size());
+            for (int i = 0; i < source.size(); i++) {
+                rows.add(source.row(i));
+            }
+            tableFormatter.printDataTable(headers, rows, TableFormatter.ANSI_CYAN);
+            return;
+        }
+        new Session(title, headers, source).run();
+    }
+
+
+    /**
+     * The state of one interactive viewing: scroll position, cached rows and the column widths seen so far.
+     */
+    private class Session {
+        private final String title;
+        private final List<String> headers;
+        private final RowSource source;
+        private final int[] widths;
+        // The most recently shown pages of formatted rows, evicted in access order
+        private final Map<Integer, List<List<String>>> pages = new LinkedHashMap<Integer, List<List<String>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<List<String>>> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+        private final Display display;
+        private int top;
+        private int pageSize;
+
+
+        private Session(String title, List<String> headers, RowSource source) {
+            this.title = title;
+            this.headers = headers;
+            this.source = source;
+            this.widths = new int[headers.size()];
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] = Math.min(MAX_CELL_WIDTH, headers.get(i).length());
+            }
+            this.display = new Display(terminal, true);
+        }
+
+
+        private void run() {
+            KeyMap<Action> keys = keyMap();
+            BindingReader bindingReader = new BindingReader(terminal.reader());
+            Attributes attributes = terminal.enterRawMode();
+            Terminal.SignalHandler previousHandler = terminal.handle(Terminal.Signal.WINCH, signal -> redraw());
+            terminal.puts(Capability.enter_ca_mode);
+            terminal.puts(Capability.keypad_xmit);
+            terminal.puts(Capability.cursor_invisible);
+            try {
+                redraw();
+                Action action;
+                while ((action = bindingReader.readBinding(keys)) != null && action != Action.QUIT) {
+                    scroll(action);
+                }
+            } finally {
+                terminal.puts(Capability.cursor_visible);
+                terminal.puts(Capability.keypad_local);
+                terminal.puts(Capability.exit_ca_mode);
+                terminal.flush();
+                terminal.handle(Terminal.Signal.WINCH, previousHandler);
+                terminal.setAttributes(attributes);
+            }
+        }
+
+
+        private KeyMap<Action> keyMap() {
+            KeyMap<Action> keys = new KeyMap<>();
+            // Terminals send either the keypad sequences from terminfo or the plain ANSI ones, so bind both
+            bind(keys, Action.UP, Capability.key_up, "\033[A", "k");
+            bind(keys, Action.DOWN, Capability.key_down, "\033[B", "j", "\r", "\n");
+            bind(keys, Action.PAGE_UP, Capability.key_ppage, "\033[5~", "b");
+            bind(keys, Action.PAGE_DOWN, Capability.key_npage, "\033[6~", " ");
+            bind(keys, Action.HOME, Capability.key_home, "\033[H", "\033[1~", "g");
+            bind(keys, Action.END, Capability.key_end, "\033[F", "\033[4~", "G");
+            keys.bind(Action.QUIT, "q", "Q", KeyMap.esc());
+            keys.setAmbiguousTimeout(100);
+            return keys;
+        }
+
+
+        private void bind(KeyMap<Action> keys, Action action, Capability capability, String... fallbacks) {
+            String key = KeyMap.key(terminal, capability);
+            if (key != null && !key.isEmpty()) {
+                keys.bind(action, key);
+            }
+            keys.bind(action, fallbacks);
+        }
+
+
+        private void scroll(Action action) {
+            switch (action) {
+                case UP:
+                    top--;
+                    break;
+                case DOWN:
+                    top++;
+                    break;
+                case PAGE_UP:
+                    top -= pageSize;
+                    break;
+                case PAGE_DOWN:
+                    top += pageSize;
+                    break;
+                case HOME:
+                    top = 0;
+                    break;
+                case END:
+                    top = Integer.MAX_VALUE;
+                    break;
+                default:
+                    return;
+            }
+            redraw();
+        }
+
+
+        /**
+         * Lays out the current frame for the terminal's size and hands it to the Display, which sends only the changed lines.
+         */
+        private synchronized void redraw() {
+            Size size = terminal.getSize();
+            int height = Math.max(CHROME_LINES + 1, size.getRows());
+            int width = Math.max(1, size.getColumns());
+            if (pageSize != height - CHROME_LINES) {
+                pageSize = height - CHROME_LINES;
+                pages.clear();
+            }
+            int total = source.size();
+            top = Math.max(0, Math.min(top, total - pageSize));
+
+            List<List<String>> visible = new ArrayList<>(pageSize);
+            for (int i = top; i < Math.min(total, top + pageSize); i++) {
+                List<String> row = row(i);
+                visible.add(row);
+                // Columns only ever widen, so scrolling back does not shift the layout
+                for (int c = 0; c < widths.length && c < row.size(); c++) {
+                    widths[c] = Math.max(widths[c], Math.min(MAX_CELL_WIDTH, row.get(c).length()));
+                }
+            }
+
+            AttributedStyle frame = AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN);
+            List<AttributedString> lines = new ArrayList<>(height);
+            lines.add(new AttributedString(title, AttributedStyle.BOLD));
+            lines.add(border('┌', '┬', '┐', frame));
+            lines.add(line(headers, frame, AttributedStyle.BOLD));
+            lines.add(border('├', '┼', '┤', frame));
+            for (List<String> row : visible) {
+                lines.add(line(row, frame, AttributedStyle.DEFAULT));
+            }
+            while (lines.size() < height - 2) {
+                lines.add(AttributedString.EMPTY);
+            }
+            lines.add(border('└', '┴', '┘', frame));
+            String status = total == 0 ? "No rows" : String.format("Rows %d-%d of %d", top + 1, top + visible.size(), total);
+            lines.add(new AttributedString(status + "   ↑/↓ scroll  PgUp/PgDn page  Home/End  q quit", AttributedStyle.INVERSE));
+
+            List<AttributedString> clipped = new ArrayList<>(lines.size());
+            for (AttributedString line : lines) {
+                clipped.add(line.columnLength() > width ? line.columnSubSequence(0, width) : line);
+            }
+            display.resize(height, width);
+            display.update(clipped, size.cursorPos(height - 1, 0));
+            terminal.flush();
+        }
+
+
+        private List<String> row(int index) {
+            int page = index / pageSize;
+            List<List<String>> rows = pages.get(page);
+            if (rows == null) {
+                rows = new ArrayList<>(pageSize);
+                for (int i = page * pageSize; i < Math.min(source.size(), (page + 1) * pageSize); i++) {
+                    rows.add(source.row(i));
+                }
+                pages.put(page, rows);
+            }
+            return rows.get(index - page * pageSize);
+        }
+
+
+        private AttributedString border(char left, char separator, char right, AttributedStyle style) {
+            StringBuilder border = new StringBuilder().append(left);
+            for (int i = 0; i < widths.length; i++) {
+                border.append("─".repeat(widths[i] + 2)).append(i < widths.length - 1 ? separator : right);
+            }
+            return new AttributedString(border, style);
+        }
+
+
+        private AttributedString line(List<String> cells, AttributedStyle frame, AttributedStyle text) {
+            AttributedStringBuilder line = new AttributedStringBuilder();
+            line.styled(frame, "│");
+            for (int i = 0; i < widths.length; i++) {
+                String cell = i < cells.size() && cells.get(i) != null ? cells.get(i) : "";
+                if (cell.length() > widths[i]) {
+                    cell = cell.substring(0, widths[i] - 3) + "...";
+                }
+                line.append(' ').styled(text, cell).append(" ".repeat(widths[i] - cell.length() + 1));
+                line.styled(frame, "│");
+            }
+            return line.toAttributedString();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.config.LoggerConfig;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Moves COMPLETED rental agreements that ended before a cutoff, and their payments, out of the data files
+ * and into a new segment of the ArchiveStore.
+ * It runs on the rows before the managers load them, so archived agreements are never built as objects and
+ * the working files, and with them every later load, save and scan, only hold the business that is still active.
+ * The segment is written before the data files are replaced, so a failure at any point leaves every row in
+ * at least one place; the data files are then rewritten together in one batch.
+ */
+public class AgreementArchiver {
+    private static final String AGREEMENTS = "rental_agreements.txt";
+    private static final String PAYMENTS = "payments.txt";
+
+    private final FileHandler fileHandler;
+
+
+    /**
+     * Constructs a new AgreementArchiver.
+     * @param fileHandler The FileHandler the managers will load from
+     */
+    public AgreementArchiver(FileHandler fileHandler) {
+        this.fileHandler = fileHandler;
+    }
+
+
+    /**
+     * Archives every COMPLETED agreement whose end date is before the cutoff, together with its payments.
+     * The remaining rows are handed to the FileHandler, so the managers load them without reading the files again.
+     * @param cutoff The date agreements must have ended before to be archived
+     * @return The number of agreements archived
+     */
+    public int archive(LocalDate cutoff) {
+        ArchiveStore archive = fileHandler.getArchive();
+        List<String[]> agreements = fileHandler.readLines(AGREEMENTS);
+        List<String[]> payments = fileHandler.readLines(PAYMENTS);
+
+        Set<String> archivedIds = new HashSet<>();
+        List<String[]> keptAgreements = new ArrayList<>(agreements.size());
+        List<String[]> archivedAgreements = new ArrayList<>();
+        for (String[] row : agreements) {
+            if (isArchivable(row, cutoff)) {
+                archivedIds.add(row[0]);
+                archivedAgreements.add(row);
+            } else {
+                keptAgreements.add(row);
+            }
+        }
+
+        Set<String> keptIds = new HashSet<>();
+        for (String[] row : keptAgreements) {
+            keptIds.add(row[0]);
+        }
+        List<String[]> keptPayments = new ArrayList<>(payments.size());
+        List<String[]> archivedPayments = new ArrayList<>();
+        for (String[] row : payments) {
+            // Payments recorded after their agreement was archived follow it; only those few consult the archive
+            if (row.length > 1 && !keptIds.contains(row[1])
+                    && (archivedIds.contains(row[1]) || archive.containsAgreement(row[1]))) {
+                archivedPayments.add(row);
+            } else {
+                keptPayments.add(row);
+            }
+        }
+
+        if (archivedAgreements.isEmpty() && archivedPayments.isEmpty()) {
+            fileHandler.preload(AGREEMENTS, agreements);
+            fileHandler.preload(PAYMENTS, payments);
+            return 0;
+        }
+
+        try {
+            int segment = archive.append(archivedAgreements, archivedPayments);
+            fileHandler.beginBatch();
+            try {
+                fileHandler.writeLines(AGREEMENTS, keptAgreements);
+                fileHandler.writeLines(PAYMENTS, keptPayments);
+                fileHandler.commitBatch();
+            } catch (RuntimeException e) {
+                fileHandler.abortBatch();
+                throw e;
+            }
+            LoggerConfig.getLogger().info("Archived " + archivedAgreements.size() + " rental agreements and "
+                    + archivedPayments.size() + " payments to segment " + segment);
+        } catch (IOException | IllegalStateException e) {
+            // The data files were not replaced, so everything is loaded as before and archived again next time
+            LoggerConfig.getLogger().warning("Archiving failed, keeping rows in the data files: " + e.getMessage());
+            fileHandler.preload(AGREEMENTS, agreements);
+            fileHandler.preload(PAYMENTS, payments);
+            return 0;
+        }
+        fileHandler.preload(AGREEMENTS, keptAgreements);
+        fileHandler.preload(PAYMENTS, keptPayments);
+        return archivedAgreements.size();
+    }
+
+
+    /**
+     * Checks whether an agreement row is COMPLETED and ended before the cutoff.
+     * @param row The agreement row
+     * @param cutoff The cutoff date
+     * @return true if the agreement should be archived
+     */
+    private static boolean isArchivable(String[] row, LocalDate cutoff) {
+        if (row.length < 10 || !"COMPLETED".equals(row[9])) {
+            return false;
+        }
+        try {
+            return LocalDate.parse(row[6]).isBefore(cutoff);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Cold storage for rental agreements and payments that no longer belong to the working data files.
+ * Each archiving run appends one segment, a pair of gzip-compressed CSV files holding the agreement rows
+ * and the payments of those agreements. Segments are never rewritten, so a segment that has been written
+ * stays valid whatever happens to the data files afterwards.
+ * Lookups read only the segments they need: an index from agreement ID to segment is built on the first
+ * lookup by scanning the agreement files, and the payments of an agreement are never in an earlier segment.
+ */
+public class ArchiveStore {
+    private static final Pattern SEGMENT = Pattern.compile("agreements-(\\d+)\\.csv\\.gz");
+
+    private final File directory;
+    private Map<String, Integer> agreementIndex;
+
+
+    /**
+     * Constructs a new ArchiveStore over a directory of segments.
+     * @param directory The directory holding the segments; it is created on the first append
+     */
+    public ArchiveStore(File directory) {
+        this.directory = directory;
+    }
+
+
+    /**
+     * Appends a new segment holding the given agreements and their payments.
+     * The payments file is installed before the agreements file, so a segment is only visible once both are complete.
+     * @param agreements The rows of the archived agreements
+     * @param payments The rows of the payments of those agreements
+     * @return The number of the new segment
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized int append(List<String[]> agreements, List<String[]> payments) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create archive directory: " + directory);
+        }
+        List<Integer> segments = segments();
+        int segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        writeSegmentFile(paymentsFile(segment), payments);
+        writeSegmentFile(agreementsFile(segment), agreements);
+        if (agreementIndex != null) {
+            for (String[] row : agreements) {
+                agreementIndex.put(row[0], segment);
+            }
+        }
+        return segment;
+    }
+
+
+    /**
+     * Checks whether an agreement has been archived.
+     * @param agreementId The ID of the rental agreement
+     * @return true if a segment holds the agreement
+     */
+    public synchronized boolean containsAgreement(String agreementId) {
+        return index().containsKey(agreementId);
+    }
+
+
+    /**
+     * Finds the row of an archived agreement.
+     * @param agreementId The ID of the rental agreement
+     * @return The row of the agreement, or null if it has not been archived
+     */
+    public synchronized String[] findAgreement(String agreementId) {
+        Integer segment = index().get(agreementId);
+        if (segment == null) {
+            return null;
+        }
+        String[][] found = new String[1][];
+        readSegmentFile(agreementsFile(segment), row -> {
+            if (row[0].equals(agreementId)) {
+                found[0] = row;
+            }
+        });
+        return found[0];
+    }
+
+
+    /**
+     * Finds the payment rows of an archived agreement, reading only the segment that holds it and any later ones,
+     * which hold payments recorded for the agreement after it was archived.
+     * @param agreementId The ID of the rental agreement
+     * @return The payment rows, empty if the agreement has not been archived
+     */
+    public synchronized List<String[]> findPayments(String agreementId) {
+        List<String[]> payments = new ArrayList<>();
+        Integer segment = index().get(agreementId);
+        if (segment != null) {
+            for (int later : segments()) {
+                if (later >= segment) {
+                    readSegmentFile(paymentsFile(later), row -> {
+                        if (row.length > 1 && row[1].equals(agreementId)) {
+                            payments.add(row);
+                        }
+                    });
+                }
+            }
+        }
+        return payments;
+    }
+
+
+    /**
+     * Streams every archived agreement row, oldest segment first.
+     * @param consumer The consumer receiving each row
+     */
+    public synchronized void forEachAgreement(Consumer<String[]> consumer) {
+        for (int segment : segments()) {
+            readSegmentFile(agreementsFile(segment), consumer);
+        }
+    }
+
+
+    /**
+     * Streams every archived payment row, oldest segment first.
+     * @param consumer The consumer receiving each row
+     */
+    public synchronized void forEachPayment(Consumer<String[]> consumer) {
+        for (int segment : segments()) {
+            readSegmentFile(paymentsFile(segment), consumer);
+        }
+    }
+
+
+    public synchronized int getSegmentCount() {
+        return segments().size();
+    }
+
+
+    /**
+     * Gets the index from agreement ID to segment, building it on first use.
+     * @return The index
+     */
+    private Map<String, Integer> index() {
+        if (agreementIndex == null) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int segment : segments()) {
+                readSegmentFile(agreementsFile(segment), row -> index.put(row[0], segment));
+            }
+            agreementIndex = index;
+        }
+        return agreementIndex;
+    }
+
+
+    /**
+     * Lists the complete segments in the directory.
+     * @return The segment numbers in ascending order
+     */
+    private List<Integer> segments() {
+        List<Integer> segments = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = SEGMENT.matcher(name);
+                if (matcher.matches()) {
+                    segments.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+
+    private File agreementsFile(int segment) {
+        return new File(directory, String.format("agreements-%06d.csv.gz", segment));
+    }
+
+
+    private File paymentsFile(int segment) {
+        return new File(directory, String.format("payments-%06d.csv.gz", segment));
+    }
+
+
+    /**
+     * Writes a compressed segment file next to its target and renames it into place.
+     * @param file The segment file
+     * @param rows The rows to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeSegmentFile(File file, List<String[]> rows) throws IOException {
+        File staged = new File(file.getPath() + ".tmp");
+        try (CSVWriter writer = new CSVWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(staged), 1 << 16), StandardCharsets.UTF_8))) {
+            writer.writeAll(rows);
+        }
+        try {
+            Files.move(staged.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(staged.toPath(), file.toPath());
+        }
+    }
+
+
+    /**
+     * Streams the rows of a compressed segment file.
+     * @param file The segment file
+     * @param consumer The consumer receiving each row
+     * @throws IllegalStateException if the file cannot be read
+     */
+    private static void readSegmentFile(File file, Consumer<String[]> consumer) {
+        if (!file.exists()) {
+            return;
+        }
+        try (CSVReader reader = new CSVReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file), 1 << 16), StandardCharsets.UTF_8))) {
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                consumer.accept(row);
+            }
+        } catch (IOException | CsvValidationException e) {
+            throw new IllegalStateException("Error reading archive segment: " + file.getName(), e);
+        }
+    }
+}
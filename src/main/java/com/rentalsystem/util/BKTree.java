@@ -0,0 +1,230 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Burkhard-Keller tree over terms under the Levenshtein distance, with values attached to each term.
+ * A search for terms within distance k of a query only descends into children whose edge distance d
+ * satisfies |d - distance(query, node)| &lt;= k, which by the triangle inequality prunes most of the tree.
+ * Each node remembers its largest edge distance, so the distance to a node is only computed up to the point
+ * where no child could still be in range.
+ * Values can be removed from a term; the term itself stays in the tree so its subtree remains reachable.
+ * @param <V> The type of values stored under the terms
+ */
+public class BKTree<V> {
+    private Node<V> root;
+    private int termCount;
+
+
+    /**
+     * Adds a value under a term, inserting the term if it is new.
+     * @param term The term
+     * @param value The value to attach to the term
+     */
+    public synchronized void add(String term, V value) {
+        if (root == null) {
+            root = new Node<>(term);
+            termCount++;
+        }
+        Node<V> node = root;
+        while (true) {
+            int distance = distance(term, node.term, Integer.MAX_VALUE);
+            if (distance == 0) {
+                node.values.add(value);
+                return;
+            }
+            Node<V> child = node.child(distance);
+            if (child == null) {
+                child = new Node<>(term);
+                child.values.add(value);
+                node.setChild(distance, child);
+                termCount++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+
+    /**
+     * Removes a value from a term.
+     * @param term The term
+     * @param value The value to remove
+     * @return true if the value was attached to the term
+     */
+    public synchronized boolean remove(String term, V value) {
+        Node<V> node = root;
+        while (node != null) {
+            int distance = distance(term, node.term, Integer.MAX_VALUE);
+            if (distance == 0) {
+                return node.values.remove(value);
+            }
+            node = node.child(distance);
+        }
+        return false;
+    }
+
+
+    /**
+     * Finds every term within a maximum edit distance of a query.
+     * @param query The query term
+     * @param maxDistance The maximum Levenshtein distance
+     * @return The matches with at least one value, sorted by distance
+     */
+    public synchronized List<Match<V>> search(String query, int maxDistance) {
+        List<Match<V>> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node<V>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<V> node = stack.pop();
+            // Past maxChildDistance + maxDistance neither the node nor any child can match, so the exact
+            // distance is not needed; for a leaf this stops as soon as the query is out of range
+            int distance = distance(query, node.term, node.maxChildDistance() + maxDistance);
+            if (distance <= maxDistance && !node.values.isEmpty()) {
+                matches.add(new Match<>(node.term, distance, new ArrayList<>(node.values)));
+            }
+            int last = Math.min(node.maxChildDistance(), distance + maxDistance);
+            for (int edge = Math.max(1, distance - maxDistance); edge <= last; edge++) {
+                Node<V> child = node.children[edge];
+                if (child != null) {
+                    stack.push(child);
+                }
+            }
+        }
+        matches.sort((a, b) -> Integer.compare(a.distance, b.distance));
+        return matches;
+    }
+
+
+    /**
+     * Gets the number of distinct terms in the tree, including terms whose values were all removed.
+     * @return The number of terms
+     */
+    public synchronized int termCount() {
+        return termCount;
+    }
+
+
+    /**
+     * Computes the Levenshtein distance between two strings, stopping early once it must exceed a bound.
+     * @param a The first string
+     * @param b The second string
+     * @param bound The distance beyond which the exact value is not needed
+     * @return The edit distance, or a value greater than bound if the distance exceeds it
+     */
+    public static int distance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+
+    /**
+     * A term found by a search, with its distance from the query and its values.
+     * @param <V> The type of values
+     */
+    public static class Match<V> {
+        private final String term;
+        private final int distance;
+        private final List<V> values;
+
+
+        private Match(String term, int distance, List<V> values) {
+            this.term = term;
+            this.distance = distance;
+            this.values = values;
+        }
+
+
+        public String getTerm() {
+            return term;
+        }
+
+
+        public int getDistance() {
+            return distance;
+        }
+
+
+        public List<V> getValues() {
+            return values;
+        }
+    }
+
+
+    /**
+     * A tree node. Children are stored at the index of their distance from this node's term, so a search
+     * visits the children in range without looking at the others.
+     */
+    private static class Node<V> {
+        private final String term;
+        private final Set<V> values;
+        private Node<V>[] children;
+
+
+        @SuppressWarnings("unchecked")
+        private Node(String term) {
+            this.term = term;
+            this.values = new LinkedHashSet<>(1);
+            this.children = (Node<V>[]) new Node<?>[1];
+        }
+
+
+        private Node<V> child(int distance) {
+            return distance < children.length ? children[distance] : null;
+        }
+
+
+        private void setChild(int distance, Node<V> child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+
+
+        /**
+         * Gets the largest distance of any child from this node's term.
+         * @return The largest child distance, 0 for a leaf
+         */
+        private int maxChildDistance() {
+            return children.length - 1;
+        }
+    }
+}
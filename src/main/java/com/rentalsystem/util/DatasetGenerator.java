@@ -0,0 +1,434 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.model.RentalAgreement;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+
+/**
+ * Command-line tool that replaces the data files with a synthetic dataset of any size, for benchmarks and load tests.
+ * Hosts, owners and tenants are written first; then each property is written together with its leases,
+ * one after another and never overlapping, and the payments of each lease, one per rental period up to the
+ * as-of date with some missed or partial. Every agreement uses the owner and one of the hosts of its property,
+ * so the dataset passes the IntegrityVerifier.
+ * Owners and hosts are drawn from a power law, so with the default skew a few owners hold most properties.
+ * Every row is derived from the seed and its own index, and is streamed through a FileHandler RowSink in the
+ * configured format and layout, so memory use does not grow with the size of the dataset and the same
+ * seed and as-of date always produce the same files.
+ * Usage: DatasetGenerator [key=value...], with the keys hosts, owners, tenants, properties, agreements,
+ * ownerSkew, hostSkew, commercialShare, maxSubTenants, years, asOf and seed.
+ * Example of about 10 million rows, mostly payments: DatasetGenerator tenants=1000000 properties=200000 agreements=400000
+ */
+public class DatasetGenerator {
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "William", "Elizabeth",
+            "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Minh", "Lan", "Huy", "Mai", "Quang", "Thao", "Duc", "Ngoc", "Tuan", "Linh"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Brown", "Taylor", "Anderson", "Thomas", "Jackson", "White", "Harris", "Martin",
+            "Nguyen", "Tran", "Le", "Pham", "Hoang", "Vu", "Dang", "Bui", "Do", "Ngo"};
+    private static final String[] STREETS = {
+            "Main St", "Park Rd", "Oak Ave", "Lake View", "River Rd", "Hill St", "Market St", "Station Rd", "Garden Ln", "Harbour Blvd"};
+    private static final String[] BUSINESS_TYPES = {"Office", "Retail", "Warehouse", "Restaurant", "Workshop"};
+    private static final String[] PAYMENT_METHODS = {"Bank Transfer", "Credit Card", "Cash", "Direct Debit"};
+
+    // Seed salts, so each file draws from its own stream and can be regenerated on its own
+    private static final long HOSTS = 1;
+    private static final long OWNERS = 2;
+    private static final long TENANTS = 3;
+    private static final long PROPERTIES = 4;
+
+    private final int hosts;
+    private final int owners;
+    private final int tenants;
+    private final int properties;
+    private final long agreements;
+    private final double ownerSkew;
+    private final double hostSkew;
+    private final double commercialShare;
+    private final int maxSubTenants;
+    private final LocalDate historyStart;
+    private final LocalDate asOf;
+    private final long seed;
+    private long paymentCount;
+
+
+    /**
+     * Constructs a new DatasetGenerator.
+     * @param options The sizes, skew and seed by key; missing keys take their defaults
+     * @throws IllegalArgumentException if a key is unknown or a value is out of range
+     */
+    public DatasetGenerator(Map<String, String> options) {
+        Map<String, String> values = new HashMap<>(defaults());
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (!values.containsKey(option.getKey())) {
+                throw new IllegalArgumentException("Unknown option: " + option.getKey());
+            }
+            values.put(option.getKey(), option.getValue());
+        }
+        this.hosts = Integer.parseInt(values.get("hosts"));
+        this.owners = Integer.parseInt(values.get("owners"));
+        this.tenants = Integer.parseInt(values.get("tenants"));
+        this.properties = Integer.parseInt(values.get("properties"));
+        this.agreements = Long.parseLong(values.get("agreements"));
+        this.ownerSkew = Double.parseDouble(values.get("ownerSkew"));
+        this.hostSkew = Double.parseDouble(values.get("hostSkew"));
+        this.commercialShare = Double.parseDouble(values.get("commercialShare"));
+        this.maxSubTenants = Integer.parseInt(values.get("maxSubTenants"));
+        this.asOf = values.get("asOf").isEmpty() ? LocalDate.now() : LocalDate.parse(values.get("asOf"));
+        this.historyStart = asOf.minusYears(Integer.parseInt(values.get("years")));
+        this.seed = Long.parseLong(values.get("seed"));
+
+        if (hosts < 1 || owners < 1 || tenants < 1 || properties < 1 || agreements < 0) {
+            throw new IllegalArgumentException("There must be at least one host, owner, tenant and property.");
+        }
+        if (ownerSkew < 0 || hostSkew < 0) {
+            throw new IllegalArgumentException("Skew must not be negative.");
+        }
+        if (commercialShare < 0 || commercialShare > 1) {
+            throw new IllegalArgumentException("The commercial share must be between 0 and 1.");
+        }
+        if (maxSubTenants < 0 || maxSubTenants >= tenants) {
+            throw new IllegalArgumentException("The number of sub-tenants must be between 0 and the number of tenants minus 1.");
+        }
+        if (!historyStart.isBefore(asOf)) {
+            throw new IllegalArgumentException("The history must cover at least one year.");
+        }
+    }
+
+
+    /**
+     * Generates a dataset into the data files of the working directory.
+     * @param args The options as key=value pairs
+     * @throws IOException if a data file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 1) {
+                System.err.println("Usage: DatasetGenerator [key=value...], keys: " + String.join(", ", defaults().keySet()));
+                return;
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        DatasetGenerator generator;
+        try {
+            generator = new DatasetGenerator(options);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        long start = System.nanoTime();
+        long rows = generator.generate(new FileHandler());
+        System.out.printf("%d rows in %.1f s (seed %d, as of %s)%n",
+                rows, (System.nanoTime() - start) / 1e9, generator.seed, generator.asOf);
+    }
+
+
+    /**
+     * Writes every data file.
+     * @param fileHandler The FileHandler whose format and layout the files are written in
+     * @return The total number of rows written
+     * @throws IOException if a data file cannot be written
+     */
+    public long generate(FileHandler fileHandler) throws IOException {
+        long rows = writePeople(fileHandler, "hosts.txt", "H", hosts, HOSTS)
+                + writePeople(fileHandler, "owners.txt", "O", owners, OWNERS)
+                + writePeople(fileHandler, "tenants.txt", "T", tenants, TENANTS);
+
+        paymentCount = 0;
+        try (FileHandler.RowSink propertySink = fileHandler.openSink("properties.txt");
+             FileHandler.RowSink agreementSink = fileHandler.openSink("rental_agreements.txt");
+             FileHandler.RowSink paymentSink = fileHandler.openSink("payments.txt")) {
+            long agreementIndex = 0;
+            for (int property = 0; property < properties; property++) {
+                // Agreements are spread evenly, so the total is exact and every property can be generated alone
+                long leaseCount = agreements / properties + (property < agreements % properties ? 1 : 0);
+                writeProperty(property, leaseCount, agreementIndex, propertySink, agreementSink, paymentSink);
+                agreementIndex += leaseCount;
+            }
+        }
+        System.out.println("properties.txt: " + properties + " rows");
+        System.out.println("rental_agreements.txt: " + agreements + " rows");
+        System.out.println("payments.txt: " + paymentCount + " rows");
+        return rows + properties + agreements + paymentCount;
+    }
+
+
+    /**
+     * Writes the hosts, owners or tenants.
+     * @return The number of rows written
+     */
+    private long writePeople(FileHandler fileHandler, String filename, String prefix, int count, long salt) throws IOException {
+        try (FileHandler.RowSink sink = fileHandler.openSink(filename)) {
+            for (int i = 0; i < count; i++) {
+                SplittableRandom random = random(salt, i);
+                String first = pick(random, FIRST_NAMES);
+                String last = pick(random, LAST_NAMES);
+                LocalDate birthDate = asOf.minusYears(20 + random.nextInt(55)).minusDays(random.nextInt(365));
+                sink.write(new String[] {
+                        id(prefix, i, count),
+                        first + " " + last,
+                        birthDate.toString(),
+                        (first + last).toLowerCase() + (i + 1) + "@email.com"
+                });
+            }
+        }
+        System.out.println(filename + ": " + count + " rows");
+        return count;
+    }
+
+
+    /**
+     * Writes a property, then its leases and their payments.
+     * The leases of a property are generated before its row, so its status can reflect whether it is let on the as-of date.
+     */
+    private void writeProperty(int property, long leaseCount, long firstAgreement, FileHandler.RowSink propertySink,
+                               FileHandler.RowSink agreementSink, FileHandler.RowSink paymentSink) {
+        SplittableRandom random = random(PROPERTIES, property);
+        boolean commercial = random.nextDouble() < commercialShare;
+        String ownerId = id("O", skewed(random, owners, ownerSkew), owners);
+        List<String> hostIds = new ArrayList<>();
+        int hostCount = 1 + random.nextInt(Math.min(3, hosts));
+        while (hostIds.size() < hostCount) {
+            String hostId = id("H", skewed(random, hosts, hostSkew), hosts);
+            if (!hostIds.contains(hostId)) {
+                hostIds.add(hostId);
+            }
+        }
+        double price = commercial ? 2000 + random.nextInt(130) * 100 : 800 + random.nextInt(33) * 100;
+
+        // Each lease falls in its own slot of the history and the next few months, so leases never overlap
+        long windowDays = historyStart.until(asOf.plusMonths(6), ChronoUnit.DAYS);
+        long slotDays = Math.max(1, windowDays / Math.max(1, leaseCount));
+        List<String[]> leases = new ArrayList<>();
+        LocalDate previousEnd = historyStart.minusDays(1);
+        boolean let = false;
+        for (long lease = 0; lease < leaseCount; lease++) {
+            RentalAgreement.RentalPeriod period = rentalPeriod(random);
+            long periods = leasePeriods(random, period, slotDays);
+            LocalDate slotStart = historyStart.plusDays(lease * slotDays);
+            long spareDays = slotDays - slotStart.until(period.plusPeriods(slotStart, periods), ChronoUnit.DAYS);
+            LocalDate start = slotStart.plusDays(random.nextLong(Math.max(1, spareDays + 1)));
+            if (!start.isAfter(previousEnd)) {
+                start = previousEnd.plusDays(1);
+            }
+            LocalDate end = period.plusPeriods(start, periods).minusDays(1);
+            previousEnd = end;
+            String[] tenantIds = tenants(random);
+            String status = start.isAfter(asOf) ? "NEW" : end.isBefore(asOf) ? "COMPLETED" : "ACTIVE";
+            let |= status.equals("ACTIVE");
+            leases.add(new String[] {
+                    id("RA", firstAgreement + lease, agreements),
+                    id("P", property, properties),
+                    tenantIds[0] + ";" + String.join(";", Arrays.asList(tenantIds).subList(1, tenantIds.length)),
+                    ownerId,
+                    hostIds.get(random.nextInt(hostIds.size())),
+                    start.toString(),
+                    end.toString(),
+                    String.valueOf(rent(price, period)),
+                    period.name(),
+                    status
+            });
+        }
+
+        String status = let ? "RENTED" : random.nextInt(50) == 0 ? "UNDER_MAINTENANCE" : "AVAILABLE";
+        String address = (property + 1) + " " + pick(random, STREETS);
+        if (commercial) {
+            propertySink.write(new String[] {
+                    id("P", property, properties), "COMMERCIAL", address, String.valueOf(price), status, ownerId,
+                    "", "", "", pick(random, BUSINESS_TYPES), String.valueOf(random.nextInt(51)),
+                    String.valueOf(500.0 + random.nextInt(196) * 100), String.join(";", hostIds)
+            });
+        } else {
+            propertySink.write(new String[] {
+                    id("P", property, properties), "RESIDENTIAL", address, String.valueOf(price), status, ownerId,
+                    String.valueOf(1 + random.nextInt(5)), String.valueOf(random.nextBoolean()), String.valueOf(random.nextBoolean()),
+                    "", "", "", String.join(";", hostIds)
+            });
+        }
+        for (String[] lease : leases) {
+            agreementSink.write(lease);
+            writePayments(random, lease, paymentSink);
+        }
+    }
+
+
+    /**
+     * Writes one payment per rental period of a lease up to the as-of date, occasionally missed or partial,
+     * mostly paid by the main tenant and paid up to five days after the charge.
+     */
+    private void writePayments(SplittableRandom random, String[] lease, FileHandler.RowSink paymentSink) {
+        LocalDate start = LocalDate.parse(lease[5]);
+        LocalDate last = LocalDate.parse(lease[6]).isBefore(asOf) ? LocalDate.parse(lease[6]) : asOf;
+        double rent = Double.parseDouble(lease[7]);
+        RentalAgreement.RentalPeriod period = RentalAgreement.RentalPeriod.valueOf(lease[8]);
+        String[] tenantIds = lease[2].split(";");
+        for (long n = 0; ; n++) {
+            LocalDate chargeDay = period.plusPeriods(start, n);
+            if (chargeDay.isAfter(last)) {
+                break;
+            }
+            int roll = random.nextInt(100);
+            if (roll < 3) {
+                continue;
+            }
+            double amount = roll < 8 ? Math.round(rent * (50 + random.nextInt(41))) / 100.0 : rent;
+            LocalDate paid = chargeDay.plusDays(random.nextInt(6));
+            String tenantId = tenantIds.length > 1 && random.nextInt(100) < 15
+                    ? tenantIds[1 + random.nextInt(tenantIds.length - 1)] : tenantIds[0];
+            paymentSink.write(new String[] {
+                    id("PMT", paymentCount++, 0),
+                    lease[0],
+                    tenantId,
+                    (paid.isAfter(asOf) ? asOf : paid).toString(),
+                    amount(amount),
+                    pick(random, PAYMENT_METHODS)
+            });
+        }
+    }
+
+
+    /**
+     * Picks a main tenant and up to maxSubTenants distinct sub-tenants; half of the leases have none.
+     */
+    private String[] tenants(SplittableRandom random) {
+        int subTenants = maxSubTenants == 0 || random.nextBoolean() ? 0 : 1 + random.nextInt(maxSubTenants);
+        List<String> tenantIds = new ArrayList<>(subTenants + 1);
+        while (tenantIds.size() <= subTenants) {
+            String tenantId = id("T", random.nextInt(tenants), tenants);
+            if (!tenantIds.contains(tenantId)) {
+                tenantIds.add(tenantId);
+            }
+        }
+        return tenantIds.toArray(new String[0]);
+    }
+
+
+    private static RentalAgreement.RentalPeriod rentalPeriod(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        return roll < 70 ? RentalAgreement.RentalPeriod.MONTHLY : roll < 85 ? RentalAgreement.RentalPeriod.WEEKLY
+                : roll < 95 ? RentalAgreement.RentalPeriod.FORTNIGHTLY : RentalAgreement.RentalPeriod.DAILY;
+    }
+
+
+    /**
+     * Draws the length of a lease in periods, filling between half and all of its slot,
+     * capped so daily and weekly leases stay short, as they would be in practice.
+     */
+    private static long leasePeriods(SplittableRandom random, RentalAgreement.RentalPeriod period, long slotDays) {
+        long days = Math.max(1, slotDays / 2 + random.nextLong(slotDays / 2 + 1));
+        switch (period) {
+            case DAILY:
+                return Math.min(30, days);
+            case WEEKLY:
+                return Math.min(26, Math.max(1, days / 7));
+            case FORTNIGHTLY:
+                return Math.min(26, Math.max(1, days / 14));
+            default:
+                return Math.min(36, Math.max(1, days / 31));
+        }
+    }
+
+
+    private static double rent(double monthlyPrice, RentalAgreement.RentalPeriod period) {
+        switch (period) {
+            case DAILY:
+                return Math.round(monthlyPrice / 30 * 100) / 100.0;
+            case WEEKLY:
+                return Math.round(monthlyPrice * 12 / 52 * 100) / 100.0;
+            case FORTNIGHTLY:
+                return Math.round(monthlyPrice * 24 / 52 * 100) / 100.0;
+            default:
+                return monthlyPrice;
+        }
+    }
+
+
+    /**
+     * Draws an index from a power law over [0, n): index 0 is the most likely, and the higher the skew the
+     * more the first indexes dominate. A skew of 0 is uniform. Uses the inverse of the continuous distribution,
+     * so it needs no table however large n is.
+     */
+    static int skewed(SplittableRandom random, int n, double skew) {
+        double u = random.nextDouble();
+        double x;
+        if (Math.abs(skew - 1) < 1e-9) {
+            x = Math.pow(n + 1.0, u);
+        } else {
+            double exponent = 1 - skew;
+            x = Math.pow(u * (Math.pow(n + 1.0, exponent) - 1) + 1, 1 / exponent);
+        }
+        return Math.min(n - 1, (int) x - 1);
+    }
+
+
+    /**
+     * Gets the random stream of one row, which depends only on the seed, the file and the row's index.
+     */
+    private SplittableRandom random(long salt, long index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + salt * 0xBF58476D1CE4E5B9L + index);
+    }
+
+
+    /**
+     * Formats an ID with at least three digits, padded to the width of the largest ID of the file.
+     * Built by hand rather than with String.format, which would dominate the cost of a large dataset.
+     */
+    private static String id(String prefix, long index, long count) {
+        String number = String.valueOf(index + 1);
+        int width = Math.max(3, String.valueOf(count).length());
+        StringBuilder id = new StringBuilder(prefix.length() + Math.max(width, number.length())).append(prefix);
+        for (int i = number.length(); i < width; i++) {
+            id.append('0');
+        }
+        return id.append(number).toString();
+    }
+
+
+    /**
+     * Formats an amount with two decimals, as the TenantManager saves payments.
+     */
+    private static String amount(double amount) {
+        long cents = Math.round(amount * 100);
+        return (cents / 100) + "." + (cents % 100 < 10 ? "0" : "") + (cents % 100);
+    }
+
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("hosts", "100");
+        defaults.put("owners", "1000");
+        defaults.put("tenants", "20000");
+        defaults.put("properties", "10000");
+        defaults.put("agreements", "20000");
+        defaults.put("ownerSkew", "1.1");
+        defaults.put("hostSkew", "0.8");
+        defaults.put("commercialShare", "0.2");
+        defaults.put("maxSubTenants", "3");
+        defaults.put("years", "5");
+        defaults.put("asOf", "");
+        defaults.put("seed", "42");
+        return defaults;
+    }
+}
@@ -6,6 +6,9 @@ package com.rentalsystem.util;
 import org.jline.reader.LineReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
 /**
@@ -87,4 +90,23 @@ public class DateUtil {
             return false;
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Converts a Date to the number of days since 1970-01-01 in the system time zone.
+     * @param date The Date object to convert
+     * @return The epoch day of the date
+     */
+    public static long toEpochDay(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Converts an epoch day to a Date at midnight in the system time zone, matching dates parsed as yyyy-MM-dd.
+     * @param epochDay The number of days since 1970-01-01
+     * @return The corresponding Date object
+     */
+    public static Date fromEpochDay(long epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
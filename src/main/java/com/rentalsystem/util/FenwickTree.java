@@ -0,0 +1,72 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+
+/**
+ * Fenwick tree (binary indexed tree) over a fixed range of positions.
+ * Adding to a position and summing any range of positions both take O(log n).
+ */
+public class FenwickTree {
+    private final double[] tree;
+
+
+    /**
+     * Constructs a FenwickTree with every position set to zero.
+     * @param size The number of positions
+     */
+    public FenwickTree(int size) {
+        this.tree = new double[size + 1];
+    }
+
+
+    /**
+     * Adds a value at a position.
+     * @param position The position, from 0 to size - 1
+     * @param delta The value to add
+     */
+    public void add(int position, double delta) {
+        for (int i = position + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+
+    /**
+     * Sums the values at positions 0 to position, inclusive.
+     * @param position The last position summed; negative positions give 0
+     * @return The prefix sum
+     */
+    public double prefixSum(int position) {
+        double sum = 0;
+        for (int i = Math.min(position + 1, tree.length - 1); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+
+    /**
+     * Sums the values at positions from to to, inclusive.
+     * @param from The first position
+     * @param to The last position
+     * @return The range sum, or 0 if to is before from
+     */
+    public double rangeSum(int from, int to) {
+        if (to < from) {
+            return 0;
+        }
+        return prefixSum(to) - prefixSum(from - 1);
+    }
+
+
+    /**
+     * Gets the number of positions.
+     * @return The size of the tree
+     */
+    public int size() {
+        return tree.length - 1;
+    }
+}
@@ -4,22 +4,42 @@
 package com.rentalsystem.util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.rentalsystem.config.AppConfig;
+import com.rentalsystem.config.LoggerConfig;
 import com.rentalsystem.manager.*;
 import com.rentalsystem.model.*;
+import com.rentalsystem.monitor.DataFileEvent;
 
 /**
  * Utility class for handling file operations related to the rental system.
  */
 public class FileHandler {
     private static final String DATA_DIRECTORY = "resources/data/";
+    private static final String PAYMENTS = "payments.txt";
+    private static final String SHARD_COUNT = "shards.txt";
     public static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
 
     private RentalManager rentalManager;
@@ -27,6 +47,52 @@ public class FileHandler {
     private OwnerManager ownerManager;
     private HostManager hostManager;
     private PropertyManager propertyManager;
+    private volatile StringPool stringPool = new StringPool();
+    private final ReentrantReadWriteLock dataLock = new ReentrantReadWriteLock();
+    private final RelationshipLinker linker = new RelationshipLinker(AppConfig.getBooleanProperty("relationships.lazy", false), dataLock);
+    private final SnapshotStore snapshots = new SnapshotStore(dataLock, linker);
+    private final ArchiveStore archive = new ArchiveStore(new File(DATA_DIRECTORY + "archive"));
+    private final int shardCount;
+    private final StorageFormat format;
+    private final PaymentPartitions paymentPartitions;
+    private final Map<String, long[]> shardDigests = new ConcurrentHashMap<>();
+    private final ThreadLocal<Batch> batch = new ThreadLocal<>();
+    private final Map<String, List<String[]>> verifiedRows = new ConcurrentHashMap<>();
+    private volatile ProgressCounter progress;
+
+    /**
+     * Names of the data files holding each entity type.
+     */
+    public static final List<String> DATA_FILES = List.of(
+            "hosts.txt", "owners.txt", "tenants.txt", "properties.txt", "rental_agreements.txt", "payments.txt");
+
+    /**
+     * Constructs a new FileHandler using the shard count configured by storage.shards.
+     */
+    public FileHandler() {
+        this(AppConfig.getIntProperty("storage.shards", 1));
+    }
+
+    /**
+     * Constructs a new FileHandler with an explicit shard count, using the format configured by storage.format.
+     * @param shardCount The number of hash-partitioned files per entity type, 1 for a single flat file
+     */
+    public FileHandler(int shardCount) {
+        this(shardCount, StorageFormat.fromName(AppConfig.getProperty("storage.format", "csv")));
+    }
+
+    /**
+     * Constructs a new FileHandler with an explicit shard count and storage format.
+     * @param shardCount The number of hash-partitioned files per entity type, 1 for a single flat file
+     * @param format The format the data files are read and written in
+     */
+    public FileHandler(int shardCount, StorageFormat format) {
+        this.shardCount = Math.max(1, shardCount);
+        this.format = format;
+        this.paymentPartitions = AppConfig.getBooleanProperty("storage.payments.partitioned", false)
+                ? new PaymentPartitions(new File(DATA_DIRECTORY + "payments"), format.getExtension())
+                : null;
+    }
 
     /**
      * Synchronizes the FileHandler with the various managers in the system.
@@ -41,47 +107,829 @@ public class FileHandler {
 
     /**
      * Reads lines from a CSV file.
+     * When the data is stored in shards, every shard of the entity file is read in parallel.
+     * If the IntegrityVerifier has already read the file, its verified rows are returned instead of reading again.
      * @param filename The name of the file to read
      * @return A list of string arrays, each representing a line in the CSV file
      */
     public List<String[]> readLines(String filename) {
-        File file = new File(DATA_DIRECTORY + filename);
+        List<String[]> verified = verifiedRows.remove(filename);
+        if (verified != null) {
+            countRows(verified.size());
+            return verified;
+        }
+        DataFileEvent event = new DataFileEvent("read", filename, format.name(), isSharded(filename) ? shardCount : 1);
+        event.begin();
+        List<String[]> lines = readPhysical(filename);
+        if (event.shouldCommit()) {
+            event.setRows(lines.size());
+            event.setBytes(dataSize(filename));
+            event.commit();
+        }
+        return lines;
+    }
+
+    /**
+     * Reads every row of a data file from its flat file or, in parallel, from its shards.
+     * @param filename The logical name of the data file
+     * @return The rows of the file
+     */
+    private List<String[]> readPhysical(String filename) {
+        ProgressCounter counter = progress;
+        if (counter != null) {
+            counter.expectBytes(dataSize(filename));
+        }
+        if (isPartitioned(filename)) {
+            List<List<String[]>> partitions = paymentPartitions.months().parallelStream()
+                    .map(month -> {
+                        List<String[]> lines = readFile(filename, paymentPartitions.file(month));
+                        countRows(lines.size());
+                        return lines;
+                    })
+                    .collect(Collectors.toList());
+            List<String[]> lines = new ArrayList<>(partitions.stream().mapToInt(List::size).sum());
+            partitions.forEach(lines::addAll);
+            return lines;
+        }
+        if (!isSharded(filename)) {
+            List<String[]> lines = readFile(filename, dataFile(filename));
+            countRows(lines.size());
+            return lines;
+        }
 
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
+        long[] digests = shardDigests(filename);
+        List<List<String[]>> shards = IntStream.range(0, shardCount).parallel()
+                .mapToObj(shard -> {
+                    File file = shardFile(filename, shard);
+                    List<String[]> lines = file.exists() ? readFile(filename, file) : new ArrayList<>();
+                    digests[shard] = digest(lines);
+                    countRows(lines.size());
+                    return lines;
+                })
+                .collect(Collectors.toList());
+
+        List<String[]> lines = new ArrayList<>(shards.stream().mapToInt(List::size).sum());
+        shards.forEach(lines::addAll);
+        return lines;
+    }
+
+    /**
+     * Reads every line of a single physical CSV file, creating the file if it does not exist.
+     * @param filename The logical name of the file, used in messages
+     * @param file The physical file to read
+     * @return A list of string arrays, each representing a line in the CSV file
+     */
+    private List<String[]> readFile(String filename, File file) {
+        if (format == StorageFormat.JSON && file.exists()) {
+            List<String[]> lines = new ArrayList<>();
+            streamJson(filename, file, lines::add);
+            return lines;
+        }
+        try (CSVReader reader = new CSVReader(openReader(file))) {
             return reader.readAll();
         } catch (FileNotFoundException fileNotFoundException) {
-            System.out.println("File not found: " + filename);
             try {
                 if (file.createNewFile()) {
-                    System.out.println("File created: " + filename);
+                    LoggerConfig.getLogger().info("File not found, created: " + filename);
                 } else {
-                    System.err.println("Failed to create file: " + filename);
+                    LoggerConfig.getLogger().warning("File not found and could not be created: " + filename);
                 }
             } catch (IOException e) {
-                System.err.println("Error creating file: " + filename);
-                e.printStackTrace();
+                LoggerConfig.getLogger().log(Level.WARNING, "Error creating file: " + filename, e);
             }
         } catch (IOException e) {
-            System.err.println("Error reading file: " + filename);
-            e.printStackTrace();
+            LoggerConfig.getLogger().log(Level.WARNING, "Error reading file: " + filename, e);
         } catch (CsvException e) {
             throw new RuntimeException(e);
         }
-        return null;
+        return new ArrayList<>();
+    }
+
+    /**
+     * Streams the lines of a CSV file to a consumer one row at a time, without materializing the whole file.
+     * Shards are streamed one after another. Rows already read by the IntegrityVerifier are replayed instead.
+     * @param filename The name of the file to read
+     * @param consumer The consumer receiving each line as a string array
+     */
+    public void forEachLine(String filename, Consumer<String[]> consumer) {
+        List<String[]> verified = verifiedRows.remove(filename);
+        if (verified != null) {
+            verified.forEach(consumer);
+            countRows(verified.size());
+            return;
+        }
+        DataFileEvent event = new DataFileEvent("stream", filename, format.name(), isSharded(filename) ? shardCount : 1);
+        event.begin();
+        ProgressCounter counter = progress;
+        if (counter != null) {
+            counter.expectBytes(dataSize(filename));
+        }
+        long[] rows = new long[1];
+        Consumer<String[]> counted = parts -> {
+            rows[0]++;
+            if (counter != null) {
+                counter.addRows(1);
+            }
+            consumer.accept(parts);
+        };
+        if (isPartitioned(filename)) {
+            for (String month : paymentPartitions.months()) {
+                streamFile(filename, paymentPartitions.file(month), counted);
+            }
+        } else if (!isSharded(filename)) {
+            File file = dataFile(filename);
+            if (!file.exists()) {
+                readFile(filename, file);
+            } else {
+                streamFile(filename, file, counted);
+            }
+        } else {
+            for (int shard = 0; shard < shardCount; shard++) {
+                File file = shardFile(filename, shard);
+                if (file.exists()) {
+                    streamFile(filename, file, counted);
+                }
+            }
+        }
+        if (event.shouldCommit()) {
+            event.setRows(rows[0]);
+            event.setBytes(dataSize(filename));
+            event.commit();
+        }
+    }
+
+    /**
+     * Streams a single physical CSV file to a consumer.
+     * @param filename The logical name of the file, used in messages
+     * @param file The physical file to read
+     * @param consumer The consumer receiving each line as a string array
+     */
+    private void streamFile(String filename, File file, Consumer<String[]> consumer) {
+        if (format == StorageFormat.JSON) {
+            streamJson(filename, file, consumer);
+            return;
+        }
+        try (CSVReader reader = new CSVReader(new BufferedReader(openReader(file)))) {
+            String[] parts;
+            while ((parts = reader.readNext()) != null) {
+                consumer.accept(parts);
+            }
+        } catch (IOException e) {
+            LoggerConfig.getLogger().log(Level.WARNING, "Error reading file: " + filename, e);
+        } catch (CsvException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Streams the records of a JSON data file to a consumer one object at a time.
+     * @param filename The logical name of the file, used in messages and to pick the record schema
+     * @param file The physical file to read
+     * @param consumer The consumer receiving each record as positional columns
+     * @throws IllegalStateException if the file cannot be read or is not a well-formed array of records
+     */
+    private void streamJson(String filename, File file, Consumer<String[]> consumer) {
+        if (file.length() == 0) {
+            return;
+        }
+        JsonRecordAdapter adapter = JsonRecordAdapter.forFile(filename);
+        try (JsonReader reader = new JsonReader(new BufferedReader(openReader(file)))) {
+            reader.beginArray();
+            while (reader.peek() != JsonToken.END_ARRAY) {
+                consumer.accept(adapter.read(reader));
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException e) {
+            // A truncated or malformed file must not load as if its remaining records did not exist
+            throw new IllegalStateException("Error reading file: " + filename + " (" + file.getPath() + ")", e);
+        }
+    }
+
+    /**
+     * Hands rows that have been read and verified to the next readLines or forEachLine of the file.
+     * @param filename The logical name of the data file
+     * @param rows The verified rows
+     */
+    void preload(String filename, List<String[]> rows) {
+        verifiedRows.put(filename, rows);
+    }
+
+    /**
+     * Moves rejected rows of a data file into its quarantine file under data/quarantine, keeping rows
+     * quarantined earlier. A row already in the quarantine file is not added twice.
+     * @param filename The logical name of the data file
+     * @param rows The rejected rows
+     */
+    void quarantine(String filename, List<String[]> rows) {
+        File file = new File(DATA_DIRECTORY + "quarantine/" + format.fileName(filename));
+        List<String[]> quarantined = file.exists() ? readFile(filename, file) : new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        for (String[] row : quarantined) {
+            known.add(String.join("\u0000", row));
+        }
+        for (String[] row : rows) {
+            if (known.add(String.join("\u0000", row))) {
+                quarantined.add(row);
+            }
+        }
+        try {
+            writeRows(filename, file, quarantined);
+        } catch (IOException e) {
+            LoggerConfig.getLogger().log(Level.WARNING, "Error writing to file: " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a repeated column value: an entity ID, a foreign key or a category
+     * such as a payment method. Every manager shares the pool during a load, so a foreign key resolves to the
+     * same instance as the ID it references. Payment IDs are never referenced, so they are not pooled.
+     * @param value The value read from a data file
+     * @return The canonical instance of the value
+     */
+    public String intern(String value) {
+        return stringPool.intern(value);
+    }
+
+    /**
+     * Discards the pool built up while loading and marks every data file changed, so the next snapshot is
+     * built from the loaded managers. Loaded entities keep their canonical instances, and values read later
+     * start a fresh pool, so the pool never outlives one load.
+     */
+    public void finishLoad() {
+        stringPool = new StringPool();
+        DATA_FILES.forEach(snapshots::changed);
+    }
+
+    /**
+     * Gets the store of point-in-time versions of the entity data files, built from the managers for reports.
+     * @return The SnapshotStore shared by every manager
+     */
+    public SnapshotStore getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Gets the lock guarding the managers' in-memory data. Every manager mutation and unit of work holds the
+     * write lock while it changes the maps and indexes and writes the files, and every manager read holds the
+     * read lock, so neither the console nor an API worker reads them while another thread is changing them.
+     * The lock is reentrant but cannot be upgraded: a thread holding the read lock must not call a mutation.
+     * @return The lock shared by every manager
+     */
+    public ReadWriteLock getDataLock() {
+        return dataLock;
+    }
+
+    /**
+     * Gets the linker that resolves relationships between loaded entities.
+     * @return The RelationshipLinker shared by every manager
+     */
+    public RelationshipLinker getLinker() {
+        return linker;
+    }
+
+    /**
+     * Gets the cold store holding the rental agreements and payments archived out of the data files.
+     * @return The ArchiveStore under data/archive
+     */
+    public ArchiveStore getArchive() {
+        return archive;
+    }
+
+    /**
+     * Routes the row and byte counts of the reads and writes that follow into a progress counter.
+     * @param progress The counter to add to, or null to stop counting
+     */
+    public void setProgress(ProgressCounter progress) {
+        this.progress = progress;
+    }
+
+    private void countRows(long rows) {
+        ProgressCounter counter = progress;
+        if (counter != null) {
+            counter.addRows(rows);
+        }
+    }
+
+    /**
+     * Opens a physical data file for reading, counting the bytes read when progress is being tracked.
+     * @param file The file to read
+     * @return A reader over the file in the platform charset, as FileReader would open it
+     * @throws FileNotFoundException if the file does not exist
+     */
+    private Reader openReader(File file) throws FileNotFoundException {
+        ProgressCounter counter = progress;
+        InputStream stream = new FileInputStream(file);
+        if (counter == null) {
+            return new InputStreamReader(stream);
+        }
+        return new InputStreamReader(new FilterInputStream(stream) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    counter.addBytes(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    counter.addBytes(count);
+                }
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Opens a physical data file for writing, counting the bytes written when progress is being tracked.
+     * @param file The file to write
+     * @return A writer to the file in the platform charset, as FileWriter would open it
+     * @throws IOException if the file cannot be opened
+     */
+    private Writer openWriter(File file) throws IOException {
+        ProgressCounter counter = progress;
+        OutputStream stream = new FileOutputStream(file);
+        if (counter == null) {
+            return new OutputStreamWriter(stream);
+        }
+        return new OutputStreamWriter(new FilterOutputStream(stream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                counter.addBytes(1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                counter.addBytes(length);
+            }
+        });
     }
 
     /**
      * Writes lines to a CSV file.
+     * When the data is stored in shards, the lines are partitioned by the hash of their ID column and only
+     * the shards whose content changed since they were last read or written are rewritten, in parallel.
+     * While a batch is open on the calling thread, the lines are held until the batch is committed.
      * @param filename The name of the file to write to
      * @param lines The lines to write to the file
      */
     public void writeLines(String filename, List<String[]> lines) {
-        try (CSVWriter writer = new CSVWriter(new FileWriter(DATA_DIRECTORY + filename))) {
-            writer.writeAll(lines);
-        } catch (IOException e) {
-            System.err.println("Error writing to file: " + filename);
-            e.printStackTrace();
+        Batch current = batch.get();
+        if (current != null) {
+            current.pendingWrites.put(filename, lines);
+            return;
+        }
+        DataFileEvent event = new DataFileEvent("write", filename, format.name(), shardCount);
+        event.begin();
+        ProgressCounter counter = progress;
+        if (counter != null) {
+            counter.expectRows(lines.size());
+        }
+        List<FileWrite> writes = physicalWrites(filename, lines);
+        // A manifest describes the partitions or shards, so it is only written once they are
+        writes.parallelStream().filter(write -> !write.describesOthers()).forEach(FileWrite::write);
+        writes.stream().filter(FileWrite::describesOthers).forEach(FileWrite::write);
+        if (event.shouldCommit()) {
+            event.setRows(lines.size());
+            event.setBytes(dataSize(filename));
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens a batch on the calling thread. Until it is committed or aborted, saves registered through
+     * deferSave are postponed and writeLines holds the lines in memory instead of writing them.
+     * @throws IllegalStateException if a batch is already open on this thread
+     */
+    public void beginBatch() {
+        if (batch.get() != null) {
+            throw new IllegalStateException("A batch is already open on this thread.");
+        }
+        batch.set(new Batch());
+    }
+
+    /**
+     * Checks whether a batch is open on the calling thread, so a caller can join it instead of opening its own.
+     * @return true if writeLines would hold the lines until the batch is committed
+     */
+    public boolean isBatchOpen() {
+        return batch.get() != null;
+    }
+
+    /**
+     * Postpones a manager's save until the open batch is committed, so a file touched many times in a
+     * batch is serialized and written once.
+     * @param filename The name of the file the save writes
+     * @param save The save to run at commit
+     * @return true if the save was postponed, false if there is no open batch and the caller should save now
+     */
+    public boolean deferSave(String filename, Runnable save) {
+        Batch current = batch.get();
+        if (current == null || current.flushing) {
+            return false;
+        }
+        current.deferredSaves.put(filename, save);
+        return true;
+    }
+
+    /**
+     * Commits the open batch: runs the postponed saves, writes every touched file next to its target,
+     * then renames them into place one by one, keeping each replaced file as a backup until all are in place.
+     * If any file cannot be written, no data file is replaced; if one cannot be renamed into place, the files
+     * already replaced are restored from their backups. A crash while renaming can still leave some files
+     * replaced. The batch is closed either way.
+     * @throws IllegalStateException if no batch is open on this thread, or a file cannot be written
+     */
+    public void commitBatch() {
+        Batch current = batch.get();
+        if (current == null) {
+            throw new IllegalStateException("No batch is open on this thread.");
+        }
+        try {
+            current.flushing = true;
+            for (Runnable save : current.deferredSaves.values()) {
+                save.run();
+            }
+            DataFileEvent event = new DataFileEvent("commit", String.join(",", current.pendingWrites.keySet()), format.name(), shardCount);
+            event.begin();
+            ProgressCounter counter = progress;
+            if (counter != null) {
+                counter.expectRows(current.pendingWrites.values().stream().mapToLong(List::size).sum());
+            }
+
+            List<FileWrite> writes = new ArrayList<>();
+            current.pendingWrites.forEach((filename, lines) -> writes.addAll(physicalWrites(filename, lines)));
+            try {
+                writes.parallelStream().forEach(FileWrite::stage);
+            } catch (IllegalStateException e) {
+                writes.forEach(FileWrite::discard);
+                throw e;
+            }
+            installAll(writes);
+            if (event.shouldCommit()) {
+                event.setRows(current.pendingWrites.values().stream().mapToLong(List::size).sum());
+                event.setBytes(current.pendingWrites.keySet().stream().mapToLong(this::dataSize).sum());
+                event.commit();
+            }
+        } finally {
+            batch.remove();
+        }
+    }
+
+    /**
+     * Renames staged files into place. If one cannot be renamed, the files already replaced are put back
+     * and the staged files not yet installed are deleted.
+     * @param writes The staged writes, in install order
+     * @throws IllegalStateException if a file cannot be replaced
+     */
+    private void installAll(List<FileWrite> writes) {
+        int installed = 0;
+        try {
+            for (FileWrite write : writes) {
+                write.install();
+                installed++;
+            }
+        } catch (IllegalStateException e) {
+            // The failed write may have backed up its target before the rename failed
+            for (int i = Math.min(installed, writes.size() - 1); i >= 0; i--) {
+                try {
+                    writes.get(i).restore();
+                } catch (IllegalStateException restoreFailure) {
+                    e.addSuppressed(restoreFailure);
+                }
+            }
+            writes.forEach(FileWrite::discard);
+            throw e;
+        }
+        writes.forEach(FileWrite::dropBackup);
+    }
+
+    /**
+     * Discards the open batch without writing anything. Does nothing if no batch is open.
+     */
+    public void abortBatch() {
+        batch.remove();
+    }
+
+    /**
+     * Lists the physical files a write of a data file must replace.
+     * @param filename The logical name of the data file
+     * @param lines The lines of the whole data file
+     * @return The flat file, or the shards whose content changed since they were last read or written
+     */
+    private List<FileWrite> physicalWrites(String filename, List<String[]> lines) {
+        List<FileWrite> writes = new ArrayList<>();
+        if (paymentPartitions != null && PAYMENTS.equals(filename)) {
+            return partitionWrites(filename, lines);
+        }
+        checkShardCount(filename);
+        if (shardCount <= 1) {
+            writes.add(new FileWrite(filename, dataFile(filename), lines, null, -1, 0));
+            return writes;
+        }
+
+        List<List<String[]>> partitions = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (String[] line : lines) {
+            partitions.get(shardOf(line.length > 0 ? line[0] : "")).add(line);
+        }
+
+        long[] digests = shardDigests(filename);
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<String[]> partition = partitions.get(shard);
+            long digest = digest(partition);
+            File file = shardFile(filename, shard);
+            if (digest != digests[shard] || !file.exists()) {
+                writes.add(new FileWrite(filename, file, partition, digests, shard, digest));
+            }
+        }
+        if (!shardCountFile(filename).exists()) {
+            writes.add(new ShardCountWrite(filename));
+        }
+        return writes;
+    }
+
+    /**
+     * Lists the monthly partitions a write of the payments must replace, followed by the new manifest.
+     * @param filename The logical name of the payments file
+     * @param lines The lines of the whole payments file
+     * @return The partitions whose content differs from the manifest, then the manifest
+     */
+    private List<FileWrite> partitionWrites(String filename, List<String[]> lines) {
+        Map<String, List<String[]>> months = new TreeMap<>();
+        for (String[] line : lines) {
+            months.computeIfAbsent(PaymentPartitions.monthOf(line), month -> new ArrayList<>()).add(line);
+        }
+        // Months that no longer hold any payment are emptied rather than left with stale rows, and stay in the manifest as empty
+        for (String month : paymentPartitions.months()) {
+            months.putIfAbsent(month, new ArrayList<>());
+        }
+
+        List<FileWrite> writes = new ArrayList<>();
+        TreeMap<String, PaymentPartitions.Partition> manifest = new TreeMap<>();
+        months.forEach((month, rows) -> {
+            PaymentPartitions.Partition partition = PaymentPartitions.Partition.of(rows);
+            PaymentPartitions.Partition previous = paymentPartitions.get(month);
+            File file = paymentPartitions.file(month);
+            if (previous == null || previous.digest != partition.digest || !file.exists()) {
+                writes.add(new FileWrite(filename, file, rows, null, -1, 0));
+            }
+            manifest.put(month, partition);
+        });
+        writes.add(new ManifestWrite(filename, manifest));
+        return writes;
+    }
+
+    /**
+     * Writes lines to a single physical data file in this handler's format, creating its directory if needed.
+     * @param filename The logical name of the file, used to pick the record schema
+     * @param file The physical file to write to
+     * @param lines The lines to write to the file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeRows(String filename, File file, List<String[]> lines) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+        if (format == StorageFormat.JSON) {
+            writeJson(filename, file, lines);
+        } else {
+            try (CSVWriter writer = new CSVWriter(openWriter(file))) {
+                writer.writeAll(lines);
+            }
+        }
+        countRows(lines.size());
+    }
+
+    /**
+     * Writes lines to a JSON data file as an array of records, one object at a time.
+     * @param filename The logical name of the file, used to pick the record schema
+     * @param file The physical file to write to
+     * @param lines The lines to write to the file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeJson(String filename, File file, List<String[]> lines) throws IOException {
+        JsonRecordAdapter adapter = JsonRecordAdapter.forFile(filename);
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(openWriter(file)))) {
+            writer.beginArray();
+            for (String[] line : lines) {
+                adapter.write(writer, line);
+            }
+            writer.endArray();
+        }
+    }
+
+    /**
+     * Gets the physical flat file of a data file in this handler's format.
+     * @param filename The logical name of the data file
+     * @return The flat data file
+     */
+    File dataFile(String filename) {
+        return new File(DATA_DIRECTORY + format.fileName(filename));
+    }
+
+    /**
+     * Measures the size of a data file on disk, summed over its shards when it is sharded.
+     * @param filename The logical name of the data file
+     * @return The size in bytes
+     */
+    private long dataSize(String filename) {
+        if (isPartitioned(filename)) {
+            return paymentPartitions.months().stream().mapToLong(month -> paymentPartitions.file(month).length()).sum();
+        }
+        if (!isSharded(filename)) {
+            return dataFile(filename).length();
+        }
+        long bytes = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            bytes += shardFile(filename, shard).length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the format this handler reads and writes.
+     * @return The storage format
+     */
+    public StorageFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the number of shards each entity file is partitioned into.
+     * @return The shard count, 1 for the flat single-file layout
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Checks whether an entity file should be read from its shards.
+     * Falls back to the flat file when sharding was enabled but the data has not been written in shards yet.
+     * @param filename The name of the entity file
+     * @return true if the shard layout should be used
+     * @throws IllegalStateException if the file is stored in a different number of shards than configured
+     */
+    private boolean isSharded(String filename) {
+        int stored = checkShardCount(filename);
+        if (shardCount <= 1) {
+            return false;
+        }
+        return stored > 0 || !dataFile(filename).exists();
+    }
+
+    /**
+     * Compares the shard count of an entity file on disk with the configured one, so a changed
+     * storage.shards never reads or overwrites only some of the shards.
+     * @param filename The name of the entity file
+     * @return The shard count on disk, 0 if the file is not stored in shards
+     * @throws IllegalStateException if the counts differ
+     */
+    private int checkShardCount(String filename) {
+        int stored = storedShardCount(filename);
+        if (stored > 0 && stored != shardCount) {
+            throw new IllegalStateException(filename + " is stored in " + stored + " shards but " + shardCount
+                    + " are configured. Run ShardMigrator " + shardCount + " to reshard the data.");
+        }
+        return stored;
+    }
+
+    /**
+     * Reads the shard count recorded in the shard directory of an entity file. Directories written before
+     * the count was recorded are counted by their shard files.
+     * @param filename The name of the entity file
+     * @return The number of shards on disk, 0 if the file is not stored in shards
+     * @throws IllegalStateException if the recorded count cannot be read
+     */
+    static int storedShardCount(String filename) {
+        File countFile = shardCountFile(filename);
+        if (countFile.exists()) {
+            try {
+                return Integer.parseInt(new String(Files.readAllBytes(countFile.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Error reading shard count: " + countFile.getPath(), e);
+            }
+        }
+        String shardName = Pattern.quote(baseName(filename)) + "-\\d{3}\\.[a-z]+";
+        File[] shards = shardDirectory(filename).listFiles((directory, name) -> name.matches(shardName));
+        return shards == null ? 0 : shards.length;
+    }
+
+    /**
+     * Gets the file recording how many shards an entity file is split into.
+     * @param filename The name of the entity file
+     * @return The shard count file in the shard directory
+     */
+    private static File shardCountFile(String filename) {
+        return new File(shardDirectory(filename), SHARD_COUNT);
+    }
+
+    /**
+     * Writes the configured shard count.
+     * @param target The file to write
+     * @throws IOException if the file cannot be written
+     */
+    private void writeShardCount(File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory: " + parent);
         }
+        Files.write(target.toPath(), (shardCount + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks whether the payments should be read from their monthly partitions.
+     * Falls back to the flat or sharded file until the payments have been written in partitions.
+     * @param filename The name of the entity file
+     * @return true if the partition layout should be used
+     */
+    private boolean isPartitioned(String filename) {
+        return paymentPartitions != null && PAYMENTS.equals(filename)
+                && (paymentPartitions.exists() || !dataFile(filename).exists());
+    }
+
+    /**
+     * Computes the shard an ID belongs to.
+     * @param id The ID in the first column of a line
+     * @return The shard index
+     */
+    int shardOf(String id) {
+        return Math.floorMod(id.hashCode(), shardCount);
+    }
+
+    /**
+     * Gets the directory holding the shards of an entity file.
+     * @param filename The name of the entity file
+     * @return The shard directory
+     */
+    static File shardDirectory(String filename) {
+        return new File(DATA_DIRECTORY + "shards/" + baseName(filename));
+    }
+
+    /**
+     * Gets the physical file of one shard of an entity file.
+     * @param filename The name of the entity file
+     * @param shard The shard index
+     * @return The shard file
+     */
+    private File shardFile(String filename, int shard) {
+        return new File(shardDirectory(filename), baseName(filename) + "-" + String.format("%03d", shard) + format.getExtension());
+    }
+
+    /**
+     * Strips the extension from a file name.
+     * @param filename The file name
+     * @return The file name without its extension
+     */
+    private static String baseName(String filename) {
+        return filename.contains(".") ? filename.substring(0, filename.lastIndexOf('.')) : filename;
+    }
+
+    /**
+     * Gets the content digests last seen for each shard of an entity file.
+     * @param filename The name of the entity file
+     * @return The per-shard digests
+     */
+    private long[] shardDigests(String filename) {
+        return shardDigests.computeIfAbsent(filename, key -> new long[shardCount]);
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a digest of a list of lines, used to detect shards that did not change.
+     * @param lines The lines to digest
+     * @return The digest
+     */
+    static long digest(List<String[]> lines) {
+        long hash = 0xcbf29ce484222325L;
+        for (String[] line : lines) {
+            hash = digest(hash, line);
+        }
+        return hash;
+    }
+
+    /**
+     * Continues a digest of lines with one more line, so the digest of a file can be kept up to date as rows are appended.
+     * @param hash The digest of the lines before this one
+     * @param line The next line
+     * @return The digest including the line
+     */
+    static long digest(long hash, String[] line) {
+        for (String cell : line) {
+            String value = cell != null ? cell : "";
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ 0x1F) * 0x100000001b3L;
+        }
+        return (hash ^ '\n') * 0x100000001b3L;
     }
 
     /**
@@ -214,38 +1062,578 @@ public class FileHandler {
         writeLines("payments.txt", lines);
     }
 
+    /**
+     * Appends one payment to the payments file.
+     * With monthly partitions only the partition of the payment's month and the manifest are written; the
+     * first append after partitioning is enabled moves the existing payments into partitions. Without
+     * partitions the whole file is rewritten. Appends are written immediately, so they are refused while a
+     * batch is open: a batch that is later aborted could not take the payment back.
+     * @param row The payment row
+     * @throws IllegalStateException if a batch is open on this thread, or the payment cannot be written
+     */
+    public synchronized void appendPayment(String[] row) {
+        if (batch.get() != null) {
+            throw new IllegalStateException("Payments cannot be recorded inside a batch or unit of work.");
+        }
+        DataFileEvent event = new DataFileEvent("append", PAYMENTS, format.name(), 1);
+        event.begin();
+        if (!isPartitioned(PAYMENTS) || !paymentPartitions.exists()) {
+            List<String[]> lines = new ArrayList<>(readPhysical(PAYMENTS));
+            lines.add(row);
+            writeLines(PAYMENTS, lines);
+        } else {
+            String month = PaymentPartitions.monthOf(row);
+            File file = paymentPartitions.file(month);
+            try {
+                if (format == StorageFormat.CSV) {
+                    try (CSVWriter writer = new CSVWriter(new FileWriter(file, true))) {
+                        writer.writeNext(row);
+                    }
+                } else {
+                    List<String[]> lines = file.exists() ? readFile(PAYMENTS, file) : new ArrayList<>();
+                    lines.add(row);
+                    FileWrite write = new FileWrite(PAYMENTS, file, lines, null, -1, 0);
+                    write.stage();
+                    write.install();
+                    write.dropBackup();
+                }
+                paymentPartitions.append(month, row);
+                paymentPartitions.saveManifest();
+            } catch (IOException e) {
+                throw new IllegalStateException("Error appending payment to " + file.getName(), e);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.setRows(1);
+            event.setBytes(dataSize(PAYMENTS));
+            event.commit();
+        }
+    }
+
+    /**
+     * Streams the payments dated within a range. With monthly partitions only the partitions whose
+     * dates overlap the range are opened; otherwise the whole payments file is scanned.
+     * @param from The first payment date of the range, inclusive
+     * @param to The last payment date of the range, inclusive
+     * @param consumer The consumer receiving each payment row in the range
+     */
+    public void forEachPayment(Date from, Date to, Consumer<String[]> consumer) {
+        String first = DATE_FORMAT.format(from);
+        String last = DATE_FORMAT.format(to);
+        Consumer<String[]> inRange = row -> {
+            if (row.length > 3 && row[3].compareTo(first) >= 0 && row[3].compareTo(last) <= 0) {
+                consumer.accept(row);
+            }
+        };
+        List<File> files = new ArrayList<>();
+        if (isPartitioned(PAYMENTS)) {
+            for (String month : paymentPartitions.overlapping(first, last)) {
+                files.add(paymentPartitions.file(month));
+            }
+        } else if (!isSharded(PAYMENTS)) {
+            files.add(dataFile(PAYMENTS));
+        } else {
+            for (int shard = 0; shard < shardCount; shard++) {
+                files.add(shardFile(PAYMENTS, shard));
+            }
+        }
+        DataFileEvent event = new DataFileEvent("scan", PAYMENTS, format.name(), files.size());
+        event.begin();
+        for (File file : files) {
+            if (file.exists()) {
+                streamFile(PAYMENTS, file, inRange);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.setBytes(files.stream().mapToLong(File::length).sum());
+            event.commit();
+        }
+    }
+
+    /**
+     * Opens a data file for writing one row at a time, in this handler's format and layout, replacing its content.
+     * Rows go to disk as they are written, so only one open writer per shard or payment month is held in memory,
+     * however many rows the file gets. Every file is written next to its target and renamed into place when
+     * the sink is closed.
+     * @param filename The logical name of the data file
+     * @return The sink, which must be closed to install the files
+     */
+    public RowSink openSink(String filename) {
+        return new RowSink(filename);
+    }
+
     /**
      * Loads payments from file.
      * @return A list of Payment objects
      */
     public List<Payment> loadPayments() {
         List<Payment> payments = new ArrayList<>();
-        for (String[] parts : readLines("payments.txt")) {
+        Function<String, RentalAgreement> agreementResolver = rentalManager::get;
+        forEachLine("payments.txt", parts -> {
             if (parts.length == 6) {
-                RentalAgreement agreement = rentalManager.get(parts[1]);
-                if (agreement == null) {
-                    System.out.println("Rental Agreement id: " + parts[1] + " not found");
-                    continue;
+                boolean offHeap = rentalManager.isStoredOffHeap(parts[1]);
+                RentalAgreement agreement = offHeap ? null : rentalManager.get(parts[1]);
+                if (!offHeap && agreement == null) {
+                    LoggerConfig.getLogger().warning("Payment " + parts[0] + " skipped, rental agreement id not found: " + parts[1]);
+                    return;
                 }
                 Tenant tenant = tenantManager.get(parts[2]);
                 if (tenant == null) {
-                    System.out.println("Tenant id: " + parts[2] + " not found");
-                    continue;
+                    LoggerConfig.getLogger().warning("Payment " + parts[0] + " skipped, tenant id not found: " + parts[2]);
+                    return;
                 }
                 try {
+                    if (offHeap) {
+                        payments.add(new Payment(
+                                parts[0],
+                                intern(parts[1]),
+                                agreementResolver,
+                                tenant,
+                                DATE_FORMAT.parse(parts[3]),
+                                Double.parseDouble(parts[4]),
+                                intern(parts[5])
+                        ));
+                        return;
+                    }
                     payments.add(new Payment(
                             parts[0],
                             agreement,
                             tenant,
                             DATE_FORMAT.parse(parts[3]),
                             Double.parseDouble(parts[4]),
-                            parts[5]
+                            intern(parts[5])
                     ));
                 } catch (ParseException e) {
                     throw new RuntimeException(e);
                 }
             }
-        }
+        });
         return payments;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * The saves and writes held back by an open batch, in the order the files were first touched.
+     */
+    private static class Batch {
+        private final Map<String, Runnable> deferredSaves = new LinkedHashMap<>();
+        private final Map<String, List<String[]>> pendingWrites = new LinkedHashMap<>();
+        private boolean flushing;
+    }
+
+
+    /**
+     * A pending write of one physical file, which a batch stages to a temporary file before renaming it into place.
+     */
+    private class FileWrite {
+        private final String filename;
+        private final File file;
+        private final List<String[]> lines;
+        private final long[] digests;
+        private final int shard;
+        private final long digest;
+        private final File staged;
+        private final File backup;
+        private boolean backedUp;
+        private boolean existed;
+        private long previousDigest;
+
+
+        FileWrite(String filename, File file, List<String[]> lines, long[] digests, int shard, long digest) {
+            this.filename = filename;
+            this.file = file;
+            this.lines = lines;
+            this.digests = digests;
+            this.shard = shard;
+            this.digest = digest;
+            this.staged = new File(file.getPath() + ".tmp");
+            this.backup = new File(file.getPath() + ".bak");
+        }
+
+
+        void write() {
+            try {
+                writeRows(filename, file, lines);
+                recordDigest();
+            } catch (IOException e) {
+                LoggerConfig.getLogger().log(Level.WARNING, "Error writing to file: " + filename, e);
+            }
+        }
+
+
+        void stage() {
+            try {
+                writeRows(filename, staged, lines);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing to file: " + filename, e);
+            }
+        }
+
+
+        void discard() {
+            staged.delete();
+        }
+
+
+        void install() {
+            try {
+                backUp();
+                move(staged, file);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error replacing file: " + filename, e);
+            }
+            recordDigest();
+        }
+
+
+        /**
+         * Keeps the current target as a backup, linked where the file system allows so the target never goes missing.
+         * @throws IOException if the backup cannot be made
+         */
+        void backUp() throws IOException {
+            existed = file.exists();
+            if (existed) {
+                Files.deleteIfExists(backup.toPath());
+                try {
+                    Files.createLink(backup.toPath(), file.toPath());
+                } catch (UnsupportedOperationException | IOException e) {
+                    Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            backedUp = true;
+        }
+
+
+        /**
+         * Puts the target back as it was before {@link #install()}. Does nothing if the target was never touched.
+         */
+        void restore() {
+            if (!backedUp) {
+                return;
+            }
+            try {
+                if (existed) {
+                    move(backup, file);
+                } else {
+                    Files.deleteIfExists(file.toPath());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Error restoring file: " + filename, e);
+            }
+            if (digests != null) {
+                digests[shard] = previousDigest;
+            }
+            backedUp = false;
+        }
+
+
+        void dropBackup() {
+            if (backedUp && existed) {
+                backup.delete();
+            }
+        }
+
+
+        /**
+         * Tells whether this write describes the other files of its data file, so it must follow them.
+         * @return true for a manifest or shard count
+         */
+        boolean describesOthers() {
+            return false;
+        }
+
+
+        private void recordDigest() {
+            if (digests != null) {
+                previousDigest = digests[shard];
+                digests[shard] = digest;
+            }
+        }
+
+
+        private void move(File source, File target) throws IOException {
+            try {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+
+    /**
+     * A pending write of the payment partition manifest, installed after the partitions it describes.
+     */
+    private class ManifestWrite extends FileWrite {
+        private final TreeMap<String, PaymentPartitions.Partition> partitions;
+
+
+        private ManifestWrite(String filename, TreeMap<String, PaymentPartitions.Partition> partitions) {
+            super(filename, paymentPartitions.manifestFile(), Collections.emptyList(), null, -1, 0);
+            this.partitions = partitions;
+        }
+
+
+        @Override
+        void write() {
+            try {
+                paymentPartitions.stageManifest(partitions);
+                paymentPartitions.installManifest(partitions);
+            } catch (IOException e) {
+                LoggerConfig.getLogger().log(Level.WARNING, "Error writing payment manifest", e);
+            }
+        }
+
+
+        @Override
+        void stage() {
+            try {
+                paymentPartitions.stageManifest(partitions);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing payment manifest", e);
+            }
+        }
+
+
+        @Override
+        void discard() {
+            paymentPartitions.stagedManifest().delete();
+        }
+
+
+        @Override
+        void install() {
+            try {
+                backUp();
+                paymentPartitions.installManifest(partitions);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error replacing payment manifest", e);
+            }
+        }
+
+
+        @Override
+        void restore() {
+            super.restore();
+            paymentPartitions.forgetManifest();
+        }
+
+
+        @Override
+        boolean describesOthers() {
+            return true;
+        }
+    }
+
+
+    /**
+     * A pending write of the shard count of an entity file, installed after the shards it describes.
+     */
+    private class ShardCountWrite extends FileWrite {
+        private final File countFile;
+
+
+        private ShardCountWrite(String filename) {
+            super(filename, shardCountFile(filename), Collections.emptyList(), null, -1, 0);
+            this.countFile = shardCountFile(filename);
+        }
+
+
+        @Override
+        void write() {
+            try {
+                writeShardCount(countFile);
+            } catch (IOException e) {
+                LoggerConfig.getLogger().log(Level.WARNING, "Error writing shard count: " + countFile.getPath(), e);
+            }
+        }
+
+
+        @Override
+        void stage() {
+            try {
+                writeShardCount(new File(countFile.getPath() + ".tmp"));
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing shard count: " + countFile.getPath(), e);
+            }
+        }
+
+
+        @Override
+        boolean describesOthers() {
+            return true;
+        }
+    }
+
+
+    /**
+     * Writes the rows of one data file as they arrive, routing each to its shard or payment month.
+     * Shard digests and the payment manifest are kept up to date row by row, so the next write of the
+     * file only replaces the parts that changed.
+     */
+    public class RowSink implements Closeable {
+        private final String filename;
+        private final DataFileEvent event;
+        private final Map<File, RowWriter> writers = new LinkedHashMap<>();
+        private final TreeMap<String, PaymentPartitions.Partition> manifest = new TreeMap<>();
+        private final boolean partitioned;
+        private final long[] digests;
+        private long rows;
+        private boolean closed;
+
+
+        private RowSink(String filename) {
+            this.filename = filename;
+            this.event = new DataFileEvent("sink", filename, format.name(), shardCount);
+            event.begin();
+            this.partitioned = paymentPartitions != null && PAYMENTS.equals(filename);
+            this.digests = !partitioned && shardCount > 1 ? new long[shardCount] : null;
+            if (!partitioned) {
+                checkShardCount(filename);
+            }
+            if (digests != null) {
+                Arrays.fill(digests, digest(Collections.emptyList()));
+                // Every shard is replaced, so shards that get no rows do not keep stale ones
+                for (int shard = 0; shard < shardCount; shard++) {
+                    writer(shardFile(filename, shard));
+                }
+            } else if (partitioned) {
+                for (String month : paymentPartitions.months()) {
+                    manifest.put(month, PaymentPartitions.Partition.EMPTY);
+                    writer(paymentPartitions.file(month));
+                }
+            } else {
+                writer(dataFile(filename));
+            }
+        }
+
+
+        /**
+         * Writes one row.
+         * @param row The row, in the column order of the data file
+         * @throws IllegalStateException if the sink is closed or the row cannot be written
+         */
+        public void write(String[] row) {
+            if (closed) {
+                throw new IllegalStateException("The sink for " + filename + " is closed.");
+            }
+            File file;
+            if (digests != null) {
+                int shard = shardOf(row.length > 0 ? row[0] : "");
+                digests[shard] = digest(digests[shard], row);
+                file = shardFile(filename, shard);
+            } else if (partitioned) {
+                String month = PaymentPartitions.monthOf(row);
+                manifest.merge(month, PaymentPartitions.Partition.EMPTY.with(row), (partition, ignored) -> partition.with(row));
+                file = paymentPartitions.file(month);
+            } else {
+                file = dataFile(filename);
+            }
+            try {
+                writer(file).write(row);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error writing to file: " + filename, e);
+            }
+            rows++;
+            countRows(1);
+        }
+
+
+        /**
+         * Finishes every file and renames it into place, then records the shard digests or the payment manifest.
+         * @throws IOException if a file cannot be finished or replaced
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (RowWriter writer : writers.values()) {
+                writer.close();
+            }
+            for (File file : writers.keySet()) {
+                File staged = new File(file.getPath() + ".tmp");
+                try {
+                    Files.move(staged.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(staged.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (digests != null) {
+                System.arraycopy(digests, 0, shardDigests(filename), 0, shardCount);
+                writeShardCount(shardCountFile(filename));
+            } else if (partitioned) {
+                paymentPartitions.stageManifest(manifest);
+                paymentPartitions.installManifest(manifest);
+            }
+            if (event.shouldCommit()) {
+                event.setRows(rows);
+                event.setBytes(dataSize(filename));
+                event.commit();
+            }
+        }
+
+
+        private RowWriter writer(File file) {
+            RowWriter writer = writers.get(file);
+            if (writer == null) {
+                try {
+                    writer = new RowWriter(filename, new File(file.getPath() + ".tmp"));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Error opening file: " + file.getName(), e);
+                }
+                writers.put(file, writer);
+            }
+            return writer;
+        }
+    }
+
+
+    /**
+     * An open physical file of a RowSink, in this handler's format.
+     */
+    private class RowWriter {
+        private final CSVWriter csv;
+        private final JsonWriter json;
+        private final JsonRecordAdapter adapter;
+
+
+        private RowWriter(String filename, File file) throws IOException {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.exists()) {
+                directory.mkdirs();
+            }
+            Writer out = new BufferedWriter(openWriter(file), 1 << 16);
+            if (format == StorageFormat.JSON) {
+                this.csv = null;
+                this.adapter = JsonRecordAdapter.forFile(filename);
+                this.json = new JsonWriter(out);
+                json.beginArray();
+            } else {
+                this.csv = new CSVWriter(out);
+                this.json = null;
+                this.adapter = null;
+            }
+        }
+
+
+        private void write(String[] row) throws IOException {
+            if (csv != null) {
+                csv.writeNext(row);
+            } else {
+                adapter.write(json, row);
+            }
+        }
+
+
+        private void close() throws IOException {
+            if (csv != null) {
+                csv.close();
+            } else {
+                json.endArray();
+                json.close();
+            }
+        }
+    }
+}
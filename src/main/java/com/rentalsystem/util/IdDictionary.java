@@ -0,0 +1,66 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Dictionary encoding of entity IDs as dense int handles.
+ * Compact record formats store the handle of a foreign key instead of a reference or a string,
+ * and translate it back to the ID when the record is materialized.
+ */
+public class IdDictionary {
+    private final Map<String, Integer> handles;
+    private final List<String> ids;
+
+
+    /**
+     * Constructs an empty IdDictionary.
+     */
+    public IdDictionary() {
+        this.handles = new HashMap<>();
+        this.ids = new ArrayList<>();
+    }
+
+
+    /**
+     * Gets the handle of an ID, assigning the next free handle if the ID is new.
+     * @param id The ID to encode
+     * @return The handle of the ID
+     */
+    public synchronized int encode(String id) {
+        Integer handle = handles.get(id);
+        if (handle == null) {
+            handle = ids.size();
+            handles.put(id, handle);
+            ids.add(id);
+        }
+        return handle;
+    }
+
+
+    /**
+     * Gets the ID a handle was assigned to.
+     * @param handle The handle to decode
+     * @return The ID
+     * @throws IndexOutOfBoundsException if the handle was never assigned
+     */
+    public synchronized String decode(int handle) {
+        return ids.get(handle);
+    }
+
+
+    /**
+     * Gets the number of IDs in the dictionary.
+     * @return The number of assigned handles
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+/**
+ * The outcome of an IntegrityVerifier run: every violation found across the data files, in file and row order.
+ */
+public class IntegrityReport {
+    private final List<Violation> violations;
+    private final boolean quarantined;
+    private final long elapsedNanos;
+
+
+    IntegrityReport(List<Violation> violations, boolean quarantined, long elapsedNanos) {
+        this.violations = Collections.unmodifiableList(violations);
+        this.quarantined = quarantined;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    /**
+     * Checks whether the data files passed every check.
+     * @return true if there are no violations
+     */
+    public boolean isClean() {
+        return violations.isEmpty();
+    }
+
+
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+
+    /**
+     * Checks whether the rows with violations were moved to quarantine instead of being loaded.
+     * @return true if bad rows were quarantined
+     */
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+
+    /**
+     * Counts the violations in each data file.
+     * @return The number of violations keyed by file name, in file order
+     */
+    public Map<String, Long> countByFile() {
+        return violations.stream().collect(Collectors.groupingBy(Violation::getFilename, LinkedHashMap::new, Collectors.counting()));
+    }
+
+
+    /**
+     * Summarizes the report in one line, followed by up to a number of violations.
+     * @param limit The maximum number of violations to list
+     * @return The summary
+     */
+    public String summary(int limit) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Integrity check: %d violation(s) in %.1f ms", violations.size(), elapsedNanos / 1e6));
+        if (!violations.isEmpty()) {
+            summary.append(quarantined ? ", rows quarantined " : ", rows loaded as is ").append(countByFile());
+        }
+        violations.stream().limit(limit).forEach(violation -> summary.append(System.lineSeparator()).append("  ").append(violation));
+        if (violations.size() > limit) {
+            summary.append(System.lineSeparator()).append("  ... ").append(violations.size() - limit).append(" more");
+        }
+        return summary.toString();
+    }
+
+
+    /**
+     * A single failed check on a row of a data file.
+     */
+    public static class Violation {
+        private final String filename;
+        private final int row;
+        private final String id;
+        private final String column;
+        private final String value;
+        private final String message;
+
+
+        Violation(String filename, int row, String id, String column, String value, String message) {
+            this.filename = filename;
+            this.row = row;
+            this.id = id;
+            this.column = column;
+            this.value = value;
+            this.message = message;
+        }
+
+
+        public String getFilename() {
+            return filename;
+        }
+
+
+        /**
+         * Gets the position of the row in its file.
+         * @return The 1-based row number
+         */
+        public int getRow() {
+            return row;
+        }
+
+
+        public String getId() {
+            return id;
+        }
+
+
+        public String getColumn() {
+            return column;
+        }
+
+
+        public String getValue() {
+            return value;
+        }
+
+
+        public String getMessage() {
+            return message;
+        }
+
+
+        @Override
+        public String toString() {
+            return filename + " row " + row + " (" + id + "): " + column + " " + message + (value.isEmpty() ? "" : " [" + value + "]");
+        }
+    }
+}
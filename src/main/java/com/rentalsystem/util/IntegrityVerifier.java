@@ -0,0 +1,218 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Checks the rows of every data file before the managers load them: column counts, duplicate IDs and every
+ * foreign key, each looked up in a hash set of the referenced file's IDs.
+ * All six files are read in parallel, then checked tier by tier (people, properties, agreements, payments) so
+ * that a row quarantined in one tier also invalidates the rows that reference it in the next; the rows of each
+ * file are checked in parallel. The verified rows are handed back to the FileHandler, so the managers load them
+ * without reading the files a second time.
+ */
+public class IntegrityVerifier {
+    private static final String HOSTS = "hosts.txt";
+    private static final String OWNERS = "owners.txt";
+    private static final String TENANTS = "tenants.txt";
+    private static final String PROPERTIES = "properties.txt";
+    private static final String AGREEMENTS = "rental_agreements.txt";
+    private static final String PAYMENTS = "payments.txt";
+
+    // Files in the order their IDs become available to the files that reference them
+    private static final List<List<String>> TIERS = Arrays.asList(
+            Arrays.asList(HOSTS, OWNERS, TENANTS),
+            Collections.singletonList(PROPERTIES),
+            Collections.singletonList(AGREEMENTS),
+            Collections.singletonList(PAYMENTS));
+
+    private final FileHandler fileHandler;
+
+
+    /**
+     * Constructs a new IntegrityVerifier.
+     * @param fileHandler The FileHandler the managers will load from
+     */
+    public IntegrityVerifier(FileHandler fileHandler) {
+        this.fileHandler = fileHandler;
+    }
+
+
+    /**
+     * Reads and checks every data file, then hands the rows to the FileHandler for loading.
+     * @param quarantine Whether rows with violations are moved to data/quarantine instead of being loaded
+     * @return The report of every violation found
+     */
+    public IntegrityReport verify(boolean quarantine) {
+        long start = System.nanoTime();
+        Map<String, List<String[]>> rows = new ConcurrentHashMap<>();
+        // Copied into array lists, since the CSV reader returns linked lists and the checks index rows in parallel
+        FileHandler.DATA_FILES.parallelStream().forEach(filename -> rows.put(filename, new ArrayList<>(fileHandler.readLines(filename))));
+
+        Map<String, Set<String>> ids = new ConcurrentHashMap<>();
+        List<IntegrityReport.Violation> violations = new ArrayList<>();
+        for (List<String> tier : TIERS) {
+            Map<String, List<IntegrityReport.Violation>> tierViolations = new ConcurrentHashMap<>();
+            tier.parallelStream().forEach(filename -> tierViolations.put(filename, check(filename, rows.get(filename), ids)));
+
+            for (String filename : tier) {
+                List<IntegrityReport.Violation> found = tierViolations.get(filename);
+                violations.addAll(found);
+                List<String[]> accepted = rows.get(filename);
+                if (quarantine && !found.isEmpty()) {
+                    Set<Integer> rejected = found.stream().map(IntegrityReport.Violation::getRow).collect(Collectors.toSet());
+                    List<String[]> kept = new ArrayList<>(accepted.size() - rejected.size());
+                    List<String[]> moved = new ArrayList<>(rejected.size());
+                    for (int i = 0; i < accepted.size(); i++) {
+                        (rejected.contains(i + 1) ? moved : kept).add(accepted.get(i));
+                    }
+                    fileHandler.quarantine(filename, moved);
+                    accepted = kept;
+                }
+                ids.put(filename, idsOf(accepted));
+                fileHandler.preload(filename, accepted);
+            }
+        }
+        return new IntegrityReport(violations, quarantine, System.nanoTime() - start);
+    }
+
+
+    /**
+     * Checks the rows of one file against the IDs of the files it references.
+     * @param filename The logical name of the data file
+     * @param rows The rows of the file
+     * @param ids The IDs of the files verified so far, keyed by file name
+     * @return The violations found, in row order
+     */
+    private static List<IntegrityReport.Violation> check(String filename, List<String[]> rows, Map<String, Set<String>> ids) {
+        Set<Integer> duplicates = duplicateRows(rows);
+        return IntStream.range(0, rows.size()).parallel()
+                .mapToObj(i -> checkRow(filename, i + 1, rows.get(i), duplicates, ids))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+
+    private static List<IntegrityReport.Violation> checkRow(String filename, int row, String[] parts, Set<Integer> duplicates,
+                                                            Map<String, Set<String>> ids) {
+        List<IntegrityReport.Violation> violations = new ArrayList<>(0);
+        String id = parts.length > 0 ? parts[0] : "";
+        int columns = columnCount(filename);
+        if (parts.length < columns) {
+            violations.add(new IntegrityReport.Violation(filename, row, id, "row", String.valueOf(parts.length),
+                    "has too few columns, expected " + columns));
+            return violations;
+        }
+        if (id.isEmpty()) {
+            violations.add(new IntegrityReport.Violation(filename, row, id, "id", "", "is empty"));
+        } else if (duplicates.contains(row)) {
+            violations.add(new IntegrityReport.Violation(filename, row, id, "id", id, "repeats an earlier row"));
+        }
+
+        switch (filename) {
+            case PROPERTIES:
+                reference(violations, filename, row, id, "ownerId", parts[5], ids.get(OWNERS), true);
+                if (parts.length > 12) {
+                    references(violations, filename, row, id, "hostIds", parts[12], ids.get(HOSTS));
+                }
+                break;
+            case AGREEMENTS:
+                String[] tenantIds = parts[2].split(";", -1);
+                reference(violations, filename, row, id, "propertyId", parts[1], ids.get(PROPERTIES), true);
+                reference(violations, filename, row, id, "mainTenantId", tenantIds[0], ids.get(TENANTS), true);
+                references(violations, filename, row, id, "subTenantIds",
+                        String.join(";", Arrays.copyOfRange(tenantIds, 1, tenantIds.length)), ids.get(TENANTS));
+                reference(violations, filename, row, id, "ownerId", parts[3], ids.get(OWNERS), true);
+                reference(violations, filename, row, id, "hostId", parts[4], ids.get(HOSTS), true);
+                break;
+            case PAYMENTS:
+                reference(violations, filename, row, id, "agreementId", parts[1], ids.get(AGREEMENTS), true);
+                reference(violations, filename, row, id, "tenantId", parts[2], ids.get(TENANTS), true);
+                break;
+            default:
+                break;
+        }
+        return violations;
+    }
+
+
+    private static void reference(List<IntegrityReport.Violation> violations, String filename, int row, String id,
+                                  String column, String value, Set<String> targets, boolean required) {
+        if (value.isEmpty()) {
+            if (required) {
+                violations.add(new IntegrityReport.Violation(filename, row, id, column, "", "is empty"));
+            }
+        } else if (!targets.contains(value)) {
+            violations.add(new IntegrityReport.Violation(filename, row, id, column, value, "refers to a missing record"));
+        }
+    }
+
+
+    private static void references(List<IntegrityReport.Violation> violations, String filename, int row, String id,
+                                   String column, String values, Set<String> targets) {
+        for (String value : values.split(";")) {
+            reference(violations, filename, row, id, column, value, targets, false);
+        }
+    }
+
+
+    /**
+     * Gets the number of columns every row of a data file must have, as written by the matching manager.
+     * @param filename The logical name of the data file
+     * @return The minimum number of columns
+     */
+    private static int columnCount(String filename) {
+        switch (filename) {
+            case PROPERTIES:
+                return 12;
+            case AGREEMENTS:
+                return 10;
+            case PAYMENTS:
+                return 6;
+            default:
+                return 4;
+        }
+    }
+
+
+    /**
+     * Finds the rows whose ID already appeared in an earlier row of the same file.
+     * @param rows The rows of the file
+     * @return The 1-based numbers of the repeating rows
+     */
+    private static Set<Integer> duplicateRows(List<String[]> rows) {
+        Set<String> seen = new HashSet<>(rows.size() * 2);
+        Set<Integer> duplicates = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            if (row.length > 0 && !row[0].isEmpty() && !seen.add(row[0])) {
+                duplicates.add(i + 1);
+            }
+        }
+        return duplicates;
+    }
+
+
+    private static Set<String> idsOf(List<String[]> rows) {
+        Set<String> ids = new HashSet<>(rows.size() * 2);
+        for (String[] row : rows) {
+            if (row.length > 0 && !row[0].isEmpty()) {
+                ids.add(row[0]);
+            }
+        }
+        return ids;
+    }
+}
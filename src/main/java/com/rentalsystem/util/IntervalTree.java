@@ -0,0 +1,242 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+
+/**
+ * Augmented interval tree over closed intervals [start, end] of long values, each carrying a value.
+ * Intervals are kept in a treap ordered by start, and every node records the largest end in its subtree,
+ * so an overlap search skips every subtree that ends before the query starts or begins after it ends.
+ * Insertion, removal and an overlap check take O(log n) expected time.
+ * @param <V> The type of values attached to the intervals
+ */
+public class IntervalTree<V> {
+    private final Random priorities = new Random(0x5eed);
+    private Node<V> root;
+    private int size;
+
+
+    /**
+     * Adds an interval.
+     * @param start The first point of the interval, inclusive
+     * @param end The last point of the interval, inclusive
+     * @param value The value attached to the interval
+     * @throws IllegalArgumentException if end is before start
+     */
+    public void add(long start, long end, V value) {
+        if (end < start) {
+            throw new IllegalArgumentException("Interval end " + end + " is before its start " + start);
+        }
+        root = insert(root, new Node<>(start, end, value, priorities.nextInt()));
+        size++;
+    }
+
+
+    /**
+     * Removes an interval.
+     * @param start The first point of the interval
+     * @param end The last point of the interval
+     * @param value The value attached to the interval
+     * @return true if the interval was present
+     */
+    public boolean remove(long start, long end, V value) {
+        int before = size;
+        root = delete(root, start, end, value);
+        return size < before;
+    }
+
+
+    /**
+     * Finds the first interval, in order of start, that overlaps a range, ignoring intervals carrying a given value.
+     * Both ends are inclusive, so an interval ending at a point overlaps a range starting at that point.
+     * The search stops at the first match instead of collecting every overlapping interval.
+     * @param start The first point of the range, inclusive
+     * @param end The last point of the range, inclusive
+     * @param ignored A value whose intervals are not counted, or null
+     * @return The value of the first overlapping interval, or null if there is none
+     */
+    public V firstOverlapping(long start, long end, V ignored) {
+        Node<V> found = findFirst(root, start, end, ignored);
+        return found != null ? found.value : null;
+    }
+
+
+    /**
+     * Gets the values of every interval overlapping a range, in order of interval start.
+     * @param start The first point of the range, inclusive
+     * @param end The last point of the range, inclusive
+     * @return The values of the overlapping intervals
+     */
+    public List<V> overlapping(long start, long end) {
+        List<V> results = new ArrayList<>();
+        collect(root, start, end, results);
+        return results;
+    }
+
+
+    /**
+     * Gets the number of intervals in the tree.
+     * @return The number of intervals
+     */
+    public int size() {
+        return size;
+    }
+
+
+    private Node<V> insert(Node<V> node, Node<V> added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.start < node.start) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+
+    private Node<V> delete(Node<V> node, long start, long end, V value) {
+        if (node == null) {
+            return null;
+        }
+        if (node.start == start && node.end == end && Objects.equals(node.value, value)) {
+            size--;
+            return merge(node.left, node.right);
+        }
+        if (start < node.start) {
+            node.left = delete(node.left, start, end, value);
+        } else if (start > node.start) {
+            node.right = delete(node.right, start, end, value);
+        } else {
+            // Intervals with equal starts may sit on either side after rotations
+            int before = size;
+            node.left = delete(node.left, start, end, value);
+            if (size == before) {
+                node.right = delete(node.right, start, end, value);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+
+    private Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+
+    private Node<V> findFirst(Node<V> node, long start, long end, V ignored) {
+        if (node == null || node.maxEnd < start) {
+            return null;
+        }
+        Node<V> found = findFirst(node.left, start, end, ignored);
+        if (found != null) {
+            return found;
+        }
+        if (node.start > end) {
+            return null;
+        }
+        if (node.end >= start && !Objects.equals(node.value, ignored)) {
+            return node;
+        }
+        return findFirst(node.right, start, end, ignored);
+    }
+
+
+    private void collect(Node<V> node, long start, long end, List<V> results) {
+        if (node == null || node.maxEnd < start) {
+            return;
+        }
+        collect(node.left, start, end, results);
+        if (node.start > end) {
+            return;
+        }
+        if (node.end >= start) {
+            results.add(node.value);
+        }
+        collect(node.right, start, end, results);
+    }
+
+
+    private Node<V> rotateRight(Node<V> node) {
+        Node<V> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+
+    private Node<V> rotateLeft(Node<V> node) {
+        Node<V> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+
+    private static <V> void update(Node<V> node) {
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+
+    /**
+     * A treap node holding one interval and the largest end in its subtree.
+     */
+    private static class Node<V> {
+        private final long start;
+        private final long end;
+        private final V value;
+        private final int priority;
+        private long maxEnd;
+        private Node<V> left;
+        private Node<V> right;
+
+
+        private Node(long start, long end, V value, int priority) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Converts the positional columns of a data file row to and from a JSON object with named fields.
+ * Each data file has a hand-written schema naming its columns and their JSON types, so rows stream
+ * through Gson's JsonReader and JsonWriter without reflection. Empty columns are left out of the
+ * object, so a property only carries the fields of its own subtype.
+ */
+public class JsonRecordAdapter extends TypeAdapter<String[]> {
+    /**
+     * The JSON type a column is written as.
+     */
+    enum Kind {
+        TEXT, NUMBER, BOOLEAN,
+        /** A semicolon-separated list of IDs, written as an array. */
+        LIST
+    }
+
+    private static final Map<String, JsonRecordAdapter> ADAPTERS = new HashMap<>();
+
+    static {
+        String[] person = {"id", "fullName", "dateOfBirth", "contactInformation"};
+        ADAPTERS.put("hosts.txt", new JsonRecordAdapter(person, text(4)));
+        ADAPTERS.put("owners.txt", new JsonRecordAdapter(person, text(4)));
+        ADAPTERS.put("tenants.txt", new JsonRecordAdapter(person, text(4)));
+        ADAPTERS.put("properties.txt", new JsonRecordAdapter(
+                new String[] {"id", "type", "address", "price", "status", "ownerId",
+                        "bedrooms", "garden", "petFriendly", "businessType", "parkingSpaces", "squareFootage", "hostIds"},
+                new Kind[] {Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.NUMBER, Kind.TEXT, Kind.TEXT,
+                        Kind.NUMBER, Kind.BOOLEAN, Kind.BOOLEAN, Kind.TEXT, Kind.NUMBER, Kind.NUMBER, Kind.LIST}));
+        ADAPTERS.put("rental_agreements.txt", new JsonRecordAdapter(
+                new String[] {"id", "propertyId", "tenantIds", "ownerId", "hostId",
+                        "startDate", "endDate", "rentAmount", "rentalPeriod", "status"},
+                new Kind[] {Kind.TEXT, Kind.TEXT, Kind.LIST, Kind.TEXT, Kind.TEXT,
+                        Kind.TEXT, Kind.TEXT, Kind.NUMBER, Kind.TEXT, Kind.TEXT}));
+        ADAPTERS.put("payments.txt", new JsonRecordAdapter(
+                new String[] {"id", "agreementId", "tenantId", "date", "amount", "method"},
+                new Kind[] {Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.NUMBER, Kind.TEXT}));
+        ADAPTERS.put("income_cube.txt", new JsonRecordAdapter(
+                new String[] {"ownerId", "hostId", "propertyId", "propertyType", "month", "expectedRent", "incomeReceived"},
+                new Kind[] {Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.TEXT, Kind.NUMBER, Kind.NUMBER}));
+    }
+
+    private final String[] names;
+    private final Kind[] kinds;
+    private final Map<String, Integer> columns = new HashMap<>();
+
+
+    JsonRecordAdapter(String[] names, Kind[] kinds) {
+        if (names.length != kinds.length) {
+            throw new IllegalArgumentException("Every column needs a kind");
+        }
+        this.names = names;
+        this.kinds = kinds;
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i], i);
+        }
+    }
+
+
+    /**
+     * Gets the adapter for a data file.
+     * @param filename The logical name of the data file
+     * @return The adapter for the file's rows
+     * @throws IllegalArgumentException if the file has no JSON schema
+     */
+    public static JsonRecordAdapter forFile(String filename) {
+        JsonRecordAdapter adapter = ADAPTERS.get(filename);
+        if (adapter == null) {
+            throw new IllegalArgumentException("No JSON schema for data file: " + filename);
+        }
+        return adapter;
+    }
+
+
+    @Override
+    public void write(JsonWriter out, String[] row) throws IOException {
+        out.beginObject();
+        for (int i = 0; i < names.length && i < row.length; i++) {
+            String value = row[i];
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            out.name(names[i]);
+            switch (kinds[i]) {
+                case NUMBER:
+                    if (isNumber(value)) {
+                        out.jsonValue(value);
+                    } else {
+                        out.value(value);
+                    }
+                    break;
+                case BOOLEAN:
+                    if (value.equals("true") || value.equals("false")) {
+                        out.value(Boolean.parseBoolean(value));
+                    } else {
+                        out.value(value);
+                    }
+                    break;
+                case LIST:
+                    out.beginArray();
+                    for (String item : value.split(";")) {
+                        if (!item.isEmpty()) {
+                            out.value(item);
+                        }
+                    }
+                    out.endArray();
+                    break;
+                default:
+                    out.value(value);
+            }
+        }
+        out.endObject();
+    }
+
+
+    /**
+     * Reads one object back into positional columns. Missing fields become empty columns and
+     * unknown fields are skipped, so files written by older or newer schemas still load.
+     */
+    @Override
+    public String[] read(JsonReader in) throws IOException {
+        String[] row = new String[names.length];
+        in.beginObject();
+        while (in.hasNext()) {
+            Integer column = columns.get(in.nextName());
+            if (column == null) {
+                in.skipValue();
+                continue;
+            }
+            row[column] = readValue(in);
+        }
+        in.endObject();
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == null) {
+                row[i] = "";
+            }
+        }
+        return row;
+    }
+
+
+    private static String readValue(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        switch (token) {
+            case NULL:
+                in.nextNull();
+                return "";
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case BEGIN_ARRAY:
+                List<String> items = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    items.add(in.nextString());
+                }
+                in.endArray();
+                return String.join(";", items);
+            default:
+                // Numbers come back as their literal text, so values round-trip exactly
+                return in.nextString();
+        }
+    }
+
+
+    /**
+     * Checks whether a column value is a plain decimal literal, optionally negative, that is also valid JSON.
+     * Exponents are not produced by the managers and are written as strings.
+     * @param value The column value
+     * @return true if the value can be written as a JSON number
+     */
+    private static boolean isNumber(String value) {
+        int i = value.startsWith("-") ? 1 : 0;
+        int integerStart = i;
+        while (i < value.length() && isDigit(value.charAt(i))) {
+            i++;
+        }
+        int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && value.charAt(integerStart) == '0')) {
+            return false;
+        }
+        if (i == value.length()) {
+            return true;
+        }
+        if (value.charAt(i) != '.' || i == value.length() - 1) {
+            return false;
+        }
+        for (i++; i < value.length(); i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+
+    private static Kind[] text(int count) {
+        Kind[] kinds = new Kind[count];
+        Arrays.fill(kinds, Kind.TEXT);
+        return kinds;
+    }
+}
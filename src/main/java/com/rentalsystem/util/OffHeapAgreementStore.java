@@ -0,0 +1,394 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Off-heap storage for rental agreement records.
+ * Each record is a fixed-width 64-byte slot in a direct ByteBuffer slab, holding the agreement ID inline,
+ * int handles for the property, tenants, owner and host, the start and end dates as epoch days, the rent
+ * amount and the ordinals of the rental period and status. Sub-tenant handles live in a separate int slab.
+ * The only per-record heap cost is one int in the open-addressing ID index.
+ */
+public class OffHeapAgreementStore {
+    /**
+     * Longest agreement ID that fits inline in a record; longer IDs must be kept on the heap.
+     */
+    public static final int MAX_ID_LENGTH = 23;
+
+    private static final int RECORD_SIZE = 64;
+    private static final int PROPERTY_OFFSET = 24;
+    private static final int MAIN_TENANT_OFFSET = 28;
+    private static final int OWNER_OFFSET = 32;
+    private static final int HOST_OFFSET = 36;
+    private static final int START_DAY_OFFSET = 40;
+    private static final int END_DAY_OFFSET = 44;
+    private static final int RENT_OFFSET = 48;
+    private static final int PERIOD_OFFSET = 56;
+    private static final int STATUS_OFFSET = 57;
+    private static final int SUB_TENANT_COUNT_OFFSET = 58;
+    private static final int SUB_TENANT_START_OFFSET = 60;
+    private static final byte DELETED = -1;
+    private static final int EMPTY = -1;
+
+    private final int slabRecords;
+    private final List<ByteBuffer> recordSlabs;
+    private final List<ByteBuffer> subTenantSlabs;
+    private int recordCount;
+    private int subTenantCount;
+    private int liveCount;
+    private int usedSlots;
+    private int[] index;
+
+
+    /**
+     * Constructs a new OffHeapAgreementStore.
+     * @param slabRecords The number of records per direct buffer slab
+     */
+    public OffHeapAgreementStore(int slabRecords) {
+        this.slabRecords = slabRecords;
+        this.recordSlabs = new ArrayList<>();
+        this.subTenantSlabs = new ArrayList<>();
+        this.index = new int[1024];
+        Arrays.fill(index, EMPTY);
+    }
+
+
+    /**
+     * Checks whether an agreement ID can be stored inline.
+     * @param agreementId The agreement ID
+     * @return true if the ID is short enough and uses only Latin-1 characters
+     */
+    public static boolean fits(String agreementId) {
+        if (agreementId.length() > MAX_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < agreementId.length(); i++) {
+            if (agreementId.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Stores an agreement record, replacing any record with the same ID.
+     * @param agreementId The agreement ID, which must satisfy {@link #fits(String)}
+     * @param propertyHandle The handle of the property
+     * @param mainTenantHandle The handle of the main tenant
+     * @param subTenantHandles The handles of the sub-tenants
+     * @param ownerHandle The handle of the owner
+     * @param hostHandle The handle of the host
+     * @param startDay The start date as an epoch day
+     * @param endDay The end date as an epoch day
+     * @param rentAmount The rent amount
+     * @param periodOrdinal The ordinal of the rental period
+     * @param statusOrdinal The ordinal of the agreement status
+     * @throws IllegalArgumentException if the agreement ID does not fit inline
+     */
+    public synchronized void put(String agreementId, int propertyHandle, int mainTenantHandle, int[] subTenantHandles,
+                                 int ownerHandle, int hostHandle, int startDay, int endDay, double rentAmount,
+                                 int periodOrdinal, int statusOrdinal) {
+        if (!fits(agreementId)) {
+            throw new IllegalArgumentException("Agreement ID too long for off-heap storage: " + agreementId);
+        }
+        if ((usedSlots + 1) * 2 > index.length) {
+            int capacity = index.length;
+            while ((liveCount + 1) * 4 > capacity) {
+                capacity *= 2;
+            }
+            rehash(capacity);
+        }
+
+        int record = recordCount++;
+        int subTenantStart = subTenantCount;
+        for (int handle : subTenantHandles) {
+            subTenantSlab(subTenantCount).putInt((subTenantCount % slabRecords) * 4, handle);
+            subTenantCount++;
+        }
+
+        ByteBuffer slab = recordSlab(record);
+        int base = (record % slabRecords) * RECORD_SIZE;
+        slab.put(base, (byte) agreementId.length());
+        for (int i = 0; i < agreementId.length(); i++) {
+            slab.put(base + 1 + i, (byte) agreementId.charAt(i));
+        }
+        slab.putInt(base + PROPERTY_OFFSET, propertyHandle);
+        slab.putInt(base + MAIN_TENANT_OFFSET, mainTenantHandle);
+        slab.putInt(base + OWNER_OFFSET, ownerHandle);
+        slab.putInt(base + HOST_OFFSET, hostHandle);
+        slab.putInt(base + START_DAY_OFFSET, startDay);
+        slab.putInt(base + END_DAY_OFFSET, endDay);
+        slab.putDouble(base + RENT_OFFSET, rentAmount);
+        slab.put(base + PERIOD_OFFSET, (byte) periodOrdinal);
+        slab.put(base + STATUS_OFFSET, (byte) statusOrdinal);
+        slab.putShort(base + SUB_TENANT_COUNT_OFFSET, (short) subTenantHandles.length);
+        slab.putInt(base + SUB_TENANT_START_OFFSET, subTenantStart);
+
+        int slot = findSlot(agreementId);
+        if (index[slot] == EMPTY) {
+            usedSlots++;
+            liveCount++;
+        } else if (isDeleted(index[slot])) {
+            liveCount++;
+        } else {
+            markDeleted(index[slot]);
+        }
+        index[slot] = record;
+    }
+
+
+    /**
+     * Finds the record holding an agreement.
+     * @param agreementId The agreement ID
+     * @return The record number, or -1 if the agreement is not stored
+     */
+    public synchronized int find(String agreementId) {
+        if (!fits(agreementId)) {
+            return EMPTY;
+        }
+        int record = index[findSlot(agreementId)];
+        return record == EMPTY || isDeleted(record) ? EMPTY : record;
+    }
+
+
+    /**
+     * Checks whether an agreement is stored.
+     * @param agreementId The agreement ID
+     * @return true if a live record exists for the ID
+     */
+    public boolean contains(String agreementId) {
+        return find(agreementId) != EMPTY;
+    }
+
+
+    /**
+     * Removes an agreement. Its index slot is dropped the next time the index is rebuilt;
+     * the slab space of the record is not reused.
+     * @param agreementId The agreement ID
+     * @return true if a record was removed
+     */
+    public synchronized boolean remove(String agreementId) {
+        int record = find(agreementId);
+        if (record == EMPTY) {
+            return false;
+        }
+        markDeleted(record);
+        liveCount--;
+        return true;
+    }
+
+
+    /**
+     * Gets the number of live agreements in the store.
+     * @return The number of stored agreements
+     */
+    public synchronized int size() {
+        return liveCount;
+    }
+
+
+    /**
+     * Gets the number of bytes of direct memory held by the store.
+     * @return The off-heap footprint in bytes
+     */
+    public synchronized long offHeapBytes() {
+        return (long) recordSlabs.size() * slabRecords * RECORD_SIZE + (long) subTenantSlabs.size() * slabRecords * 4;
+    }
+
+
+    /**
+     * Visits every live record in insertion order.
+     * @param consumer The consumer receiving each record number
+     */
+    public synchronized void forEach(IntConsumer consumer) {
+        for (int record = 0; record < recordCount; record++) {
+            if (!isDeleted(record)) {
+                consumer.accept(record);
+            }
+        }
+    }
+
+
+    // Field accessors by record number
+
+    public synchronized String agreementId(int record) {
+        ByteBuffer slab = recordSlab(record);
+        int base = (record % slabRecords) * RECORD_SIZE;
+        char[] chars = new char[slab.get(base)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (slab.get(base + 1 + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    public synchronized int propertyHandle(int record) {
+        return intField(record, PROPERTY_OFFSET);
+    }
+
+    public synchronized int mainTenantHandle(int record) {
+        return intField(record, MAIN_TENANT_OFFSET);
+    }
+
+    public synchronized int ownerHandle(int record) {
+        return intField(record, OWNER_OFFSET);
+    }
+
+    public synchronized int hostHandle(int record) {
+        return intField(record, HOST_OFFSET);
+    }
+
+    public synchronized int startDay(int record) {
+        return intField(record, START_DAY_OFFSET);
+    }
+
+    public synchronized int endDay(int record) {
+        return intField(record, END_DAY_OFFSET);
+    }
+
+    public synchronized double rentAmount(int record) {
+        return recordSlab(record).getDouble((record % slabRecords) * RECORD_SIZE + RENT_OFFSET);
+    }
+
+    public synchronized int periodOrdinal(int record) {
+        return recordSlab(record).get((record % slabRecords) * RECORD_SIZE + PERIOD_OFFSET);
+    }
+
+    public synchronized int statusOrdinal(int record) {
+        return recordSlab(record).get((record % slabRecords) * RECORD_SIZE + STATUS_OFFSET);
+    }
+
+    public synchronized int[] subTenantHandles(int record) {
+        ByteBuffer slab = recordSlab(record);
+        int base = (record % slabRecords) * RECORD_SIZE;
+        int[] handles = new int[slab.getShort(base + SUB_TENANT_COUNT_OFFSET)];
+        int start = slab.getInt(base + SUB_TENANT_START_OFFSET);
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = subTenantSlab(start + i).getInt(((start + i) % slabRecords) * 4);
+        }
+        return handles;
+    }
+
+
+    /**
+     * Reads an int field of a record.
+     * @param record The record number
+     * @param offset The offset of the field within the record
+     * @return The field value
+     */
+    private int intField(int record, int offset) {
+        return recordSlab(record).getInt((record % slabRecords) * RECORD_SIZE + offset);
+    }
+
+
+    /**
+     * Gets the slab holding a record, allocating a new slab when the record is the first of one.
+     * @param record The record number
+     * @return The slab
+     */
+    private ByteBuffer recordSlab(int record) {
+        int slab = record / slabRecords;
+        while (recordSlabs.size() <= slab) {
+            recordSlabs.add(ByteBuffer.allocateDirect(slabRecords * RECORD_SIZE));
+        }
+        return recordSlabs.get(slab);
+    }
+
+
+    /**
+     * Gets the slab holding a sub-tenant handle, allocating a new slab when needed.
+     * @param position The global position of the handle
+     * @return The slab
+     */
+    private ByteBuffer subTenantSlab(int position) {
+        int slab = position / slabRecords;
+        while (subTenantSlabs.size() <= slab) {
+            subTenantSlabs.add(ByteBuffer.allocateDirect(slabRecords * 4));
+        }
+        return subTenantSlabs.get(slab);
+    }
+
+
+    private boolean isDeleted(int record) {
+        return recordSlab(record).get((record % slabRecords) * RECORD_SIZE + STATUS_OFFSET) == DELETED;
+    }
+
+
+    private void markDeleted(int record) {
+        recordSlab(record).put((record % slabRecords) * RECORD_SIZE + STATUS_OFFSET, DELETED);
+    }
+
+
+    /**
+     * Finds the index slot for an ID using linear probing: either the slot holding a record with that ID
+     * (live or deleted), or the first empty slot.
+     * @param agreementId The agreement ID
+     * @return The slot number
+     */
+    private int findSlot(String agreementId) {
+        int mask = index.length - 1;
+        int slot = mix(agreementId.hashCode()) & mask;
+        while (index[slot] != EMPTY && !idEquals(index[slot], agreementId)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+
+    /**
+     * Compares the inline ID of a record with a string without decoding it.
+     * @param record The record number
+     * @param agreementId The ID to compare with
+     * @return true if the record holds that ID
+     */
+    private boolean idEquals(int record, String agreementId) {
+        ByteBuffer slab = recordSlab(record);
+        int base = (record % slabRecords) * RECORD_SIZE;
+        if (slab.get(base) != agreementId.length()) {
+            return false;
+        }
+        for (int i = 0; i < agreementId.length(); i++) {
+            if ((slab.get(base + 1 + i) & 0xFF) != agreementId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Rebuilds the index with a new capacity, dropping the slots of deleted records.
+     * @param capacity The new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        index = new int[capacity];
+        Arrays.fill(index, EMPTY);
+        int mask = capacity - 1;
+        for (int record = 0; record < recordCount; record++) {
+            if (isDeleted(record)) {
+                continue;
+            }
+            int slot = mix(agreementId(record).hashCode()) & mask;
+            while (index[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = record;
+        }
+        usedSlots = liveCount;
+    }
+
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+
+/**
+ * Layout of the payments file as one partition file per month of payment date, plus a manifest recording
+ * the first and last payment date, the row count and the content digest of each partition.
+ * A date-range scan opens only the partitions whose dates overlap the range, an appended payment only touches
+ * the partition of its month, and a full write only replaces the partitions whose digest changed.
+ * The partition files on disk are authoritative: a partition missing from the manifest, for instance after
+ * a crash between appending a row and saving the manifest, is still read and is never pruned.
+ */
+class PaymentPartitions {
+    static final String MANIFEST = "manifest.csv";
+    // Partition of the rows whose payment date cannot be read; it overlaps every range
+    static final String UNDATED = "undated";
+
+    private static final int DATE = 3;
+
+    private final File directory;
+    private final String extension;
+    private TreeMap<String, Partition> manifest;
+
+
+    /**
+     * Constructs a new PaymentPartitions.
+     * @param directory The directory holding the partitions and the manifest
+     * @param extension The file extension of the partitions, including the dot
+     */
+    PaymentPartitions(File directory, String extension) {
+        this.directory = directory;
+        this.extension = extension;
+    }
+
+
+    /**
+     * Checks whether the payments have been written in partitions yet.
+     * @return true if the partition directory exists
+     */
+    boolean exists() {
+        return directory.isDirectory();
+    }
+
+
+    /**
+     * Gets the partition a payment row belongs to.
+     * @param row The payment row
+     * @return The month of the payment date as yyyy-MM, or UNDATED
+     */
+    static String monthOf(String[] row) {
+        if (row.length <= DATE || row[DATE] == null || row[DATE].length() < 10
+                || row[DATE].charAt(4) != '-' || row[DATE].charAt(7) != '-') {
+            return UNDATED;
+        }
+        return row[DATE].substring(0, 7);
+    }
+
+
+    File file(String month) {
+        return new File(directory, "payments-" + month + extension);
+    }
+
+
+    /**
+     * Lists every partition, from the manifest and from the files on disk.
+     * @return The partition months in ascending order, UNDATED last
+     */
+    synchronized List<String> months() {
+        TreeSet<String> months = new TreeSet<>(manifest().keySet());
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith("payments-") && name.endsWith(extension)) {
+                    months.add(name.substring("payments-".length(), name.length() - extension.length()));
+                }
+            }
+        }
+        return new ArrayList<>(months);
+    }
+
+
+    /**
+     * Lists the partitions that may hold payments dated within a range, using the manifest's date bounds.
+     * @param from The first date of the range as yyyy-MM-dd, inclusive
+     * @param to The last date of the range as yyyy-MM-dd, inclusive
+     * @return The partition months to read
+     */
+    synchronized List<String> overlapping(String from, String to) {
+        List<String> months = new ArrayList<>();
+        for (String month : months()) {
+            Partition partition = manifest().get(month);
+            if (partition == null || month.equals(UNDATED)
+                    || partition.max.compareTo(from) >= 0 && partition.min.compareTo(to) <= 0) {
+                months.add(month);
+            }
+        }
+        return months;
+    }
+
+
+    synchronized Partition get(String month) {
+        return manifest().get(month);
+    }
+
+
+    /**
+     * Records a row appended to a partition.
+     * @param month The partition month
+     * @param row The appended row
+     */
+    synchronized void append(String month, String[] row) {
+        Partition partition = manifest().get(month);
+        manifest().put(month, (partition != null ? partition : Partition.EMPTY).with(row));
+    }
+
+
+    /**
+     * Gets the manifest rows of a set of partitions.
+     * @param partitions The partitions, keyed by month
+     * @return One row per partition: month, first date, last date, row count and digest
+     */
+    static List<String[]> manifestRows(Map<String, Partition> partitions) {
+        List<String[]> rows = new ArrayList<>(partitions.size());
+        partitions.forEach((month, partition) -> rows.add(new String[] {
+                month, partition.min, partition.max, String.valueOf(partition.rows), Long.toHexString(partition.digest)
+        }));
+        return rows;
+    }
+
+
+    File manifestFile() {
+        return new File(directory, MANIFEST);
+    }
+
+
+    /**
+     * Saves the current manifest next to its target and renames it into place.
+     * @throws IOException if the manifest cannot be written
+     */
+    synchronized void saveManifest() throws IOException {
+        stageManifest(manifest());
+        installManifest(manifest());
+    }
+
+
+    /**
+     * Writes a manifest next to the current one without replacing it.
+     * @param partitions The partitions the manifest describes
+     * @throws IOException if the manifest cannot be written
+     */
+    void stageManifest(Map<String, Partition> partitions) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create payment partition directory: " + directory);
+        }
+        try (CSVWriter writer = new CSVWriter(new OutputStreamWriter(new FileOutputStream(stagedManifest()), StandardCharsets.UTF_8))) {
+            writer.writeAll(manifestRows(partitions));
+        }
+    }
+
+
+    /**
+     * Renames a staged manifest into place and makes it the current one.
+     * @param partitions The partitions the staged manifest describes
+     * @throws IOException if the manifest cannot be replaced
+     */
+    synchronized void installManifest(TreeMap<String, Partition> partitions) throws IOException {
+        try {
+            Files.move(stagedManifest().toPath(), manifestFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(stagedManifest().toPath(), manifestFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        manifest = partitions;
+    }
+
+
+    /**
+     * Drops the manifest held in memory, so it is read again from disk on next use.
+     */
+    synchronized void forgetManifest() {
+        manifest = null;
+    }
+
+
+    File stagedManifest() {
+        return new File(directory, MANIFEST + ".tmp");
+    }
+
+
+    /**
+     * Gets the manifest, reading it on first use.
+     * @return The partitions keyed by month
+     */
+    private TreeMap<String, Partition> manifest() {
+        if (manifest == null) {
+            TreeMap<String, Partition> partitions = new TreeMap<>();
+            if (manifestFile().exists()) {
+                try (CSVReader reader = new CSVReader(new InputStreamReader(new FileInputStream(manifestFile()), StandardCharsets.UTF_8))) {
+                    for (String[] row : reader.readAll()) {
+                        if (row.length == 5) {
+                            partitions.put(row[0], new Partition(row[1], row[2], Long.parseLong(row[3]), Long.parseUnsignedLong(row[4], 16)));
+                        }
+                    }
+                } catch (IOException | CsvException | NumberFormatException e) {
+                    // Without a manifest every partition is read and rewritten, which is slower but correct
+                    partitions.clear();
+                }
+            }
+            manifest = partitions;
+        }
+        return manifest;
+    }
+
+
+    /**
+     * The manifest entry of one partition.
+     */
+    static class Partition {
+        static final Partition EMPTY = new Partition("", "", 0, FileHandler.digest(Collections.emptyList()));
+
+        final String min;
+        final String max;
+        final long rows;
+        final long digest;
+
+
+        Partition(String min, String max, long rows, long digest) {
+            this.min = min;
+            this.max = max;
+            this.rows = rows;
+            this.digest = digest;
+        }
+
+
+        /**
+         * Builds the entry of a partition holding the given rows.
+         * @param rows The rows of the partition, in file order
+         * @return The entry
+         */
+        static Partition of(List<String[]> rows) {
+            Partition partition = EMPTY;
+            for (String[] row : rows) {
+                partition = partition.with(row);
+            }
+            return partition;
+        }
+
+
+        /**
+         * Gets the entry of this partition with a row appended; the digest continues from this one.
+         * @param row The appended row
+         * @return The new entry
+         */
+        Partition with(String[] row) {
+            String date = row.length > DATE && row[DATE] != null ? row[DATE] : "";
+            return new Partition(
+                    rows == 0 || date.compareTo(min) < 0 ? date : min,
+                    rows == 0 || date.compareTo(max) > 0 ? date : max,
+                    rows + 1,
+                    FileHandler.digest(digest, row));
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Compressed prefix trie (radix tree) mapping string keys to values.
+ * Each edge holds a run of characters, so a chain of single-child nodes is stored as one node,
+ * and children are kept in sorted arrays searched by binary search.
+ * A top-k lookup walks the prefix once and then visits only as many nodes as it needs to collect k values,
+ * so its cost does not depend on the number of keys stored.
+ * @param <V> The type of values stored under the keys
+ */
+public class PrefixTrie<V> {
+    private final Node<V> root;
+    private int size;
+
+
+    /**
+     * Constructs an empty PrefixTrie.
+     */
+    public PrefixTrie() {
+        this.root = new Node<>("");
+    }
+
+
+    /**
+     * Associates a value with a key. A key can hold several distinct values.
+     * @param key The key
+     * @param value The value to add under the key
+     */
+    public synchronized void put(String key, V value) {
+        Node<V> node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            int childIndex = node.indexOf(key.charAt(pos));
+            if (childIndex < 0) {
+                node.insertChild(-childIndex - 1, new Node<>(key.substring(pos)));
+                node = node.children[-childIndex - 1];
+                pos = key.length();
+                break;
+            }
+            Node<V> child = node.children[childIndex];
+            int common = commonPrefixLength(child.edge, key, pos);
+            if (common < child.edge.length()) {
+                child = split(node, childIndex, common);
+            }
+            node = child;
+            pos += common;
+        }
+        if (node.values.add(value)) {
+            size++;
+        }
+    }
+
+
+    /**
+     * Removes a value from a key, pruning nodes that become empty.
+     * @param key The key
+     * @param value The value to remove
+     * @return true if the value was present under the key
+     */
+    public synchronized boolean remove(String key, V value) {
+        return remove(root, key, 0, value);
+    }
+
+
+    /**
+     * Gets up to k values whose keys start with a prefix, in key order.
+     * @param prefix The prefix to complete
+     * @param k The maximum number of values to return
+     * @return The distinct matching values, at most k of them
+     */
+    public synchronized List<V> topK(String prefix, int k) {
+        Node<V> node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int childIndex = node.indexOf(prefix.charAt(pos));
+            if (childIndex < 0) {
+                return new ArrayList<>();
+            }
+            node = node.children[childIndex];
+            int common = commonPrefixLength(node.edge, prefix, pos);
+            if (common < node.edge.length() && pos + common < prefix.length()) {
+                return new ArrayList<>();
+            }
+            pos += common;
+        }
+        Set<V> results = new LinkedHashSet<>();
+        collect(node, results, k);
+        return new ArrayList<>(results);
+    }
+
+
+    /**
+     * Gets the number of key-value associations in the trie.
+     * @return The number of values stored
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     * Counts the nodes of the trie, including the root.
+     * @return The number of nodes
+     */
+    synchronized int nodeCount() {
+        return countNodes(root);
+    }
+
+
+    /**
+     * Counts a node and every node below it.
+     * @param node The node to start from
+     * @return The number of nodes
+     */
+    private static int countNodes(Node<?> node) {
+        int count = 1;
+        for (int i = 0; i < node.childCount; i++) {
+            count += countNodes(node.children[i]);
+        }
+        return count;
+    }
+
+
+    /**
+     * Collects values depth-first in key order until the limit is reached.
+     * @param node The node to start from
+     * @param results The collected values
+     * @param k The maximum number of values to collect
+     */
+    private void collect(Node<V> node, Set<V> results, int k) {
+        for (V value : node.values) {
+            if (results.size() >= k) {
+                return;
+            }
+            results.add(value);
+        }
+        for (int i = 0; i < node.childCount && results.size() < k; i++) {
+            collect(node.children[i], results, k);
+        }
+    }
+
+
+    /**
+     * Removes a value below a node.
+     * @param node The node whose children are searched
+     * @param key The key
+     * @param pos The position in the key matched so far
+     * @param value The value to remove
+     * @return true if the value was removed
+     */
+    private boolean remove(Node<V> node, String key, int pos, V value) {
+        if (pos == key.length()) {
+            if (node.values.remove(value)) {
+                size--;
+                return true;
+            }
+            return false;
+        }
+        int childIndex = node.indexOf(key.charAt(pos));
+        if (childIndex < 0) {
+            return false;
+        }
+        Node<V> child = node.children[childIndex];
+        if (!key.startsWith(child.edge, pos) || !remove(child, key, pos + child.edge.length(), value)) {
+            return false;
+        }
+
+        // Prune an empty leaf, and merge a value-less node with its only child. Every level of the recursion
+        // does this on the way back up, so the whole path to the removed key is compacted.
+        if (child.values.isEmpty() && child.childCount == 0) {
+            node.removeChild(childIndex);
+        } else if (child.values.isEmpty() && child.childCount == 1) {
+            Node<V> grandchild = child.children[0];
+            Node<V> merged = new Node<>(child.edge + grandchild.edge);
+            merged.values = grandchild.values;
+            merged.children = grandchild.children;
+            merged.childCount = grandchild.childCount;
+            node.children[childIndex] = merged;
+        }
+        return true;
+    }
+
+
+    /**
+     * Splits the edge to a child, inserting an intermediate node after the first characters.
+     * @param parent The parent of the child
+     * @param childIndex The index of the child
+     * @param at The number of edge characters kept by the intermediate node
+     * @return The intermediate node
+     */
+    private Node<V> split(Node<V> parent, int childIndex, int at) {
+        Node<V> child = parent.children[childIndex];
+        Node<V> middle = new Node<>(child.edge.substring(0, at));
+        child.edge = child.edge.substring(at);
+        middle.insertChild(0, child);
+        parent.children[childIndex] = middle;
+        return middle;
+    }
+
+
+    /**
+     * Counts the characters an edge shares with a key from a given position.
+     * @param edge The edge label
+     * @param key The key
+     * @param pos The position in the key where the edge starts
+     * @return The length of the common prefix
+     */
+    private static int commonPrefixLength(String edge, String key, int pos) {
+        int max = Math.min(edge.length(), key.length() - pos);
+        int i = 0;
+        while (i < max && edge.charAt(i) == key.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+
+    /**
+     * A trie node. The edge is the run of characters leading to the node from its parent.
+     */
+    private static class Node<V> {
+        private String edge;
+        private Set<V> values;
+        private Node<V>[] children;
+        private int childCount;
+
+
+        @SuppressWarnings("unchecked")
+        private Node(String edge) {
+            this.edge = edge;
+            this.values = new LinkedHashSet<>(1);
+            this.children = (Node<V>[]) new Node<?>[0];
+        }
+
+
+        /**
+         * Binary searches the children by the first character of their edge.
+         * @param c The character to find
+         * @return The child index, or (-(insertion point) - 1) if there is none
+         */
+        private int indexOf(char c) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = children[mid].edge.charAt(0);
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+
+        private void insertChild(int index, Node<V> child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            children[index] = child;
+            childCount++;
+        }
+
+
+        private void removeChild(int index) {
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+        }
+    }
+}
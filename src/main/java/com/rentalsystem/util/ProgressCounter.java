@@ -0,0 +1,86 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Row and byte counters for a long-running operation such as a load, save or export.
+ * The code doing the work adds to the counters as it goes and a progress display samples them on its own
+ * schedule, so counting a row is only an uncontended add and never touches the terminal.
+ * The expected totals are optional; when they are known they give the fraction done.
+ */
+public class ProgressCounter {
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder expectedRows = new LongAdder();
+    private final LongAdder expectedBytes = new LongAdder();
+
+
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+
+    /**
+     * Adds to the number of rows the operation is expected to process.
+     * @param count The number of rows about to be processed
+     */
+    public void expectRows(long count) {
+        expectedRows.add(count);
+    }
+
+
+    /**
+     * Adds to the number of bytes the operation is expected to process.
+     * @param count The number of bytes about to be processed
+     */
+    public void expectBytes(long count) {
+        expectedBytes.add(count);
+    }
+
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+
+    public long getExpectedRows() {
+        return expectedRows.sum();
+    }
+
+
+    public long getExpectedBytes() {
+        return expectedBytes.sum();
+    }
+
+
+    /**
+     * Estimates how much of the expected work is done, by bytes when a byte total is known and by rows otherwise.
+     * @return The fraction done between 0 and 1, or -1 if no total is known
+     */
+    public double fraction() {
+        long totalBytes = getExpectedBytes();
+        if (totalBytes > 0) {
+            return Math.min(1.0, getBytes() / (double) totalBytes);
+        }
+        long totalRows = getExpectedRows();
+        if (totalRows > 0) {
+            return Math.min(1.0, getRows() / (double) totalRows);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+
+/**
+ * Bounded cache of formatted table rows, keyed by entity ID and the version of the data they were built from.
+ * A row is rebuilt when it is missing or was built from an older version, so callers invalidate every
+ * cached row at once by moving to a new version and never have to find the rows a change affects.
+ * The least recently used rows are evicted once the capacity is reached.
+ */
+public class RowCache {
+    private final Map<String, CachedRow> rows;
+    private long hits;
+    private long misses;
+
+
+    /**
+     * Constructs a new RowCache.
+     * @param capacity The maximum number of rows kept
+     */
+    public RowCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Row cache capacity must be positive: " + capacity);
+        }
+        this.rows = new LinkedHashMap<String, CachedRow>(Math.min(capacity, 1024) * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRow> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+
+    /**
+     * Gets the formatted row of an entity, building it only if there is none for this version.
+     * The row is built outside the cache's lock, so a slow renderer does not hold up other readers.
+     * @param id The ID of the entity
+     * @param version The version of the data the row must reflect
+     * @param renderer Builds the row when it is not cached
+     * @return The cells of the row; the list must not be modified
+     */
+    public List<String> get(String id, long version, Supplier<List<String>> renderer) {
+        synchronized (this) {
+            CachedRow cached = rows.get(id);
+            if (cached != null && cached.version == version) {
+                hits++;
+                return cached.cells;
+            }
+            misses++;
+        }
+        List<String> cells = renderer.get();
+        synchronized (this) {
+            CachedRow cached = rows.get(id);
+            if (cached == null || cached.version <= version) {
+                rows.put(id, new CachedRow(version, cells));
+            }
+        }
+        return cells;
+    }
+
+
+    /**
+     * Drops every cached row.
+     */
+    public synchronized void clear() {
+        rows.clear();
+    }
+
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+
+    private static class CachedRow {
+        private final long version;
+        private final List<String> cells;
+
+
+        private CachedRow(long version, List<String> cells) {
+            this.version = version;
+            this.cells = cells;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.io.File;
+import java.util.List;
+
+
+/**
+ * Command-line tool that rewrites the data files with a different shard count or storage format.
+ * Reads every entity file in its current layout (flat or sharded, CSV or JSON) and writes it back
+ * hash-partitioned into the requested number of shards. A shard count of 1 merges the data back into
+ * flat files. The format defaults to the one configured by storage.format.
+ * Usage: ShardMigrator &lt;shardCount&gt; [csv|json]
+ */
+public class ShardMigrator {
+
+
+    /**
+     * Reshards every entity file.
+     * @param args The target shard count
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ShardMigrator <shardCount> [csv|json]");
+            return;
+        }
+        int targetShards = Integer.parseInt(args[0]);
+        if (targetShards < 1) {
+            System.err.println("Shard count must be at least 1.");
+            return;
+        }
+
+        FileHandler destination = args.length == 2
+                ? new FileHandler(targetShards, StorageFormat.fromName(args[1]))
+                : new FileHandler(targetShards);
+        for (String filename : FileHandler.DATA_FILES) {
+            File shardDirectory = FileHandler.shardDirectory(filename);
+            int currentShards = Math.max(1, FileHandler.storedShardCount(filename));
+            FileHandler source = new FileHandler(currentShards, detectFormat(filename, shardDirectory, destination.getFormat()));
+
+            List<String[]> lines = source.readLines(filename);
+
+            // Move the old layout aside so stale shards can't be picked up, and restore it if the write fails
+            File flatFile = source.dataFile(filename);
+            File backup = new File(shardDirectory.getPath() + ".bak");
+            File flatBackup = new File(flatFile.getPath() + ".bak");
+            if (shardDirectory.exists() && !shardDirectory.renameTo(backup)) {
+                System.err.println("Could not move aside " + shardDirectory + ", skipping " + filename);
+                continue;
+            }
+            if (flatFile.exists() && !flatFile.renameTo(flatBackup)) {
+                backup.renameTo(shardDirectory);
+                System.err.println("Could not move aside " + flatFile + ", skipping " + filename);
+                continue;
+            }
+
+            try {
+                destination.writeLines(filename, lines);
+            } catch (RuntimeException e) {
+                deleteRecursively(shardDirectory);
+                backup.renameTo(shardDirectory);
+                flatBackup.renameTo(flatFile);
+                throw e;
+            }
+
+            deleteRecursively(backup);
+            flatBackup.delete();
+            System.out.println(filename + ": " + lines.size() + " rows, " + currentShards + " -> " + targetShards + " shard(s), "
+                    + source.getFormat() + " -> " + destination.getFormat());
+        }
+
+        // Only succeeds when no entity is sharded any more
+        FileHandler.shardDirectory(FileHandler.DATA_FILES.get(0)).getParentFile().delete();
+    }
+
+
+    /**
+     * Works out which format an entity file is currently stored in from the files on disk.
+     * @param filename The logical name of the entity file
+     * @param shardDirectory The shard directory of the entity file
+     * @param fallback The format to assume when no data has been written yet
+     * @return The format of the existing data
+     */
+    private static StorageFormat detectFormat(String filename, File shardDirectory, StorageFormat fallback) {
+        for (StorageFormat format : StorageFormat.values()) {
+            File[] shards = shardDirectory.listFiles((directory, name) -> name.endsWith(format.getExtension()));
+            if (new FileHandler(1, format).dataFile(filename).exists() || (shards != null && shards.length > 0)) {
+                return format;
+            }
+        }
+        return fallback;
+    }
+
+
+    /**
+     * Deletes a file or directory tree.
+     * @param file The file or directory to delete
+     */
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
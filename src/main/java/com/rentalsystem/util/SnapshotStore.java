@@ -0,0 +1,222 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.manager.RelationshipLinker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+
+/**
+ * Multi-version store of the rows of the entity data files, for readers that must not see half-applied
+ * edits or block writers.
+ * Each manager registers the rows of its data file as they would be saved from its in-memory state, and
+ * marks the file changed whenever it saves. A snapshot is only built when a reader asks for one after a
+ * change: the rows of the changed files are taken from the managers under the data lock's read lock, so all
+ * files are from the same point between edits, and the tables of unchanged files are carried over. A reader
+ * then reads from its Snapshot for as long as it likes without locks; later changes never alter it.
+ * Only the current tables are kept, and a table is dropped as soon as its file changes, so between edits
+ * and reports the store holds no copy of the data. Payments are not registered: they are append-only and
+ * reports read them from the payment files.
+ */
+public class SnapshotStore {
+    private final ReadWriteLock lock;
+    private final RelationshipLinker linker;
+    private final Map<String, Supplier<List<String[]>>> sources = new ConcurrentHashMap<>();
+    // The version in which each data file last changed
+    private final Map<String, Long> changes = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot current = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap());
+
+
+    /**
+     * Constructs a new SnapshotStore.
+     * @param lock The lock the managers hold for writing while they change the data
+     * @param linker The linker whose pending tasks must run before the read lock is taken
+     */
+    public SnapshotStore(ReadWriteLock lock, RelationshipLinker linker) {
+        this.lock = lock;
+        this.linker = linker;
+    }
+
+
+    /**
+     * Registers the rows of a data file.
+     * @param filename The logical name of the data file
+     * @param rows Builds the rows from the manager's current state as a new list, with the ID in the first
+     *             column; called under the read lock, and neither the list nor the rows are changed afterwards
+     */
+    public void register(String filename, Supplier<List<String[]>> rows) {
+        sources.put(filename, rows);
+        changed(filename);
+    }
+
+
+    /**
+     * Marks a data file changed, dropping its table so the next snapshot takes its rows from the manager again.
+     * @param filename The logical name of the data file
+     */
+    public void changed(String filename) {
+        changes.put(filename, version.incrementAndGet());
+        current = current.without(filename);
+    }
+
+
+    /**
+     * Gets the latest version, building it if a data file changed since the last one was built.
+     * @return The current snapshot
+     */
+    public Snapshot snapshot() {
+        Snapshot latest = current;
+        if (latest.version == version.get()) {
+            return latest;
+        }
+        // The rows are taken from the managers, which link first, and linking needs the write lock
+        linker.ensureLinked();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            synchronized (this) {
+                return build();
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+
+    /**
+     * Builds the tables of the files that changed since the current snapshot. Writers are held off by the read lock.
+     * @return The new current snapshot
+     */
+    private Snapshot build() {
+        Snapshot previous = current;
+        long now = version.get();
+        if (previous.version == now) {
+            // Built by another reader while this one waited
+            return previous;
+        }
+        Map<String, Table> tables = new HashMap<>();
+        Map<String, Long> versions = new HashMap<>(changes);
+        sources.forEach((filename, rows) -> {
+            Table table = previous.tables.get(filename);
+            if (table == null || previous.getVersion(filename) != versions.get(filename)) {
+                table = new Table(rows.get());
+            }
+            tables.put(filename, table);
+        });
+        Snapshot next = new Snapshot(now, tables, versions);
+        current = next;
+        return next;
+    }
+
+
+    /**
+     * A consistent point-in-time view of every registered data file.
+     */
+    public static class Snapshot {
+        private final long version;
+        private final Map<String, Table> tables;
+        // The version each data file last changed in
+        private final Map<String, Long> versions;
+
+
+        private Snapshot(long version, Map<String, Table> tables, Map<String, Long> versions) {
+            this.version = version;
+            this.tables = tables;
+            this.versions = versions;
+        }
+
+
+        public long getVersion() {
+            return version;
+        }
+
+
+        /**
+         * Gets the version in which a data file last changed, which stays the same while other files change.
+         * @param filename The logical name of the data file
+         * @return The version the file last changed in, 0 if it is not registered
+         */
+        public long getVersion(String filename) {
+            return versions.getOrDefault(filename, 0L);
+        }
+
+
+        /**
+         * Gets the rows of a data file in this version.
+         * @param filename The logical name of the data file
+         * @return The rows in the order the manager saves them, empty if the file is not registered
+         */
+        public List<String[]> rows(String filename) {
+            Table table = tables.get(filename);
+            return table == null ? Collections.emptyList() : table.rows;
+        }
+
+
+        /**
+         * Looks up a row by its ID in this version.
+         * @param filename The logical name of the data file
+         * @param id The ID in the first column
+         * @return The row, or null if there is none
+         */
+        public String[] get(String filename, String id) {
+            Table table = tables.get(filename);
+            return table == null || id == null ? null : table.byId().get(id);
+        }
+
+
+        /**
+         * Copies this snapshot without the table of one file, keeping its version number so it is rebuilt.
+         * @param filename The logical name of the data file to drop
+         * @return The copy, or this snapshot if it has no table for the file
+         */
+        private Snapshot without(String filename) {
+            if (!tables.containsKey(filename)) {
+                return this;
+            }
+            Map<String, Table> kept = new HashMap<>(tables);
+            kept.remove(filename);
+            return new Snapshot(version, kept, versions);
+        }
+    }
+
+
+    /**
+     * The immutable rows of one data file, with an ID index built on first lookup.
+     */
+    private static class Table {
+        private final List<String[]> rows;
+        private volatile Map<String, String[]> byId;
+
+
+        private Table(List<String[]> rows) {
+            this.rows = Collections.unmodifiableList(rows);
+        }
+
+
+        private Map<String, String[]> byId() {
+            Map<String, String[]> index = byId;
+            if (index == null) {
+                index = new HashMap<>(rows.size() * 2);
+                for (String[] row : rows) {
+                    if (row.length > 0) {
+                        index.put(row[0], row);
+                    }
+                }
+                byId = index;
+            }
+            return index;
+        }
+    }
+}
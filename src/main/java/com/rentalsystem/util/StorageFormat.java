@@ -0,0 +1,56 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.Locale;
+
+
+/**
+ * The on-disk formats the data files can be stored in, selected by the storage.format setting.
+ */
+public enum StorageFormat {
+    /** Positional CSV columns, one line per record. */
+    CSV(".txt"),
+    /** A JSON array with one object of named fields per record. */
+    JSON(".json");
+
+    private final String extension;
+
+
+    StorageFormat(String extension) {
+        this.extension = extension;
+    }
+
+
+    /**
+     * Gets the physical file name of a data file in this format.
+     * @param filename The logical name of the data file, such as hosts.txt
+     * @return The file name with this format's extension
+     */
+    public String fileName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return (dot >= 0 ? filename.substring(0, dot) : filename) + extension;
+    }
+
+
+    public String getExtension() {
+        return extension;
+    }
+
+
+    /**
+     * Parses a format name, case-insensitively.
+     * @param name The name of the format
+     * @return The matching format
+     * @throws IllegalArgumentException if the name is not a known format
+     */
+    public static StorageFormat fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown storage format: " + name, e);
+        }
+    }
+}
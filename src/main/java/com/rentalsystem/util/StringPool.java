@@ -0,0 +1,40 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Load-time dictionary of canonical string instances.
+ * Repeated column values (IDs, foreign keys, payment methods, business types) are mapped to a single
+ * shared instance so each distinct value is stored once on the heap. A pool lives for one load only.
+ */
+public class StringPool {
+    private final ConcurrentMap<String, String> pool;
+
+
+    /**
+     * Constructs an empty StringPool.
+     */
+    public StringPool() {
+        this.pool = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Returns the canonical instance for a value, registering it if it has not been seen before.
+     * @param value The value to canonicalize, may be null
+     * @return The canonical instance, or null if the value is null
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = pool.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem;
+
+import com.rentalsystem.manager.HostManagerImpl;
+import com.rentalsystem.manager.OwnerManagerImpl;
+import com.rentalsystem.manager.PropertyManagerImpl;
+import com.rentalsystem.manager.RentalManagerImpl;
+import com.rentalsystem.manager.TenantManagerImpl;
+import com.rentalsystem.util.FileHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+
+/**
+ * Prepares the working directory of a test JVM with its own settings and a copy of the sample data,
+ * and loads the managers from it the way ConsoleUI does at startup.
+ * Settings are read once per JVM, so configure must run before anything reads AppConfig.
+ */
+public final class TestWorkspace {
+    private static final Path CONFIG = Paths.get("resources/assets/config/settings.xml");
+    private static final Path DATA = Paths.get("resources/data");
+
+
+    private TestWorkspace() {
+    }
+
+
+    /**
+     * Writes the settings file, lazy linking off unless overridden.
+     * @param entries Alternating setting keys and values
+     */
+    public static void configure(String... entries) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n<properties>\n")
+                .append("    <entry key=\"relationships.lazy\">false</entry>\n")
+                .append("    <entry key=\"log.file\">test.log</entry>\n");
+        for (int i = 0; i + 1 < entries.length; i += 2) {
+            xml.append("    <entry key=\"").append(entries[i]).append("\">").append(entries[i + 1]).append("</entry>\n");
+        }
+        xml.append("</properties>\n");
+        try {
+            Files.createDirectories(CONFIG.getParent());
+            Files.write(CONFIG, xml.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Replaces the data directory with a fresh copy of the project's sample data files.
+     */
+    public static void resetData() {
+        Path source = Paths.get(System.getProperty("project.basedir", "../.."), "resources/data");
+        try {
+            deleteRecursively(DATA);
+            Files.createDirectories(DATA);
+            for (String filename : FileHandler.DATA_FILES) {
+                Files.copy(source.resolve(filename), DATA.resolve(filename));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Gets the data directory of the workspace.
+     * @return The path of resources/data in the working directory
+     */
+    public static Path dataDirectory() {
+        return DATA;
+    }
+
+
+    /**
+     * Deletes a file or directory tree if it exists.
+     * @param root The file or directory to delete
+     */
+    public static void deleteRecursively(Path root) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Builds a FileHandler and the managers over the data directory and loads every file in startup order.
+     * @return The loaded system
+     */
+    public static Loaded load() {
+        return new Loaded(loaded -> { });
+    }
+
+
+    /**
+     * Builds the managers as load does, letting the caller register listeners before the first record is read.
+     * @param beforeLoad Called once the managers are wired and before any file is loaded
+     * @return The loaded system
+     */
+    public static Loaded load(Consumer<Loaded> beforeLoad) {
+        return new Loaded(beforeLoad);
+    }
+
+
+    /**
+     * A FileHandler and its managers, loaded from the workspace's data files.
+     */
+    public static final class Loaded {
+        public final FileHandler fileHandler = new FileHandler();
+        public final HostManagerImpl hosts = new HostManagerImpl(fileHandler);
+        public final TenantManagerImpl tenants = new TenantManagerImpl(fileHandler);
+        public final OwnerManagerImpl owners = new OwnerManagerImpl(fileHandler);
+        public final PropertyManagerImpl properties = new PropertyManagerImpl(fileHandler);
+        public final RentalManagerImpl rentals = new RentalManagerImpl(fileHandler);
+
+
+        private Loaded(Consumer<Loaded> beforeLoad) {
+            properties.setDependencies(hosts, tenants, owners, rentals);
+            rentals.setDependencies(tenants, properties, hosts, owners);
+            hosts.setDependencies(properties, owners);
+            owners.setDependencies(properties, hosts);
+            fileHandler.syncManager(rentals, tenants, owners, hosts, properties);
+            beforeLoad.accept(this);
+            hosts.load();
+            tenants.load();
+            owners.load();
+            properties.load();
+            rentals.load();
+            tenants.loadPayments();
+            fileHandler.finishLoad();
+            fileHandler.getLinker().start();
+        }
+    }
+}
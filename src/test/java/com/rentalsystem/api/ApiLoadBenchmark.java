@@ -0,0 +1,124 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.api;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Command-line load generator for a running ApiServer.
+ * Each client thread sends requests back to back over its own keep-alive connection for a fixed time,
+ * cycling through the given paths, then the throughput and latency percentiles are printed.
+ * Usage: ApiLoadBenchmark &lt;baseUrl&gt; [threads] [seconds] [path...]
+ * Example: ApiLoadBenchmark http://127.0.0.1:8080 16 10 /api/properties /api/agreements/RA001
+ */
+public class ApiLoadBenchmark {
+
+
+    /**
+     * Runs the load test.
+     * @param args The base URL, optionally followed by the thread count, the duration in seconds and the paths to request
+     * @throws Exception if the client threads cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ApiLoadBenchmark <baseUrl> [threads] [seconds] [path...]");
+            return;
+        }
+        String baseUrl = args[0].replaceAll("/+$", "");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        List<String> paths = args.length > 3
+                ? Arrays.asList(Arrays.copyOfRange(args, 3, args.length))
+                : Arrays.asList("/api/properties/P001", "/api/agreements", "/api/tenants/T001/payments");
+
+        List<URI> uris = new ArrayList<>();
+        for (String path : paths) {
+            uris.add(URI.create(baseUrl + path));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            results.add(pool.submit(() -> runClient(uris, offset, deadline)));
+        }
+
+        long requests = 0;
+        long errors = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (Future<long[]> result : results) {
+            long[] clientLatencies = result.get();
+            for (long latency : clientLatencies) {
+                if (latency < 0) {
+                    errors++;
+                } else {
+                    latencies.add(latency);
+                }
+                requests++;
+            }
+        }
+        pool.shutdown();
+
+        latencies.sort(null);
+        System.out.printf("%d threads, %d s: %d requests, %d errors, %.0f requests/s%n",
+                threads, seconds, requests, errors, requests / (double) seconds);
+        if (!latencies.isEmpty()) {
+            System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies.get(latencies.size() - 1) / 1e6);
+        }
+    }
+
+
+    /**
+     * Sends requests until the deadline over a single client, which reuses its connection.
+     * @param uris The URIs to cycle through
+     * @param offset The index to start cycling from, so threads spread over the URIs
+     * @param deadline The System.nanoTime at which to stop
+     * @return The latency of each request in nanoseconds, negative for failed requests
+     */
+    private static long[] runClient(List<URI> uris, int offset, long deadline) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long[] latencies = new long[1024];
+        int count = 0;
+        for (int i = offset; System.nanoTime() < deadline; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uris.get(i % uris.size())).GET().build();
+            long start = System.nanoTime();
+            long latency;
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                latency = response.statusCode() < 400 ? System.nanoTime() - start : -1;
+            } catch (Exception e) {
+                latency = -1;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+
+    private static double percentile(List<Long> sorted, double fraction) {
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(sorted.size() * fraction) - 1);
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.api;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.manager.ArrearsEngine;
+import com.rentalsystem.manager.UnitOfWork;
+import com.rentalsystem.model.Tenant;
+import com.rentalsystem.report.Reports;
+import com.rentalsystem.util.DateUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * The API shares the managers' data lock: reads wait for a change in progress and see it once it is done.
+ */
+class ApiServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private TestWorkspace.Loaded loaded;
+    private ApiServer server;
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void start() throws Exception {
+        TestWorkspace.resetData();
+        loaded = TestWorkspace.load();
+        Reports reports = new Reports(loaded.rentals, loaded.tenants, loaded.owners,
+                new ArrearsEngine(loaded.rentals, loaded.tenants), loaded.fileHandler);
+        server = new ApiServer(0, 2, 4, loaded.rentals, loaded.tenants, loaded.owners, loaded.hosts, loaded.properties,
+                reports, loaded.fileHandler.getDataLock(), loaded.fileHandler.getLinker());
+        server.start();
+    }
+
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+
+    @Test
+    void readWaitsForAChangeHoldingTheDataLock() throws Exception {
+        Lock writeLock = loaded.fileHandler.getDataLock().writeLock();
+        CompletableFuture<HttpResponse<String>> pending;
+        writeLock.lock();
+        try {
+            pending = client.sendAsync(request("GET", "/api/agreements/RA001"), HttpResponse.BodyHandlers.ofString());
+            assertThrows(TimeoutException.class, () -> pending.get(300, TimeUnit.MILLISECONDS));
+        } finally {
+            writeLock.unlock();
+        }
+
+        HttpResponse<String> response = pending.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("RA001"), response.body());
+    }
+
+
+    @Test
+    void writeThroughTheApiIsVisibleToTheNextRead() throws Exception {
+        HttpResponse<String> extended = send("POST", "/api/agreements/RA001/extend?days=10");
+        assertEquals(200, extended.statusCode(), extended.body());
+
+        HttpResponse<String> read = send("GET", "/api/agreements/RA001");
+        assertTrue(read.body().contains("2025-01-10"), read.body());
+    }
+
+
+    @Test
+    void errorsAndEmptyResponsesKeepTheirStatus() throws Exception {
+        assertEquals(404, send("GET", "/api/agreements/RA999").statusCode());
+        assertEquals(400, send("POST", "/api/agreements/RA001/extend?days=x").statusCode());
+        assertEquals(405, send("PUT", "/api/agreements/RA001").statusCode());
+        assertEquals(204, send("DELETE", "/api/agreements/RA009").statusCode());
+        assertEquals(404, send("GET", "/api/agreements/RA009").statusCode());
+    }
+
+
+    @Test
+    void largeListingIsStreamedInChunksAndSmallResponsesKeepTheirLength() throws Exception {
+        int before = loaded.tenants.getAll().size();
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler);
+        for (int i = 0; i < 2000; i++) {
+            String id = "T9" + i;
+            unit.add(loaded.tenants, id, new Tenant(id, "Streamed Tenant " + i, DateUtil.fromEpochDay(0), "t9" + i + "@email.com"));
+        }
+        unit.commit();
+
+        HttpResponse<String> listing = send("GET", "/api/tenants");
+        assertEquals(200, listing.statusCode());
+        assertTrue(listing.headers().firstValue("content-length").isEmpty());
+        assertTrue(listing.body().length() > 64 * 1024);
+        assertTrue(listing.body().endsWith("]"), listing.body().substring(listing.body().length() - 100));
+        assertEquals(before + 2000, listing.body().split("\"fullName\"", -1).length - 1);
+
+        HttpResponse<String> single = send("GET", "/api/tenants/T91999");
+        assertEquals(String.valueOf(single.body().getBytes(StandardCharsets.UTF_8).length),
+                single.headers().firstValue("content-length").orElse(null));
+    }
+
+
+    private HttpResponse<String> send(String method, String path) throws Exception {
+        return client.send(request(method, path), HttpResponse.BodyHandlers.ofString());
+    }
+
+
+    private HttpRequest request(String method, String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Records published from any number of threads reach the file exactly once and in each thread's order;
+ * a full buffer makes callers wait or drops and counts their records, and flush and close wait for
+ * everything queued before them.
+ */
+class AsyncLogHandlerTest {
+    @TempDir
+    Path directory;
+
+    private final CountDownLatch formatting = new CountDownLatch(1);
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private AsyncLogHandler handler;
+
+
+    @AfterEach
+    void close() {
+        gate.countDown();
+        if (handler != null) {
+            handler.close();
+        }
+    }
+
+
+    @Test
+    void capacityMustBePositive() {
+        Path file = directory.resolve("app.log");
+        assertThrows(IllegalArgumentException.class, () -> new AsyncLogHandler(file.toString(), 0, AsyncLogHandler.OverflowPolicy.BLOCK));
+    }
+
+
+    @Test
+    void flushWaitsForEveryRecordPublishedBeforeIt() throws IOException {
+        handler = open(1024, AsyncLogHandler.OverflowPolicy.BLOCK);
+        handler.setLevel(Level.INFO);
+        for (int i = 0; i < 500; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+        handler.publish(new LogRecord(Level.FINE, "below the level"));
+
+        handler.flush();
+
+        List<String> lines = lines();
+        assertEquals(500, lines.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("record " + i, lines.get(i));
+        }
+    }
+
+
+    @Test
+    void closeDrainsTheBufferAndIgnoresLaterRecords() throws IOException {
+        handler = open(4096, AsyncLogHandler.OverflowPolicy.BLOCK);
+        for (int i = 0; i < 3000; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+
+        handler.close();
+        handler.publish(new LogRecord(Level.INFO, "after close"));
+        handler.flush();
+
+        List<String> lines = lines();
+        assertEquals(3000, lines.size());
+        assertEquals("record 2999", lines.get(2999));
+    }
+
+
+    @Test
+    void blockPolicyWaitsForRoomInsteadOfLosingRecords() throws Exception {
+        gate = new CountDownLatch(1);
+        handler = open(2, AsyncLogHandler.OverflowPolicy.BLOCK);
+        handler.publish(new LogRecord(Level.INFO, "record 0"));
+        // The worker holds record 0 in the formatter, so the two slots fill and the next caller waits
+        assertTrue(formatting.await(5, TimeUnit.SECONDS));
+        handler.publish(new LogRecord(Level.INFO, "record 1"));
+        handler.publish(new LogRecord(Level.INFO, "record 2"));
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> handler.publish(new LogRecord(Level.INFO, "record 3")));
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+
+        gate.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        handler.flush();
+
+        assertEquals(List.of("record 0", "record 1", "record 2", "record 3"), lines());
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+
+    @Test
+    void dropPolicyCountsAndReportsDroppedRecordsWithoutWaiting() throws Exception {
+        gate = new CountDownLatch(1);
+        handler = open(2, AsyncLogHandler.OverflowPolicy.DROP);
+        handler.publish(new LogRecord(Level.INFO, "record 0"));
+        assertTrue(formatting.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + i));
+        }
+        assertEquals(3, handler.getDroppedCount());
+
+        gate.countDown();
+        handler.flush();
+        handler.close();
+
+        assertEquals(List.of("record 0", "record 1", "record 2", "3 log records dropped because the log buffer was full"), lines());
+    }
+
+
+    @Test
+    void concurrentPublishersEachKeepTheirOrderAndLoseNothing() throws Exception {
+        handler = open(64, AsyncLogHandler.OverflowPolicy.BLOCK);
+        int threads = 8;
+        int perThread = 5000;
+        List<CompletableFuture<Void>> publishers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String name = "t" + t;
+            publishers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    handler.publish(new LogRecord(Level.INFO, name + " " + i));
+                }
+            }, runnable -> new Thread(runnable).start()));
+        }
+        for (CompletableFuture<Void> publisher : publishers) {
+            publisher.get(60, TimeUnit.SECONDS);
+        }
+        handler.flush();
+
+        List<String> lines = lines();
+        assertEquals(threads * perThread, lines.size());
+        Map<String, Integer> next = new HashMap<>();
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            int expected = next.getOrDefault(parts[0], 0);
+            assertEquals(expected, Integer.parseInt(parts[1]), parts[0]);
+            next.put(parts[0], expected + 1);
+        }
+        assertEquals(threads, next.size());
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+
+    /**
+     * Opens a handler writing one message per line, whose formatter waits at the gate.
+     * @param capacity The ring buffer capacity
+     * @param policy The overflow policy
+     * @return The handler
+     */
+    private AsyncLogHandler open(int capacity, AsyncLogHandler.OverflowPolicy policy) throws IOException {
+        AsyncLogHandler opened = new AsyncLogHandler(directory.resolve("app.log").toString(), capacity, policy);
+        opened.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                formatting.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+        return opened;
+    }
+
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(directory.resolve("app.log"), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.model.Tenant;
+import com.rentalsystem.util.DatasetGenerator;
+import com.rentalsystem.util.DateUtil;
+import com.rentalsystem.util.FileHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * The arrears engine charges each rental period up to today or the end date, whichever is first, keeps
+ * balances current as payments and agreements change, and agrees with a sequential charge however the
+ * fork-join pool splits the work or whatever changes arrive while it runs.
+ */
+class ArrearsEngineTest {
+    private ArrearsEngine engine;
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void completedAgreementIsChargedEachPeriodUpToItsEndDate() {
+        load();
+
+        // RA003 ran monthly from 2024-03-01 to 2024-08-31 at 1800, and two payments were made
+        ArrearsEngine.Balance balance = engine.getAgreementBalance("RA003");
+        assertEquals(6 * 1800.0, balance.getCharged(), 1e-6);
+        assertEquals(2 * 1800.0, balance.getPaid(), 1e-6);
+        assertEquals(4 * 1800.0, balance.getArrears(), 1e-6);
+        assertEquals(4 * 1800.0, find(engine.getTenantArrears(), "T004").getArrears(), 1e-6);
+        assertEquals(4 * 1800.0, find(engine.getOwnerArrears(), "O005").getArrears(), 1e-6);
+        assertNull(engine.getAgreementBalance("RA999"));
+    }
+
+
+    @Test
+    void paymentsAndChangesUpdateTheAgreementTheyTouch() {
+        TestWorkspace.Loaded loaded = load();
+        double otherCharged = engine.getAgreementBalance("RA001").getCharged();
+
+        loaded.tenants.addPayment(payment(loaded, "PMT100", "RA003", "T004", 500));
+        assertEquals(2 * 1800.0 + 500, engine.getAgreementBalance("RA003").getPaid(), 1e-6);
+
+        loaded.rentals.extendRentalAgreement("RA003", 30);
+        assertEquals(7 * 1800.0, engine.getAgreementBalance("RA003").getCharged(), 1e-6);
+        assertEquals(2 * 1800.0 + 500, engine.getAgreementBalance("RA003").getPaid(), 1e-6);
+        assertEquals(otherCharged, engine.getAgreementBalance("RA001").getCharged(), 1e-6);
+
+        loaded.rentals.delete("RA003");
+        assertNull(engine.getAgreementBalance("RA003"));
+        assertNull(find(engine.getTenantArrears(), "T004"));
+    }
+
+
+    @Test
+    void parallelChargesMatchASequentialCharge() throws IOException {
+        TestWorkspace.deleteRecursively(TestWorkspace.dataDirectory());
+        Map<String, String> options = new HashMap<>();
+        options.put("hosts", "20");
+        options.put("owners", "100");
+        options.put("tenants", "1500");
+        options.put("properties", "800");
+        options.put("agreements", "3000");
+        options.put("asOf", "2025-01-01");
+        new DatasetGenerator(options).generate(new FileHandler());
+        TestWorkspace.Loaded loaded = load();
+
+        Map<String, Double> paid = new HashMap<>();
+        for (Tenant tenant : loaded.tenants.getAll()) {
+            for (Payment payment : tenant.getPayments()) {
+                paid.merge(payment.getRentalAgreementId(), payment.getAmount(), Double::sum);
+            }
+        }
+        List<RentalAgreement> agreements = loaded.rentals.getAll();
+        assertTrue(agreements.size() > 4 * 512, "enough agreements to split the work several times");
+        Map<String, Double> arrearsByTenant = new HashMap<>();
+        for (RentalAgreement agreement : agreements) {
+            ArrearsEngine.Balance balance = engine.getAgreementBalance(agreement.getAgreementId());
+            double charged = chargeSequentially(agreement);
+            double agreementPaid = paid.getOrDefault(agreement.getAgreementId(), 0.0);
+            assertEquals(charged, balance.getCharged(), 1e-6, agreement.getAgreementId());
+            assertEquals(agreementPaid, balance.getPaid(), 1e-6, agreement.getAgreementId());
+            arrearsByTenant.merge(agreement.getMainTenant().getId(), charged - agreementPaid, Double::sum);
+        }
+
+        List<ArrearsEngine.Balance> tenantArrears = engine.getTenantArrears();
+        assertEquals(arrearsByTenant.size(), tenantArrears.size());
+        for (int i = 0; i < tenantArrears.size(); i++) {
+            ArrearsEngine.Balance balance = tenantArrears.get(i);
+            assertEquals(arrearsByTenant.get(balance.getId()), balance.getArrears(), 1e-6, balance.getId());
+            if (i > 0) {
+                assertTrue(tenantArrears.get(i - 1).getArrears() >= balance.getArrears(), "sorted largest first");
+            }
+        }
+    }
+
+
+    @Test
+    void paymentsRecordedDuringRecomputesAreAllCounted() throws Exception {
+        TestWorkspace.Loaded loaded = load();
+        double paidBefore = engine.getAgreementBalance("RA001").getPaid();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            int first = 100 + thread * 25;
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = first; i < first + 25; i++) {
+                    loaded.tenants.addPayment(payment(loaded, "PMT" + i, "RA001", "T001", 10));
+                }
+            }));
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(writers.toArray(new CompletableFuture[0]))
+                .whenComplete((result, error) -> writing.set(false));
+
+        int recomputes = 0;
+        while (writing.get() || recomputes == 0) {
+            engine.recomputeAll();
+            assertNotNull(find(engine.getTenantArrears(), "T001"));
+            recomputes++;
+        }
+        all.get(60, TimeUnit.SECONDS);
+
+        assertEquals(paidBefore + 100 * 10, engine.getAgreementBalance("RA001").getPaid(), 1e-6);
+    }
+
+
+    @Test
+    void agreementChangedDuringARecomputeIsNotLost() throws Exception {
+        TestWorkspace.Loaded loaded = load();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        // RA002 runs monthly from 2024-02-15 to 2025-02-14; sixty days take it to 2025-04-15
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < 60; i++) {
+                    loaded.rentals.extendRentalAgreement("RA002", 1);
+                }
+            } finally {
+                writing.set(false);
+            }
+        });
+        int recomputes = 0;
+        while (writing.get() || recomputes == 0) {
+            engine.recomputeAll();
+            recomputes++;
+        }
+        writer.get(60, TimeUnit.SECONDS);
+
+        assertEquals(15 * 2000.0, engine.getAgreementBalance("RA002").getCharged(), 1e-6);
+        assertEquals(chargeSequentially(loaded.rentals.get("RA002")), engine.getAgreementBalance("RA002").getCharged(), 1e-6);
+    }
+
+
+    /**
+     * Loads the data with an engine registered before the first record, as ConsoleUI registers it.
+     * @return The loaded system
+     */
+    private TestWorkspace.Loaded load() {
+        return TestWorkspace.load(loaded -> engine = new ArrearsEngine(loaded.rentals, loaded.tenants));
+    }
+
+
+    private static Payment payment(TestWorkspace.Loaded loaded, String id, String agreementId, String tenantId, double amount) {
+        return new Payment(id, loaded.rentals.get(agreementId), loaded.tenants.get(tenantId),
+                DateUtil.fromEpochDay(LocalDate.of(2024, 6, 1).toEpochDay()), amount, "Cash");
+    }
+
+
+    /**
+     * Charges an agreement one period at a time up to today or its end date.
+     * @param agreement The rental agreement
+     * @return The total charged
+     */
+    private static double chargeSequentially(RentalAgreement agreement) {
+        LocalDate start = LocalDate.ofEpochDay(DateUtil.toEpochDay(agreement.getStartDate()));
+        LocalDate last = LocalDate.ofEpochDay(Math.min(DateUtil.toEpochDay(agreement.getEndDate()), LocalDate.now().toEpochDay()));
+        int periods = 0;
+        while (!agreement.getRentalPeriod().plusPeriods(start, periods).isAfter(last)) {
+            periods++;
+        }
+        return periods * agreement.getRentAmount();
+    }
+
+
+    private static ArrearsEngine.Balance find(List<ArrearsEngine.Balance> balances, String id) {
+        return balances.stream().filter(balance -> balance.getId().equals(id)).findFirst().orElse(null);
+    }
+}
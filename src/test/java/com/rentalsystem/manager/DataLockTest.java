@@ -0,0 +1,86 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.RentalAgreement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Manager reads take the data read lock, so they never see a change from another thread half applied.
+ */
+class DataLockTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void readsWaitForAChangeHoldingTheWriteLock() throws Exception {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        Lock writeLock = loaded.fileHandler.getDataLock().writeLock();
+        CompletableFuture<List<RentalAgreement>> agreements;
+        CompletableFuture<Boolean> available;
+        writeLock.lock();
+        try {
+            agreements = CompletableFuture.supplyAsync(loaded.rentals::getAll);
+            available = CompletableFuture.supplyAsync(() -> loaded.tenants.isEmailTaken("nobody@email.com"));
+            assertThrows(TimeoutException.class, () -> agreements.get(200, TimeUnit.MILLISECONDS));
+            assertThrows(TimeoutException.class, () -> available.get(200, TimeUnit.MILLISECONDS));
+        } finally {
+            writeLock.unlock();
+        }
+
+        assertFalse(agreements.get(5, TimeUnit.SECONDS).isEmpty());
+        assertFalse(available.get(5, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    void readsAlongsideChangesFromAnotherThreadNeverFail() throws Exception {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    loaded.rentals.extendRentalAgreement("RA001", 1);
+                }
+            } finally {
+                writing.set(false);
+            }
+        });
+
+        int reads = 0;
+        while (writing.get() || reads == 0) {
+            assertFalse(loaded.rentals.getSorted("enddate").isEmpty());
+            assertFalse(loaded.rentals.searchRentalAgreements("RA").isEmpty());
+            loaded.rentals.getActiveRentalAgreements();
+            loaded.properties.getAvailableProperties();
+            reads++;
+        }
+        writer.get(30, TimeUnit.SECONDS);
+        assertTrue(reads > 0);
+    }
+}
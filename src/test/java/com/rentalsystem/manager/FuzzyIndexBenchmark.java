@@ -0,0 +1,165 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.util.BKTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+
+/**
+ * Query latency of FuzzyIndex over a large set of generated person names, against a linear scan of
+ * the distinct words. Names are built from syllables, so first and last names follow a realistic
+ * spread of distinct words and near-misses.
+ * Run with: java -cp target/classes:target/test-classes com.rentalsystem.manager.FuzzyIndexBenchmark [names] [queries]
+ */
+public class FuzzyIndexBenchmark {
+    private static final String[] SYLLABLES = {
+            "an", "ber", "car", "den", "el", "fa", "gor", "han", "is", "jo", "kin", "lo", "mar", "ne", "ol",
+            "per", "qui", "ros", "sa", "tor", "ul", "van", "wes", "xan", "yo", "zel", "bri", "cla", "dro", "fen"
+    };
+
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        SplittableRandom random = new SplittableRandom(42);
+        String[] firstNames = words(random, 4_000, 2);
+        String[] lastNames = words(random, 60_000, 3);
+
+        Map<String, String> names = new HashMap<>(count * 2);
+        FuzzyIndex<String> index = new FuzzyIndex<>(id -> id, names::get);
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String id = "T" + i;
+            names.put(id, capitalize(firstNames[random.nextInt(firstNames.length)]) + " "
+                    + capitalize(lastNames[random.nextInt(lastNames.length)]));
+            index.onAdded(id);
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        String[] distinctWords = distinctWords(names);
+        System.out.printf("names=%d distinctWords=%d build=%d ms%n", count, distinctWords.length, buildMillis);
+
+        List<String> workload = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            workload.add(misspell(random, names.get("T" + random.nextInt(count))));
+        }
+        for (int maxDistance = 1; maxDistance <= 2; maxDistance++) {
+            run(index, names, workload, maxDistance, 50);
+            long[] latencies = run(index, names, workload, maxDistance, workload.size());
+            long[] scan = scan(distinctWords, workload, maxDistance);
+            System.out.printf("k=%d  fuzzy p50=%.2f ms p99=%.2f ms  |  linear word scan p50=%.2f ms p99=%.2f ms%n",
+                    maxDistance, percentile(latencies, 50), percentile(latencies, 99),
+                    percentile(scan, 50), percentile(scan, 99));
+        }
+    }
+
+
+    /**
+     * Runs queries through the index and records the latency of each.
+     * @param index The index to query
+     * @param names The names by ID
+     * @param workload The queries
+     * @param maxDistance The maximum edit distance per word
+     * @param limit The number of queries to run
+     * @return The latency of each query in nanoseconds
+     */
+    private static long[] run(FuzzyIndex<String> index, Map<String, String> names, List<String> workload, int maxDistance, int limit) {
+        long[] latencies = new long[limit];
+        for (int i = 0; i < limit; i++) {
+            long start = System.nanoTime();
+            if (index.search(workload.get(i), maxDistance, id -> names.containsKey(id) ? id : null).isEmpty()) {
+                throw new IllegalStateException("No match for " + workload.get(i));
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+
+    /**
+     * Matches each query word against every distinct word, as a baseline for the tree.
+     * @param distinctWords The distinct indexed words
+     * @param workload The queries
+     * @param maxDistance The maximum edit distance per word
+     * @return The latency of each query in nanoseconds
+     */
+    private static long[] scan(String[] distinctWords, List<String> workload, int maxDistance) {
+        int limit = Math.min(workload.size(), 100);
+        long[] latencies = new long[limit];
+        for (int i = 0; i < limit; i++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (String queryWord : workload.get(i).toLowerCase().split(" ")) {
+                for (String word : distinctWords) {
+                    if (BKTree.distance(queryWord, word, maxDistance) <= maxDistance) {
+                        found++;
+                    }
+                }
+            }
+            if (found == 0) {
+                throw new IllegalStateException("No match for " + workload.get(i));
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+
+    private static String[] words(SplittableRandom random, int count, int syllables) {
+        LinkedHashSet<String> words = new LinkedHashSet<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder();
+            int length = syllables + random.nextInt(2);
+            for (int i = 0; i < length; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+
+    private static String[] distinctWords(Map<String, String> names) {
+        LinkedHashSet<String> words = new LinkedHashSet<>();
+        for (String name : names.values()) {
+            words.addAll(Arrays.asList(name.toLowerCase().split(" ")));
+        }
+        return words.toArray(new String[0]);
+    }
+
+
+    /**
+     * Replaces one character of the last name, as a typo would.
+     * @param random The random source
+     * @param name The name to misspell
+     * @return The misspelled name
+     */
+    private static String misspell(SplittableRandom random, String name) {
+        char[] chars = name.toCharArray();
+        int position = name.indexOf(' ') + 2 + random.nextInt(chars.length - name.indexOf(' ') - 2);
+        chars[position] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+
+    private static double percentile(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.model.RentalAgreement;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class IncomeCubeTest {
+    private static final YearMonth FROM = YearMonth.of(2024, 1);
+    private static final YearMonth TO = YearMonth.of(2024, 12);
+
+    private final IncomeCube cube = new IncomeCube();
+
+
+    @Test
+    void chargesFallDueInTheMonthsOfTheLeaseUpToItsLastDay() {
+        // Charged on Jan 15 and Feb 15; Mar 15 is after the last day
+        cube.addAgreement("RA1", "O1", "H1", "P1", "Residential",
+                LocalDate.of(2024, 1, 15), LocalDate.of(2024, 3, 14), 1000, RentalAgreement.RentalPeriod.MONTHLY);
+        // Charged on Jan 31, then on the last day of each shorter month
+        cube.addAgreement("RA2", "O1", "H1", "P2", "Residential",
+                LocalDate.of(2024, 1, 31), LocalDate.of(2024, 3, 31), 500, RentalAgreement.RentalPeriod.MONTHLY);
+
+        assertEquals(List.of("2024-01:1500.0", "2024-02:1500.0", "2024-03:500.0"),
+                expected(cube.rollup(List.of(IncomeCube.Dimension.MONTH), Collections.emptyMap(), FROM, TO)));
+        assertEquals(List.of("2024-02:1500.0"),
+                expected(cube.rollup(List.of(IncomeCube.Dimension.MONTH), Collections.emptyMap(), YearMonth.of(2024, 2), YearMonth.of(2024, 2))));
+        assertTrue(cube.rollup(List.of(), Collections.emptyMap(), TO, FROM).isEmpty());
+    }
+
+
+    @Test
+    void rollupsGroupAndFilterByEveryLevel() {
+        lease("RA1", "O1", "H1", "P1", "Residential", 1000);
+        lease("RA2", "O1", "H2", "P2", "Commercial", 2000);
+        lease("RA3", "O2", "H1", "P3", "Residential", 400);
+        cube.addPayment("PAY1", "RA1", LocalDate.of(2024, 1, 1), 1000);
+        cube.addPayment("PAY2", "RA2", LocalDate.of(2024, 2, 29), 2000);
+
+        assertEquals(List.of("O1:6000.0", "O2:800.0"),
+                expected(cube.rollup(List.of(IncomeCube.Dimension.OWNER), Collections.emptyMap(), FROM, TO)));
+        assertEquals(List.of("H1,O1:2000.0", "H1,O2:800.0", "H2,O1:4000.0"),
+                expected(cube.rollup(List.of(IncomeCube.Dimension.HOST, IncomeCube.Dimension.OWNER), Collections.emptyMap(), FROM, TO)));
+        assertEquals(List.of("P1:2000.0", "P3:800.0"), expected(cube.rollup(List.of(IncomeCube.Dimension.PROPERTY),
+                Map.of(IncomeCube.Dimension.PROPERTY_TYPE, "Residential"), FROM, TO)));
+        assertEquals(List.of("O1:2000.0"), expected(cube.rollup(List.of(IncomeCube.Dimension.OWNER),
+                Map.of(IncomeCube.Dimension.MONTH, "2024-02", IncomeCube.Dimension.HOST, "H2"), FROM, TO)));
+
+        List<IncomeCube.Row> total = cube.rollup(List.of(), Collections.emptyMap(), FROM, TO);
+        assertEquals(1, total.size());
+        assertEquals(6800.0, total.get(0).getExpectedRent(), 1e-9);
+        assertEquals(3000.0, total.get(0).getIncomeReceived(), 1e-9);
+    }
+
+
+    @Test
+    void changingAnAgreementMovesItsChargesAndPayments() {
+        lease("RA1", "O1", "H1", "P1", "Residential", 1000);
+        cube.addPayment("PAY1", "RA1", LocalDate.of(2024, 1, 5), 1000);
+        long version = cube.getVersion();
+
+        lease("RA1", "O1", "H1", "P1", "Residential", 1000);
+        assertEquals(version, cube.getVersion());
+
+        lease("RA1", "O2", "H1", "P1", "Residential", 1200);
+        assertTrue(cube.getVersion() > version);
+        List<IncomeCube.Row> rows = cube.rollup(List.of(IncomeCube.Dimension.OWNER), Collections.emptyMap(), FROM, TO);
+        assertEquals(1, rows.size());
+        assertEquals(List.of("O2"), rows.get(0).getKey());
+        assertEquals(2400.0, rows.get(0).getExpectedRent(), 1e-9);
+        assertEquals(1000.0, rows.get(0).getIncomeReceived(), 1e-9);
+    }
+
+
+    @Test
+    void paymentsOutliveTheirAgreementAndRemovingEverythingLeavesNoCells() {
+        cube.addPayment("PAY1", "RA1", LocalDate.of(2024, 1, 5), 300);
+        assertEquals("-", cube.rollup(List.of(IncomeCube.Dimension.OWNER), Collections.emptyMap(), FROM, TO).get(0).getKey().get(0));
+
+        lease("RA1", "O1", "H1", "P1", "Residential", 1000);
+        assertArrayEquals(new String[]{"O1", "H1", "P1", "Residential", "2024-01", "1000.0", "300.0"}, cube.toRows().get(0));
+
+        cube.removeAgreement("RA1");
+        List<IncomeCube.Row> rows = cube.rollup(List.of(IncomeCube.Dimension.OWNER), Collections.emptyMap(), FROM, TO);
+        assertEquals(0.0, rows.get(0).getExpectedRent(), 1e-9);
+        assertEquals(300.0, rows.get(0).getIncomeReceived(), 1e-9);
+
+        cube.removePayment("PAY1");
+        assertTrue(cube.toRows().isEmpty());
+    }
+
+
+    // Two monthly charges, on Jan 1 and Feb 1
+    private void lease(String agreementId, String ownerId, String hostId, String propertyId, String type, double rent) {
+        cube.addAgreement(agreementId, ownerId, hostId, propertyId, type,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29), rent, RentalAgreement.RentalPeriod.MONTHLY);
+    }
+
+
+    private static List<String> expected(List<IncomeCube.Row> rows) {
+        List<String> sums = new ArrayList<>();
+        for (IncomeCube.Row row : rows) {
+            sums.add(String.join(",", row.getKey()) + ":" + row.getExpectedRent());
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.model.RentalAgreement;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class IncomeTimelineTest {
+    private final IncomeTimeline timeline = new IncomeTimeline();
+
+
+    @Test
+    void leaseCoversItsFirstAndLastDayOnly() {
+        timeline.addAgreement("RA1", day(2024, 1, 1), day(2024, 12, 31), 1000, RentalAgreement.RentalPeriod.MONTHLY);
+
+        assertEquals(0, timeline.leasesOn(day(2023, 12, 31)));
+        assertEquals(1, timeline.leasesOn(day(2024, 1, 1)));
+        assertEquals(1, timeline.leasesOn(day(2024, 12, 31)));
+        assertEquals(0, timeline.leasesOn(day(2025, 1, 1)));
+    }
+
+
+    @Test
+    void rentFallsDueAtTheStartOfEveryPeriod() {
+        timeline.addAgreement("RA1", day(2024, 1, 15), day(2024, 4, 14), 1000, RentalAgreement.RentalPeriod.MONTHLY);
+        timeline.addAgreement("RA2", day(2024, 2, 1), day(2024, 2, 14), 100, RentalAgreement.RentalPeriod.WEEKLY);
+
+        assertEquals(3200, timeline.expectedRent(day(2024, 1, 1), day(2024, 12, 31)));
+        assertEquals(1200, timeline.expectedRent(day(2024, 2, 1), day(2024, 2, 29)));
+        assertEquals(1000, timeline.expectedRent(day(2024, 3, 15), day(2024, 3, 15)));
+        assertEquals(0, timeline.expectedRent(day(2024, 3, 16), day(2024, 4, 14)));
+    }
+
+
+    @Test
+    void leaseStartingBeforeTheTimelineStillCountsUntilItEnds() {
+        timeline.addAgreement("RA1", day(1998, 6, 1), day(2001, 5, 31), 500, RentalAgreement.RentalPeriod.MONTHLY);
+        timeline.addAgreement("RA2", day(1995, 1, 1), day(1999, 12, 31), 500, RentalAgreement.RentalPeriod.MONTHLY);
+
+        assertEquals(1, timeline.leasesOn(day(2000, 1, 1)));
+        assertEquals(1, timeline.leasesOn(day(2001, 5, 31)));
+        assertEquals(0, timeline.leasesOn(day(2001, 6, 1)));
+        assertEquals(0, timeline.leasesOn(day(1999, 6, 1)));
+        assertEquals(0, timeline.leasesOn(day(2100, 1, 1)));
+    }
+
+
+    @Test
+    void leaseRunningPastTheTimelineIsCountedOnItsLastDay() {
+        timeline.addAgreement("RA1", day(2179, 1, 1), day(2200, 1, 1), 500, RentalAgreement.RentalPeriod.MONTHLY);
+
+        assertEquals(1, timeline.leasesOn(day(2179, 6, 1)));
+        assertEquals(1, timeline.leasesOn(day(2200, 1, 1)));
+    }
+
+
+    @Test
+    void replacingAndRemovingAnAgreementUndoesItsContribution() {
+        timeline.addAgreement("RA1", day(1990, 1, 1), day(2024, 6, 30), 1000, RentalAgreement.RentalPeriod.MONTHLY);
+        timeline.addAgreement("RA1", day(2024, 1, 1), day(2024, 3, 31), 800, RentalAgreement.RentalPeriod.MONTHLY);
+
+        assertEquals(0, timeline.leasesOn(day(2023, 12, 31)));
+        assertEquals(1, timeline.leasesOn(day(2024, 3, 31)));
+        assertEquals(0, timeline.leasesOn(day(2024, 4, 1)));
+        assertEquals(2400, timeline.expectedRent(day(2000, 1, 1), day(2030, 1, 1)));
+
+        timeline.removeAgreement("RA1");
+        timeline.removeAgreement("RA1");
+
+        assertEquals(0, timeline.leasesOn(day(2024, 2, 1)));
+        assertEquals(0, timeline.leasesOn(day(2000, 1, 1)));
+        assertEquals(0, timeline.expectedRent(day(2000, 1, 1), day(2030, 1, 1)));
+    }
+
+
+    @Test
+    void paymentsAreSummedByDayAndCanBeReplaced() {
+        timeline.addPayment("PMT1", day(2024, 2, 1), 300);
+        timeline.addPayment("PMT2", day(2024, 2, 29), 200);
+        timeline.addPayment("PMT2", day(2024, 3, 1), 250);
+
+        assertEquals(300, timeline.incomeReceived(day(2024, 2, 1), day(2024, 2, 29)));
+        assertEquals(550, timeline.incomeReceived(day(2024, 1, 1), day(2024, 3, 1)));
+
+        timeline.removePayment("PMT1");
+        assertEquals(250, timeline.incomeReceived(day(1900, 1, 1), day(2300, 1, 1)));
+    }
+
+
+    private static long day(int year, int month, int dayOfMonth) {
+        return LocalDate.of(year, month, dayOfMonth).toEpochDay();
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.util.DateUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Lease periods include their end date; RA001 leases P002 from 2024-01-01 to 2024-12-31 in the sample data.
+ */
+class LeaseOverlapTest {
+    private TestWorkspace.Loaded loaded;
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void load() {
+        TestWorkspace.resetData();
+        loaded = TestWorkspace.load();
+    }
+
+
+    @Test
+    void leaseStartingOnTheLastDayOfAnotherIsRejected() {
+        RentalAgreement agreement = agreementOnP002("RA100", LocalDate.of(2024, 12, 31), LocalDate.of(2025, 6, 30));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> loaded.rentals.add(agreement));
+        assertTrue(e.getMessage().contains("RA001"), e.getMessage());
+        assertNull(loaded.rentals.get("RA100"));
+    }
+
+
+    @Test
+    void leaseStartingTheDayAfterAnotherEndsIsAccepted() {
+        loaded.rentals.add(agreementOnP002("RA100", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 6, 30)));
+
+        assertNotNull(loaded.rentals.get("RA100"));
+        assertFalse(loaded.rentals.isPropertyAvailable("P002", date(LocalDate.of(2024, 12, 31)), date(LocalDate.of(2024, 12, 31))));
+        assertFalse(loaded.rentals.isPropertyAvailable("P002", date(LocalDate.of(2025, 6, 30)), date(LocalDate.of(2025, 7, 5))));
+        assertTrue(loaded.rentals.isPropertyAvailable("P002", date(LocalDate.of(2025, 7, 1)), date(LocalDate.of(2025, 7, 5))));
+    }
+
+
+    @Test
+    void anAgreementDoesNotConflictWithItself() {
+        RentalAgreement existing = loaded.rentals.get("RA001");
+
+        loaded.rentals.extendRentalAgreement("RA001", 10);
+
+        assertEquals(LocalDate.of(2025, 1, 10), LocalDate.ofEpochDay(DateUtil.toEpochDay(existing.getEndDate())));
+        assertFalse(loaded.rentals.isPropertyAvailable("P002", date(LocalDate.of(2025, 1, 10)), date(LocalDate.of(2025, 1, 10))));
+    }
+
+
+    @Test
+    void extensionIntoAnotherLeaseIsRejectedAndLeavesTheEndDate() {
+        loaded.rentals.add(agreementOnP002("RA100", LocalDate.of(2025, 1, 5), LocalDate.of(2025, 6, 30)));
+
+        assertThrows(IllegalArgumentException.class, () -> loaded.rentals.extendRentalAgreement("RA001", 5));
+        assertEquals(LocalDate.of(2024, 12, 31), LocalDate.ofEpochDay(DateUtil.toEpochDay(loaded.rentals.get("RA001").getEndDate())));
+
+        loaded.rentals.extendRentalAgreement("RA001", 4);
+        assertEquals(LocalDate.of(2025, 1, 4), LocalDate.ofEpochDay(DateUtil.toEpochDay(loaded.rentals.get("RA001").getEndDate())));
+    }
+
+
+    private RentalAgreement agreementOnP002(String id, LocalDate start, LocalDate end) {
+        RentalAgreement existing = loaded.rentals.get("RA001");
+        return new RentalAgreement(id, existing.getProperty(), loaded.tenants.get("T002"), existing.getOwner(), existing.getHost(),
+                date(start), date(end), 3000.0, RentalAgreement.RentalPeriod.MONTHLY);
+    }
+
+
+    private static Date date(LocalDate day) {
+        return DateUtil.fromEpochDay(day.toEpochDay());
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.util.DateUtil;
+import com.rentalsystem.util.FileHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Mutations of agreements held off-heap must survive a save and reload, not just change the materialized copy.
+ */
+class OffHeapAgreementPersistenceTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure("storage.offheap.agreements", "true", "storage.offheap.workingSet", "2");
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void extendedOffHeapAgreementKeepsNewEndDateAfterReload() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        assertTrue(loaded.rentals.isStoredOffHeap("RA003"));
+
+        loaded.rentals.extendRentalAgreement("RA003", 30);
+
+        RentalAgreement reloaded = TestWorkspace.load().rentals.get("RA003");
+        assertEquals(LocalDate.of(2024, 9, 30), endOf(reloaded));
+        assertEquals(LocalDate.of(2024, 3, 1), LocalDate.ofEpochDay(DateUtil.toEpochDay(reloaded.getStartDate())));
+        assertEquals(RentalAgreement.Status.COMPLETED, reloaded.getStatus());
+    }
+
+
+    @Test
+    void terminatedOffHeapAgreementEndsTodayAfterReload() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        assertTrue(loaded.rentals.isStoredOffHeap("RA009"));
+
+        loaded.rentals.terminateRentalAgreement("RA009");
+
+        RentalAgreement reloaded = TestWorkspace.load().rentals.get("RA009");
+        assertEquals(LocalDate.now(), endOf(reloaded));
+        assertEquals(RentalAgreement.Status.COMPLETED, reloaded.getStatus());
+    }
+
+
+    @Test
+    void otherOffHeapAgreementsAreUnchangedByAnExtension() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+
+        loaded.rentals.extendRentalAgreement("RA003", 30);
+
+        TestWorkspace.Loaded reloaded = TestWorkspace.load();
+        assertTrue(reloaded.rentals.isStoredOffHeap("RA006"));
+        assertEquals(LocalDate.of(2024, 11, 30), endOf(reloaded.rentals.get("RA006")));
+        assertEquals(loaded.rentals.getAll().size(), reloaded.rentals.getAll().size());
+    }
+
+
+    @Test
+    void extendingOrTerminatingAMissingAgreementIsRejected() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> loaded.rentals.extendRentalAgreement("RA999", 30));
+        assertTrue(e.getMessage().contains("does not exist"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> loaded.rentals.terminateRentalAgreement("RA999"));
+    }
+
+
+    @Test
+    void offHeapAgreementsAreReportedToListenersAsLoaded() {
+        FileHandler fileHandler = new FileHandler();
+        HostManagerImpl hosts = new HostManagerImpl(fileHandler);
+        TenantManagerImpl tenants = new TenantManagerImpl(fileHandler);
+        OwnerManagerImpl owners = new OwnerManagerImpl(fileHandler);
+        PropertyManagerImpl properties = new PropertyManagerImpl(fileHandler);
+        RentalManagerImpl rentals = new RentalManagerImpl(fileHandler);
+        properties.setDependencies(hosts, tenants, owners, rentals);
+        rentals.setDependencies(tenants, properties, hosts, owners);
+        hosts.setDependencies(properties, owners);
+        owners.setDependencies(properties, hosts);
+        fileHandler.syncManager(rentals, tenants, owners, hosts, properties);
+        List<RentalAgreement> added = new ArrayList<>();
+        rentals.addChangeListener(new EntityListener<RentalAgreement>() {
+            @Override
+            public void onAdded(RentalAgreement entity) {
+                added.add(entity);
+            }
+
+
+            @Override
+            public void onUpdated(RentalAgreement entity) {
+            }
+
+
+            @Override
+            public void onRemoved(RentalAgreement entity) {
+            }
+        });
+        hosts.load();
+        tenants.load();
+        owners.load();
+        properties.load();
+        rentals.load();
+        fileHandler.finishLoad();
+
+        assertTrue(rentals.isStoredOffHeap("RA003"));
+        assertEquals(rentals.getAll().size(), added.size());
+        RentalAgreement agreement = added.stream().filter(a -> a.getAgreementId().equals("RA003")).findFirst().orElseThrow();
+        assertEquals("P005", agreement.getProperty().getPropertyId());
+        assertEquals("T004", agreement.getMainTenant().getId());
+    }
+
+
+    private static LocalDate endOf(RentalAgreement agreement) {
+        return LocalDate.ofEpochDay(DateUtil.toEpochDay(agreement.getEndDate()));
+    }
+}
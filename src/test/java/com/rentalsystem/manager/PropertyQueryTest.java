@@ -0,0 +1,88 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.Property;
+import com.rentalsystem.model.PropertyStatus;
+import com.rentalsystem.query.Criteria;
+import com.rentalsystem.query.PropertyCriteria;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Property queries answered from the manager's indexes stay in step with updates and deletes.
+ */
+class PropertyQueryTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void updatedPropertyMovesToItsNewPriceAndStatus() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        Criteria<Property> oldPrice = PropertyCriteria.priceBetween(1400, 1600);
+        Criteria<Property> newPrice = PropertyCriteria.priceBetween(4900, 5100);
+        assertTrue(ids(loaded, oldPrice).contains("P001"));
+        assertTrue(ids(loaded, PropertyCriteria.status(PropertyStatus.AVAILABLE)).contains("P001"));
+        assertTrue(loaded.properties.explain(oldPrice).startsWith("INDEX price"));
+
+        Property property = loaded.properties.get("P001");
+        property.setPrice(5000);
+        property.setStatus(PropertyStatus.UNDER_MAINTENANCE);
+        loaded.properties.update(property);
+
+        assertFalse(ids(loaded, oldPrice).contains("P001"));
+        assertEquals(List.of("P001"), ids(loaded, newPrice));
+        assertFalse(ids(loaded, PropertyCriteria.status(PropertyStatus.AVAILABLE)).contains("P001"));
+        assertEquals(List.of("P001"), ids(loaded, PropertyCriteria.status(PropertyStatus.UNDER_MAINTENANCE).and(newPrice)));
+        assertEquals(List.of("P001"), ids(loaded, newPrice.or(PropertyCriteria.status(PropertyStatus.UNDER_MAINTENANCE))));
+    }
+
+
+    @Test
+    void deletedPropertyLeavesEveryIndex() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        Criteria<Property> commercial = PropertyCriteria.type("COMMERCIAL");
+        assertTrue(ids(loaded, commercial).contains("P004"));
+
+        loaded.properties.delete("P004");
+
+        assertFalse(ids(loaded, commercial).contains("P004"));
+        assertFalse(ids(loaded, PropertyCriteria.priceBetween(2500, 2500)).contains("P004"));
+        assertFalse(ids(loaded, PropertyCriteria.ownerId("O004")).contains("P004"));
+        assertFalse(ids(loaded, PropertyCriteria.hostId("H004")).contains("P004"));
+    }
+
+
+    /**
+     * Runs a query, checking it against a scan of every property.
+     * @param loaded The loaded system
+     * @param criteria The criteria to run
+     * @return The IDs of the matching properties, sorted
+     */
+    private static List<String> ids(TestWorkspace.Loaded loaded, Criteria<Property> criteria) {
+        List<String> ids = loaded.properties.query(criteria).stream().map(Property::getPropertyId).sorted().collect(Collectors.toList());
+        List<String> scanned = loaded.properties.getAll().stream().filter(criteria).map(Property::getPropertyId).sorted().collect(Collectors.toList());
+        assertEquals(scanned, ids, criteria.toString());
+        return ids;
+    }
+}
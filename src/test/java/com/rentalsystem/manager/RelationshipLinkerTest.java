@@ -0,0 +1,112 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.RentalAgreement;
+import com.rentalsystem.util.FileHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Lazy linking tasks run under the data write lock, so neither readers nor listeners see an entity half linked.
+ */
+class RelationshipLinkerTest {
+    private final FileHandler fileHandler = new FileHandler();
+    private final TenantManagerImpl tenants = new TenantManagerImpl(fileHandler);
+    private final RentalManagerImpl rentals = new RentalManagerImpl(fileHandler);
+    private final List<Boolean> writeLockedWhenAdded = new CopyOnWriteArrayList<>();
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure("relationships.lazy", "true");
+        TestWorkspace.resetData();
+    }
+
+
+    @BeforeEach
+    void loadLazily() {
+        HostManagerImpl hosts = new HostManagerImpl(fileHandler);
+        OwnerManagerImpl owners = new OwnerManagerImpl(fileHandler);
+        PropertyManagerImpl properties = new PropertyManagerImpl(fileHandler);
+        properties.setDependencies(hosts, tenants, owners, rentals);
+        rentals.setDependencies(tenants, properties, hosts, owners);
+        hosts.setDependencies(properties, owners);
+        owners.setDependencies(properties, hosts);
+        fileHandler.syncManager(rentals, tenants, owners, hosts, properties);
+        ReentrantReadWriteLock lock = (ReentrantReadWriteLock) fileHandler.getDataLock();
+        rentals.addChangeListener(new EntityListener<RentalAgreement>() {
+            @Override
+            public void onAdded(RentalAgreement entity) {
+                writeLockedWhenAdded.add(lock.isWriteLockedByCurrentThread());
+            }
+
+
+            @Override
+            public void onUpdated(RentalAgreement entity) {
+            }
+
+
+            @Override
+            public void onRemoved(RentalAgreement entity) {
+            }
+        });
+        hosts.load();
+        tenants.load();
+        owners.load();
+        properties.load();
+        rentals.load();
+        fileHandler.finishLoad();
+    }
+
+
+    @Test
+    void linkerThreadWaitsForTheWriteLockAndNotifiesUnderIt() throws InterruptedException {
+        assertFalse(fileHandler.getLinker().isLinked());
+        Lock writeLock = fileHandler.getDataLock().writeLock();
+        writeLock.lock();
+        try {
+            fileHandler.getLinker().start();
+            Thread.sleep(200);
+            assertFalse(fileHandler.getLinker().isLinked());
+            assertTrue(writeLockedWhenAdded.isEmpty());
+        } finally {
+            writeLock.unlock();
+        }
+
+        List<RentalAgreement> agreements = rentals.getAll();
+        assertTrue(fileHandler.getLinker().isLinked());
+        assertEquals(agreements.size(), writeLockedWhenAdded.size());
+        assertFalse(writeLockedWhenAdded.contains(false));
+    }
+
+
+    @Test
+    void linkingUnderOnlyTheReadLockIsRefused() {
+        Lock readLock = fileHandler.getDataLock().readLock();
+        readLock.lock();
+        try {
+            assertThrows(IllegalStateException.class, fileHandler.getLinker()::ensureLinked);
+        } finally {
+            readLock.unlock();
+        }
+
+        fileHandler.getLinker().ensureLinked();
+        assertTrue(fileHandler.getLinker().isLinked());
+        assertFalse(writeLockedWhenAdded.isEmpty());
+        assertFalse(writeLockedWhenAdded.contains(false));
+        assertNotNull(rentals.get("RA001").getProperty());
+    }
+}
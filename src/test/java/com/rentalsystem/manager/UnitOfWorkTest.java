@@ -0,0 +1,204 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.manager;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.Host;
+import com.rentalsystem.model.Payment;
+import com.rentalsystem.model.Property;
+import com.rentalsystem.model.Tenant;
+import com.rentalsystem.util.DateUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * A unit of work either lands in every data file it touches or in none of them.
+ */
+class UnitOfWorkTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void committedChangesAreSavedToEveryTouchedFile() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+
+        new UnitOfWork(loaded.fileHandler)
+                .add(loaded.hosts, "H100", host("H100", "h100@email.com"))
+                .add(loaded.tenants, "T100", tenant("T100"))
+                .delete(loaded.hosts, "H100")
+                .commit();
+
+        TestWorkspace.Loaded reloaded = TestWorkspace.load();
+        assertNull(reloaded.hosts.get("H100"));
+        assertNotNull(reloaded.tenants.get("T100"));
+    }
+
+
+    @Test
+    void failedValidationAppliesNothing() throws IOException {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        byte[] hosts = read("hosts.txt");
+
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler)
+                .add(loaded.hosts, "H100", host("H100", "h100@email.com"))
+                .update(loaded.tenants, "T100", tenant("T100"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, unit::commit);
+        assertTrue(e.getMessage().startsWith("Change 2 (update T100)"));
+        assertNull(loaded.hosts.get("H100"));
+        assertArrayEquals(hosts, read("hosts.txt"));
+    }
+
+
+    @Test
+    void failingChangeRollsBackEarlierOnesAndReplacesNoFile() throws IOException {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        byte[] hosts = read("hosts.txt");
+        byte[] tenants = read("tenants.txt");
+        Host existing = loaded.hosts.get("H001");
+
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler)
+                .add(loaded.tenants, "T100", tenant("T100"))
+                .delete(loaded.hosts, "H002")
+                // Passes validation, but the manager rejects the email already used by H001
+                .add(loaded.hosts, "H100", host("H100", existing.getContactInformation()));
+
+        assertThrows(IllegalArgumentException.class, unit::commit);
+        assertNull(loaded.tenants.get("T100"));
+        assertNotNull(loaded.hosts.get("H002"));
+        assertNull(loaded.hosts.get("H100"));
+        assertArrayEquals(hosts, read("hosts.txt"));
+        assertArrayEquals(tenants, read("tenants.txt"));
+
+        TestWorkspace.Loaded reloaded = TestWorkspace.load();
+        assertNull(reloaded.tenants.get("T100"));
+        assertNotNull(reloaded.hosts.get("H002"));
+    }
+
+
+    @Test
+    void fileThatCannotBeReplacedRestoresTheFilesAlreadyReplaced() throws IOException {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        byte[] hosts = read("hosts.txt");
+        byte[] tenants = read("tenants.txt");
+        // A non-empty directory where the hosts backup goes makes its install fail after tenants.txt is installed
+        Path blocked = TestWorkspace.dataDirectory().resolve("hosts.txt.bak");
+        Files.createDirectories(blocked.resolve("blocked"));
+
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler)
+                .add(loaded.tenants, "T100", tenant("T100"))
+                .add(loaded.hosts, "H100", host("H100", "h100@email.com"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, unit::commit);
+        assertTrue(e.getMessage().contains("hosts.txt"));
+        assertNull(loaded.tenants.get("T100"));
+        assertArrayEquals(tenants, read("tenants.txt"));
+        assertArrayEquals(hosts, read("hosts.txt"));
+        try (Stream<Path> files = Files.list(TestWorkspace.dataDirectory())) {
+            assertEquals(List.of(blocked), files.filter(file -> file.toString().endsWith(".tmp") || file.toString().endsWith(".bak"))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+
+    @Test
+    void paymentsAreRefusedInsideAUnitOfWork() throws IOException {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        byte[] payments = read("payments.txt");
+        Tenant tenant = loaded.tenants.get("T001");
+        int recorded = tenant.getPayments().size();
+        Payment payment = new Payment("PAY100", loaded.rentals.get("RA001"), tenant, DateUtil.fromEpochDay(0), 100, "Cash");
+
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler)
+                .add(loaded.hosts, "H100", host("H100", "h100@email.com"))
+                .perform(loaded.tenants, () -> loaded.tenants.addPayment(payment), null);
+
+        assertThrows(IllegalStateException.class, unit::commit);
+        assertNull(loaded.hosts.get("H100"));
+        assertEquals(recorded, tenant.getPayments().size());
+        assertArrayEquals(payments, read("payments.txt"));
+
+        loaded.tenants.addPayment(payment);
+        assertEquals(recorded + 1, tenant.getPayments().size());
+    }
+
+
+    @Test
+    void rolledBackPropertyDeleteKeepsItsHostsAndTenants() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        Property property = loaded.properties.get("P002");
+        assertEquals(Set.of("H002"), hostIds(property));
+        assertTrue(property.getTenants().contains(loaded.tenants.get("T001")));
+
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler)
+                .delete(loaded.properties, "P002")
+                .add(loaded.hosts, "H100", host("H100", loaded.hosts.get("H001").getContactInformation()));
+        assertThrows(IllegalArgumentException.class, unit::commit);
+
+        assertSame(property, loaded.properties.get("P002"));
+        assertEquals(Set.of("H002"), hostIds(property));
+        assertTrue(loaded.hosts.get("H002").getManagedProperties().contains(property));
+        assertTrue(property.getTenants().contains(loaded.tenants.get("T001")));
+
+        // The next save writes the restored links
+        loaded.properties.saveToFile();
+        assertEquals(Set.of("H002"), hostIds(TestWorkspace.load().properties.get("P002")));
+    }
+
+
+    @Test
+    void unitCannotBeCommittedOrChangedTwice() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        UnitOfWork unit = new UnitOfWork(loaded.fileHandler).add(loaded.tenants, "T100", tenant("T100"));
+        unit.commit();
+
+        assertThrows(IllegalStateException.class, unit::commit);
+        assertThrows(IllegalStateException.class, () -> unit.delete(loaded.tenants, "T100"));
+        assertNotNull(loaded.tenants.get("T100"));
+    }
+
+
+    private static Host host(String id, String email) {
+        return new Host(id, "Test Host", DateUtil.fromEpochDay(0), email);
+    }
+
+
+    private static Set<String> hostIds(Property property) {
+        return property.getHosts().stream().map(Host::getId).collect(Collectors.toSet());
+    }
+
+
+    private static Tenant tenant(String id) {
+        return new Tenant(id, "Test Tenant", DateUtil.fromEpochDay(0), id.toLowerCase() + "@email.com");
+    }
+
+
+    private static byte[] read(String filename) throws IOException {
+        Path file = TestWorkspace.dataDirectory().resolve(filename);
+        return Files.readAllBytes(file);
+    }
+}
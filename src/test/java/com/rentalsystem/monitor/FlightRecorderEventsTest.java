@@ -0,0 +1,161 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.monitor;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.report.Report;
+import com.rentalsystem.report.ReportExporter;
+import com.rentalsystem.util.FileHandler;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * The Flight Recorder events are registered under the rental system's names and carry the file, rows and bytes
+ * of data file I/O, the change made by a mutation, and the rows of a report. A change that is rejected
+ * records nothing.
+ */
+class FlightRecorderEventsTest {
+    private static final List<Class<? extends Event>> EVENTS =
+            Arrays.asList(DataFileEvent.class, LoadStageEvent.class, MutationEvent.class, ReportEvent.class);
+
+    @TempDir
+    Path directory;
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void eventsAreRegisteredUnderTheSystemsNamesAndCategory() {
+        assertEquals("com.rentalsystem.DataFile", EventType.getEventType(DataFileEvent.class).getName());
+        assertEquals("com.rentalsystem.LoadStage", EventType.getEventType(LoadStageEvent.class).getName());
+        assertEquals("com.rentalsystem.Mutation", EventType.getEventType(MutationEvent.class).getName());
+        assertEquals("com.rentalsystem.Report", EventType.getEventType(ReportEvent.class).getName());
+        for (Class<? extends Event> event : EVENTS) {
+            assertEquals("Rental System", EventType.getEventType(event).getCategoryNames().get(0), event.getSimpleName());
+        }
+    }
+
+
+    @Test
+    void dataFileReadsAndWritesRecordTheirRowsAndBytes() throws IOException {
+        FileHandler fileHandler = new FileHandler();
+        List<RecordedEvent> events = record(() -> {
+            List<String[]> hosts = fileHandler.readLines("hosts.txt");
+            hosts.get(0)[1] = "Renamed Host";
+            fileHandler.writeLines("hosts.txt", hosts);
+        });
+
+        List<RecordedEvent> io = ofType(events, "com.rentalsystem.DataFile");
+        assertEquals(Arrays.asList("read", "write"), io.stream().map(e -> e.getString("operation")).collect(Collectors.toList()));
+        long size = Files.size(TestWorkspace.dataDirectory().resolve("hosts.txt"));
+        for (RecordedEvent event : io) {
+            assertEquals("hosts.txt", event.getString("file"));
+            assertEquals("CSV", event.getString("format"));
+            assertEquals(1, event.getInt("shards"));
+            assertEquals(fileHandler.readLines("hosts.txt").size(), event.getLong("rows"));
+            assertTrue(event.getLong("bytes") > 0);
+        }
+        assertEquals(size, io.get(1).getLong("bytes"));
+    }
+
+
+    @Test
+    void onlyCompletedMutationsAreRecorded() throws IOException {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        List<RecordedEvent> events = record(() -> {
+            loaded.rentals.extendRentalAgreement("RA001", 7);
+            assertThrows(IllegalArgumentException.class, () -> loaded.rentals.extendRentalAgreement("RA999", 7));
+            loaded.rentals.delete("RA002");
+        });
+
+        List<RecordedEvent> mutations = ofType(events, "com.rentalsystem.Mutation");
+        assertEquals(Arrays.asList("RentalAgreement extend RA001", "RentalAgreement delete RA002"), mutations.stream()
+                .map(e -> e.getString("entity") + " " + e.getString("operation") + " " + e.getString("id"))
+                .collect(Collectors.toList()));
+        // Each change spans the save it triggers
+        RecordedEvent extend = mutations.get(0);
+        assertTrue(ofType(events, "com.rentalsystem.DataFile").stream().anyMatch(write ->
+                !write.getStartTime().isBefore(extend.getStartTime()) && !write.getEndTime().isAfter(extend.getEndTime())));
+    }
+
+
+    @Test
+    void reportsRecordTheirRowsAndDestination() throws IOException {
+        Report report = new Report("Numbers", Arrays.asList("N"), () -> Stream.of("1", "2", "3").map(Arrays::asList));
+        List<RecordedEvent> events = record(() -> {
+            report.toTable();
+            new ReportExporter().export(report, new StringWriter(), ReportExporter.Format.JSON);
+            LoadStageEvent stage = new LoadStageEvent("Loading hosts");
+            stage.begin();
+            stage.commit();
+        });
+
+        assertEquals(Arrays.asList("Numbers table 3", "Numbers json 3"), ofType(events, "com.rentalsystem.Report").stream()
+                .map(e -> e.getString("title") + " " + e.getString("destination") + " " + e.getLong("rows"))
+                .collect(Collectors.toList()));
+        assertEquals("Loading hosts", ofType(events, "com.rentalsystem.LoadStage").get(0).getString("stage"));
+    }
+
+
+    /**
+     * Runs an action under a recording of every rental system event, with no duration threshold.
+     * @param action The action to record
+     * @return The events recorded, in the order they ended
+     */
+    private List<RecordedEvent> record(Action action) throws IOException {
+        Path file = directory.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (Class<? extends Event> event : EVENTS) {
+                recording.enable(event).withoutThreshold().withoutStackTrace();
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        events.sort((a, b) -> a.getEndTime().compareTo(b.getEndTime()));
+        return events;
+    }
+
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+
+    private interface Action {
+        void run() throws IOException;
+    }
+}
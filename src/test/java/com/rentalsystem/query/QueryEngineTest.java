@@ -0,0 +1,158 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.query;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * The planner answers criteria from the cheapest usable index and always returns what a scan would.
+ */
+class QueryEngineTest {
+    private final Map<String, Item> items = new LinkedHashMap<>();
+    private final QueryEngine<Item> engine = new QueryEngine<>(items::values);
+
+
+    @BeforeEach
+    void indexItems() {
+        engine.addIndex("color", new HashIndex<>(item -> item.color));
+        engine.addIndex("price", new RangeIndex<>(item -> item.price));
+        put(new Item("A", "red", 10));
+        put(new Item("B", "red", 20));
+        put(new Item("C", "blue", 30));
+        put(new Item("D", "green", 40));
+        put(new Item("E", "blue", 50));
+    }
+
+
+    @Test
+    void andMatchesOnlyEntitiesSatisfyingEveryCriterion() {
+        assertEquals(List.of("B"), execute(color("red").and(price(15, 100))));
+        assertEquals(List.of("C"), execute(color("blue").and(price(0, 45)).and(Criteria.matching(item -> !item.id.equals("E")))));
+        assertEquals(List.of(), execute(color("green").and(color("red"))));
+    }
+
+
+    @Test
+    void orMatchesEitherCriterionWithoutDuplicates() {
+        assertEquals(List.of("A", "B", "C"), execute(color("red").or(price(15, 35))));
+        assertEquals(List.of("A", "B", "D"), execute(color("red").or(color("green")).or(color("yellow"))));
+        assertEquals(List.of("B", "D"), execute(color("red").and(price(15, 25)).or(color("green").and(price(0, 100)))));
+    }
+
+
+    @Test
+    void andIsAnsweredFromItsMostSelectiveIndex() {
+        assertTrue(engine.explain(color("green").and(price(0, 100))).startsWith("INDEX color = green (~1 candidates)"));
+        assertTrue(engine.explain(color("red").and(price(35, 45))).startsWith("INDEX price in [35.0, 45.0] (~1 candidates)"));
+        assertTrue(engine.explain(Criteria.<Item>matching(item -> true).and(color("blue"))).startsWith("INDEX color = blue (~2 candidates)"));
+        assertTrue(engine.explain(Criteria.matching(item -> true)).startsWith("SCAN"));
+        // No index for the field, or no index supporting the kind of criterion
+        assertTrue(engine.explain(Criteria.equalTo("size", 1, item -> true)).startsWith("SCAN"));
+        assertTrue(engine.explain(Criteria.between("color", 0, 1, item -> true)).startsWith("SCAN"));
+    }
+
+
+    @Test
+    void orUsesIndexesOnlyWhenEveryBranchIsIndexed() {
+        assertEquals("INDEX color = red UNION INDEX color = green (~3 candidates) FILTER (color = red OR color = green)",
+                engine.explain(color("red").or(color("green"))));
+        Criteria<Item> partlyIndexed = color("red").or(Criteria.matching(item -> item.price > 45));
+        assertTrue(engine.explain(partlyIndexed).startsWith("SCAN"));
+        assertEquals(List.of("A", "B", "E"), execute(partlyIndexed));
+    }
+
+
+    @Test
+    void indexesFollowKeysChangedInPlaceReplacementsAndDeletes() {
+        Item b = items.get("B");
+        b.color = "blue";
+        b.price = 60;
+        engine.index(b);
+        assertEquals(List.of("A"), execute(color("red")));
+        assertEquals(List.of("B", "C", "E"), execute(color("blue")));
+        assertEquals(List.of(), execute(price(15, 25)));
+        assertEquals(List.of("B"), execute(price(55, 65)));
+
+        Item replacement = new Item("C", "green", 30);
+        put(replacement);
+        assertEquals(List.of("B", "E"), execute(color("blue")));
+        List<Item> green = engine.execute(color("green"));
+        assertTrue(green.stream().anyMatch(item -> item == replacement));
+        assertEquals(2, green.size());
+
+        engine.unindex(items.remove("E"));
+        assertEquals(List.of("B"), execute(color("blue")));
+        assertEquals(List.of(), execute(price(45, 55)));
+        assertEquals("INDEX price in [0.0, 100.0] (~4 candidates) FILTER price in [0.0, 100.0]", engine.explain(price(0, 100)));
+    }
+
+
+    private void put(Item item) {
+        items.put(item.id, item);
+        engine.index(item);
+    }
+
+
+    /**
+     * Executes criteria, checking the result against a scan of every item.
+     * @param criteria The criteria to execute
+     * @return The IDs of the matching items, sorted
+     */
+    private List<String> execute(Criteria<Item> criteria) {
+        List<String> ids = engine.execute(criteria).stream().map(item -> item.id).sorted().collect(Collectors.toList());
+        List<String> scanned = items.values().stream().filter(criteria).map(item -> item.id).sorted().collect(Collectors.toList());
+        assertEquals(scanned, ids, criteria.toString());
+        return ids;
+    }
+
+
+    private static Criteria<Item> color(String color) {
+        return Criteria.equalTo("color", color, item -> color.equals(item.color));
+    }
+
+
+    private static Criteria<Item> price(double min, double max) {
+        return Criteria.between("price", min, max, item -> item.price >= min && item.price <= max);
+    }
+
+
+    /**
+     * An entity equal to any other with its ID, as the model classes are.
+     */
+    private static final class Item {
+        private final String id;
+        private String color;
+        private double price;
+
+
+        private Item(String id, String color, double price) {
+            this.id = id;
+            this.color = color;
+            this.price = price;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && ((Item) o).id.equals(id);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id);
+        }
+    }
+}
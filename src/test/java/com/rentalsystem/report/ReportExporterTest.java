@@ -0,0 +1,173 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.rentalsystem.util.ProgressCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Exports stream a report's rows to CSV or JSON as they are generated, close the rows stream, and leave a
+ * caller's writer open.
+ */
+class ReportExporterTest {
+    private static final Report PEOPLE = new Report("People", Arrays.asList("ID", "Name"),
+            () -> Stream.of(Arrays.asList("T1", "Adams, \"Pete\""), Arrays.asList("T2", "Quinn")));
+
+
+    @Test
+    void csvQuotesEveryCellUnderAHeaderLine() throws IOException {
+        StringWriter out = new StringWriter();
+
+        assertEquals(2, new ReportExporter().export(PEOPLE, out, ReportExporter.Format.CSV));
+
+        assertEquals("\"ID\",\"Name\"\n\"T1\",\"Adams, \"\"Pete\"\"\"\n\"T2\",\"Quinn\"\n", out.toString());
+    }
+
+
+    @Test
+    void jsonKeysEachRowByTheHeaders() throws IOException {
+        Report shortRow = new Report("Short", Arrays.asList("ID", "Name"), () -> Stream.of(Arrays.asList("T3")));
+        StringWriter out = new StringWriter();
+        new ReportExporter().export(PEOPLE, out, ReportExporter.Format.JSON);
+
+        JsonArray rows = JsonParser.parseString(out.toString()).getAsJsonArray();
+        assertEquals(2, rows.size());
+        assertEquals("Adams, \"Pete\"", rows.get(0).getAsJsonObject().get("Name").getAsString());
+        assertEquals("T2", rows.get(1).getAsJsonObject().get("ID").getAsString());
+
+        StringWriter shortOut = new StringWriter();
+        new ReportExporter().export(shortRow, shortOut, ReportExporter.Format.JSON);
+        JsonObject row = JsonParser.parseString(shortOut.toString()).getAsJsonArray().get(0).getAsJsonObject();
+        assertTrue(row.get("Name").isJsonNull());
+    }
+
+
+    @Test
+    void rowsAreGeneratedAsTheyAreWrittenAndCounted() throws IOException {
+        AtomicInteger generated = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        Report report = new Report("Numbers", Arrays.asList("N"), () -> IntStream.range(0, 1000)
+                .mapToObj(i -> {
+                    generated.incrementAndGet();
+                    return Arrays.asList(String.valueOf(i));
+                })
+                .onClose(() -> closed.set(true)));
+        ProgressCounter progress = new ProgressCounter();
+        AtomicInteger generatedAtFirstWrite = new AtomicInteger(-1);
+        Writer out = new StringWriter() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                generatedAtFirstWrite.compareAndSet(-1, generated.get());
+                super.write(buffer, offset, length);
+            }
+
+
+            @Override
+            public void write(String text, int offset, int length) {
+                generatedAtFirstWrite.compareAndSet(-1, generated.get());
+                super.write(text, offset, length);
+            }
+        };
+
+        assertEquals(1000, new ReportExporter(progress).export(report, out, ReportExporter.Format.JSON));
+
+        assertEquals(1000, generated.get());
+        assertTrue(generatedAtFirstWrite.get() < 1000, "rows reach the writer before the last one is generated");
+        assertEquals(1000, progress.getRows());
+        assertTrue(closed.get());
+    }
+
+
+    @Test
+    void writeFailureIsReportedAndClosesTheRows() {
+        for (ReportExporter.Format format : ReportExporter.Format.values()) {
+            AtomicBoolean closed = new AtomicBoolean();
+            Report report = new Report("Failing", Arrays.asList("N"),
+                    () -> IntStream.range(0, 100_000).mapToObj(i -> Arrays.asList(String.valueOf(i))).onClose(() -> closed.set(true)));
+            Writer failing = new Writer() {
+                @Override
+                public void write(char[] buffer, int offset, int length) throws IOException {
+                    throw new IOException("disk full");
+                }
+
+
+                @Override
+                public void flush() {
+                }
+
+
+                @Override
+                public void close() {
+                }
+            };
+
+            assertThrows(IOException.class, () -> new ReportExporter().export(report, failing, format), format.name());
+            assertTrue(closed.get(), format.name());
+        }
+    }
+
+
+    @Test
+    void callersWriterIsFlushedButLeftOpen() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        StringWriter out = new StringWriter() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        new ReportExporter().export(PEOPLE, out, ReportExporter.Format.JSON);
+        out.write("\n");
+
+        assertFalse(closed.get());
+        assertTrue(out.toString().endsWith("]\n"));
+    }
+
+
+    @Test
+    void fileExportCreatesItsDirectoryAndReplacesTheFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("exports/people.csv");
+        Files.createDirectories(file.getParent());
+        Files.write(file, "stale contents that are longer than the report\n".repeat(10).getBytes(StandardCharsets.UTF_8));
+
+        new ReportExporter().export(PEOPLE, file, ReportExporter.Format.fromFileName(file.toString()));
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("\"T2\",\"Quinn\"", lines.get(2));
+        Path nested = directory.resolve("new/deeper/people.json");
+        new ReportExporter().export(PEOPLE, nested, ReportExporter.Format.JSON);
+        assertTrue(Files.exists(nested));
+    }
+
+
+    @Test
+    void formatIsPickedByExtension() {
+        assertEquals(ReportExporter.Format.CSV, ReportExporter.Format.fromFileName("report.CSV"));
+        assertEquals(ReportExporter.Format.JSON, ReportExporter.Format.fromFileName("out/report.json"));
+        assertNull(ReportExporter.Format.fromFileName("report.txt"));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.report;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.manager.ArrearsEngine;
+import com.rentalsystem.model.Host;
+import com.rentalsystem.model.Property;
+import com.rentalsystem.model.PropertyStatus;
+import com.rentalsystem.util.DateUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Reports join the rows of a snapshot by ID, follow edits made between runs, and read payments and
+ * arrears from live state.
+ */
+class ReportsTest {
+    private TestWorkspace.Loaded loaded;
+    private Reports reports;
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void load() {
+        TestWorkspace.resetData();
+        loaded = TestWorkspace.load(system -> reports = new Reports(system.rentals, system.tenants, system.owners,
+                new ArrearsEngine(system.rentals, system.tenants), system.fileHandler));
+    }
+
+
+    @Test
+    void propertyStatusJoinsOwnerAndHostNames() {
+        Report report = reports.propertyStatus();
+
+        assertEquals(report.getHeaders().size(), row(report, "P001").size());
+        assertEquals(Arrays.asList("P001", "Residential", "123 Main St", "AVAILABLE", "O001 - Alice Cooper",
+                "H002 - Emma Johnson, H001 - John Smith"), row(report, "P001"));
+        assertEquals(Arrays.asList("P002", "Commercial", "456 Business Ave", "RENTED", "O002 - Bob Dylan",
+                "H002 - Emma Johnson"), row(report, "P002"));
+    }
+
+
+    @Test
+    void rowsFollowEditsMadeBetweenRuns() {
+        Report report = reports.propertyStatus();
+        assertEquals("AVAILABLE", row(report, "P001").get(3));
+
+        Property property = loaded.properties.get("P001");
+        property.setStatus(PropertyStatus.UNDER_MAINTENANCE);
+        loaded.properties.update(property);
+        Host host = loaded.hosts.get("H001");
+        host.setFullName("Johnny Smith");
+        loaded.hosts.update(host);
+
+        assertEquals("UNDER_MAINTENANCE", row(report, "P001").get(3));
+        assertEquals("H002 - Emma Johnson, H001 - Johnny Smith", row(report, "P001").get(5));
+        assertEquals("RENTED", row(reports.occupancy(), "P002").get(2));
+        assertEquals("UNDER_MAINTENANCE", row(reports.occupancy(), "P001").get(2));
+    }
+
+
+    @Test
+    void incomeAndHostPerformanceReadTheSnapshot() {
+        Report income = reports.income();
+        assertEquals(loaded.rentals.getAll().size(), income.toTable().size());
+        assertEquals(Arrays.asList("RA001", "P002", "T001 - Peter Adams", "3000.00"), row(income, "RA001"));
+
+        List<String> host = row(reports.hostPerformance(), "H002");
+        assertEquals("Emma Johnson", host.get(1));
+        assertEquals("2", host.get(2));
+        assertEquals(reports.hostPerformance().getHeaders().size(), host.size());
+    }
+
+
+    @Test
+    void paymentHistoryOverARangeReadsOnlyItsDates() {
+        assertEquals(Arrays.asList("PMT003", "PMT011"), ids(reports.paymentHistory(loaded.tenants.get("T004"))));
+
+        Report range = reports.paymentHistory(loaded.tenants.get("T004"),
+                DateUtil.fromEpochDay(LocalDate.of(2024, 4, 15).toEpochDay()),
+                DateUtil.fromEpochDay(LocalDate.of(2024, 5, 31).toEpochDay()));
+        assertEquals(Arrays.asList(Arrays.asList("PMT011", "T004", "2024-05-01", "1800.00", "Cash", "RA003")), range.toTable());
+    }
+
+
+    @Test
+    void arrearsReportsNameEachTenantAndOwner() {
+        assertEquals(Arrays.asList("T004 - Samuel Davis", "10800.00", "3600.00", "7200.00"),
+                row(reports.tenantArrears(), "T004 - Samuel Davis"));
+        List<List<String>> owners = reports.ownerArrears().toTable();
+        assertFalse(owners.isEmpty());
+        for (int i = 1; i < owners.size(); i++) {
+            assertTrue(Double.parseDouble(owners.get(i - 1).get(3)) >= Double.parseDouble(owners.get(i).get(3)), "largest arrears first");
+        }
+    }
+
+
+    private static List<String> row(Report report, String firstCell) {
+        return report.toTable().stream().filter(row -> row.get(0).equals(firstCell)).findFirst()
+                .orElseThrow(() -> new AssertionError(firstCell + " not in " + report.getTitle()));
+    }
+
+
+    private static List<String> ids(Report report) {
+        return report.toTable().stream().map(row -> row.get(0)).sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.ui;
+
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * The viewport builds only the rows that scroll into view, keeps a few pages of them, and falls back to
+ * printing the whole table when it fits on the screen or the terminal cannot address the cursor.
+ */
+class TableViewportTest {
+    private static final List<String> HEADERS = Arrays.asList("ID", "Name");
+
+    // Number of times each row was built
+    private final TreeMap<Integer, Integer> built = new TreeMap<>();
+    private final ByteArrayOutputStream screen = new ByteArrayOutputStream();
+    private Terminal terminal;
+
+
+    @AfterEach
+    void closeTerminal() throws IOException {
+        if (terminal != null) {
+            terminal.close();
+        }
+    }
+
+
+    @Test
+    void tableThatFitsIsPrintedInFull() throws IOException {
+        String printed = printed(() -> show("xterm", 40, "", 20));
+
+        assertEquals(20, built.size());
+        assertTrue(printed.contains("Row 19"), printed);
+    }
+
+
+    @Test
+    void dumbTerminalPrintsEvenALargeTableInFull() throws IOException {
+        printed(() -> show(Terminal.TYPE_DUMB, 16, "", 500));
+
+        assertEquals(500, built.size());
+    }
+
+
+    @Test
+    void onlyTheRowsInViewAreBuilt() throws IOException {
+        // Sixteen lines leave ten for rows
+        show("xterm", 16, "q", 100_000);
+
+        assertEquals(10, built.size());
+        assertEquals(0, (int) built.firstKey());
+        assertTrue(text().contains("Rows 1-10 of 100000"), text());
+    }
+
+
+    @Test
+    void scrollingBuildsEachPageItReachesAndStopsAtTheEnds() throws IOException {
+        // Two pages down, one row down, to the end, one row down at the end, one page up
+        show("xterm", 16, "  jGjbq", 1000);
+
+        Set<Integer> expected = new TreeSet<>();
+        for (int page : new int[]{0, 1, 2, 3, 98, 99}) {
+            for (int i = page * 10; i < page * 10 + 10; i++) {
+                expected.add(i);
+            }
+        }
+        assertEquals(expected, built.keySet());
+        assertTrue(built.values().stream().allMatch(count -> count == 1));
+    }
+
+
+    @Test
+    void pagesScrolledFarOutOfViewAreRebuiltWhenReturnedTo() throws IOException {
+        // Six pages down evicts the first, so going home builds it again; one page down from there does not
+        show("xterm", 16, "      gkq", 1000);
+
+        assertEquals(2, (int) built.get(0));
+        assertEquals(1, (int) built.get(55));
+    }
+
+
+    @Test
+    void longCellsAreCutToTheMaximumWidth() throws IOException {
+        String longName = "x".repeat(60);
+        terminal = terminal("xterm", 16, "q");
+        new TableViewport(terminal, new TableFormatter(terminal)).show("People", HEADERS,
+                TableViewport.rows(Arrays.asList(new String[50]), cells -> Arrays.asList("T1", longName)));
+
+        String text = text();
+        assertTrue(text.contains("x".repeat(37) + "..."), text);
+        assertFalse(text.contains("x".repeat(38)));
+    }
+
+
+    /**
+     * Shows a table of numbered rows, counting the rows built.
+     * @param type The terminal type
+     * @param rows The terminal height in lines
+     * @param keys The keys pressed
+     * @param count The number of rows in the table
+     */
+    private void show(String type, int rows, String keys, int count) throws IOException {
+        terminal = terminal(type, rows, keys);
+        new TableViewport(terminal, new TableFormatter(terminal)).show("Numbers", HEADERS, new TableViewport.RowSource() {
+            @Override
+            public int size() {
+                return count;
+            }
+
+
+            @Override
+            public List<String> row(int index) {
+                built.merge(index, 1, Integer::sum);
+                return Arrays.asList(String.valueOf(index), "Row " + index);
+            }
+        });
+    }
+
+
+    private Terminal terminal(String type, int rows, String keys) throws IOException {
+        return TerminalBuilder.builder()
+                .system(false)
+                .type(type)
+                .size(new Size(80, rows))
+                .encoding(StandardCharsets.UTF_8)
+                .streams(new ByteArrayInputStream(keys.getBytes(StandardCharsets.UTF_8)), screen)
+                .build();
+    }
+
+
+    /**
+     * Gets what was sent to the terminal without its escape sequences. Only the first frame is drawn in full;
+     * later frames rewrite just the characters that changed.
+     * @return The text sent to the terminal
+     */
+    private String text() {
+        terminal.flush();
+        return screen.toString(StandardCharsets.UTF_8).replaceAll("\033(\\[[0-9;?]*[A-Za-z]|[()][0-9A-B])", "");
+    }
+
+
+    /**
+     * Runs an action, capturing what it prints to standard output, where full tables are printed.
+     * @param action The action to run
+     * @return The captured output
+     */
+    private static String printed(Action action) throws IOException {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(original);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+
+    private interface Action {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class ArchiveStoreTest {
+    @TempDir
+    Path directory;
+
+
+    @Test
+    void segmentsRoundTripAndAreNumberedInOrder() throws IOException {
+        ArchiveStore store = new ArchiveStore(directory.resolve("archive").toFile());
+        assertEquals(0, store.getSegmentCount());
+        assertNull(store.findAgreement("RA1"));
+
+        assertEquals(1, store.append(rows(agreement("RA1"), agreement("RA2")), rows(payment("PAY1", "RA1"))));
+        assertEquals(2, store.append(rows(agreement("RA3")), rows(payment("PAY2", "RA3"), payment("PAY3", "RA1"))));
+
+        ArchiveStore reopened = new ArchiveStore(directory.resolve("archive").toFile());
+        assertEquals(2, reopened.getSegmentCount());
+        assertArrayEquals(agreement("RA2"), reopened.findAgreement("RA2"));
+        assertTrue(reopened.containsAgreement("RA3"));
+        assertFalse(reopened.containsAgreement("RA4"));
+        assertEquals(List.of("RA1", "RA2", "RA3"), firstColumns(reopened, true));
+        assertEquals(List.of("PAY1", "PAY2", "PAY3"), firstColumns(reopened, false));
+    }
+
+
+    @Test
+    void paymentsOfAnAgreementAreFoundInItsSegmentAndLaterOnes() throws IOException {
+        ArchiveStore store = new ArchiveStore(directory.toFile());
+        store.append(rows(agreement("RA1")), rows(payment("PAY1", "RA1")));
+        store.append(rows(agreement("RA2")), rows(payment("PAY2", "RA2"), payment("PAY3", "RA1")));
+
+        List<String> ids = new ArrayList<>();
+        store.findPayments("RA1").forEach(row -> ids.add(row[0]));
+        assertEquals(List.of("PAY1", "PAY3"), ids);
+        assertTrue(store.findPayments("RA9").isEmpty());
+    }
+
+
+    @Test
+    void indexBuiltBeforeAnAppendSeesTheNewSegment() throws IOException {
+        ArchiveStore store = new ArchiveStore(directory.toFile());
+        store.append(rows(agreement("RA1")), rows());
+        assertTrue(store.containsAgreement("RA1"));
+
+        store.append(rows(agreement("RA2")), rows());
+
+        assertTrue(store.containsAgreement("RA2"));
+        assertArrayEquals(agreement("RA2"), store.findAgreement("RA2"));
+    }
+
+
+    @Test
+    void segmentWithoutItsAgreementsFileIsNotVisible() throws IOException {
+        ArchiveStore store = new ArchiveStore(directory.toFile());
+        store.append(rows(agreement("RA1")), rows(payment("PAY1", "RA1")));
+        // A crash after the payments file of the next segment was installed, before its agreements file
+        Files.write(directory.resolve("payments-000002.csv.gz"), new byte[0]);
+
+        ArchiveStore reopened = new ArchiveStore(directory.toFile());
+        assertEquals(1, reopened.getSegmentCount());
+        assertEquals(2, reopened.append(rows(agreement("RA2")), rows(payment("PAY2", "RA2"))));
+        assertEquals(List.of("PAY1", "PAY2"), firstColumns(reopened, false));
+    }
+
+
+    private static List<String> firstColumns(ArchiveStore store, boolean agreements) {
+        List<String> ids = new ArrayList<>();
+        if (agreements) {
+            store.forEachAgreement(row -> ids.add(row[0]));
+        } else {
+            store.forEachPayment(row -> ids.add(row[0]));
+        }
+        return ids;
+    }
+
+
+    private static List<String[]> rows(String[]... rows) {
+        return Arrays.asList(rows);
+    }
+
+
+    private static String[] agreement(String id) {
+        return new String[]{id, "P1", "T1", "O1", "H1", "2020-01-01", "2020-12-31", "1000.0", "MONTHLY", "COMPLETED"};
+    }
+
+
+    private static String[] payment(String id, String agreementId) {
+        return new String[]{id, agreementId, "T1", "2020-02-01", "1000.00", "Cash"};
+    }
+}
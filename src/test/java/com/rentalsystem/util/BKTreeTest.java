@@ -0,0 +1,124 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class BKTreeTest {
+
+    @Test
+    void distanceCountsInsertionsDeletionsAndSubstitutions() {
+        assertEquals(0, BKTree.distance("smith", "smith", 5));
+        assertEquals(1, BKTree.distance("smith", "smyth", 5));
+        assertEquals(1, BKTree.distance("smith", "smit", 5));
+        assertEquals(1, BKTree.distance("smith", "smiths", 5));
+        assertEquals(3, BKTree.distance("kitten", "sitting", 5));
+        assertEquals(5, BKTree.distance("", "smith", 5));
+    }
+
+
+    @Test
+    void distanceStopsPastTheBound() {
+        assertEquals(2, BKTree.distance("kitten", "sitting", 1));
+        assertEquals(2, BKTree.distance("a", "abcdef", 1));
+        assertEquals(3, BKTree.distance("kitten", "sitting", 3));
+    }
+
+
+    @Test
+    void searchFindsExactlyTheTermsALinearScanFinds() {
+        SplittableRandom random = new SplittableRandom(7);
+        List<String> terms = new ArrayList<>();
+        BKTree<String> tree = new BKTree<>();
+        for (int i = 0; i < 3000; i++) {
+            String term = randomWord(random);
+            terms.add(term);
+            tree.add(term, "V" + i);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            String query = randomWord(random);
+            for (int maxDistance = 0; maxDistance <= 2; maxDistance++) {
+                TreeSet<String> expected = new TreeSet<>();
+                for (String term : terms) {
+                    if (BKTree.distance(query, term, Integer.MAX_VALUE) <= maxDistance) {
+                        expected.add(term);
+                    }
+                }
+                TreeSet<String> found = new TreeSet<>();
+                int previousDistance = 0;
+                for (BKTree.Match<String> match : tree.search(query, maxDistance)) {
+                    found.add(match.getTerm());
+                    assertEquals(BKTree.distance(query, match.getTerm(), Integer.MAX_VALUE), match.getDistance());
+                    assertTrue(match.getDistance() >= previousDistance, "matches are sorted by distance");
+                    previousDistance = match.getDistance();
+                }
+                assertEquals(expected, found, query + " within " + maxDistance);
+            }
+        }
+    }
+
+
+    @Test
+    void valuesOfATermAreReturnedTogether() {
+        BKTree<String> tree = new BKTree<>();
+        tree.add("smith", "H001");
+        tree.add("smith", "T004");
+        tree.add("smyth", "O002");
+
+        List<BKTree.Match<String>> matches = tree.search("smith", 0);
+
+        assertEquals(1, matches.size());
+        assertEquals(List.of("H001", "T004"), matches.get(0).getValues());
+        assertEquals(2, tree.termCount());
+    }
+
+
+    @Test
+    void removedTermsStopMatchingButKeepTheirSubtreeReachable() {
+        BKTree<String> tree = new BKTree<>();
+        tree.add("smith", "1");
+        tree.add("smyth", "2");
+        tree.add("smithe", "3");
+
+        assertTrue(tree.remove("smith", "1"));
+        assertFalse(tree.remove("smith", "1"));
+        assertFalse(tree.remove("jones", "1"));
+
+        List<String> terms = new ArrayList<>();
+        tree.search("smith", 1).forEach(match -> terms.add(match.getTerm()));
+        assertEquals(List.of("smyth", "smithe"), terms);
+        assertEquals(3, tree.termCount());
+
+        tree.add("smith", "4");
+        assertEquals(List.of("4"), tree.search("smith", 0).get(0).getValues());
+    }
+
+
+    @Test
+    void emptyTreeFindsNothing() {
+        BKTree<String> tree = new BKTree<>();
+
+        assertTrue(tree.search("smith", 2).isEmpty());
+        assertFalse(tree.remove("smith", "1"));
+    }
+
+
+    private static String randomWord(SplittableRandom random) {
+        char[] chars = new char[3 + random.nextInt(5)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(6));
+        }
+        return new String(chars);
+    }
+}
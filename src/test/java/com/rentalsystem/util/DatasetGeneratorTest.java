@@ -0,0 +1,214 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Generated datasets have the requested sizes, are the same for the same seed and as-of date, keep the
+ * leases of a property apart with statuses that match the as-of date, and pass the IntegrityVerifier.
+ */
+class DatasetGeneratorTest {
+    private static final LocalDate AS_OF = LocalDate.of(2025, 1, 1);
+
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void clearData() {
+        TestWorkspace.deleteRecursively(TestWorkspace.dataDirectory());
+    }
+
+
+    @Test
+    void filesHaveTheRequestedSizesAndPassTheIntegrityCheck() throws IOException {
+        long rows = generate(options("seed", "7"), new FileHandler());
+
+        FileHandler fileHandler = new FileHandler();
+        assertEquals(10, fileHandler.readLines("hosts.txt").size());
+        assertEquals(20, fileHandler.readLines("owners.txt").size());
+        assertEquals(300, fileHandler.readLines("tenants.txt").size());
+        assertEquals(50, fileHandler.readLines("properties.txt").size());
+        assertEquals(400, fileHandler.readLines("rental_agreements.txt").size());
+        int payments = fileHandler.readLines("payments.txt").size();
+        assertTrue(payments > 400);
+        assertEquals(10 + 20 + 300 + 50 + 400 + payments, rows);
+
+        IntegrityReport report = new IntegrityVerifier(new FileHandler()).verify(false);
+        assertTrue(report.isClean(), report.summary(10));
+        assertEquals(400, TestWorkspace.load().rentals.getAll().size());
+    }
+
+
+    @Test
+    void sameSeedAndDateGiveTheSameFiles() throws IOException {
+        generate(options("seed", "7"), new FileHandler());
+        Map<String, byte[]> first = contents();
+
+        generate(options("seed", "7"), new FileHandler());
+        Map<String, byte[]> second = contents();
+        generate(options("seed", "8"), new FileHandler());
+        Map<String, byte[]> other = contents();
+
+        for (String filename : FileHandler.DATA_FILES) {
+            assertArrayEquals(first.get(filename), second.get(filename), filename);
+        }
+        assertFalse(Arrays.equals(first.get("rental_agreements.txt"), other.get("rental_agreements.txt")));
+    }
+
+
+    @Test
+    void leasesNeverOverlapAndStatusesFollowTheAsOfDate() throws IOException {
+        generate(options(), new FileHandler());
+        FileHandler fileHandler = new FileHandler();
+
+        Map<String, List<String[]>> leasesByProperty = new HashMap<>();
+        for (String[] agreement : fileHandler.readLines("rental_agreements.txt")) {
+            leasesByProperty.computeIfAbsent(agreement[1], id -> new ArrayList<>()).add(agreement);
+            LocalDate start = LocalDate.parse(agreement[5]);
+            LocalDate end = LocalDate.parse(agreement[6]);
+            assertFalse(end.isBefore(start), agreement[0]);
+            String expected = start.isAfter(AS_OF) ? "NEW" : end.isBefore(AS_OF) ? "COMPLETED" : "ACTIVE";
+            assertEquals(expected, agreement[9], agreement[0]);
+        }
+        for (String[] property : fileHandler.readLines("properties.txt")) {
+            List<String[]> leases = leasesByProperty.getOrDefault(property[0], new ArrayList<>());
+            for (int i = 1; i < leases.size(); i++) {
+                assertTrue(LocalDate.parse(leases.get(i)[5]).isAfter(LocalDate.parse(leases.get(i - 1)[6])), property[0]);
+            }
+            boolean let = leases.stream().anyMatch(lease -> lease[9].equals("ACTIVE"));
+            assertEquals(let, property[4].equals("RENTED"), property[0]);
+            for (String[] lease : leases) {
+                assertEquals(property[5], lease[3], "lease owner of " + property[0]);
+                assertTrue(Arrays.asList(property[12].split(";")).contains(lease[4]), "lease host of " + property[0]);
+            }
+        }
+    }
+
+
+    @Test
+    void paymentsFallWithinTheirLeaseAndArePaidByItsTenants() throws IOException {
+        generate(options(), new FileHandler());
+        FileHandler fileHandler = new FileHandler();
+        Map<String, String[]> agreements = new HashMap<>();
+        for (String[] agreement : fileHandler.readLines("rental_agreements.txt")) {
+            agreements.put(agreement[0], agreement);
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (String[] payment : fileHandler.readLines("payments.txt")) {
+            assertTrue(ids.add(payment[0]), payment[0]);
+            String[] lease = agreements.get(payment[1]);
+            LocalDate paid = LocalDate.parse(payment[3]);
+            assertFalse(paid.isBefore(LocalDate.parse(lease[5])), payment[0]);
+            assertFalse(paid.isAfter(AS_OF), payment[0]);
+            assertTrue(Arrays.asList(lease[2].split(";")).contains(payment[2]), payment[0]);
+            assertTrue(payment[4].matches("\\d+\\.\\d{2}"), payment[4]);
+        }
+    }
+
+
+    @Test
+    void shardedJsonLayoutReadsBackTheSameRows() throws IOException {
+        generate(options("seed", "7"), new FileHandler());
+        Map<String, Integer> csvRows = new HashMap<>();
+        for (String filename : FileHandler.DATA_FILES) {
+            csvRows.put(filename, new FileHandler().readLines(filename).size());
+        }
+        TestWorkspace.deleteRecursively(TestWorkspace.dataDirectory());
+
+        generate(options("seed", "7"), new FileHandler(4, StorageFormat.JSON));
+
+        for (String filename : FileHandler.DATA_FILES) {
+            assertEquals(csvRows.get(filename), new FileHandler(4, StorageFormat.JSON).readLines(filename).size(), filename);
+        }
+    }
+
+
+    @Test
+    void skewFavoursTheFirstIndexesAndStaysInRange() {
+        SplittableRandom random = new SplittableRandom(1);
+        int[] uniform = new int[10];
+        int[] skewed = new int[10];
+        for (int i = 0; i < 100_000; i++) {
+            uniform[DatasetGenerator.skewed(random, 10, 0)]++;
+            skewed[DatasetGenerator.skewed(random, 10, 1.1)]++;
+        }
+        for (int count : uniform) {
+            assertEquals(10_000, count, 1_000);
+        }
+        assertTrue(skewed[0] > 3 * skewed[9], Arrays.toString(skewed));
+        assertEquals(0, DatasetGenerator.skewed(new SplittableRandom(1), 1, 2.5));
+    }
+
+
+    @Test
+    void invalidOptionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator(options("rooms", "3")));
+        assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator(options("hosts", "0")));
+        assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator(options("ownerSkew", "-1")));
+        assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator(options("commercialShare", "1.5")));
+        assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator(options("maxSubTenants", "300")));
+        assertThrows(IllegalArgumentException.class, () -> new DatasetGenerator(options("years", "0")));
+    }
+
+
+    /**
+     * Builds the options of a small dataset, with any overrides.
+     * @param overrides Alternating option keys and values
+     * @return The options
+     */
+    private static Map<String, String> options(String... overrides) {
+        Map<String, String> options = new HashMap<>();
+        options.put("hosts", "10");
+        options.put("owners", "20");
+        options.put("tenants", "300");
+        options.put("properties", "50");
+        options.put("agreements", "400");
+        options.put("asOf", AS_OF.toString());
+        for (int i = 0; i + 1 < overrides.length; i += 2) {
+            options.put(overrides[i], overrides[i + 1]);
+        }
+        return options;
+    }
+
+
+    private static long generate(Map<String, String> options, FileHandler fileHandler) throws IOException {
+        return new DatasetGenerator(options).generate(fileHandler);
+    }
+
+
+    private static Map<String, byte[]> contents() throws IOException {
+        Map<String, byte[]> contents = new HashMap<>();
+        for (String filename : FileHandler.DATA_FILES) {
+            Path file = new FileHandler().dataFile(filename).toPath();
+            contents.put(filename, Files.readAllBytes(file));
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class FenwickTreeTest {
+
+    @Test
+    void sumsMatchAPlainArrayUnderRandomUpdates() {
+        SplittableRandom random = new SplittableRandom(3);
+        FenwickTree tree = new FenwickTree(300);
+        double[] values = new double[300];
+
+        for (int step = 0; step < 2000; step++) {
+            int position = random.nextInt(300);
+            double delta = random.nextInt(200) - 100;
+            tree.add(position, delta);
+            values[position] += delta;
+
+            int from = random.nextInt(300);
+            int to = random.nextInt(300);
+            double expected = 0;
+            for (int i = from; i <= to; i++) {
+                expected += values[i];
+            }
+            assertEquals(expected, tree.rangeSum(from, to), 1e-9);
+        }
+    }
+
+
+    @Test
+    void firstAndLastPositionsAreCovered() {
+        FenwickTree tree = new FenwickTree(8);
+        tree.add(0, 1);
+        tree.add(7, 2);
+
+        assertEquals(1, tree.prefixSum(0));
+        assertEquals(1, tree.prefixSum(6));
+        assertEquals(3, tree.prefixSum(7));
+        assertEquals(2, tree.rangeSum(7, 7));
+        assertEquals(8, tree.size());
+    }
+
+
+    @Test
+    void outOfRangeQueriesAreClamped() {
+        FenwickTree tree = new FenwickTree(8);
+        tree.add(3, 5);
+
+        assertEquals(0, tree.prefixSum(-1));
+        assertEquals(5, tree.prefixSum(100));
+        assertEquals(0, tree.rangeSum(5, 2));
+    }
+
+
+    @Test
+    void subtractingAnAddRestoresZero() {
+        FenwickTree tree = new FenwickTree(16);
+        tree.add(4, 2.5);
+        tree.add(9, -1);
+        tree.add(4, -2.5);
+        tree.add(9, 1);
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(0, tree.prefixSum(i));
+        }
+    }
+}
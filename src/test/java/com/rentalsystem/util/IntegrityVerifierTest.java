@@ -0,0 +1,133 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * The verifier reports column counts, duplicate IDs and broken foreign keys, and when quarantining moves the
+ * rejected rows aside so the rows referencing them are rejected in turn; the rows it accepts are what the
+ * managers load.
+ */
+class IntegrityVerifierTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void sampleDataIsCleanAndItsRowsAreHandedToTheLoad() throws Exception {
+        FileHandler fileHandler = new FileHandler();
+        IntegrityReport report = new IntegrityVerifier(fileHandler).verify(false);
+        assertTrue(report.isClean(), report.summary(10));
+
+        // The managers' load takes the verified rows, not the file, and only once
+        Files.delete(TestWorkspace.dataDirectory().resolve("hosts.txt"));
+        assertFalse(fileHandler.readLines("hosts.txt").isEmpty());
+        assertTrue(fileHandler.readLines("hosts.txt").isEmpty());
+    }
+
+
+    @Test
+    void everyKindOfViolationIsReportedWithItsRowAndColumn() {
+        FileHandler fileHandler = new FileHandler();
+        append(fileHandler, "tenants.txt", new String[]{"T001", "Peter Again", "1990-07-15", "again@email.com"});
+        append(fileHandler, "hosts.txt", new String[]{"H100", "Too Few"});
+        append(fileHandler, "properties.txt", new String[]{"P100", "RESIDENTIAL", "1 Nowhere", "900.0", "AVAILABLE", "O999",
+                "1", "true", "true", "", "", "", "H001;H999"});
+        append(fileHandler, "rental_agreements.txt", new String[]{"RA100", "P001", "T001;T999", "O001", "H001",
+                "2024-01-01", "2024-12-31", "1500.0", "MONTHLY", "ACTIVE"});
+        append(fileHandler, "payments.txt", new String[]{"PMT100", "RA999", "T001", "2024-02-01", "1500.00", "Cash"});
+
+        IntegrityReport report = new IntegrityVerifier(fileHandler).verify(false);
+
+        List<String> found = report.getViolations().stream()
+                .map(v -> v.getFilename() + " " + v.getId() + " " + v.getColumn() + " " + v.getValue() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.toList());
+        List<String> expected = new ArrayList<>();
+        expected.add("hosts.txt H100 row 2: has too few columns, expected 4");
+        expected.add("payments.txt PMT100 agreementId RA999: refers to a missing record");
+        expected.add("properties.txt P100 hostIds H999: refers to a missing record");
+        expected.add("properties.txt P100 ownerId O999: refers to a missing record");
+        expected.add("rental_agreements.txt RA100 subTenantIds T999: refers to a missing record");
+        expected.add("tenants.txt T001 id T001: repeats an earlier row");
+        assertEquals(expected, found);
+        int tenantRows = fileHandler.readLines("tenants.txt").size();
+        assertEquals(tenantRows, violation(report, "tenants.txt").getRow());
+        assertFalse(report.isQuarantined());
+    }
+
+
+    @Test
+    void quarantinedRowsInvalidateTheRowsReferencingThem() throws Exception {
+        FileHandler fileHandler = new FileHandler();
+        append(fileHandler, "properties.txt", new String[]{"P100", "RESIDENTIAL", "1 Nowhere", "900.0", "AVAILABLE", "O999",
+                "1", "true", "true", "", "", "", "H001"});
+        append(fileHandler, "rental_agreements.txt", new String[]{"RA100", "P100", "T001;", "O001", "H001",
+                "2024-01-01", "2024-12-31", "900.0", "MONTHLY", "ACTIVE"});
+        append(fileHandler, "payments.txt", new String[]{"PMT100", "RA100", "T001", "2024-02-01", "900.00", "Cash"});
+
+        // Without quarantine P100 is loaded, so the rows referencing it are fine
+        assertEquals(1, new IntegrityVerifier(new FileHandler()).verify(false).getViolations().size());
+
+        IntegrityReport report = new IntegrityVerifier(fileHandler).verify(true);
+        assertTrue(report.isQuarantined());
+        assertEquals("O999", violation(report, "properties.txt").getValue());
+        assertEquals("P100", violation(report, "rental_agreements.txt").getValue());
+        assertEquals("RA100", violation(report, "payments.txt").getValue());
+        assertFalse(ids(fileHandler.readLines("properties.txt")).contains("P100"));
+        assertFalse(ids(fileHandler.readLines("rental_agreements.txt")).contains("RA100"));
+        assertFalse(ids(fileHandler.readLines("payments.txt")).contains("PMT100"));
+
+        Path quarantined = TestWorkspace.dataDirectory().resolve("quarantine/properties.txt");
+        assertTrue(Files.readString(quarantined).contains("\"P100\""));
+        // Quarantining the same rows again does not repeat them
+        new IntegrityVerifier(new FileHandler()).verify(true);
+        assertEquals(1, Files.readAllLines(quarantined).size());
+        assertEquals(1, Files.readAllLines(TestWorkspace.dataDirectory().resolve("quarantine/payments.txt")).size());
+    }
+
+
+    private static void append(FileHandler fileHandler, String filename, String[] row) {
+        List<String[]> rows = new ArrayList<>(fileHandler.readLines(filename));
+        rows.add(row);
+        fileHandler.writeLines(filename, rows);
+    }
+
+
+    private static IntegrityReport.Violation violation(IntegrityReport report, String filename) {
+        List<IntegrityReport.Violation> found = report.getViolations().stream()
+                .filter(v -> v.getFilename().equals(filename))
+                .collect(Collectors.toList());
+        assertEquals(1, found.size(), filename);
+        return found.get(0);
+    }
+
+
+    private static List<String> ids(List<String[]> rows) {
+        return rows.stream().map(row -> row[0]).collect(Collectors.toList());
+    }
+}
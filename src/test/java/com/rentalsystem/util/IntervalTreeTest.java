@@ -0,0 +1,118 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class IntervalTreeTest {
+
+    @Test
+    void intervalsAreClosedAtBothEnds() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.add(10, 20, "A");
+
+        assertEquals("A", tree.firstOverlapping(20, 30, null));
+        assertEquals("A", tree.firstOverlapping(0, 10, null));
+        assertEquals("A", tree.firstOverlapping(15, 15, null));
+        assertNull(tree.firstOverlapping(21, 30, null));
+        assertNull(tree.firstOverlapping(0, 9, null));
+    }
+
+
+    @Test
+    void singleDayIntervalsAreAllowed() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.add(5, 5, "A");
+
+        assertEquals(List.of("A"), tree.overlapping(5, 5));
+        assertThrows(IllegalArgumentException.class, () -> tree.add(6, 5, "B"));
+        assertEquals(1, tree.size());
+    }
+
+
+    @Test
+    void firstOverlappingSkipsTheIgnoredValueAndReturnsTheEarliestStart() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.add(30, 40, "C");
+        tree.add(10, 20, "A");
+        tree.add(15, 35, "B");
+
+        assertEquals("A", tree.firstOverlapping(18, 32, null));
+        assertEquals("B", tree.firstOverlapping(18, 32, "A"));
+        assertEquals("C", tree.firstOverlapping(36, 50, "B"));
+        assertNull(tree.firstOverlapping(10, 14, "A"));
+    }
+
+
+    @Test
+    void removeNeedsTheExactIntervalAndValue() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.add(10, 20, "A");
+        tree.add(10, 25, "B");
+        tree.add(10, 20, "C");
+
+        assertFalse(tree.remove(10, 21, "A"));
+        assertFalse(tree.remove(10, 20, "B"));
+        assertTrue(tree.remove(10, 20, "A"));
+        assertFalse(tree.remove(10, 20, "A"));
+
+        assertEquals(2, tree.size());
+        assertEquals(List.of("B", "C"), sorted(tree.overlapping(0, 100)));
+    }
+
+
+    @Test
+    void matchesALinearScanUnderRandomAddsAndRemoves() {
+        SplittableRandom random = new SplittableRandom(11);
+        IntervalTree<Integer> tree = new IntervalTree<>();
+        List<long[]> intervals = new ArrayList<>();
+
+        for (int step = 0; step < 4000; step++) {
+            if (!intervals.isEmpty() && random.nextInt(3) == 0) {
+                long[] removed = intervals.remove(random.nextInt(intervals.size()));
+                assertTrue(tree.remove(removed[0], removed[1], (int) removed[2]));
+            } else {
+                long start = random.nextInt(1000);
+                long[] added = {start, start + random.nextInt(30), step};
+                intervals.add(added);
+                tree.add(added[0], added[1], step);
+            }
+
+            long start = random.nextInt(1000);
+            long end = start + random.nextInt(20);
+            List<Integer> expected = new ArrayList<>();
+            long earliestStart = Long.MAX_VALUE;
+            for (long[] interval : intervals) {
+                if (interval[0] <= end && interval[1] >= start) {
+                    expected.add((int) interval[2]);
+                    earliestStart = Math.min(earliestStart, interval[0]);
+                }
+            }
+            assertEquals(sorted(expected), sorted(tree.overlapping(start, end)));
+            Integer first = tree.firstOverlapping(start, end, null);
+            if (expected.isEmpty()) {
+                assertNull(first);
+            } else {
+                long firstStart = intervals.stream().filter(i -> i[2] == first).findFirst().orElseThrow()[0];
+                assertEquals(earliestStart, firstStart);
+            }
+        }
+        assertEquals(intervals.size(), tree.size());
+    }
+
+
+    private static <T extends Comparable<T>> List<T> sorted(List<T> values) {
+        List<T> copy = new ArrayList<>(values);
+        copy.sort(null);
+        return copy;
+    }
+}
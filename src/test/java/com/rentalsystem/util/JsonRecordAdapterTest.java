@@ -0,0 +1,101 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class JsonRecordAdapterTest {
+
+    @Test
+    void numbersAndBooleansAreWrittenAsJsonValues() throws IOException {
+        String json = write("properties.txt", new String[] {
+                "P001", "RESIDENTIAL", "123 Main St", "1500.0", "AVAILABLE", "O001", "3", "true", "false", "", "", "", "H002;H001"});
+
+        assertEquals("{\"id\":\"P001\",\"type\":\"RESIDENTIAL\",\"address\":\"123 Main St\",\"price\":1500.0,"
+                + "\"status\":\"AVAILABLE\",\"ownerId\":\"O001\",\"bedrooms\":3,\"garden\":true,\"petFriendly\":false,"
+                + "\"hostIds\":[\"H002\",\"H001\"]}", json);
+    }
+
+
+    @Test
+    void valuesThatAreNotPlainLiteralsStayStrings() throws IOException {
+        String[] row = {"P001", "RESIDENTIAL", "1, \"Quoted\" St", "0012", "AVAILABLE", "O001", "1e5", "maybe", "-", "", "-3.50", "7.", ""};
+
+        String json = write("properties.txt", row);
+
+        assertTrue(json.contains("\"price\":\"0012\""), json);
+        assertTrue(json.contains("\"bedrooms\":\"1e5\""), json);
+        assertTrue(json.contains("\"garden\":\"maybe\""), json);
+        assertTrue(json.contains("\"squareFootage\":\"7.\""), json);
+        assertTrue(json.contains("\"parkingSpaces\":-3.50"), json);
+        assertArrayEquals(row, read("properties.txt", json));
+    }
+
+
+    @Test
+    void everyDataFileRoundTrips() throws IOException {
+        String[][] rows = {
+                {"hosts.txt", "H001", "John Smith", "1980-05-15", "johne\u0301@email.com"},
+                {"payments.txt", "PMT001", "RA001", "T001", "2024-02-01", "3000.00", "Bank Transfer"},
+                {"rental_agreements.txt", "RA002", "P003", "T002;T003", "O003", "H003", "2024-02-15", "2025-02-14", "2000.0", "MONTHLY", "ACTIVE"},
+                {"income_cube.txt", "O001", "H001", "P001", "RESIDENTIAL", "2024-03", "1500.0", "-20.5"},
+        };
+        for (String[] fileAndRow : rows) {
+            String[] row = Arrays.copyOfRange(fileAndRow, 1, fileAndRow.length);
+            assertArrayEquals(row, read(fileAndRow[0], write(fileAndRow[0], row)), fileAndRow[0]);
+        }
+    }
+
+
+    @Test
+    void emptyListsAndTrailingSeparatorsLoseOnlyTheSeparator() throws IOException {
+        String[] row = {"RA001", "P002", "T001;", "O002", "H002", "2024-01-01", "2024-12-31", "3000.0", "MONTHLY", "ACTIVE"};
+
+        String[] read = read("rental_agreements.txt", write("rental_agreements.txt", row));
+
+        assertEquals("T001", read[2]);
+        assertArrayEquals(new String[] {"T001"}, read[2].split(";"));
+    }
+
+
+    @Test
+    void missingFieldsReadAsEmptyAndUnknownFieldsAreSkipped() throws IOException {
+        String[] read = read("payments.txt", "{\"id\":\"PMT9\",\"extra\":{\"nested\":[1,2]},\"amount\":12,\"method\":null}");
+
+        assertArrayEquals(new String[] {"PMT9", "", "", "", "12", ""}, read);
+    }
+
+
+    @Test
+    void unknownFilesHaveNoSchema() {
+        assertThrows(IllegalArgumentException.class, () -> JsonRecordAdapter.forFile("unknown.txt"));
+    }
+
+
+    private static String write(String filename, String[] row) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            JsonRecordAdapter.forFile(filename).write(writer, row);
+        }
+        return out.toString();
+    }
+
+
+    private static String[] read(String filename, String json) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return JsonRecordAdapter.forFile(filename).read(reader);
+        }
+    }
+}
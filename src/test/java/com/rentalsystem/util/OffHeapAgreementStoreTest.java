@@ -0,0 +1,132 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class OffHeapAgreementStoreTest {
+
+    @Test
+    void recordsRoundTripAcrossSlabBoundaries() {
+        OffHeapAgreementStore store = new OffHeapAgreementStore(4);
+        for (int i = 0; i < 10; i++) {
+            put(store, "RA" + i, i, new int[]{i, i + 1, i + 2});
+        }
+
+        assertEquals(10, store.size());
+        for (int i = 0; i < 10; i++) {
+            int record = store.find("RA" + i);
+            assertEquals("RA" + i, store.agreementId(record));
+            assertEquals(100 + i, store.propertyHandle(record));
+            assertEquals(200 + i, store.mainTenantHandle(record));
+            assertEquals(300 + i, store.ownerHandle(record));
+            assertEquals(400 + i, store.hostHandle(record));
+            assertEquals(19000 + i, store.startDay(record));
+            assertEquals(19365 + i, store.endDay(record));
+            assertEquals(1500.5 + i, store.rentAmount(record));
+            assertEquals(2, store.periodOrdinal(record));
+            assertEquals(3, store.statusOrdinal(record));
+            assertArrayEquals(new int[]{i, i + 1, i + 2}, store.subTenantHandles(record));
+        }
+        assertEquals(3L * 4 * 64 + 8L * 4 * 4, store.offHeapBytes());
+    }
+
+
+    @Test
+    void removeLeavesATombstoneThatLookupsAndIterationSkip() {
+        OffHeapAgreementStore store = new OffHeapAgreementStore(4);
+        put(store, "RA1", 1, new int[0]);
+        put(store, "RA2", 2, new int[0]);
+        put(store, "RA3", 3, new int[0]);
+
+        assertTrue(store.remove("RA2"));
+        assertFalse(store.remove("RA2"));
+
+        assertEquals(-1, store.find("RA2"));
+        assertFalse(store.contains("RA2"));
+        assertTrue(store.contains("RA3"));
+        assertEquals(List.of("RA1", "RA3"), ids(store));
+        assertEquals(2, store.size());
+    }
+
+
+    @Test
+    void putAfterRemoveRevivesTheId() {
+        OffHeapAgreementStore store = new OffHeapAgreementStore(4);
+        put(store, "RA1", 1, new int[0]);
+        store.remove("RA1");
+
+        put(store, "RA1", 7, new int[]{5});
+
+        assertEquals(1, store.size());
+        int record = store.find("RA1");
+        assertEquals(107, store.propertyHandle(record));
+        assertArrayEquals(new int[]{5}, store.subTenantHandles(record));
+    }
+
+
+    @Test
+    void putWithAnExistingIdReplacesTheRecord() {
+        OffHeapAgreementStore store = new OffHeapAgreementStore(4);
+        put(store, "RA1", 1, new int[]{1});
+        put(store, "RA1", 2, new int[]{2, 3});
+
+        assertEquals(1, store.size());
+        assertEquals(List.of("RA1"), ids(store));
+        assertArrayEquals(new int[]{2, 3}, store.subTenantHandles(store.find("RA1")));
+    }
+
+
+    @Test
+    void indexGrowsAndDropsTombstonesOnRehash() {
+        OffHeapAgreementStore store = new OffHeapAgreementStore(256);
+        for (int i = 0; i < 5000; i++) {
+            put(store, "RA" + i, i, new int[0]);
+            if (i % 2 == 1) {
+                store.remove("RA" + (i - 1));
+            }
+        }
+
+        assertEquals(2500, store.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i % 2 == 1, store.contains("RA" + i), "RA" + i);
+        }
+    }
+
+
+    @Test
+    void onlyShortLatin1IdsFitInline() {
+        String longest = "R".repeat(OffHeapAgreementStore.MAX_ID_LENGTH);
+
+        assertTrue(OffHeapAgreementStore.fits(longest));
+        assertTrue(OffHeapAgreementStore.fits("RA\u00e9"));
+        assertFalse(OffHeapAgreementStore.fits(longest + "R"));
+        assertFalse(OffHeapAgreementStore.fits("RA\u0100"));
+
+        OffHeapAgreementStore store = new OffHeapAgreementStore(4);
+        put(store, longest, 1, new int[0]);
+        assertEquals(longest, store.agreementId(store.find(longest)));
+        assertEquals(-1, store.find(longest + "R"));
+        assertThrows(IllegalArgumentException.class, () -> put(store, longest + "R", 1, new int[0]));
+    }
+
+
+    private static void put(OffHeapAgreementStore store, String id, int i, int[] subTenants) {
+        store.put(id, 100 + i, 200 + i, subTenants, 300 + i, 400 + i, 19000 + i, 19365 + i, 1500.5 + i, 2, 3);
+    }
+
+
+    private static List<String> ids(OffHeapAgreementStore store) {
+        List<String> ids = new ArrayList<>();
+        store.forEach(record -> ids.add(store.agreementId(record)));
+        return ids;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class PaymentPartitionsTest {
+    @TempDir
+    Path directory;
+
+
+    @Test
+    void rowsArePartitionedByTheMonthOfTheirPaymentDate() {
+        assertEquals("2024-03", PaymentPartitions.monthOf(payment("PAY1", "2024-03-31")));
+        assertEquals(PaymentPartitions.UNDATED, PaymentPartitions.monthOf(payment("PAY2", "31/03/2024")));
+        assertEquals(PaymentPartitions.UNDATED, PaymentPartitions.monthOf(payment("PAY3", "")));
+        assertEquals(PaymentPartitions.UNDATED, PaymentPartitions.monthOf(new String[]{"PAY4", "RA1", "T1"}));
+    }
+
+
+    @Test
+    void manifestRoundTripsThroughItsFile() throws IOException {
+        PaymentPartitions partitions = partitions();
+        partitions.append("2024-03", payment("PAY1", "2024-03-15"));
+        partitions.append("2024-03", payment("PAY2", "2024-03-01"));
+        partitions.append("2024-04", payment("PAY3", "2024-04-30"));
+        partitions.saveManifest();
+
+        PaymentPartitions reread = partitions();
+        PaymentPartitions.Partition march = reread.get("2024-03");
+        assertEquals("2024-03-01", march.min);
+        assertEquals("2024-03-15", march.max);
+        assertEquals(2, march.rows);
+        assertEquals(PaymentPartitions.Partition.of(List.of(payment("PAY1", "2024-03-15"), payment("PAY2", "2024-03-01"))).digest,
+                march.digest);
+        assertEquals(1, reread.get("2024-04").rows);
+        assertFalse(partitions.stagedManifest().exists());
+    }
+
+
+    @Test
+    void rangeScanPrunesPartitionsOutsideTheirInclusiveDateBounds() throws IOException {
+        PaymentPartitions partitions = partitions();
+        partitions.append("2024-03", payment("PAY1", "2024-03-10"));
+        partitions.append("2024-03", payment("PAY2", "2024-03-20"));
+        partitions.append("2024-04", payment("PAY3", "2024-04-05"));
+        partitions.saveManifest();
+
+        assertEquals(List.of("2024-03"), partitions.overlapping("2024-03-20", "2024-04-04"));
+        assertEquals(List.of("2024-03", "2024-04"), partitions.overlapping("2024-03-20", "2024-04-05"));
+        assertEquals(List.of("2024-04"), partitions.overlapping("2024-03-21", "2024-04-30"));
+        assertEquals(List.of(), partitions.overlapping("2024-01-01", "2024-03-09"));
+    }
+
+
+    @Test
+    void partitionsMissingFromTheManifestAndUndatedRowsAreNeverPruned() throws IOException {
+        PaymentPartitions partitions = partitions();
+        partitions.append("2024-03", payment("PAY1", "2024-03-10"));
+        partitions.saveManifest();
+        touch(partitions.file("2023-01"));
+        touch(partitions.file(PaymentPartitions.UNDATED));
+
+        assertEquals(List.of("2023-01", "2024-03", PaymentPartitions.UNDATED), partitions.months());
+        assertEquals(List.of("2023-01", PaymentPartitions.UNDATED), partitions.overlapping("2025-01-01", "2025-12-31"));
+    }
+
+
+    @Test
+    void unreadableManifestFallsBackToReadingEveryPartition() throws IOException {
+        PaymentPartitions partitions = partitions();
+        partitions.append("2024-03", payment("PAY1", "2024-03-10"));
+        partitions.saveManifest();
+        touch(partitions.file("2024-03"));
+        Files.write(partitions.manifestFile().toPath(), "2024-03,2024-03-10,2024-03-10,x,ff\n".getBytes(StandardCharsets.UTF_8));
+
+        PaymentPartitions reread = partitions();
+        assertNull(reread.get("2024-03"));
+        assertEquals(List.of("2024-03"), reread.overlapping("2025-01-01", "2025-12-31"));
+    }
+
+
+    private PaymentPartitions partitions() {
+        return new PaymentPartitions(directory.toFile(), ".csv");
+    }
+
+
+    private static String[] payment(String id, String date) {
+        return new String[]{id, "RA1", "T1", date, "100.00", "Cash"};
+    }
+
+
+    private static void touch(File file) throws IOException {
+        Files.write(file.toPath(), new byte[0]);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class PrefixTrieTest {
+
+    @Test
+    void topKReturnsValuesInKeyOrderUpToTheLimit() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("p010", "P010");
+        trie.put("p001", "P001");
+        trie.put("p002", "P002");
+        trie.put("t001", "T001");
+
+        assertEquals(List.of("P001", "P002", "P010"), trie.topK("p", 10));
+        assertEquals(List.of("P001", "P002"), trie.topK("p0", 2));
+        assertEquals(List.of("P010"), trie.topK("p01", 10));
+        assertEquals(List.of(), trie.topK("p1", 10));
+        assertEquals(List.of(), trie.topK("p0100", 10));
+        assertEquals(4, trie.topK("", 10).size());
+    }
+
+
+    @Test
+    void prefixEndingInsideAnEdgeStillMatches() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("harbor drive", "P012");
+
+        assertEquals(List.of("P012"), trie.topK("harb", 5));
+        assertEquals(List.of(), trie.topK("harx", 5));
+    }
+
+
+    @Test
+    void aKeyCanHoldSeveralDistinctValues() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("smith", "H001");
+        trie.put("smith", "T004");
+        trie.put("smith", "H001");
+
+        assertEquals(2, trie.size());
+        assertEquals(List.of("H001", "T004"), trie.topK("smi", 5));
+        assertTrue(trie.remove("smith", "H001"));
+        assertEquals(List.of("T004"), trie.topK("smi", 5));
+    }
+
+
+    @Test
+    void removeOfAMissingValueChangesNothing() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("abc", "1");
+
+        assertFalse(trie.remove("abc", "2"));
+        assertFalse(trie.remove("ab", "1"));
+        assertFalse(trie.remove("abcd", "1"));
+        assertFalse(trie.remove("xyz", "1"));
+        assertEquals(1, trie.size());
+        assertEquals(2, trie.nodeCount());
+    }
+
+
+    @Test
+    void removePrunesTheWholePath() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("a", "1");
+        trie.put("ab", "2");
+        trie.put("abc", "3");
+        trie.put("abcd", "4");
+
+        trie.remove("abcd", "4");
+        trie.remove("abc", "3");
+        trie.remove("ab", "2");
+        trie.remove("a", "1");
+
+        assertEquals(0, trie.size());
+        assertEquals(1, trie.nodeCount());
+        assertEquals(List.of(), trie.topK("", 5));
+    }
+
+
+    @Test
+    void removeMergesSplitNodesBackIntoOneEdge() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("abcx", "1");
+        trie.put("abcy", "2");
+        trie.put("abz", "3");
+        assertEquals(6, trie.nodeCount());
+
+        trie.remove("abcy", "2");
+        trie.remove("abz", "3");
+
+        // Only the root and a single "abcx" edge remain
+        assertEquals(2, trie.nodeCount());
+        assertEquals(List.of("1"), trie.topK("abc", 5));
+        assertEquals(List.of("1"), trie.topK("a", 5));
+
+        trie.remove("abcx", "1");
+        assertEquals(1, trie.nodeCount());
+    }
+
+
+    @Test
+    void putAfterRemoveRebuildsTheSameLookups() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("owner", "O001");
+        trie.put("own", "O002");
+        trie.remove("owner", "O001");
+        trie.put("owned", "O003");
+
+        assertEquals(List.of("O002", "O003"), trie.topK("ow", 5));
+        assertEquals(List.of("O003"), trie.topK("owne", 5));
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class RowCacheTest {
+
+    @Test
+    void rowIsRenderedOncePerVersion() {
+        RowCache cache = new RowCache(10);
+
+        List<String> first = cache.get("P1", 1, () -> List.of("old"));
+        assertSame(first, cache.get("P1", 1, () -> List.of("unused")));
+        assertEquals(List.of("new"), cache.get("P1", 2, () -> List.of("new")));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+
+    @Test
+    void leastRecentlyUsedRowIsEvictedAtCapacity() {
+        RowCache cache = new RowCache(2);
+        cache.get("P1", 1, () -> List.of("1"));
+        cache.get("P2", 1, () -> List.of("2"));
+        cache.get("P1", 1, () -> List.of("unused"));
+
+        cache.get("P3", 1, () -> List.of("3"));
+
+        assertEquals(List.of("1"), cache.get("P1", 1, () -> List.of("rebuilt")));
+        assertEquals(List.of("rebuilt"), cache.get("P2", 1, () -> List.of("rebuilt")));
+    }
+
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new RowCache(0));
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Sharded data files route rows by ID, rewrite only the shards that changed, and refuse a shard count
+ * that does not match the one on disk until ShardMigrator reshards them.
+ */
+class ShardingTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void rowsAreRoutedToTheShardOfTheirIdAndTheCountIsRecorded() throws IOException {
+        FileHandler sharded = new FileHandler(4, StorageFormat.CSV);
+        List<String[]> hosts = sharded.readLines("hosts.txt");
+        sharded.writeLines("hosts.txt", hosts);
+
+        assertEquals(4, FileHandler.storedShardCount("hosts.txt"));
+        for (String[] host : hosts) {
+            String shard = new String(Files.readAllBytes(shard("hosts.txt", sharded.shardOf(host[0])).toPath()));
+            assertTrue(shard.contains("\"" + host[0] + "\""), host[0]);
+        }
+        assertEquals(ids(hosts), ids(new FileHandler(4, StorageFormat.CSV).readLines("hosts.txt")));
+    }
+
+
+    @Test
+    void onlyShardsWhoseContentChangedAreRewritten() {
+        FileHandler sharded = new FileHandler(4, StorageFormat.CSV);
+        List<String[]> tenants = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            tenants.add(new String[]{"T" + i, "Tenant " + i, "2000-01-01", "t" + i + "@email.com"});
+        }
+        sharded.writeLines("tenants.txt", tenants);
+        for (int shard = 0; shard < 4; shard++) {
+            assertTrue(shard("tenants.txt", shard).setLastModified(0));
+        }
+
+        // A new handler learns the digests by reading, so writing the same rows back replaces nothing
+        FileHandler reopened = new FileHandler(4, StorageFormat.CSV);
+        List<String[]> read = reopened.readLines("tenants.txt");
+        reopened.writeLines("tenants.txt", read);
+        for (int shard = 0; shard < 4; shard++) {
+            assertEquals(0, shard("tenants.txt", shard).lastModified(), "shard " + shard);
+        }
+
+        String[] changed = read.get(0);
+        changed[1] = "Renamed Tenant";
+        reopened.writeLines("tenants.txt", read);
+        int changedShard = reopened.shardOf(changed[0]);
+        for (int shard = 0; shard < 4; shard++) {
+            assertEquals(shard == changedShard, shard("tenants.txt", shard).lastModified() != 0, "shard " + shard);
+        }
+    }
+
+
+    @Test
+    void differentShardCountIsRefusedInsteadOfDroppingShards() {
+        FileHandler sharded = new FileHandler(4, StorageFormat.CSV);
+        List<String[]> owners = sharded.readLines("owners.txt");
+        sharded.writeLines("owners.txt", owners);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new FileHandler(2, StorageFormat.CSV).readLines("owners.txt"));
+        assertTrue(e.getMessage().contains("4 shards"), e.getMessage());
+        assertThrows(IllegalStateException.class, () -> new FileHandler(1, StorageFormat.CSV).readLines("owners.txt"));
+        assertThrows(IllegalStateException.class, () -> new FileHandler(8, StorageFormat.CSV).writeLines("owners.txt", owners));
+
+        assertEquals(4, FileHandler.storedShardCount("owners.txt"));
+        assertEquals(ids(owners), ids(new FileHandler(4, StorageFormat.CSV).readLines("owners.txt")));
+    }
+
+
+    @Test
+    void migratorReshardsEveryFileAndMergesThemBack() {
+        Map<String, List<String>> original = new HashMap<>();
+        for (String filename : FileHandler.DATA_FILES) {
+            original.put(filename, ids(new FileHandler(1, StorageFormat.CSV).readLines(filename)));
+        }
+
+        ShardMigrator.main(new String[]{"3", "csv"});
+        for (String filename : FileHandler.DATA_FILES) {
+            assertEquals(3, FileHandler.storedShardCount(filename), filename);
+            assertFalse(new FileHandler(1, StorageFormat.CSV).dataFile(filename).exists(), filename);
+            assertEquals(original.get(filename), ids(new FileHandler(3, StorageFormat.CSV).readLines(filename)), filename);
+        }
+
+        ShardMigrator.main(new String[]{"1", "csv"});
+        for (String filename : FileHandler.DATA_FILES) {
+            assertEquals(0, FileHandler.storedShardCount(filename), filename);
+            assertEquals(original.get(filename), ids(new FileHandler(1, StorageFormat.CSV).readLines(filename)), filename);
+        }
+        assertFalse(FileHandler.shardDirectory("hosts.txt").getParentFile().exists());
+    }
+
+
+    private static File shard(String filename, int shard) {
+        String base = filename.substring(0, filename.lastIndexOf('.'));
+        return new File(FileHandler.shardDirectory(filename), base + "-" + String.format("%03d", shard) + StorageFormat.CSV.getExtension());
+    }
+
+
+    private static List<String> ids(List<String[]> rows) {
+        List<String> ids = new ArrayList<>();
+        for (String[] row : rows) {
+            ids.add(row[0]);
+        }
+        ids.sort(null);
+        return ids;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.manager.RelationshipLinker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class SnapshotStoreTest {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SnapshotStore store = new SnapshotStore(lock, new RelationshipLinker(false, lock));
+    private final List<String[]> hosts = new ArrayList<>();
+    private final List<String[]> owners = new ArrayList<>();
+    private final AtomicInteger hostBuilds = new AtomicInteger();
+    private final AtomicInteger ownerBuilds = new AtomicInteger();
+
+
+    SnapshotStoreTest() {
+        hosts.add(new String[]{"H1", "Alice"});
+        owners.add(new String[]{"O1", "Bob"});
+        store.register("hosts.txt", () -> {
+            hostBuilds.incrementAndGet();
+            return new ArrayList<>(hosts);
+        });
+        store.register("owners.txt", () -> {
+            ownerBuilds.incrementAndGet();
+            return new ArrayList<>(owners);
+        });
+    }
+
+
+    @Test
+    void rowsAreOnlyTakenFromTheManagersWhenASnapshotIsAskedFor() {
+        assertEquals(0, hostBuilds.get());
+
+        SnapshotStore.Snapshot snapshot = store.snapshot();
+
+        assertEquals("Alice", snapshot.get("hosts.txt", "H1")[1]);
+        assertEquals(1, hostBuilds.get());
+        assertSame(snapshot, store.snapshot());
+        assertEquals(1, hostBuilds.get());
+    }
+
+
+    @Test
+    void onlyChangedFilesAreRebuiltAndHeldSnapshotsKeepTheirRows() {
+        SnapshotStore.Snapshot before = store.snapshot();
+
+        hosts.add(new String[]{"H2", "Carol"});
+        store.changed("hosts.txt");
+        SnapshotStore.Snapshot after = store.snapshot();
+
+        assertEquals(1, before.rows("hosts.txt").size());
+        assertNull(before.get("hosts.txt", "H2"));
+        assertEquals("Carol", after.get("hosts.txt", "H2")[1]);
+        assertEquals(2, hostBuilds.get());
+        assertEquals(1, ownerBuilds.get());
+        assertSame(before.rows("owners.txt"), after.rows("owners.txt"));
+        assertTrue(after.getVersion("hosts.txt") > before.getVersion("hosts.txt"));
+        assertEquals(before.getVersion("owners.txt"), after.getVersion("owners.txt"));
+    }
+
+
+    @Test
+    void unregisteredFilesAreEmpty() {
+        SnapshotStore.Snapshot snapshot = store.snapshot();
+
+        assertTrue(snapshot.rows("payments.txt").isEmpty());
+        assertNull(snapshot.get("payments.txt", "PAY1"));
+        assertEquals(0, snapshot.getVersion("payments.txt"));
+    }
+
+
+    @Test
+    void buildingWaitsForAChangeInProgress() throws Exception {
+        store.snapshot();
+        Lock writeLock = lock.writeLock();
+        CompletableFuture<SnapshotStore.Snapshot> pending;
+        writeLock.lock();
+        try {
+            hosts.add(new String[]{"H2", "Carol"});
+            store.changed("hosts.txt");
+            pending = CompletableFuture.supplyAsync(store::snapshot);
+            assertThrows(TimeoutException.class, () -> pending.get(200, TimeUnit.MILLISECONDS));
+            hosts.add(new String[]{"H3", "Dave"});
+        } finally {
+            writeLock.unlock();
+        }
+
+        assertEquals(3, pending.get(5, TimeUnit.SECONDS).rows("hosts.txt").size());
+    }
+}
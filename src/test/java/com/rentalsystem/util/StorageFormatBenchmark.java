@@ -0,0 +1,73 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+
+/**
+ * Write time, read time and file size of the payments file in CSV and in JSON.
+ * Data files are written relative to the working directory, so run it from an empty scratch directory:
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.rentalsystem.util.StorageFormatBenchmark [rows]
+ */
+public class StorageFormatBenchmark {
+    private static final String[] METHODS = {"Bank Transfer", "Cash", "Credit Card"};
+
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        TestWorkspace.configure();
+        TestWorkspace.deleteRecursively(TestWorkspace.dataDirectory());
+        new File("resources/data").mkdirs();
+        List<String[]> lines = payments(rows);
+
+        for (int round = 0; round < 3; round++) {
+            for (StorageFormat format : StorageFormat.values()) {
+                FileHandler fileHandler = new FileHandler(1, format);
+                long writeStart = System.nanoTime();
+                fileHandler.writeLines("payments.txt", lines);
+                long writeMillis = (System.nanoTime() - writeStart) / 1_000_000;
+
+                long readStart = System.nanoTime();
+                int[] count = {0};
+                fileHandler.forEachLine("payments.txt", parts -> count[0]++);
+                long readMillis = (System.nanoTime() - readStart) / 1_000_000;
+                if (count[0] != rows) {
+                    throw new IllegalStateException(format + " read " + count[0] + " of " + rows + " rows");
+                }
+
+                long bytes = new File("resources/data/" + format.fileName("payments.txt")).length();
+                if (round == 2) {
+                    System.out.printf("%-4s rows=%d  write=%d ms  read=%d ms  size=%.1f MB%n",
+                            format, rows, writeMillis, readMillis, bytes / 1e6);
+                }
+            }
+        }
+    }
+
+
+    private static List<String[]> payments(int rows) {
+        SplittableRandom random = new SplittableRandom(1);
+        List<String[]> lines = new ArrayList<>(rows);
+        long firstDay = LocalDate.of(2020, 1, 1).toEpochDay();
+        for (int i = 0; i < rows; i++) {
+            lines.add(new String[] {
+                    String.format("PMT%07d", i),
+                    String.format("RA%06d", random.nextInt(100_000)),
+                    String.format("T%06d", random.nextInt(50_000)),
+                    LocalDate.ofEpochDay(firstDay + random.nextInt(2000)).toString(),
+                    (500 + random.nextInt(3000)) + ".0",
+                    METHODS[random.nextInt(METHODS.length)]
+            });
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Rows written by a FileHandler in either format read back unchanged, including by a new FileHandler.
+ */
+class StorageFormatRoundTripTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure();
+    }
+
+
+    @BeforeEach
+    void resetData() {
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void rowsWithSeparatorsQuotesAndEmptyColumnsRoundTrip() {
+        for (StorageFormat format : StorageFormat.values()) {
+            rowsRoundTrip(format);
+        }
+    }
+
+
+    @Test
+    void sampleDataSurvivesAConversion() {
+        for (StorageFormat format : StorageFormat.values()) {
+            convertSampleData(format);
+        }
+    }
+
+
+    @Test
+    void anEmptyFileRoundTrips() {
+        for (StorageFormat format : StorageFormat.values()) {
+            new FileHandler(1, format).writeLines("payments.txt", new ArrayList<>());
+
+            assertTrue(new FileHandler(1, format).readLines("payments.txt").isEmpty(), format.name());
+        }
+    }
+
+
+    @Test
+    void truncatedJsonFailsInsteadOfLoadingPartially() throws IOException {
+        FileHandler json = new FileHandler(1, StorageFormat.JSON);
+        json.writeLines("payments.txt", new FileHandler(1, StorageFormat.CSV).readLines("payments.txt"));
+        File file = json.dataFile("payments.txt");
+        byte[] content = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        IllegalStateException read = assertThrows(IllegalStateException.class,
+                () -> new FileHandler(1, StorageFormat.JSON).readLines("payments.txt"));
+        assertTrue(read.getMessage().contains(file.getPath()), read.getMessage());
+        List<String[]> streamed = new ArrayList<>();
+        assertThrows(IllegalStateException.class,
+                () -> new FileHandler(1, StorageFormat.JSON).forEachLine("payments.txt", streamed::add));
+    }
+
+
+    private static void rowsRoundTrip(StorageFormat format) {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] {"PMT001", "RA001", "T001", "2024-02-01", "3000.00", "Bank Transfer"});
+        rows.add(new String[] {"PMT002", "RA002", "T002", "2024-02-29", "0012", "Cash, \"in person\""});
+        rows.add(new String[] {"PMT003", "RA003", "T004", "2024-03-01", "-1.5", ""});
+
+        new FileHandler(1, format).writeLines("payments.txt", rows);
+        List<String[]> read = new FileHandler(1, format).readLines("payments.txt");
+
+        assertEquals(rows.size(), read.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), read.get(i), format + " row " + i);
+        }
+    }
+
+
+    private static void convertSampleData(StorageFormat format) {
+        FileHandler csv = new FileHandler(1, StorageFormat.CSV);
+        FileHandler converted = new FileHandler(1, format);
+        for (String filename : List.of("hosts.txt", "owners.txt", "tenants.txt", "payments.txt")) {
+            List<String[]> original = csv.readLines(filename);
+            converted.writeLines(filename, original);
+
+            List<String[]> read = new FileHandler(1, format).readLines(filename);
+            assertEquals(original.size(), read.size(), filename);
+            for (int i = 0; i < original.size(); i++) {
+                assertArrayEquals(original.get(i), read.get(i), format + " " + filename + " row " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.manager.*;
+import com.rentalsystem.model.Payment;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Heap retained by the payments FileHandler.loadPayments returns, with the shared StringPool and with a
+ * FileHandler that does not pool. A generated dataset is loaded with completed agreements held off-heap,
+ * so each payment keeps its agreement ID as a string as well as its payment method.
+ * Data files are written relative to the working directory, so run it from an empty scratch directory:
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.rentalsystem.util.StringPoolBenchmark [agreements]
+ */
+public class StringPoolBenchmark {
+    private static int payments;
+
+
+    public static void main(String[] args) throws IOException {
+        String agreements = args.length > 0 ? args[0] : "20000";
+        TestWorkspace.configure("storage.offheap.agreements", "true");
+        TestWorkspace.deleteRecursively(TestWorkspace.dataDirectory());
+        new DatasetGenerator(Map.of("agreements", agreements, "asOf", "2025-01-01")).generate(new FileHandler());
+
+        for (int round = 0; round < 3; round++) {
+            long plain = retainedBytes(false);
+            long pooled = retainedBytes(true);
+            if (round == 2) {
+                System.out.printf("payments=%d  plain=%.1f MB  pooled=%.1f MB  saved=%.1f MB (%.0f bytes/payment)%n",
+                        payments, plain / 1e6, pooled / 1e6, (plain - pooled) / 1e6, (plain - pooled) / (double) payments);
+            }
+        }
+    }
+
+
+    /**
+     * Loads the dataset and measures the heap held by the payments loadPayments returns.
+     * @param pooled Whether the FileHandler canonicalizes values through its StringPool
+     * @return The retained heap in bytes
+     */
+    private static long retainedBytes(boolean pooled) {
+        FileHandler fileHandler = pooled ? new FileHandler() : new FileHandler() {
+            @Override
+            public String intern(String value) {
+                return value;
+            }
+        };
+        HostManagerImpl hosts = new HostManagerImpl(fileHandler);
+        TenantManagerImpl tenants = new TenantManagerImpl(fileHandler);
+        OwnerManagerImpl owners = new OwnerManagerImpl(fileHandler);
+        PropertyManagerImpl properties = new PropertyManagerImpl(fileHandler);
+        RentalManagerImpl rentals = new RentalManagerImpl(fileHandler);
+        properties.setDependencies(hosts, tenants, owners, rentals);
+        rentals.setDependencies(tenants, properties, hosts, owners);
+        hosts.setDependencies(properties, owners);
+        owners.setDependencies(properties, hosts);
+        fileHandler.syncManager(rentals, tenants, owners, hosts, properties);
+        hosts.load();
+        tenants.load();
+        owners.load();
+        properties.load();
+        rentals.load();
+
+        long before = usedHeap();
+        List<Payment> loaded = fileHandler.loadPayments();
+        fileHandler.finishLoad();
+        long after = usedHeap();
+        payments = loaded.size();
+        if (loaded.isEmpty() || rentals.getAll().isEmpty()) {
+            throw new IllegalStateException("No payments were loaded");
+        }
+        return after - before;
+    }
+
+
+    /**
+     * Runs the collector until the used heap settles and returns it.
+     * @return The used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
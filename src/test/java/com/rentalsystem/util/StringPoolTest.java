@@ -0,0 +1,57 @@
+/**
+ * @author <Nguyen Ngoc Dung - s3978535>
+ */
+
+package com.rentalsystem.util;
+
+import com.rentalsystem.TestWorkspace;
+import com.rentalsystem.model.Payment;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class StringPoolTest {
+
+    @BeforeAll
+    static void configure() {
+        TestWorkspace.configure("storage.offheap.agreements", "true", "storage.offheap.workingSet", "2");
+        TestWorkspace.resetData();
+    }
+
+
+    @Test
+    void internReturnsFirstInstanceForEqualValues() {
+        StringPool pool = new StringPool();
+        String first = new String("Bank Transfer");
+        String second = new String("Bank Transfer");
+
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertSame(first, pool.intern("Bank Transfer"));
+    }
+
+
+    @Test
+    void internPassesNullThrough() {
+        assertNull(new StringPool().intern(null));
+    }
+
+
+    @Test
+    void paymentsOfAnOffHeapAgreementShareItsIdAndTheirMethod() {
+        TestWorkspace.Loaded loaded = TestWorkspace.load();
+        assertTrue(loaded.rentals.isStoredOffHeap("RA003"));
+
+        List<Payment> payments = loaded.tenants.get("T004").getPayments().stream()
+                .filter(payment -> payment.getRentalAgreementId().equals("RA003"))
+                .collect(Collectors.toList());
+        assertEquals(2, payments.size());
+        assertSame(payments.get(0).getRentalAgreementId(), payments.get(1).getRentalAgreementId());
+        assertSame(payments.get(0).getPaymentMethod(), payments.get(1).getPaymentMethod());
+    }
+}